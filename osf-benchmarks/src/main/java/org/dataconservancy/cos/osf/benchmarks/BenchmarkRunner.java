@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the benchmark jar.  Delegates to the JMH command line ({@link org.openjdk.jmh.Main}), defaulting
+ * the result format to JSON and the result file to {@code jmh-result.json} so that every run produces machine-readable
+ * output suitable for tracking regressions.  Any JMH option may be supplied on the command line, and explicitly
+ * supplied {@code -rf} or {@code -rff} options take precedence over the defaults.
+ * <p>
+ * Example: {@code java -jar target/benchmarks.jar PackageGraph -rff results/package-graph.json}
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Default result format
+     */
+    static final String RESULT_FORMAT = "json";
+
+    /**
+     * Default result file
+     */
+    static final String RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkRunner() {
+        // disallow construction
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args JMH command line options
+     * @throws Exception if the benchmarks cannot be run
+     */
+    public static void main(final String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(withDefaults(args));
+    }
+
+    /**
+     * Adds the default result format and result file to the supplied options, unless they are already present.
+     *
+     * @param args JMH command line options
+     * @return the options with defaults applied
+     */
+    static String[] withDefaults(final String[] args) {
+        final List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add("-rf");
+            options.add(RESULT_FORMAT);
+        }
+        if (!options.contains("-rff")) {
+            options.add("-rff");
+            options.add(RESULT_FILE);
+        }
+        return options.toArray(new String[options.size()]);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import org.dataconservancy.cos.osf.packaging.OsfPackageGraph;
+import org.dataconservancy.cos.packaging.OsfContentProvider;
+import org.dataconservancy.cos.packaging.OsfContentResolver;
+import org.dataconservancy.cos.rdf.support.OntologyManager;
+import org.dataconservancy.packaging.tool.model.ipm.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link OsfContentProvider}: construction (which serializes the package graph and parses it back into a
+ * domain model), and {@link OsfContentProvider#getIpmModel()} (which builds the IPM tree and stages every binary to
+ * local disk).  Binary content is served from memory, so the measurement includes local disk I/O but not the network.
+ *
+ * @author agent (agent@local)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentProviderBenchmark {
+
+    /**
+     * The registration to package (see {@link Fixtures#registration(String)}).
+     */
+    @Param({"packager:eq7a4", "synthetic:10x100"})
+    public String source;
+
+    /**
+     * The size, in bytes, of each binary served by the content resolver.
+     */
+    @Param({"1024", "1048576"})
+    public int binarySize;
+
+    private OsfPackageGraph graph;
+
+    private OsfContentResolver resolver;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        graph = new OsfPackageGraph(new OntologyManager());
+        graph.add(Fixtures.registration(source));
+
+        final byte[] content = new byte[binarySize];
+        new Random(binarySize).nextBytes(content);
+        resolver = uri -> new ByteArrayInputStream(content);
+    }
+
+    /**
+     * Constructs (and closes) a content provider over the package graph.
+     *
+     * @return the number of statements in the provider's domain model
+     */
+    @Benchmark
+    public long construct() {
+        final OsfContentProvider p = new OsfContentProvider(graph, resolver);
+        try {
+            return p.getDomainModel().size();
+        } finally {
+            p.close();
+        }
+    }
+
+    /**
+     * Builds the IPM tree, staging every binary referenced by the package graph.
+     *
+     * @param staged supplies a content provider constructed outside of the measurement
+     * @return the root of the IPM tree
+     */
+    @Benchmark
+    public Node getIpmModel(final StagedProvider staged) {
+        return staged.provider.getIpmModel();
+    }
+
+    /**
+     * Supplies a freshly constructed content provider to each invocation of {@link #getIpmModel(StagedProvider)}, and
+     * closes it (removing staged binaries) afterwards.
+     */
+    @State(Scope.Thread)
+    public static class StagedProvider {
+
+        private OsfContentProvider provider;
+
+        @Setup(Level.Invocation)
+        public void setUp(final ContentProviderBenchmark benchmark) {
+            provider = new OsfContentProvider(benchmark.graph, benchmark.resolver);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            provider.close();
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jasminb.jsonapi.RelationshipResolver;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.github.jasminb.jsonapi.annotations.Type;
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.dataconservancy.cos.osf.client.support.ModelClassScanner;
+import org.dataconservancy.cos.osf.client.support.ResourceConverterFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides access to the JSON fixtures shared with the integration tests, and to JSON-API converters that resolve
+ * relationships against those fixtures instead of the network.
+ * <p>
+ * The {@code model-mapping/2.2/graphs} fixtures are copied onto the classpath under {@code /model-mapping/}, and the
+ * {@code osf-packager-model} fixtures under {@code /json/} (see the {@code resources} section of the POM).
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+final class Fixtures {
+
+    /**
+     * Classpath resource containing a harvested graph of OSF objects, laid out by host, port, and URL path.
+     */
+    static final String SHARED_GRAPH = "/model-mapping/2.2/graphs/shared/";
+
+    /**
+     * Classpath resource containing the graph of OSF objects used by the {@code osf-packager-model} tests.
+     */
+    static final String PACKAGE_GRAPH = "/json/OsfPackageGraphTest/testCreatePackageGraph/";
+
+    /**
+     * Package containing the OSF JSON-API model classes.
+     */
+    static final String MODEL_PACKAGE = "org.dataconservancy.cos.osf.client.model";
+
+    private Fixtures() {
+        // disallow construction
+    }
+
+    /**
+     * Loads the supplied classpath resource into memory.
+     *
+     * @param resource the classpath resource
+     * @return the bytes of the resource
+     * @throws IllegalArgumentException if the resource does not exist
+     * @throws RuntimeException if the resource cannot be read
+     */
+    static byte[] load(final String resource) {
+        try (InputStream in = Fixtures.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unable to resolve classpath resource '" + resource + "'");
+            }
+            return IOUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Answers a resolver for the fixture graph named by the supplied fixture specification.  Specifications take the
+     * form {@code <graph>:<registration id>}, where {@code graph} is {@code shared} (the harvested
+     * {@code model-mapping/2.2/graphs/shared} graph) or {@code packager} (the {@code osf-packager-model} graph).
+     *
+     * @param fixture the fixture specification, e.g. {@code shared:tgzhk}
+     * @return a resolver over the named graph
+     */
+    static FixtureResolver resolverFor(final String fixture) {
+        final String graph = fixture.substring(0, fixture.indexOf(':'));
+        switch (graph) {
+            case "shared":
+                return new FixtureResolver(SHARED_GRAPH);
+            case "packager":
+                return new FixtureResolver(PACKAGE_GRAPH);
+            default:
+                throw new IllegalArgumentException("Unknown fixture graph '" + graph + "'");
+        }
+    }
+
+    /**
+     * Answers the URL of the registration named by the supplied fixture specification.
+     *
+     * @param fixture the fixture specification, e.g. {@code shared:tgzhk}
+     * @return the URL of the registration
+     * @see #resolverFor(String)
+     */
+    static String registrationUrl(final String fixture) {
+        return "http://localhost:8000/v2/registrations/" + fixture.substring(fixture.indexOf(':') + 1) + "/";
+    }
+
+    /**
+     * Answers the registration named by the supplied source specification.  Fixture specifications (see
+     * {@link #resolverFor(String)}) are deserialized from the fixture graphs, and specifications of the form
+     * {@code synthetic:<children>x<files per node>} are {@link SyntheticRegistrations generated}.
+     *
+     * @param source the source specification, e.g. {@code shared:tgzhk} or {@code synthetic:10x100}
+     * @return the registration
+     */
+    static Registration registration(final String source) {
+        if (source.startsWith("synthetic:")) {
+            final String[] dimensions = source.substring("synthetic:".length()).split("x");
+            return SyntheticRegistrations.generate(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+        }
+
+        final FixtureResolver resolver = resolverFor(source);
+        return newConverter(resolver).readObject(resolver.resolve(registrationUrl(source)), Registration.class);
+    }
+
+    /**
+     * Answers a JSON-API converter for the OSF model, which resolves relationships using the supplied resolver.
+     *
+     * @param resolver resolves JSON-API relationships
+     * @return the converter
+     */
+    static ResourceConverter newConverter(final RelationshipResolver resolver) {
+        return new ResourceConverterFactory().newConverter(new ObjectMapper(),
+                new ModelClassScanner(MODEL_PACKAGE, Type.class), resolver);
+    }
+
+    /**
+     * Resolves relationship URLs (e.g. {@code http://localhost:8000/v2/nodes/abc12/files/}) to documents in a
+     * harvested graph on the classpath.  Resolved documents are cached, so that benchmarks measure deserialization
+     * rather than classpath I/O.
+     * <p>
+     * Resolution follows the conventions used by the integration tests: a request URL ending in a forward slash
+     * resolves to {@code index.json} (or {@code index-01.json} for a paginated response), a {@code page} query
+     * parameter resolves to {@code index-0N.json}, and any other URL resolves to the file named by the URL path.
+     * </p>
+     */
+    static class FixtureResolver implements RelationshipResolver {
+
+        private final String base;
+
+        private final Map<String, byte[]> cache = new ConcurrentHashMap<>();
+
+        /**
+         * Resolves URLs against the supplied classpath base, e.g. {@link #SHARED_GRAPH}.
+         *
+         * @param base the classpath resource containing the harvested graph, ending with a forward slash
+         */
+        FixtureResolver(final String base) {
+            this.base = base;
+        }
+
+        @Override
+        public byte[] resolve(final String url) {
+            return cache.computeIfAbsent(url, u -> load(resourceFor(URI.create(u))));
+        }
+
+        /**
+         * Maps a request URL to a classpath resource.
+         *
+         * @param uri the request url
+         * @return the classpath resource
+         */
+        String resourceFor(final URI uri) {
+            final StringBuilder path = new StringBuilder(base)
+                    .append(uri.getHost()).append("/")
+                    .append(uri.getPort() < 0 ? 80 : uri.getPort())
+                    .append(uri.getPath());
+
+            final String query = uri.getQuery();
+            if (query != null && query.contains("page=")) {
+                final int start = query.indexOf("page=") + "page=".length();
+                int end = query.indexOf('&', start);
+                end = end < 0 ? query.length() : end;
+                return path.append(String.format("index-%02d.json", Integer.parseInt(query.substring(start, end))))
+                        .toString();
+            }
+
+            if (uri.getPath().endsWith("/")) {
+                final String index = path + "index.json";
+                if (Fixtures.class.getResource(index) != null) {
+                    return index;
+                }
+                return path.append("index-01.json").toString();
+            }
+
+            return path.toString();
+        }
+    }
+
+}
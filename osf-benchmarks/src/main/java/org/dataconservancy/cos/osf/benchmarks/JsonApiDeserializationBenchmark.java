@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import com.github.jasminb.jsonapi.ResourceConverter;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JSON-API deserialization of OSF documents by the {@link ResourceConverter}, including the recursive
+ * resolution of relationships declared by the model classes.  Relationships are resolved from the harvested fixtures
+ * held in memory, so the measurement excludes network and classpath I/O.
+ *
+ * @author agent (agent@local)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonApiDeserializationBenchmark {
+
+    /**
+     * Registrations in the fixture graphs (see {@link Fixtures#resolverFor(String)}), ordered from largest to
+     * smallest.
+     */
+    @Param({"shared:tgzhk", "shared:56823", "packager:eq7a4", "shared:36wrt"})
+    public String fixture;
+
+    private ResourceConverter converter;
+
+    private byte[] registrationDocument;
+
+    @Setup
+    public void setUp() {
+        final Fixtures.FixtureResolver resolver = Fixtures.resolverFor(fixture);
+        converter = Fixtures.newConverter(resolver);
+        registrationDocument = resolver.resolve(Fixtures.registrationUrl(fixture));
+
+        // Warm the fixture cache so that the measurement excludes classpath I/O
+        converter.readObject(registrationDocument, Registration.class);
+    }
+
+    /**
+     * Deserializes a registration, resolving its relationships (contributors, files, wikis, children, ...).
+     *
+     * @return the registration
+     */
+    @Benchmark
+    public Registration readRegistration() {
+        return converter.readObject(registrationDocument, Registration.class);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.jena.ontology.Individual;
+import org.apache.jena.riot.RDFFormat;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.dataconservancy.cos.osf.packaging.OsfPackageGraph;
+import org.dataconservancy.cos.rdf.support.AnnotationsProcessor;
+import org.dataconservancy.cos.rdf.support.OntologyManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of OSF domain objects to RDF by the {@link AnnotationsProcessor}, and the serialization of
+ * the resulting {@link OsfPackageGraph} using the {@link OsfPackageGraph#OSF_SELECTOR OSF selector}.
+ *
+ * @author agent (agent@local)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackageGraphBenchmark {
+
+    /**
+     * The registration to process (see {@link Fixtures#registration(String)}).
+     */
+    @Param({"packager:eq7a4", "shared:tgzhk", "synthetic:10x100", "synthetic:100x100"})
+    public String source;
+
+    private Registration registration;
+
+    /**
+     * A fresh graph and processor, used by {@link #process()}.  Re-created for each invocation, because processing the
+     * same registration into a populated graph measures something else entirely.
+     */
+    private AnnotationsProcessor processor;
+
+    /**
+     * A graph populated with {@link #registration}, used by {@link #serialize()}.
+     */
+    private OsfPackageGraph populated;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        registration = Fixtures.registration(source);
+        populated = new OsfPackageGraph(new OntologyManager());
+        populated.add(registration);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        processor = new AnnotationsProcessor(new OsfPackageGraph(new OntologyManager()));
+    }
+
+    /**
+     * Converts the registration, and every object reachable from it, to RDF.
+     *
+     * @return the individuals added to the graph
+     */
+    @Benchmark
+    public Map<String, Individual> process() {
+        return processor.process(registration);
+    }
+
+    /**
+     * Serializes the populated graph as Turtle, selecting statements with the {@code OSF_SELECTOR}.  This is the same
+     * serialization performed when an {@code OsfContentProvider} is constructed.
+     *
+     * @return the number of bytes serialized
+     */
+    @Benchmark
+    public long serialize() {
+        final CountingOutputStream sink = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        populated.serialize(sink, RDFFormat.TURTLE_PRETTY, populated.OSF_SELECTOR);
+        return sink.getByteCount();
+    }
+
+}
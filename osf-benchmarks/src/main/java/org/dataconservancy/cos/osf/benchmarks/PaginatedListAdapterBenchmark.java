@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.github.jasminb.jsonapi.ResourceList;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import org.dataconservancy.cos.osf.client.model.LightNode;
+import org.dataconservancy.cos.osf.client.retrofit.PaginatedListAdapter;
+import org.mockserver.integration.ClientAndServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+/**
+ * Measures iteration over a {@link PaginatedListAdapter}, which transparently retrieves and deserializes each page of
+ * a paginated OSF listing.  Pages of {@link LightNode}s are served by a local mock HTTP server, so the measurement
+ * includes HTTP over the loopback interface, but not the latency of a remote OSF API.
+ *
+ * @author agent (agent@local)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginatedListAdapterBenchmark {
+
+    private static final String DATE = "2016-09-15T14:19:14.417000";
+
+    /**
+     * The number of pages in the listing.
+     */
+    @Param({"10", "50"})
+    public int pages;
+
+    /**
+     * The number of resources on each page; the OSF v2 API defaults to 10.
+     */
+    @Param({"10", "100"})
+    public int perPage;
+
+    private ClientAndServer mockServer;
+
+    private OkHttpClient okHttp;
+
+    private ResourceConverter converter;
+
+    private String firstPageUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final String baseUrl = "http://localhost:" + port + "/v2/nodes/";
+        firstPageUrl = baseUrl + "?page=1";
+        mockServer = ClientAndServer.startClientAndServer(port);
+
+        final ObjectMapper mapper = new ObjectMapper();
+        for (int page = 1; page <= pages; page++) {
+            mockServer.when(request()
+                    .withMethod("GET")
+                    .withPath("/v2/nodes/")
+                    .withQueryStringParameter("page", String.valueOf(page)))
+                .respond(response()
+                    .withStatusCode(200)
+                    .withHeader("Content-Type", "application/vnd.api+json")
+                    .withBody(mapper.writeValueAsString(page(mapper, baseUrl, page))));
+        }
+
+        okHttp = new OkHttpClient();
+        converter = Fixtures.newConverter(url -> {
+            throw new IllegalStateException("LightNode does not resolve relationships: " + url);
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    /**
+     * Retrieves the first page, and iterates over every resource in the listing.
+     *
+     * @param blackhole consumes each resource
+     * @return the number of resources iterated over
+     * @throws IOException if the first page cannot be retrieved
+     */
+    @Benchmark
+    public int iterate(final Blackhole blackhole) throws IOException {
+        final byte[] firstPage = okHttp.newCall(new Request.Builder().get().url(firstPageUrl).build())
+                .execute().body().bytes();
+        final ResourceList<LightNode> resources = converter.readObjectCollection(firstPage, LightNode.class);
+
+        int count = 0;
+        for (LightNode node : new PaginatedListAdapter<>(okHttp, converter, LightNode.class, resources)) {
+            blackhole.consume(node);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Generates a page of the listing.
+     *
+     * @param mapper used to create JSON nodes
+     * @param baseUrl the URL of the listing, without query parameters
+     * @param page the page number, starting at 1
+     * @return the JSON-API document for the page
+     */
+    private ObjectNode page(final ObjectMapper mapper, final String baseUrl, final int page) {
+        final ObjectNode document = mapper.createObjectNode();
+
+        final ArrayNode data = document.putArray("data");
+        for (int i = 0; i < perPage; i++) {
+            final String id = String.format("n%04d%04d", page, i);
+            final ObjectNode resource = data.addObject();
+            resource.put("id", id);
+            resource.put("type", "nodes");
+            resource.putObject("attributes")
+                    .put("date_created", DATE)
+                    .put("date_modified", DATE);
+            resource.putObject("links")
+                    .put("self", baseUrl + id + "/");
+        }
+
+        final ObjectNode links = document.putObject("links");
+        links.put("first", page == 1 ? null : baseUrl + "?page=1");
+        links.put("last", page == pages ? null : baseUrl + "?page=" + pages);
+        links.put("prev", page == 1 ? null : baseUrl + "?page=" + (page - 1));
+        links.put("next", page == pages ? null : baseUrl + "?page=" + (page + 1));
+        links.putObject("meta")
+                .put("total", pages * perPage)
+                .put("per_page", perPage);
+
+        return document;
+    }
+
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.squareup.okhttp.OkHttpClient;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.dataconservancy.cos.osf.client.model.User;
+import org.dataconservancy.cos.osf.client.retrofit.HierarchyCrawler;
+import org.dataconservancy.cos.osf.client.retrofit.OsfService;
+import org.dataconservancy.cos.osf.client.support.ModelClassScanner;
+import org.dataconservancy.cos.osf.packaging.OsfPackageGraph;
+import org.dataconservancy.cos.packaging.OsfContentProvider;
+import org.dataconservancy.cos.packaging.RangeContentResolver;
+import org.dataconservancy.packaging.shared.IpmPackager;
+import org.dataconservancy.packaging.tool.api.Package;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the throughput of the whole packaging pipeline, as run by the {@code osf-packager-cli}, against a local
+ * {@link ReplayServer}.  Each iteration packages the same registration, and is divided into the phases of the
+ * pipeline:
+ * <ol>
+ *     <li>{@code registration}: retrieving the registration, and every object reachable from it</li>
+ *     <li>{@code users}: retrieving the users contributing to the registration</li>
+ *     <li>{@code packageGraph}: converting the registration and users to RDF in an {@link OsfPackageGraph}</li>
+ *     <li>{@code contentProvider}: constructing the {@link OsfContentProvider}</li>
+ *     <li>{@code buildPackage}: building the package with the {@link IpmPackager}, which includes downloading every
+ *         file</li>
+ *     <li>{@code writePackage}: serializing the package to a tar file</li>
+ * </ol>
+ * <p>
+ * For each phase the wall time, the requests answered and bytes written by the replay server, the peak heap usage,
+ * and the time spent in (and number of) garbage collections are recorded.  Peak heap usage is the sum of the peak
+ * usage of each heap memory pool during the phase, so it is an upper bound.  Results are written as JSON, to
+ * {@code pipeline-result.json} in the working directory by default.
+ * </p>
+ * <p>
+ * The size of the registration is controlled by the replay server's {@link ReplayServer#setScale(int) scale} and
+ * {@link ReplayServer#setFileSize(int) file size}, and the behavior of the network by its latency, bandwidth, and
+ * error rate.  The OSF client is configured from the same Spring contexts used by the CLI, so retries, rate limits,
+ * and connection pool limits apply as they do in production.
+ * </p>
+ * <p>
+ * Example: {@code java -cp target/benchmarks.jar org.dataconservancy.cos.osf.benchmarks.PipelineBenchmark --scale 10
+ * --latency 100 --iterations 5}
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class PipelineBenchmark {
+
+    /**
+     * Default result file
+     */
+    static final String RESULT_FILE = "pipeline-result.json";
+
+    @Option(name = "-h", aliases = {"--help"}, usage = "print help message")
+    private boolean help = false;
+
+    @Option(name = "-r", aliases = {"--registration"}, usage = "the identifier of the harvested registration to package")
+    private String registrationId = "tgzhk";
+
+    @Option(name = "-i", aliases = {"--iterations"}, usage = "the number of times the registration is packaged")
+    private int iterations = 3;
+
+    @Option(name = "-w", aliases = {"--warmup"}, usage = "the number of times the registration is packaged before measuring")
+    private int warmup = 1;
+
+    @Option(name = "-o", aliases = {"--output"}, usage = "the file the JSON results are written to")
+    private File output = new File(RESULT_FILE);
+
+    @Option(name = "-k", aliases = {"--crawl-concurrency"}, usage = "the number of documents retrieved concurrently when crawling the registration, 0 to resolve relationships one at a time")
+    private int crawlConcurrency = 8;
+
+    @Option(name = "-s", aliases = {"--scale"}, usage = "the number of times each node or file of a listing is answered")
+    private int scale = 1;
+
+    @Option(name = "-z", aliases = {"--file-size"}, usage = "the size, in bytes, of the synthetic content of every file")
+    private int fileSize = 4096;
+
+    @Option(name = "-l", aliases = {"--latency"}, usage = "the delay, in milliseconds, before each response")
+    private long latency = 0;
+
+    @Option(name = "-j", aliases = {"--jitter"}, usage = "the maximum random delay, in milliseconds, added to the latency")
+    private long jitter = 0;
+
+    @Option(name = "-b", aliases = {"--bandwidth"}, usage = "the rate, in bytes per second, at which each response is written (0 is unlimited)")
+    private long bandwidth = 0;
+
+    @Option(name = "-e", aliases = {"--error-rate"}, usage = "the fraction of requests answered with 503 Service Unavailable")
+    private double errorRate = 0;
+
+    private ReplayServer replay;
+
+    private ClassPathXmlApplicationContext ctx;
+
+    private File work;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args command line options; {@code --help} describes them
+     * @throws Exception if the benchmark cannot be run
+     */
+    public static void main(final String[] args) throws Exception {
+        final PipelineBenchmark benchmark = new PipelineBenchmark();
+        final CmdLineParser parser = new CmdLineParser(benchmark);
+        parser.setUsageWidth(80);
+
+        try {
+            parser.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            parser.printUsage(System.err);
+            System.exit(1);
+        }
+
+        if (benchmark.help) {
+            parser.printUsage(System.err);
+            System.exit(0);
+        }
+
+        benchmark.run();
+    }
+
+    private void run() throws Exception {
+        final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        final ObjectNode result = mapper.createObjectNode();
+        final ObjectNode parameters = result.putObject("parameters");
+        parameters.put("registration", registrationId)
+                .put("crawlConcurrency", crawlConcurrency)
+                .put("scale", scale)
+                .put("fileSize", fileSize)
+                .put("latencyMs", latency)
+                .put("jitterMs", jitter)
+                .put("bandwidth", bandwidth)
+                .put("errorRate", errorRate)
+                .put("maxHeapBytes", Runtime.getRuntime().maxMemory())
+                .put("availableProcessors", Runtime.getRuntime().availableProcessors())
+                .put("javaVersion", System.getProperty("java.version"));
+        final ArrayNode measured = result.putArray("iterations");
+
+        replay = new ReplayServer();
+        replay.setScale(scale);
+        replay.setFileSize(fileSize);
+        replay.setLatency(latency);
+        replay.setJitter(jitter);
+        replay.setBandwidth(bandwidth);
+        replay.setErrorRate(errorRate);
+        final String baseUrl = replay.start(0);
+        work = Files.createTempDirectory("osf-pipeline-").toFile();
+
+        try {
+            configure(baseUrl);
+            final String registrationUrl = baseUrl + "/v2/registrations/" + registrationId + "/";
+
+            for (int i = 0; i < warmup; i++) {
+                System.err.println("Warmup iteration " + (i + 1) + " of " + warmup);
+                iteration(registrationUrl, mapper.createObjectNode());
+            }
+
+            for (int i = 0; i < iterations; i++) {
+                System.err.println("Iteration " + (i + 1) + " of " + iterations);
+                iteration(registrationUrl, measured.addObject());
+            }
+        } finally {
+            if (ctx != null) {
+                ctx.close();
+            }
+            replay.close();
+            FileUtils.deleteQuietly(work);
+        }
+
+        mapper.writeValue(output, result);
+        System.err.println("Wrote results to " + output.getCanonicalPath());
+    }
+
+    /**
+     * Writes an OSF client configuration directing both the OSF and Waterbutler APIs to the replay server, and
+     * creates the Spring contexts used by the CLI.
+     */
+    private void configure(final String baseUrl) throws IOException {
+        final int port = Integer.parseInt(baseUrl.substring(baseUrl.lastIndexOf(':') + 1));
+        final ObjectMapper mapper = new ObjectMapper();
+        final ObjectNode conf = mapper.createObjectNode();
+        conf.putObject("osf").putObject("v2")
+                .put("host", "localhost").put("port", port).put("basePath", "/v2/").put("scheme", "http");
+        conf.putObject("wb").putObject("v1")
+                .put("host", "localhost").put("port", port).put("basePath", ReplayServer.CONTENT_PATH + "v1/")
+                .put("scheme", "http");
+        final File confFile = new File(work, "osf-client.json");
+        mapper.writeValue(confFile, conf);
+
+        System.setProperty("osf.client.conf", confFile.toURI().toString());
+        ctx = new ClassPathXmlApplicationContext(
+                "classpath*:org/dataconservancy/cos/osf/client/config/applicationContext.xml",
+                "classpath*:org/dataconservancy/cos/osf/client/retrofit/applicationContext.xml",
+                "classpath:/org/dataconservancy/cos/packaging/config/applicationContext.xml");
+    }
+
+    /**
+     * Packages the registration once, following the same steps as the CLI, recording each phase.
+     */
+    private void iteration(final String registrationUrl, final ObjectNode iteration) throws Exception {
+        final ArrayNode phases = iteration.putArray("phases");
+        final OkHttpClient okHttp = ctx.getBean("okHttpClient", OkHttpClient.class);
+        final OsfService osfService = ctx.getBean("osfService", OsfService.class);
+        final File outputLocation = new File(work, "package-" + System.nanoTime());
+        FileUtils.forceMkdir(outputLocation);
+        final long start = System.nanoTime();
+
+        try {
+            final Registration registration = measure("registration", phases, () -> crawlConcurrency > 0 ?
+                    new HierarchyCrawler(okHttp,
+                            ctx.getBean("modelClassScanner", ModelClassScanner.class).getDetectedClasses(),
+                            crawlConcurrency)
+                            .read(registrationUrl, ctx.getBean("resourceConverter", ResourceConverter.class),
+                                    Registration.class) :
+                    osfService.registration(registrationUrl).execute().body());
+            if (registration == null) {
+                throw new IllegalStateException("Failed to obtain registration " + registrationUrl);
+            }
+
+            final List<User> users = measure("users", phases, () -> registration.getContributors().stream()
+                    .map(c -> {
+                        try {
+                            if (c.getUserRel() != null) {
+                                return osfService.user(c.getUserRel()).execute().body();
+                            }
+                            String contributorId = c.getId();
+                            if (contributorId.contains("-")) {
+                                contributorId = contributorId.split("-")[1];
+                            }
+                            return osfService.userById(contributorId).execute().body();
+                        } catch (IOException e) {
+                            throw new RuntimeException(e.getMessage(), e);
+                        }
+                    })
+                    .collect(Collectors.toList()));
+
+            final OsfPackageGraph packageGraph = measure("packageGraph", phases, () -> {
+                final OsfPackageGraph graph = ctx.getBean("packageGraph", OsfPackageGraph.class);
+                graph.add(registration);
+                users.forEach(graph::add);
+                return graph;
+            });
+
+            final OsfContentProvider contentProvider = measure("contentProvider", phases,
+                    () -> new OsfContentProvider(packageGraph, new RangeContentResolver(okHttp)));
+
+            try {
+                final Package pkg = measure("buildPackage", phases, () -> {
+                    final IpmPackager ipmPackager = new IpmPackager();
+                    ipmPackager.setPackageName(registrationId);
+                    ipmPackager.setPackageLocation(outputLocation.getPath());
+                    return ipmPackager.buildPackage(contentProvider, null, null);
+                });
+
+                final File packageFile = new File(outputLocation, registrationId + ".tar");
+                measure("writePackage", phases, () -> {
+                    try (InputStream in = pkg.serialize(); OutputStream out = new FileOutputStream(packageFile)) {
+                        return IOUtils.copyLarge(in, out);
+                    }
+                });
+
+                iteration.put("packageBytes", packageFile.length());
+                pkg.cleanupPackage();
+            } finally {
+                contentProvider.close();
+            }
+        } finally {
+            iteration.put("wallMs", (System.nanoTime() - start) / 1000000);
+            FileUtils.deleteQuietly(outputLocation);
+        }
+    }
+
+    /**
+     * Performs a phase of the pipeline, recording the resources it consumes.
+     *
+     * @param name the name of the phase
+     * @param phases the phases of the iteration, to which the measurement of this phase is added
+     * @param phase the phase
+     * @param <T> the type of result of the phase
+     * @return the result of the phase
+     * @throws Exception if the phase fails
+     */
+    private <T> T measure(final String name, final ArrayNode phases, final Callable<T> phase) throws Exception {
+        final List<MemoryPoolMXBean> heap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid())
+                .collect(Collectors.toList());
+        heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+        final long gcMs = gcTime();
+        final long gcCount = gcCount();
+        final long requests = replay.getRequestCount();
+        final long bytes = replay.getBytesWritten();
+        final long start = System.nanoTime();
+
+        try {
+            return phase.call();
+        } finally {
+            final long wall = System.nanoTime() - start;
+            phases.addObject()
+                    .put("phase", name)
+                    .put("wallMs", wall / 1000000.0)
+                    .put("requests", replay.getRequestCount() - requests)
+                    .put("bytesTransferred", replay.getBytesWritten() - bytes)
+                    .put("peakHeapBytes", heap.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum())
+                    .put("gcMs", gcTime() - gcMs)
+                    .put("gcCount", gcCount() - gcCount);
+        }
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+}
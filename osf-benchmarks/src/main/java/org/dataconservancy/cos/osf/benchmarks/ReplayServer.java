@@ -0,0 +1,782 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTP server replaying a harvested graph of OSF API responses (see {@code harvest.sh} in the
+ * {@code model-mapping/2.2/graphs/shared} fixtures), so that the client and packager can be exercised end to end,
+ * and at scale, without touching the OSF.
+ * <p>
+ * Requests are answered by URL path, following the conventions of the harvested layout: {@code /v2/nodes/abc12/}
+ * is answered with {@code localhost/8000/v2/nodes/abc12/index.json} (or {@code index-01.json} for a paginated
+ * response), and a {@code page} query parameter selects {@code index-0N.json}.  Other query parameters are ignored.
+ * URLs in the replayed documents are rewritten to refer to this server, and download links (which refer to
+ * Waterbutler, and were not harvested) are answered with deterministic synthetic content of
+ * {@link #setFileSize(int) a fixed size}.  The size and checksums of each file are rewritten to match its synthetic
+ * content, so downloads verify.  Content may be requested by {@code Range}, and carries an {@code ETag}.
+ * </p>
+ * <p>
+ * The behavior of the real API is approximated by:
+ * </p>
+ * <ul>
+ *     <li>{@link #setLatency(long) latency}: a delay, in milliseconds, before each response, plus up to
+ *         {@link #setJitter(long) jitter} milliseconds chosen at random</li>
+ *     <li>{@link #setBandwidth(long) bandwidth}: the rate, in bytes per second, at which each response body is
+ *         written</li>
+ *     <li>{@link #setErrorRate(double) error rate}: the fraction of requests answered with
+ *         {@code 503 Service Unavailable}</li>
+ *     <li>{@link #setScale(int) scale}: each node or file in a listing is answered {@code scale} times, as
+ *         clones of the original</li>
+ * </ul>
+ * <p>
+ * Clone {@code n} of a node or file has the identifier of the original suffixed with {@code ~n} (e.g.
+ * {@code tgzhk~2}), and is answered from the documents of the original, so every relationship of a clone refers to
+ * clones as well.  Only listings answered for originals are widened: the clones reached through a clone are exact
+ * copies of the originals.  Listings of the original registration are therefore {@code scale} times longer, and
+ * packaging the registration transfers roughly {@code scale} times as many documents and files.
+ * </p>
+ * <p>
+ * Requests are answered by a fixed pool of {@link #setThreads(int) threads}, which block for the duration of any
+ * latency or bandwidth delay, so the pool should be at least as large as the concurrency under test.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class ReplayServer implements AutoCloseable {
+
+    /**
+     * The base of the API URLs in the harvested documents
+     */
+    static final String HARVESTED_API = "http://localhost:8000/";
+
+    /**
+     * The base of the (few) API URLs in the harvested documents that were not converted to {@code http}
+     */
+    static final String HARVESTED_API_TLS = "https://localhost:8000/";
+
+    /**
+     * The base of the Waterbutler URLs in the harvested documents
+     */
+    static final String HARVESTED_CONTENT = "http://files.osf.io/";
+
+    /**
+     * The directory, relative to the root of the harvested graph, containing the API documents
+     */
+    static final String API_DIRECTORY = "localhost/8000";
+
+    /**
+     * The path under which synthetic content is served, in place of Waterbutler
+     */
+    static final String CONTENT_PATH = "/content/";
+
+    /**
+     * Separates the identifier of an original node or file from the number of its clone
+     */
+    static final char CLONE = '~';
+
+    static final String JSON_API = "application/vnd.api+json";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayServer.class);
+
+    /**
+     * JSON-API types of the resources cloned when the server is scaled up
+     */
+    private static final Set<String> CLONED_TYPES = new HashSet<>(Arrays.asList("registrations", "nodes", "files"));
+
+    private static final Pattern CLONE_SUFFIX = Pattern.compile(CLONE + "(\\d+)(?=/|$)");
+
+    private static final Pattern PAGE = Pattern.compile("(?:^|&)page=(\\d+)(?=&|$)");
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private static final byte[] NOT_FOUND =
+            "{\"errors\":[{\"detail\":\"Not found.\"}]}".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] UNAVAILABLE =
+            "{\"errors\":[{\"detail\":\"Service unavailable (injected by the replay server).\"}]}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private final File fixtures;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * The MD5 and SHA-256 checksums of synthetic content, keyed by content path
+     */
+    private final Map<String, String[]> checksums = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private long latency = 0;
+
+    private long jitter = 0;
+
+    private long bandwidth = 0;
+
+    private double errorRate = 0;
+
+    private int scale = 1;
+
+    private int fileSize = 4096;
+
+    private int threads = 64;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private String baseUrl;
+
+    /**
+     * Replays the harvested graph on the classpath (see {@link Fixtures#SHARED_GRAPH}).
+     */
+    public ReplayServer() {
+        this(null);
+    }
+
+    /**
+     * Replays the harvested graph rooted at the supplied directory, which contains the {@code localhost/8000}
+     * directory created by {@code harvest.sh}.
+     *
+     * @param fixtures the root of the harvested graph, or {@code null} to replay the graph on the classpath
+     */
+    public ReplayServer(final File fixtures) {
+        if (fixtures != null && !new File(fixtures, API_DIRECTORY).isDirectory()) {
+            throw new IllegalArgumentException("Fixture directory '" + fixtures + "' does not contain '" +
+                    API_DIRECTORY + "'");
+        }
+        this.fixtures = fixtures;
+    }
+
+    /**
+     * Starts the server on the supplied port of the loopback interface.
+     *
+     * @param port the port, or {@code 0} to choose an ephemeral port
+     * @return the base URL of the server, e.g. {@code http://localhost:8000}
+     * @throws IllegalStateException if the server has already been started
+     * @throws RuntimeException if the server cannot be started
+     */
+    public synchronized String start(final int port) {
+        if (server != null) {
+            throw new IllegalStateException("Replay server has already been started.");
+        }
+
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+
+        final AtomicLong threadCount = new AtomicLong();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = new Thread(r, "osf-replay-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        LOG.info("Replaying {} at {}", fixtures == null ? "classpath:" + Fixtures.SHARED_GRAPH : fixtures, baseUrl);
+        return baseUrl;
+    }
+
+    /**
+     * Stops the server, abandoning any requests in progress.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            LOG.info("Replay server answered {} requests ({} injected errors), writing {} bytes", requests.get(),
+                    injectedErrors.get(), bytesWritten.get());
+        }
+    }
+
+    /**
+     * @return the base URL of the server, or {@code null} if it has not been started
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * @return the number of requests received
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests answered with an injected error
+     */
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * @return the number of bytes of response bodies written
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @param latency the delay, in milliseconds, before each response
+     */
+    public void setLatency(final long latency) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("Latency must not be negative.");
+        }
+        this.latency = latency;
+    }
+
+    /**
+     * @param jitter the maximum random delay, in milliseconds, added to the latency of each response
+     */
+    public void setJitter(final long jitter) {
+        if (jitter < 0) {
+            throw new IllegalArgumentException("Jitter must not be negative.");
+        }
+        this.jitter = jitter;
+    }
+
+    /**
+     * @param bandwidth the rate, in bytes per second, at which each response body is written; {@code 0} is unlimited
+     */
+    public void setBandwidth(final long bandwidth) {
+        if (bandwidth < 0) {
+            throw new IllegalArgumentException("Bandwidth must not be negative.");
+        }
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * @param errorRate the fraction of requests, between {@code 0} and {@code 1}, answered with {@code 503}
+     */
+    public void setErrorRate(final double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1.");
+        }
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param scale the number of times each node or file of a listing is answered; {@code 1} answers the graph as
+     *              harvested
+     */
+    public void setScale(final int scale) {
+        if (scale < 1) {
+            throw new IllegalArgumentException("Scale must be a positive integer.");
+        }
+        this.scale = scale;
+    }
+
+    /**
+     * @param fileSize the size, in bytes, of the synthetic content of every file
+     */
+    public void setFileSize(final int fileSize) {
+        if (fileSize < 0) {
+            throw new IllegalArgumentException("File size must not be negative.");
+        }
+        this.fileSize = fileSize;
+        checksums.clear();
+    }
+
+    /**
+     * @param threads the number of requests answered concurrently; takes effect when the server is started
+     */
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be a positive integer.");
+        }
+        this.threads = threads;
+    }
+
+    private void handle(final HttpExchange exchange) {
+        requests.incrementAndGet();
+        try {
+            delay();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, JSON_API, UNAVAILABLE, 0, UNAVAILABLE.length);
+                return;
+            }
+
+            final URI uri = exchange.getRequestURI();
+            if (uri.getPath().contains("..")) {
+                send(exchange, 404, JSON_API, NOT_FOUND, 0, NOT_FOUND.length);
+            } else if (uri.getPath().startsWith(CONTENT_PATH)) {
+                sendContent(exchange, uri.getPath());
+            } else {
+                sendDocument(exchange, uri);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.warn("Error replaying '{}': {}", exchange.getRequestURI(), e.getMessage(), e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendDocument(final HttpExchange exchange, final URI uri) throws IOException, InterruptedException {
+        final int clone = cloneOf(uri.getPath());
+        final byte[] fixture = load(fixtureFor(original(uri.getPath()), uri.getQuery()));
+        if (fixture == null) {
+            send(exchange, 404, JSON_API, NOT_FOUND, 0, NOT_FOUND.length);
+            return;
+        }
+
+        final byte[] body = mapper.writeValueAsBytes(replay(mapper.readTree(fixture), clone));
+        send(exchange, 200, JSON_API, body, 0, body.length);
+    }
+
+    private void sendContent(final HttpExchange exchange, final String path) throws IOException, InterruptedException {
+        final byte[] content = content(path);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("ETag", "\"" + checksums(path)[1] + "\"");
+
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        final Matcher m = range == null ? null : RANGE.matcher(range.trim());
+        if (m == null || !m.matches()) {
+            send(exchange, 200, "application/octet-stream", content, 0, content.length);
+            return;
+        }
+
+        final long from = Long.parseLong(m.group(1));
+        final long to = m.group(2).isEmpty() ? content.length - 1 : Math.min(Long.parseLong(m.group(2)),
+                content.length - 1);
+        if (from >= content.length || from > to) {
+            exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+            send(exchange, 416, "application/octet-stream", content, 0, 0);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+        send(exchange, 206, "application/octet-stream", content, (int) from, (int) (to - from + 1));
+    }
+
+    /**
+     * Writes a response, honoring the bandwidth limit.  The body is omitted from responses to {@code HEAD} requests.
+     */
+    private void send(final HttpExchange exchange, final int status, final String contentType, final byte[] body,
+                      final int offset, final int length) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        final OutputStream out = exchange.getResponseBody();
+        if (bandwidth == 0) {
+            out.write(body, offset, length);
+        } else {
+            // Write in slices of a tenth of a second, sleeping whenever the writes get ahead of the bandwidth
+            final int slice = (int) Math.max(1, Math.min(bandwidth / 10, Integer.MAX_VALUE));
+            final long start = System.nanoTime();
+            for (int written = 0; written < length; ) {
+                final int n = Math.min(slice, length - written);
+                out.write(body, offset + written, n);
+                out.flush();
+                written += n;
+                final long ahead = written * 1000L / bandwidth - (System.nanoTime() - start) / 1000000L;
+                if (ahead > 0) {
+                    Thread.sleep(ahead);
+                }
+            }
+        }
+        bytesWritten.addAndGet(length);
+    }
+
+    private void delay() throws InterruptedException {
+        final long delay = latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Replays a harvested document as clone {@code clone} of its resources.  When answering originals, each cloned
+     * resource of a listing is followed by its clones, and the total of the listing is adjusted accordingly.
+     *
+     * @param document the harvested document
+     * @param clone the clone being answered, {@code 0} for originals
+     * @return the document, rewritten
+     */
+    JsonNode replay(final JsonNode document, final int clone) {
+        final JsonNode data = document.get("data");
+        if (clone > 0 || scale == 1 || data == null || !data.isArray()) {
+            return rewrite(document, clone);
+        }
+
+        final ArrayNode widened = mapper.createArrayNode();
+        int added = 0;
+        for (JsonNode resource : data) {
+            widened.add(rewrite(resource.deepCopy(), 0));
+            if (CLONED_TYPES.contains(resource.path("type").asText())) {
+                for (int n = 1; n < scale; n++) {
+                    widened.add(rewrite(resource.deepCopy(), n));
+                    added++;
+                }
+            }
+        }
+
+        final ObjectNode result = (ObjectNode) document;
+        result.remove("data");
+        rewrite(result, 0);
+        result.set("data", widened);
+
+        final JsonNode meta = result.path("links").path("meta");
+        if (meta.has("total") && data.size() > 0) {
+            // presumes the other pages of the listing are widened in the same proportion as this one
+            final long total = meta.get("total").asLong();
+            ((ObjectNode) meta).put("total", total + Math.round((double) total * added / data.size()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Rewrites the URLs of a harvested document to refer to this server, and the identifiers (and URLs) of cloned
+     * resources to refer to clone {@code clone}.
+     */
+    private JsonNode rewrite(final JsonNode node, final int clone) {
+        if (node.isObject()) {
+            final ObjectNode object = (ObjectNode) node;
+            final String type = object.path("type").asText();
+            if (CLONED_TYPES.contains(type) && object.path("id").isTextual()) {
+                if (clone > 0) {
+                    final String id = object.get("id").asText();
+                    object.put("id", id + CLONE + clone);
+                    final JsonNode path = object.path("attributes").path("path");
+                    if (path.isTextual()) {
+                        ((ObjectNode) object.get("attributes")).put("path",
+                                path.asText().replace("/" + id, "/" + id + CLONE + clone));
+                    }
+                }
+                if ("files".equals(type) && "file".equals(object.path("attributes").path("kind").asText())) {
+                    synthesize(object, clone);
+                }
+            }
+
+            final Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                if (field.getValue().isTextual()) {
+                    field.setValue(new TextNode(rewriteUrl(field.getValue().asText(), clone)));
+                } else {
+                    rewrite(field.getValue(), clone);
+                }
+            }
+        } else if (node.isArray()) {
+            final ArrayNode array = (ArrayNode) node;
+            for (int i = 0; i < array.size(); i++) {
+                if (array.get(i).isTextual()) {
+                    array.set(i, new TextNode(rewriteUrl(array.get(i).asText(), clone)));
+                } else {
+                    rewrite(array.get(i), clone);
+                }
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Replaces the size and checksums of a file with those of its synthetic content.
+     */
+    private void synthesize(final ObjectNode file, final int clone) {
+        final String download = file.path("links").path("download").asText();
+        if (!download.startsWith(HARVESTED_CONTENT)) {
+            return;
+        }
+
+        final String path = URI.create(rewriteUrl(download, clone)).getPath();
+        final String[] sums = checksums(path);
+        final ObjectNode attributes = (ObjectNode) file.get("attributes");
+        attributes.put("size", fileSize);
+        final JsonNode hashes = attributes.path("extra").path("hashes");
+        if (hashes.isObject()) {
+            ((ObjectNode) hashes).put("md5", sums[0]).put("sha256", sums[1]);
+        }
+    }
+
+    /**
+     * Rewrites a harvested API or Waterbutler URL to refer to this server, and to clone {@code clone}.  Other values
+     * are answered unchanged.
+     *
+     * @param value a string value of a harvested document
+     * @param clone the clone being answered, {@code 0} for originals
+     * @return the rewritten value
+     */
+    String rewriteUrl(final String value, final int clone) {
+        final String rest;
+        final boolean api;
+        if (value.startsWith(HARVESTED_API)) {
+            rest = value.substring(HARVESTED_API.length());
+            api = true;
+        } else if (value.startsWith(HARVESTED_API_TLS)) {
+            rest = value.substring(HARVESTED_API_TLS.length());
+            api = true;
+        } else if (value.startsWith(HARVESTED_CONTENT)) {
+            rest = value.substring(HARVESTED_CONTENT.length());
+            api = false;
+        } else {
+            return value;
+        }
+
+        final int query = rest.indexOf('?');
+        final String[] segments = (query < 0 ? rest : rest.substring(0, query)).split("/", -1);
+        if (clone > 0) {
+            if (api) {
+                // v2/{registrations,nodes,files}/<id>/..., and v2/{registrations,nodes}/<id>/files/<provider>/<id>/
+                if (segments.length > 2 && CLONED_TYPES.contains(segments[1])) {
+                    segments[2] = cloned(segments[2], clone);
+                }
+                if (segments.length > 5 && !"files".equals(segments[1]) && "files".equals(segments[3])) {
+                    segments[5] = cloned(segments[5], clone);
+                }
+            } else if (segments.length > 2) {
+                // v1/resources/<node id>/providers/<provider>/<file id>
+                segments[2] = cloned(segments[2], clone);
+                if (segments.length > 5) {
+                    segments[5] = cloned(segments[5], clone);
+                }
+            }
+        }
+
+        return baseUrl + (api ? "/" : CONTENT_PATH) + String.join("/", segments) +
+                (query < 0 ? "" : rest.substring(query));
+    }
+
+    private static String cloned(final String segment, final int clone) {
+        return segment.isEmpty() ? segment : segment + CLONE + clone;
+    }
+
+    /**
+     * @param path a request path
+     * @return the clone named by the path, {@code 0} for originals
+     */
+    static int cloneOf(final String path) {
+        final Matcher m = CLONE_SUFFIX.matcher(path);
+        return m.find() ? Integer.parseInt(m.group(1)) : 0;
+    }
+
+    /**
+     * @param path a request path
+     * @return the path of the original
+     */
+    static String original(final String path) {
+        return CLONE_SUFFIX.matcher(path).replaceAll("");
+    }
+
+    /**
+     * Maps a request to a harvested document, relative to the root of the harvested graph.
+     *
+     * @param path the request path, naming an original
+     * @param query the request query, may be {@code null}
+     * @return the harvested document
+     */
+    String fixtureFor(final String path, final String query) {
+        final String document = API_DIRECTORY + path;
+        final Matcher page = query == null ? null : PAGE.matcher(query);
+        if (page != null && page.find()) {
+            return document + String.format("index-%02d.json", Integer.parseInt(page.group(1)));
+        }
+
+        if (path.endsWith("/")) {
+            return exists(document + "index.json") ? document + "index.json" : document + "index-01.json";
+        }
+
+        return document;
+    }
+
+    private boolean exists(final String document) {
+        if (fixtures != null) {
+            return new File(fixtures, document).isFile();
+        }
+        return ReplayServer.class.getResource(Fixtures.SHARED_GRAPH + document) != null;
+    }
+
+    private byte[] load(final String document) throws IOException {
+        if (fixtures != null) {
+            final File file = new File(fixtures, document);
+            return file.isFile() ? FileUtils.readFileToByteArray(file) : null;
+        }
+
+        try (InputStream in = ReplayServer.class.getResourceAsStream(Fixtures.SHARED_GRAPH + document)) {
+            return in == null ? null : IOUtils.toByteArray(in);
+        }
+    }
+
+    /**
+     * Generates the synthetic content answered for a content path, which depends only on the path and the file size.
+     */
+    private byte[] content(final String path) {
+        final byte[] content = new byte[fileSize];
+        new Random(path.hashCode()).nextBytes(content);
+        return content;
+    }
+
+    private String[] checksums(final String path) {
+        return checksums.computeIfAbsent(path, p -> {
+            final byte[] content = content(p);
+            return new String[] {hex("MD5", content), hex("SHA-256", content)};
+        });
+    }
+
+    private static String hex(final String algorithm, final byte[] content) {
+        try {
+            final StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance(algorithm).digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs a replay server until the JVM is terminated.
+     *
+     * @param args command line options; {@code --help} describes them
+     */
+    public static void main(final String[] args) {
+        final Options options = new Options();
+        final CmdLineParser parser = new CmdLineParser(options);
+        parser.setUsageWidth(80);
+
+        try {
+            parser.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            parser.printUsage(System.err);
+            System.exit(1);
+        }
+
+        if (options.help) {
+            parser.printUsage(System.err);
+            System.exit(0);
+        }
+
+        final ReplayServer replay = new ReplayServer(options.fixtures);
+        replay.setLatency(options.latency);
+        replay.setJitter(options.jitter);
+        replay.setBandwidth(options.bandwidth);
+        replay.setErrorRate(options.errorRate);
+        replay.setScale(options.scale);
+        replay.setFileSize(options.fileSize);
+        replay.setThreads(options.threads);
+
+        final String url = replay.start(options.port);
+        Runtime.getRuntime().addShutdownHook(new Thread(replay::close));
+        System.err.println("Replaying OSF API at " + url + "/v2/ (e.g. " + url + "/v2/registrations/tgzhk/)");
+
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Command line options of {@link #main(String[])}
+     */
+    static class Options {
+
+        @Option(name = "-h", aliases = {"--help"}, usage = "print help message")
+        boolean help = false;
+
+        @Option(name = "-p", aliases = {"--port"}, usage = "the port to listen on, 0 for an ephemeral port")
+        int port = 8000;
+
+        @Option(name = "-f", aliases = {"--fixtures"}, usage = "the root of a harvested graph, containing localhost/8000 (defaults to the graph on the classpath)")
+        File fixtures;
+
+        @Option(name = "-l", aliases = {"--latency"}, usage = "the delay, in milliseconds, before each response")
+        long latency = 0;
+
+        @Option(name = "-j", aliases = {"--jitter"}, usage = "the maximum random delay, in milliseconds, added to the latency")
+        long jitter = 0;
+
+        @Option(name = "-b", aliases = {"--bandwidth"}, usage = "the rate, in bytes per second, at which each response is written (0 is unlimited)")
+        long bandwidth = 0;
+
+        @Option(name = "-e", aliases = {"--error-rate"}, usage = "the fraction of requests answered with 503 Service Unavailable")
+        double errorRate = 0;
+
+        @Option(name = "-s", aliases = {"--scale"}, usage = "the number of times each node or file of a listing is answered")
+        int scale = 1;
+
+        @Option(name = "-z", aliases = {"--file-size"}, usage = "the size, in bytes, of the synthetic content of every file")
+        int fileSize = 4096;
+
+        @Option(name = "-t", aliases = {"--threads"}, usage = "the number of requests answered concurrently")
+        int threads = 64;
+    }
+
+}
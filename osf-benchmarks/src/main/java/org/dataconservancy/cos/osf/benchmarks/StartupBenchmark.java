@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.dataconservancy.cos.osf.client.retrofit.OsfClientComponents;
+import org.dataconservancy.cos.osf.client.retrofit.OsfService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time taken by a cold JVM to wire the OSF client as {@code osf-packager-cli} does and make its first
+ * request, comparing the Spring XML application contexts with the programmatic {@link OsfClientComponents}.  Each
+ * measurement is made once, in a freshly forked JVM, so it includes class loading and initialization; there is no
+ * warmup.  Requests are answered by a {@link ReplayServer} started by the forked JVM before measuring.
+ * <ul>
+ *     <li>{@link #firstRequest()}: wires the client, and checks the registration with a {@code HEAD} request, which is
+ *         the first thing the CLI does</li>
+ *     <li>{@link #firstRegistration()}: wires the client, and retrieves the registration as a domain object, which
+ *         additionally requires the model classes to be detected and a {@code ResourceConverter} to be created</li>
+ * </ul>
+ *
+ * @author agent (agent@local)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+    private static final String REGISTRATION = "tgzhk";
+
+    /**
+     * How the OSF client is wired: {@code components} ({@link OsfClientComponents}), or {@code spring} (the
+     * application contexts used by the CLI).
+     */
+    @Param({"components", "spring"})
+    public String wiring;
+
+    private ReplayServer replay;
+
+    private File work;
+
+    private String registrationUrl;
+
+    private ClassPathXmlApplicationContext ctx;
+
+    private OsfClientComponents components;
+
+    @Setup
+    public void setUp() throws IOException {
+        replay = new ReplayServer();
+        final String baseUrl = replay.start(0);
+        registrationUrl = baseUrl + "/v2/registrations/" + REGISTRATION + "/";
+
+        work = Files.createTempDirectory("osf-startup-").toFile();
+        final int port = Integer.parseInt(baseUrl.substring(baseUrl.lastIndexOf(':') + 1));
+        final ObjectMapper mapper = new ObjectMapper();
+        final ObjectNode conf = mapper.createObjectNode();
+        conf.putObject("osf").putObject("v2")
+                .put("host", "localhost").put("port", port).put("basePath", "/v2/").put("scheme", "http");
+        conf.putObject("wb").putObject("v1")
+                .put("host", "localhost").put("port", port).put("basePath", ReplayServer.CONTENT_PATH + "v1/")
+                .put("scheme", "http");
+        final File confFile = new File(work, "osf-client.json");
+        mapper.writeValue(confFile, conf);
+        System.setProperty("osf.client.conf", confFile.toURI().toString());
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (ctx != null) {
+            ctx.close();
+        }
+        if (components != null) {
+            components.close();
+        }
+        replay.close();
+        FileUtils.deleteQuietly(work);
+    }
+
+    /**
+     * Wires the client, and makes a {@code HEAD} request for the registration.
+     *
+     * @return the response code
+     * @throws IOException if the request fails
+     */
+    @Benchmark
+    public int firstRequest() throws IOException {
+        wire();
+        final Response response = okHttpClient().newCall(new Request.Builder().head().url(registrationUrl).build())
+                .execute();
+        return response.code();
+    }
+
+    /**
+     * Wires the client, and retrieves the registration.
+     *
+     * @return the registration
+     * @throws IOException if the request fails
+     */
+    @Benchmark
+    public Registration firstRegistration() throws IOException {
+        wire();
+        return osfService().registration(registrationUrl).execute().body();
+    }
+
+    private void wire() {
+        if ("spring".equals(wiring)) {
+            ctx = new ClassPathXmlApplicationContext(
+                    "classpath*:org/dataconservancy/cos/osf/client/config/applicationContext.xml",
+                    "classpath*:org/dataconservancy/cos/osf/client/retrofit/applicationContext.xml",
+                    "classpath:/org/dataconservancy/cos/packaging/config/applicationContext.xml");
+        } else {
+            components = new OsfClientComponents();
+        }
+    }
+
+    private OkHttpClient okHttpClient() {
+        return ctx != null ? ctx.getBean("okHttpClient", OkHttpClient.class) : components.getOkHttpClient();
+    }
+
+    private OsfService osfService() {
+        return ctx != null ? ctx.getBean("osfService", OsfService.class) : components.newOsfService();
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.benchmarks;
+
+import org.dataconservancy.cos.osf.client.model.Category;
+import org.dataconservancy.cos.osf.client.model.File;
+import org.dataconservancy.cos.osf.client.model.Registration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates registrations of arbitrary size, used to scale the benchmarks beyond the harvested fixtures.
+ * <p>
+ * A generated registration has {@code children} child registrations, and the parent and every child carry a single
+ * {@code osfstorage} provider containing {@code filesPerNode} files.  Files carry a {@code download} link and OSF
+ * hashes, mirroring what the OSF v2 API returns for files stored in {@code osfstorage}.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+final class SyntheticRegistrations {
+
+    private static final String API_BASE = "http://localhost:8000/v2/";
+
+    private static final String WB_BASE = "http://localhost:7777/v1/resources/";
+
+    private static final String DATE = "2016-09-15T14:19:14.417000";
+
+    private SyntheticRegistrations() {
+        // disallow construction
+    }
+
+    /**
+     * Generates a registration.
+     *
+     * @param children the number of child registrations
+     * @param filesPerNode the number of files in each registration's storage provider
+     * @return the registration
+     */
+    static Registration generate(final int children, final int filesPerNode) {
+        final Registration root = registration("r0000", filesPerNode);
+        final List<Registration> childRegistrations = new ArrayList<>(children);
+        for (int i = 1; i <= children; i++) {
+            childRegistrations.add(registration(String.format("r%04d", i), filesPerNode));
+        }
+        root.setChildren(childRegistrations);
+        return root;
+    }
+
+    /**
+     * Counts the number of files (excluding storage providers) reachable from the supplied registration.
+     *
+     * @param registration the registration
+     * @return the number of files
+     */
+    static int fileCount(final Registration registration) {
+        int count = 0;
+        if (registration.getFiles() != null) {
+            for (File provider : registration.getFiles()) {
+                count += provider.getFiles() == null ? 0 : provider.getFiles().size();
+            }
+        }
+        if (registration.getChildren() != null) {
+            for (Registration child : registration.getChildren()) {
+                count += fileCount(child);
+            }
+        }
+        return count;
+    }
+
+    private static Registration registration(final String id, final int filesPerNode) {
+        final Registration r = new Registration();
+        r.setId(id);
+        r.setTitle("Synthetic registration " + id);
+        r.setDescription("A synthetic registration generated for benchmarking.");
+        r.setCategory(Category.PROJECT);
+        r.setDate_created(DATE);
+        r.setDate_modified(DATE);
+        r.setDate_registered(DATE);
+        r.setPublic(Boolean.TRUE);
+        r.setRegistration(Boolean.TRUE);
+        r.setTags(Collections.singletonList("benchmark"));
+
+        final File provider = new File();
+        provider.setId(id + ":osfstorage/");
+        provider.setName("osfstorage");
+        provider.setKind("folder");
+        provider.setPath("/");
+        provider.setMaterialized_path("/");
+        provider.setProvider("osfstorage");
+        provider.setNode(id);
+
+        final List<File> files = new ArrayList<>(filesPerNode);
+        for (int i = 0; i < filesPerNode; i++) {
+            files.add(file(id, i));
+        }
+        provider.setFiles(files);
+
+        r.setFiles(Collections.singletonList(provider));
+        return r;
+    }
+
+    private static File file(final String nodeId, final int index) {
+        final String fileId = String.format("%s%020d", nodeId, index);
+        final String name = String.format("file-%05d.dat", index);
+
+        final File f = new File();
+        f.setId(fileId);
+        f.setName(name);
+        f.setKind("file");
+        f.setPath("/" + fileId);
+        f.setMaterialized_path("/" + name);
+        f.setProvider("osfstorage");
+        f.setNode(nodeId);
+        f.setSize(1024);
+        f.setCurrent_version(1);
+        f.setDate_created(DATE);
+        f.setDate_modified(DATE);
+
+        final Map<String, String> links = new HashMap<>();
+        links.put("info", API_BASE + "files/" + fileId + "/");
+        links.put("self", API_BASE + "files/" + fileId + "/");
+        links.put("download", WB_BASE + nodeId + "/providers/osfstorage/" + fileId);
+        f.setLinks(links);
+
+        final Map<String, String> hashes = new HashMap<>();
+        hashes.put("md5", String.format("%032x", index));
+        hashes.put("sha256", String.format("%064x", index));
+        final Map<String, Object> extra = new HashMap<>();
+        extra.put("hashes", hashes);
+        f.setExtra(extra);
+
+        return f;
+    }
+
+}
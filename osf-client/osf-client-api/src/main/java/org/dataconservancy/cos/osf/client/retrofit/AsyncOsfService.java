@@ -0,0 +1,339 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.squareup.okhttp.ResponseBody;
+import org.dataconservancy.cos.osf.client.model.Comment;
+import org.dataconservancy.cos.osf.client.model.Contributor;
+import org.dataconservancy.cos.osf.client.model.File;
+import org.dataconservancy.cos.osf.client.model.FileVersion;
+import org.dataconservancy.cos.osf.client.model.Identifier;
+import org.dataconservancy.cos.osf.client.model.Institution;
+import org.dataconservancy.cos.osf.client.model.License;
+import org.dataconservancy.cos.osf.client.model.LightNode;
+import org.dataconservancy.cos.osf.client.model.LightRegistration;
+import org.dataconservancy.cos.osf.client.model.LightUser;
+import org.dataconservancy.cos.osf.client.model.Log;
+import org.dataconservancy.cos.osf.client.model.MetaSchema;
+import org.dataconservancy.cos.osf.client.model.Node;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.dataconservancy.cos.osf.client.model.User;
+import org.dataconservancy.cos.osf.client.model.Wiki;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous companion to {@link OsfService}.  Each method corresponds to the {@code OsfService} method of the
+ * same name and parameters, but rather than answering a {@code Call} to be executed on the calling thread, the request
+ * is enqueued on the HTTP client's dispatcher, and a {@code CompletableFuture} of the response body is answered.
+ * Fan-out retrievals (e.g. the components, contributors and files of a node) may then be composed without a thread
+ * blocked on each request in flight:
+ * <pre>
+ * CompletableFuture&lt;Registration&gt; registration = asyncOsfService.registration(registrationUrl);
+ * CompletableFuture&lt;List&lt;Contributor&gt;&gt; contributors = asyncOsfService.contributors(contributorsUrl);
+ * registration.thenCombine(contributors, (r, c) -&gt; ...);
+ * </pre>
+ * <p>
+ * A future completes exceptionally with an {@code IOException} if the request fails, or if the response is not
+ * successful (where {@code execute().body()} would answer {@code null}).  Cancelling a future cancels its request.
+ * </p>
+ * <p>
+ * Futures complete on a dispatcher thread, so dependent stages should not block: retrieving a relationship of a
+ * domain object, or iterating a {@link java.util.List List} past its first page, makes a blocking request.  Supply an
+ * executor to stages that may block (e.g. {@code thenApplyAsync(fn, executor)}), or retrieve the pages of a collection
+ * asynchronously instead (see {@code AsyncOsfServiceAdapter#forEachPage}).
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public interface AsyncOsfService {
+
+    /**
+     * @see OsfService#comment(String)
+     */
+    CompletableFuture<Comment> comment(String url);
+
+    /**
+     * @see OsfService#comments(String)
+     */
+    CompletableFuture<List<Comment>> comments(String url);
+
+    /**
+     * @see OsfService#contributor(String)
+     */
+    CompletableFuture<Contributor> contributor(String url);
+
+    /**
+     * @see OsfService#contributors(String)
+     */
+    CompletableFuture<List<Contributor>> contributors(String url);
+
+    /**
+     * @see OsfService#contributors(String, Map)
+     */
+    CompletableFuture<List<Contributor>> contributors(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#file(String)
+     */
+    CompletableFuture<File> file(String url);
+
+    /**
+     * @see OsfService#file(String, Map)
+     */
+    CompletableFuture<File> file(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#files(String)
+     */
+    CompletableFuture<List<File>> files(String url);
+
+    /**
+     * @see OsfService#files(String, Map)
+     */
+    CompletableFuture<List<File>> files(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#fileversion(String)
+     */
+    CompletableFuture<FileVersion> fileversion(String url);
+
+    /**
+     * @see OsfService#fileversions(String)
+     */
+    CompletableFuture<FileVersion> fileversions(String url);
+
+    /**
+     * @see OsfService#identifier(String)
+     */
+    CompletableFuture<Identifier> identifier(String url);
+
+    /**
+     * @see OsfService#identifiers(String)
+     */
+    CompletableFuture<List<Identifier>> identifiers(String url);
+
+    /**
+     * @see OsfService#institution(String)
+     */
+    CompletableFuture<Institution> institution(String url);
+
+    /**
+     * @see OsfService#institutions(String)
+     */
+    CompletableFuture<List<Institution>> institutions(String url);
+
+    /**
+     * @see OsfService#license(String)
+     */
+    CompletableFuture<License> license(String url);
+
+    /**
+     * @see OsfService#licenses(String)
+     */
+    CompletableFuture<List<License>> licenses(String url);
+
+    /**
+     * @see OsfService#log(String)
+     */
+    CompletableFuture<Log> log(String url);
+
+    /**
+     * @see OsfService#logs(String)
+     */
+    CompletableFuture<List<Log>> logs(String url);
+
+    /**
+     * @see OsfService#metaschema(String)
+     */
+    CompletableFuture<MetaSchema> metaschema(String url);
+
+    /**
+     * @see OsfService#metaschemas(String)
+     */
+    CompletableFuture<List<MetaSchema>> metaschemas(String url);
+
+    /**
+     * @see OsfService#node(String)
+     */
+    CompletableFuture<Node> node(String url);
+
+    /**
+     * @see OsfService#node(String, Map)
+     */
+    CompletableFuture<Node> node(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#nodes(String)
+     */
+    CompletableFuture<List<Node>> nodes(String url);
+
+    /**
+     * @see OsfService#nodes(String, Map)
+     */
+    CompletableFuture<List<Node>> nodes(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#nodeById(String)
+     */
+    CompletableFuture<Node> nodeById(String nodeId);
+
+    /**
+     * @see OsfService#nodeIds()
+     */
+    CompletableFuture<List<LightNode>> nodeIds();
+
+    /**
+     * @see OsfService#nodeIds(Map)
+     */
+    CompletableFuture<List<LightNode>> nodeIds(Map<String, String> params);
+
+    /**
+     * @see OsfService#lightnode(String)
+     */
+    CompletableFuture<LightNode> lightnode(String url);
+
+    /**
+     * @see OsfService#lightnodes(String)
+     */
+    CompletableFuture<List<LightNode>> lightnodes(String url);
+
+    /**
+     * @see OsfService#lightnodes(String, Map)
+     */
+    CompletableFuture<List<LightNode>> lightnodes(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#registration(String)
+     */
+    CompletableFuture<Registration> registration(String url);
+
+    /**
+     * @see OsfService#registration(String, Map)
+     */
+    CompletableFuture<Registration> registration(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#registrations(String)
+     */
+    CompletableFuture<List<Registration>> registrations(String url);
+
+    /**
+     * @see OsfService#registrations(String, Map)
+     */
+    CompletableFuture<List<Registration>> registrations(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#registrationById(String)
+     */
+    CompletableFuture<Registration> registrationById(String id);
+
+    /**
+     * @see OsfService#registrationIds()
+     */
+    CompletableFuture<List<LightRegistration>> registrationIds();
+
+    /**
+     * @see OsfService#registrationIds(Map)
+     */
+    CompletableFuture<List<LightRegistration>> registrationIds(Map<String, String> params);
+
+    /**
+     * @see OsfService#lightregistration(String)
+     */
+    CompletableFuture<LightRegistration> lightregistration(String url);
+
+    /**
+     * @see OsfService#lightregistrations(String)
+     */
+    CompletableFuture<List<LightRegistration>> lightregistrations(String url);
+
+    /**
+     * @see OsfService#lightregistrations(String, Map)
+     */
+    CompletableFuture<List<LightRegistration>> lightregistrations(String url, Map<String, String> params);
+
+    /**
+     * The body of the response is not read before the future completes; the caller must close it.
+     *
+     * @see OsfService#stream(String)
+     */
+    CompletableFuture<ResponseBody> stream(String url);
+
+    /**
+     * @see OsfService#user(String)
+     */
+    CompletableFuture<User> user(String url);
+
+    /**
+     * @see OsfService#user(String, Map)
+     */
+    CompletableFuture<User> user(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#users(String)
+     */
+    CompletableFuture<List<User>> users(String url);
+
+    /**
+     * @see OsfService#users(String, Map)
+     */
+    CompletableFuture<List<User>> users(String url, Map<String, String> params);
+
+    /**
+     * @see OsfService#userById(String)
+     */
+    CompletableFuture<User> userById(String id);
+
+    /**
+     * @see OsfService#userIds()
+     */
+    CompletableFuture<List<LightUser>> userIds();
+
+    /**
+     * @see OsfService#userIds(Map)
+     */
+    CompletableFuture<List<LightUser>> userIds(Map<String, String> params);
+
+    /**
+     * @see OsfService#lightuser(String)
+     */
+    CompletableFuture<LightUser> lightuser(String url);
+
+    /**
+     * @see OsfService#lightusers(String)
+     */
+    CompletableFuture<List<LightUser>> lightusers(String url);
+
+    /**
+     * @see OsfService#wiki(String)
+     */
+    CompletableFuture<Wiki> wiki(String url);
+
+    /**
+     * @see OsfService#wikis(String)
+     */
+    CompletableFuture<List<Wiki>> wikis(String url);
+
+    /**
+     * @see OsfService#wikis(String, Map)
+     */
+    CompletableFuture<List<Wiki>> wikis(String url, Map<String, String> params);
+
+}
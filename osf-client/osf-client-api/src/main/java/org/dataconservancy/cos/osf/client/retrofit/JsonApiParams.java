@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the JSON-API query parameters understood by the OSF v2 API: sparse fieldsets ({@code fields[type]}), filters
+ * ({@code filter[field]}), sorting, page size, and embedded relationships ({@code embed}).  The parameters are
+ * supplied to {@link OsfService} methods accepting a {@link retrofit.http.QueryMap}, or may be appended to a URL using
+ * {@link #appendTo(String)}.
+ * <p>
+ * Sparse fieldsets limit the attributes <em>and</em> relationships returned for each resource of a type.  Because
+ * relationships omitted from a document are never resolved, requesting only the fields needed by a use case reduces
+ * not only the size of each document, but the number of requests made to the API.  Properties of the domain object
+ * that correspond to omitted fields are left {@code null} (or the default value for primitives).  For example,
+ * enumerating the files of a node by name and download link:
+ * </p>
+ * <pre>
+ * List&lt;File&gt; files = osfService.files(filesUrl,
+ *         new JsonApiParams().fields("files", "name", "kind", "path", "size").pageSize(100).asMap())
+ *         .execute().body();
+ * </pre>
+ * <p>
+ * Embedding relationships asks the OSF to include the related documents in the response.  The client resolves
+ * relationships from embedded documents rather than requesting them, so a registration retrieved with
+ * {@code embed("contributors", "files", "identifiers")} costs one request where it would otherwise cost four.  Because
+ * each relationship is embedded with a separate {@code embed} parameter, more than one embed cannot be expressed as a
+ * {@code QueryMap}; use {@link #appendTo(String)} instead:
+ * </p>
+ * <pre>
+ * Registration registration = osfService.registration(
+ *         new JsonApiParams().embed("contributors", "files", "identifiers").appendTo(registrationUrl))
+ *         .execute().body();
+ * </pre>
+ * <p>
+ * Parameter names and values are <em>not</em> encoded by {@link #asMap()}; Retrofit encodes them.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class JsonApiParams {
+
+    private final Map<String, String> params = new LinkedHashMap<>();
+
+    private final Set<String> embeds = new LinkedHashSet<>();
+
+    /**
+     * Limits the fields returned for resources of the supplied JSON-API type (e.g. {@code registrations},
+     * {@code files}) to those named.  Replaces any fields previously supplied for the type.
+     *
+     * @param type the JSON-API type of the resources
+     * @param fields the attributes and relationships to include
+     * @return this builder
+     */
+    public JsonApiParams fields(final String type, final String... fields) {
+        notEmpty(type, "Type");
+        if (fields == null || fields.length == 0) {
+            throw new IllegalArgumentException("Fields must not be empty or null.");
+        }
+        params.put("fields[" + type + "]", String.join(",", fields));
+        return this;
+    }
+
+    /**
+     * Filters a collection by the value of a field, e.g. {@code filter("public", "true")}.  Replaces any filter
+     * previously supplied for the field.
+     *
+     * @param field the field to filter on
+     * @param value the value to filter by
+     * @return this builder
+     */
+    public JsonApiParams filter(final String field, final String value) {
+        notEmpty(field, "Field");
+        if (value == null) {
+            throw new IllegalArgumentException("Value must not be null.");
+        }
+        params.put("filter[" + field + "]", value);
+        return this;
+    }
+
+    /**
+     * Sorts a collection by the named fields; a field prefixed with {@code -} is sorted in descending order.
+     *
+     * @param fields the fields to sort by
+     * @return this builder
+     */
+    public JsonApiParams sort(final String... fields) {
+        if (fields == null || fields.length == 0) {
+            throw new IllegalArgumentException("Fields must not be empty or null.");
+        }
+        params.put("sort", String.join(",", fields));
+        return this;
+    }
+
+    /**
+     * Requests the supplied number of resources per page of a collection.  Larger pages mean fewer requests when
+     * enumerating a collection.
+     *
+     * @param size the number of resources per page
+     * @return this builder
+     */
+    public JsonApiParams pageSize(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be a positive integer.");
+        }
+        params.put("page[size]", String.valueOf(size));
+        return this;
+    }
+
+    /**
+     * Asks the OSF to embed the named relationships (e.g. {@code contributors}, {@code files}, {@code license}) of the
+     * requested resources in the response.
+     *
+     * @param relationships the names of the relationships to embed
+     * @return this builder
+     */
+    public JsonApiParams embed(final String... relationships) {
+        if (relationships == null || relationships.length == 0) {
+            throw new IllegalArgumentException("Relationships must not be empty or null.");
+        }
+        for (String relationship : relationships) {
+            notEmpty(relationship, "Relationship");
+            embeds.add(relationship);
+        }
+        return this;
+    }
+
+    /**
+     * The parameters, suitable for a Retrofit {@link retrofit.http.QueryMap}.  Names and values are not encoded.
+     *
+     * @return an unmodifiable view of the parameters, in the order they were supplied
+     * @throws IllegalStateException if more than one relationship is embedded
+     */
+    public Map<String, String> asMap() {
+        if (embeds.isEmpty()) {
+            return Collections.unmodifiableMap(params);
+        }
+
+        if (embeds.size() > 1) {
+            throw new IllegalStateException("Multiple embedded relationships require repeated 'embed' parameters, " +
+                    "which cannot be expressed as a map: use appendTo(String)");
+        }
+
+        final Map<String, String> result = new LinkedHashMap<>(params);
+        result.put("embed", embeds.iterator().next());
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Appends the parameters, encoded, to the query of the supplied URL.  Useful when a URL, rather than an
+     * {@code OsfService} method, is the unit of work (e.g. relationship URLs, or URLs persisted for later use).
+     *
+     * @param url the URL, which may already have a query
+     * @return the URL with the parameters appended
+     */
+    public String appendTo(final String url) {
+        notEmpty(url, "URL");
+        if (params.isEmpty() && embeds.isEmpty()) {
+            return url;
+        }
+
+        final StringBuilder result = new StringBuilder(url);
+        char separator = url.indexOf('?') > -1 ? '&' : '?';
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            result.append(separator).append(encode(param.getKey())).append('=').append(encode(param.getValue()));
+            separator = '&';
+        }
+        for (String embed : embeds) {
+            result.append(separator).append("embed=").append(encode(embed));
+            separator = '&';
+        }
+
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return embeds.isEmpty() ? params.toString() : params.toString() + " embed=" + embeds;
+    }
+
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static void notEmpty(final String value, final String name) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(name + " must not be empty or null.");
+        }
+    }
+
+}
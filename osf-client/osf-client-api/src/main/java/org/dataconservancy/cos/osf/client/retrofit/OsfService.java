@@ -119,6 +119,18 @@ import retrofit.http.Url;
  *
  * assertNotEquals(count, publicNodes.size()); // 18508; the filter is ignored, public and private nodes are returned
  * </pre>
+ * <p>
+ * Methods accepting a {@link QueryMap} alongside a {@link Url} allow JSON-API query parameters to be sent with any
+ * request; {@link JsonApiParams} builds them.  In particular, sparse fieldsets ({@code fields[type]=...}) shrink the
+ * documents returned by the API when a caller needs only a few properties of each resource, for example identifiers
+ * and modification dates when detecting changes:
+ * </p>
+ * <pre>
+ * List&lt;LightRegistration&gt; changed = osfService.lightregistrations(url,
+ *         new JsonApiParams().fields("registrations", "date_modified").filter("date_modified[gt]", since)
+ *             .pageSize(100).asMap())
+ *         .execute().body();
+ * </pre>
  *
  * @author Elliot Metsger (emetsger@jhu.edu)
  * @author Karen Hanson (karen.hanson@jhu.edu)
@@ -157,6 +169,15 @@ public interface OsfService {
     @GET
     Call<List<Contributor>> contributors(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<List<Contributor>> contributors(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param url
@@ -165,6 +186,15 @@ public interface OsfService {
     @GET
     Call<File> file(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<File> file(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param url
@@ -173,6 +203,15 @@ public interface OsfService {
     @GET
     Call<List<File>> files(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<List<File>> files(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param url
@@ -277,6 +316,15 @@ public interface OsfService {
     @GET
     Call<Node> node(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<Node> node(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param url
@@ -285,6 +333,15 @@ public interface OsfService {
     @GET
     Call<List<Node>> nodes(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<List<Node>> nodes(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param nodeId
@@ -324,6 +381,15 @@ public interface OsfService {
     @GET
     Call<List<LightNode>> lightnodes(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<List<LightNode>> lightnodes(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param url
@@ -332,6 +398,15 @@ public interface OsfService {
     @GET
     Call<Registration> registration(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<Registration> registration(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param url
@@ -340,6 +415,15 @@ public interface OsfService {
     @GET
     Call<List<Registration>> registrations(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<List<Registration>> registrations(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param id
@@ -379,6 +463,15 @@ public interface OsfService {
     @GET
     Call<List<LightRegistration>> lightregistrations(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<List<LightRegistration>> lightregistrations(@Url String url, @QueryMap Map<String, String> params);
+
 
     /**
      *
@@ -397,6 +490,15 @@ public interface OsfService {
     @GET
     Call<User> user(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<User> user(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param url
@@ -405,6 +507,15 @@ public interface OsfService {
     @GET
     Call<List<User>> users(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<List<User>> users(@Url String url, @QueryMap Map<String, String> params);
+
     /**
      *
      * @param id
@@ -460,4 +571,13 @@ public interface OsfService {
     @GET
     Call<List<Wiki>> wikis(@Url String url);
 
+    /**
+     *
+     * @param url
+     * @param params JSON-API query parameters, e.g. sparse fieldsets (see {@link JsonApiParams})
+     * @return
+     */
+    @GET
+    Call<List<Wiki>> wikis(@Url String url, @QueryMap Map<String, String> params);
+
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent (agent@local)
+ */
+public class JsonApiParamsTest {
+
+    @Test
+    public void testAsMap() throws Exception {
+        final Map<String, String> params = new JsonApiParams()
+                .fields("files", "name", "kind")
+                .filter("name", "data.csv")
+                .sort("-date_modified")
+                .pageSize(100)
+                .asMap();
+
+        assertEquals(4, params.size());
+        assertEquals("name,kind", params.get("fields[files]"));
+        assertEquals("data.csv", params.get("filter[name]"));
+        assertEquals("-date_modified", params.get("sort"));
+        assertEquals("100", params.get("page[size]"));
+    }
+
+    @Test
+    public void testFieldsReplaced() throws Exception {
+        final Map<String, String> params = new JsonApiParams()
+                .fields("files", "name")
+                .fields("files", "size")
+                .asMap();
+
+        assertEquals(1, params.size());
+        assertEquals("size", params.get("fields[files]"));
+    }
+
+    @Test
+    public void testAppendTo() throws Exception {
+        final JsonApiParams params = new JsonApiParams().fields("nodes", "title", "date_modified").pageSize(10);
+
+        assertEquals("http://example.org/v2/nodes/?fields%5Bnodes%5D=title%2Cdate_modified&page%5Bsize%5D=10",
+                params.appendTo("http://example.org/v2/nodes/"));
+        assertEquals("http://example.org/v2/nodes/?page=2&fields%5Bnodes%5D=title%2Cdate_modified&page%5Bsize%5D=10",
+                params.appendTo("http://example.org/v2/nodes/?page=2"));
+        assertEquals("http://example.org/v2/nodes/", new JsonApiParams().appendTo("http://example.org/v2/nodes/"));
+    }
+
+    @Test
+    public void testEmbed() throws Exception {
+        final JsonApiParams params = new JsonApiParams().embed("contributors");
+        assertEquals("contributors", params.asMap().get("embed"));
+
+        params.embed("files", "contributors");
+        assertEquals("http://example.org/v2/registrations/eq7a4/?embed=contributors&embed=files",
+                params.appendTo("http://example.org/v2/registrations/eq7a4/"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMultipleEmbedsAsMap() throws Exception {
+        new JsonApiParams().embed("contributors", "files").asMap();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyFields() throws Exception {
+        new JsonApiParams().fields("files");
+    }
+
+}
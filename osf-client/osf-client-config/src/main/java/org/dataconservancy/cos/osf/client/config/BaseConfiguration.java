@@ -15,6 +15,8 @@
  */
 package org.dataconservancy.cos.osf.client.config;
 
+import java.util.List;
+
 /**
  * @author Elliot Metsger (emetsger@jhu.edu)
  */
@@ -34,6 +36,16 @@ abstract class BaseConfiguration {
 
     int connect_timeout_ms = 10 * 1000; // 10 seconds
 
+    int max_idle_connections = 5;
+
+    long keep_alive_duration_ms = 5 * 60 * 1000; // 5 minutes
+
+    int max_requests = 64;
+
+    int max_requests_per_host = 5;
+
+    List<String> protocols;
+
     /**
      * The remote host of the API; may be a DNS name or a dotted-quad IP.
      * <p>
@@ -192,4 +204,120 @@ abstract class BaseConfiguration {
         }
         this.connect_timeout_ms = connect_timeout_ms;
     }
+
+    /**
+     * The maximum number of idle connections kept open in the connection pool, for reuse by subsequent requests.
+     *
+     * @return the maximum number of idle connections, must be greater than -1
+     */
+    public int getMax_idle_connections() {
+        return max_idle_connections;
+    }
+
+    /**
+     * The maximum number of idle connections kept open in the connection pool, for reuse by subsequent requests.
+     *
+     * @param max_idle_connections the maximum number of idle connections, must be greater than -1
+     */
+    public void setMax_idle_connections(final int max_idle_connections) {
+        if (max_idle_connections < 0) {
+            throw new IllegalArgumentException("Maximum idle connections must be a positive integer");
+        }
+        this.max_idle_connections = max_idle_connections;
+    }
+
+    /**
+     * How long an idle connection is kept open in the connection pool before it is closed.
+     *
+     * @return the keep-alive duration in milliseconds, must be greater than 0
+     */
+    public long getKeep_alive_duration_ms() {
+        return keep_alive_duration_ms;
+    }
+
+    /**
+     * How long an idle connection is kept open in the connection pool before it is closed.
+     *
+     * @param keep_alive_duration_ms the keep-alive duration in milliseconds, must be greater than 0
+     */
+    public void setKeep_alive_duration_ms(final long keep_alive_duration_ms) {
+        if (keep_alive_duration_ms < 1) {
+            throw new IllegalArgumentException("Keep-alive duration must be a positive integer");
+        }
+        this.keep_alive_duration_ms = keep_alive_duration_ms;
+    }
+
+    /**
+     * The maximum number of asynchronous requests executed concurrently by the client's dispatcher.  Additional
+     * requests are queued.  Synchronous requests are not subject to this limit.
+     *
+     * @return the maximum number of concurrent requests, must be greater than 0
+     */
+    public int getMax_requests() {
+        return max_requests;
+    }
+
+    /**
+     * The maximum number of asynchronous requests executed concurrently by the client's dispatcher.  Additional
+     * requests are queued.  Synchronous requests are not subject to this limit.
+     *
+     * @param max_requests the maximum number of concurrent requests, must be greater than 0
+     */
+    public void setMax_requests(final int max_requests) {
+        if (max_requests < 1) {
+            throw new IllegalArgumentException("Maximum requests must be a positive integer");
+        }
+        this.max_requests = max_requests;
+    }
+
+    /**
+     * The maximum number of asynchronous requests executed concurrently by the client's dispatcher for each host.
+     * Additional requests are queued.  Synchronous requests are not subject to this limit.
+     *
+     * @return the maximum number of concurrent requests per host, must be greater than 0
+     */
+    public int getMax_requests_per_host() {
+        return max_requests_per_host;
+    }
+
+    /**
+     * The maximum number of asynchronous requests executed concurrently by the client's dispatcher for each host.
+     * Additional requests are queued.  Synchronous requests are not subject to this limit.
+     *
+     * @param max_requests_per_host the maximum number of concurrent requests per host, must be greater than 0
+     */
+    public void setMax_requests_per_host(final int max_requests_per_host) {
+        if (max_requests_per_host < 1) {
+            throw new IllegalArgumentException("Maximum requests per host must be a positive integer");
+        }
+        this.max_requests_per_host = max_requests_per_host;
+    }
+
+    /**
+     * The protocols the client is willing to use, in order of preference, identified by their ALPN names.
+     * <p>
+     * e.g. {@code ["h2", "http/1.1"]}
+     * </p>
+     *
+     * @return the protocols, or {@code null} to use the HTTP client defaults
+     */
+    public List<String> getProtocols() {
+        return protocols;
+    }
+
+    /**
+     * The protocols the client is willing to use, in order of preference, identified by their ALPN names.  The list
+     * must contain {@code http/1.1}.
+     * <p>
+     * e.g. {@code ["h2", "http/1.1"]}
+     * </p>
+     *
+     * @param protocols the protocols, or {@code null} to use the HTTP client defaults
+     */
+    public void setProtocols(final List<String> protocols) {
+        if (protocols != null && !protocols.contains("http/1.1")) {
+            throw new IllegalArgumentException("Protocols must include http/1.1");
+        }
+        this.protocols = protocols;
+    }
 }
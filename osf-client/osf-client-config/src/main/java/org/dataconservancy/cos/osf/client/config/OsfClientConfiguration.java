@@ -31,6 +31,18 @@ public class OsfClientConfiguration extends BaseConfiguration {
 
     private String apiVersion = DEFAULT_API_VERSION;
 
+    double max_requests_per_second = 0; // unlimited
+
+    int max_request_burst = 10;
+
+    int max_retries = 3;
+
+    int retry_base_delay_ms = 500;
+
+    int retry_max_delay_ms = 60 * 1000; // 60 seconds
+
+    boolean lazy_relationships = false;
+
     /**
      * The Basic authentication header that should be sent on every HTTP request, e.g.
      * {@code Basic ZW1ldHNnZaodnr1haWwuY29to9b2b2JhcmJheg==}
@@ -100,4 +112,141 @@ public class OsfClientConfiguration extends BaseConfiguration {
         this.apiVersion = apiVersion;
     }
 
+    /**
+     * The maximum sustained rate of HTTP requests made by the client.  Requests in excess of this rate are delayed
+     * until they can be made without exceeding it.
+     *
+     * @return the maximum number of requests per second, {@code 0} if the request rate is not limited
+     */
+    public double getMax_requests_per_second() {
+        return max_requests_per_second;
+    }
+
+    /**
+     * The maximum sustained rate of HTTP requests made by the client.  Requests in excess of this rate are delayed
+     * until they can be made without exceeding it.
+     *
+     * @param max_requests_per_second the maximum number of requests per second, {@code 0} to disable rate limiting
+     */
+    public void setMax_requests_per_second(final double max_requests_per_second) {
+        if (max_requests_per_second < 0) {
+            throw new IllegalArgumentException("Maximum requests per second must not be negative");
+        }
+        this.max_requests_per_second = max_requests_per_second;
+    }
+
+    /**
+     * The number of requests that may be made in a burst, without delay, when the client has been idle.  Only
+     * meaningful when the {@link #getMax_requests_per_second() request rate} is limited.
+     *
+     * @return the maximum burst of requests, must be greater than 0
+     */
+    public int getMax_request_burst() {
+        return max_request_burst;
+    }
+
+    /**
+     * The number of requests that may be made in a burst, without delay, when the client has been idle.  Only
+     * meaningful when the {@link #getMax_requests_per_second() request rate} is limited.
+     *
+     * @param max_request_burst the maximum burst of requests, must be greater than 0
+     */
+    public void setMax_request_burst(final int max_request_burst) {
+        if (max_request_burst < 1) {
+            throw new IllegalArgumentException("Maximum request burst must be a positive integer");
+        }
+        this.max_request_burst = max_request_burst;
+    }
+
+    /**
+     * The number of times an idempotent request is retried when the API responds with {@code 429 Too Many Requests}
+     * or {@code 503 Service Unavailable}.
+     *
+     * @return the maximum number of retries, {@code 0} if requests are not retried
+     */
+    public int getMax_retries() {
+        return max_retries;
+    }
+
+    /**
+     * The number of times an idempotent request is retried when the API responds with {@code 429 Too Many Requests}
+     * or {@code 503 Service Unavailable}.
+     *
+     * @param max_retries the maximum number of retries, {@code 0} to disable retries
+     */
+    public void setMax_retries(final int max_retries) {
+        if (max_retries < 0) {
+            throw new IllegalArgumentException("Maximum retries must be a positive integer");
+        }
+        this.max_retries = max_retries;
+    }
+
+    /**
+     * The base of the exponential backoff between retries, used when the API does not supply a {@code Retry-After}
+     * header.  The delay before retry {@code n} is chosen at random between 0 and {@code base * 2^n} milliseconds.
+     *
+     * @return the base retry delay in milliseconds
+     */
+    public int getRetry_base_delay_ms() {
+        return retry_base_delay_ms;
+    }
+
+    /**
+     * The base of the exponential backoff between retries, used when the API does not supply a {@code Retry-After}
+     * header.  The delay before retry {@code n} is chosen at random between 0 and {@code base * 2^n} milliseconds.
+     *
+     * @param retry_base_delay_ms the base retry delay in milliseconds, must be greater than 0
+     */
+    public void setRetry_base_delay_ms(final int retry_base_delay_ms) {
+        if (retry_base_delay_ms < 1) {
+            throw new IllegalArgumentException("Retry base delay must be a positive integer");
+        }
+        this.retry_base_delay_ms = retry_base_delay_ms;
+    }
+
+    /**
+     * The longest the client will wait before retrying a request.  Backoff delays are capped at this value, and a
+     * request whose {@code Retry-After} exceeds it is not retried.
+     *
+     * @return the maximum retry delay in milliseconds
+     */
+    public int getRetry_max_delay_ms() {
+        return retry_max_delay_ms;
+    }
+
+    /**
+     * The longest the client will wait before retrying a request.  Backoff delays are capped at this value, and a
+     * request whose {@code Retry-After} exceeds it is not retried.
+     *
+     * @param retry_max_delay_ms the maximum retry delay in milliseconds, must be greater than 0
+     */
+    public void setRetry_max_delay_ms(final int retry_max_delay_ms) {
+        if (retry_max_delay_ms < 1) {
+            throw new IllegalArgumentException("Retry maximum delay must be a positive integer");
+        }
+        this.retry_max_delay_ms = retry_max_delay_ms;
+    }
+
+    /**
+     * Whether collection relationships (e.g. the files, contributors, and children of a node) are retrieved when they
+     * are first accessed, rather than when the resource is retrieved.  Retrieving a resource then costs a single
+     * request.
+     *
+     * @return true if collection relationships are retrieved on access
+     */
+    public boolean isLazy_relationships() {
+        return lazy_relationships;
+    }
+
+    /**
+     * Whether collection relationships (e.g. the files, contributors, and children of a node) are retrieved when they
+     * are first accessed, rather than when the resource is retrieved.  Retrieving a resource then costs a single
+     * request.
+     *
+     * @param lazy_relationships true if collection relationships should be retrieved on access
+     */
+    public void setLazy_relationships(final boolean lazy_relationships) {
+        this.lazy_relationships = lazy_relationships;
+    }
+
 }
@@ -17,8 +17,12 @@ package org.dataconservancy.cos.osf.client.config;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for the Jackson-based configuration service.  Note that the same configuration file can contain
@@ -43,6 +47,16 @@ public class JacksonOsfConfigurationServiceTest {
         assertEquals("foo", config.getAuthHeader());
         assertEquals(20 * 1000, config.connect_timeout_ms);
         assertEquals("2.2", config.getApiVersion());
+        assertEquals(2.5, config.getMax_requests_per_second(), 0);
+        assertEquals(10, config.getMax_request_burst());
+        assertEquals(5, config.getMax_retries());
+        assertEquals(500, config.getRetry_base_delay_ms());
+        assertEquals(20, config.getMax_idle_connections());
+        assertEquals(5 * 60 * 1000, config.getKeep_alive_duration_ms());
+        assertEquals(64, config.getMax_requests());
+        assertEquals(16, config.getMax_requests_per_host());
+        assertEquals(Arrays.asList("h2", "http/1.1"), config.getProtocols());
+        assertTrue(config.isLazy_relationships());
     }
 
     @Test
@@ -57,5 +71,6 @@ public class JacksonOsfConfigurationServiceTest {
         assertEquals(7777, config.getPort());
         assertEquals("/v1/", config.getBasePath());
         assertEquals(10 * 1000, config.connect_timeout_ms);
+        assertNull(config.getProtocols());
     }
 }
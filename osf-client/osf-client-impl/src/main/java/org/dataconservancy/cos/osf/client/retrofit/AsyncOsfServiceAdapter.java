@@ -0,0 +1,515 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.ResponseBody;
+import org.dataconservancy.cos.osf.client.model.Comment;
+import org.dataconservancy.cos.osf.client.model.Contributor;
+import org.dataconservancy.cos.osf.client.model.File;
+import org.dataconservancy.cos.osf.client.model.FileVersion;
+import org.dataconservancy.cos.osf.client.model.Identifier;
+import org.dataconservancy.cos.osf.client.model.Institution;
+import org.dataconservancy.cos.osf.client.model.License;
+import org.dataconservancy.cos.osf.client.model.LightNode;
+import org.dataconservancy.cos.osf.client.model.LightRegistration;
+import org.dataconservancy.cos.osf.client.model.LightUser;
+import org.dataconservancy.cos.osf.client.model.Log;
+import org.dataconservancy.cos.osf.client.model.MetaSchema;
+import org.dataconservancy.cos.osf.client.model.Node;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.dataconservancy.cos.osf.client.model.User;
+import org.dataconservancy.cos.osf.client.model.Wiki;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Adapts an {@link OsfService} as an {@link AsyncOsfService}: each {@code Call} answered by the {@code OsfService} is
+ * {@link Call#enqueue(Callback) enqueued} on the OkHttp dispatcher, which completes the answered future when the
+ * response is converted.  The number of requests in flight is bounded by the dispatcher of the OkHttp client
+ * ({@code maxRequests} and {@code maxRequestsPerHost}), not by the number of threads of the caller.
+ * <p>
+ * The pages of a collection may also be retrieved asynchronously with {@link #forEachPage(String, Class, Consumer)}:
+ * each page is requested when the previous page has been handed to the consumer, so no thread is blocked between
+ * pages, and at most one page is held in memory at a time.
+ * </p>
+ * <p>
+ * Responses are converted on dispatcher threads.  A converter that resolves relationships as it converts makes a
+ * blocking request of its own from the dispatcher thread for each {@code resolve = true} relationship, and once every
+ * dispatcher slot is converting, those requests wait on each other.  Adapt a service (and supply a converter) that
+ * defers collection relationships, as {@link OsfClientComponents#newAsyncOsfService()} does with a
+ * {@code LazyResourceConverter}: each collection is then retrieved by the thread that first accesses it.
+ * Single-valued relationships (e.g. the {@code license} of a node) are still resolved on conversion; embed them
+ * ({@code ?embed=license}) to avoid the request.
+ * </p>
+ * <pre>
+ * AsyncOsfServiceAdapter async = components.newAsyncOsfService();
+ * async.forEachPage(registrationsUrl, LightRegistration.class, page -&gt; page.forEach(queue::add))
+ *         .thenAccept(count -&gt; LOG.info("Queued {} registrations", count));
+ * </pre>
+ *
+ * @author agent (agent@local)
+ */
+public class AsyncOsfServiceAdapter implements AsyncOsfService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncOsfServiceAdapter.class);
+
+    private static final String ERR_RETRIEVING_PAGE = "Unable to retrieve results page '%s': %s";
+
+    private final OsfService osfService;
+
+    private final OkHttpClient okHttp;
+
+    private final ResourceConverter converter;
+
+    /**
+     * Adapts the supplied service.  The OkHttp client and converter are used to retrieve the pages of collections
+     * asynchronously, and should be those used by the service.  The converter should defer the resolution of
+     * collection relationships (see the class documentation).
+     *
+     * @param osfService the service producing each {@code Call}
+     * @param okHttp the OkHttp client used to retrieve pages of a collection
+     * @param converter the JSON-API converter used to convert pages of a collection
+     */
+    public AsyncOsfServiceAdapter(final OsfService osfService, final OkHttpClient okHttp,
+                                  final ResourceConverter converter) {
+        if (osfService == null) {
+            throw new IllegalArgumentException("OsfService must not be null.");
+        }
+        if (okHttp == null) {
+            throw new IllegalArgumentException("OkHttpClient must not be null.");
+        }
+        if (converter == null) {
+            throw new IllegalArgumentException("ResourceConverter must not be null.");
+        }
+
+        this.osfService = osfService;
+        this.okHttp = okHttp;
+        this.converter = converter;
+    }
+
+    /**
+     * Enqueues the supplied call, answering a future of its response body.  The future completes exceptionally with
+     * an {@code IOException} if the call fails or its response is not successful.  Cancelling the future cancels the
+     * call.
+     *
+     * @param call the call
+     * @param <T> the type of the response body
+     * @return a future of the response body
+     */
+    public static <T> CompletableFuture<T> enqueue(final Call<T> call) {
+        if (call == null) {
+            throw new IllegalArgumentException("Call must not be null.");
+        }
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((body, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(final Response<T> response, final Retrofit retrofit) {
+                if (response.isSuccess()) {
+                    future.complete(response.body());
+                    return;
+                }
+
+                try {
+                    if (response.errorBody() != null) {
+                        response.errorBody().close();
+                    }
+                } catch (IOException e) {
+                    LOG.debug("Error closing response body: {}", e.getMessage(), e);
+                }
+                future.completeExceptionally(new IOException("Unable to retrieve '" +
+                        response.raw().request().urlString() + "': HTTP status " + response.code() + " " +
+                        response.message()));
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Retrieves each page of the collection at the supplied URL asynchronously, handing each page, in order, to the
+     * consumer.  The consumer is invoked on a dispatcher thread, one page at a time, and should not block.  The
+     * answered future completes when the last page has been consumed, or exceptionally if a page cannot be retrieved
+     * or converted, or the consumer throws an exception.  Cancelling the future stops the retrieval of further pages.
+     *
+     * @param url the URL of the collection, which may carry a query
+     * @param type the class of the resources of the collection
+     * @param consumer consumes each page of the collection
+     * @param <E> the type of the resources of the collection
+     * @return a future of the number of resources consumed
+     */
+    public <E> CompletableFuture<Long> forEachPage(final String url, final Class<E> type,
+                                                  final Consumer<? super List<E>> consumer) {
+        if (url == null || url.trim().isEmpty()) {
+            throw new IllegalArgumentException("URL must not be empty or null.");
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Type must not be null.");
+        }
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer must not be null.");
+        }
+
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+        requestPage(url, type, consumer, 0, result);
+        return result;
+    }
+
+    /**
+     * Enqueues the request of a page, which hands the page to the consumer and enqueues the request of the following
+     * page when it is retrieved.
+     */
+    private <E> void requestPage(final String url, final Class<E> type, final Consumer<? super List<E>> consumer,
+                                 final long consumed, final CompletableFuture<Long> result) {
+        if (result.isDone()) {
+            LOG.debug("Retrieval of results page '{}' was cancelled", url);
+            return;
+        }
+
+        okHttp.newCall(new Request.Builder().get().url(url).build()).enqueue(new com.squareup.okhttp.Callback() {
+            @Override
+            public void onFailure(final Request request, final IOException e) {
+                result.completeExceptionally(new IOException(String.format(ERR_RETRIEVING_PAGE, url,
+                        e.getMessage()), e));
+            }
+
+            @Override
+            public void onResponse(final com.squareup.okhttp.Response response) {
+                final List<E> page = new ArrayList<>();
+                final String next;
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful()) {
+                        result.completeExceptionally(new IOException(String.format(ERR_RETRIEVING_PAGE, url,
+                                "HTTP status " + response.code() + " " + response.message())));
+                        return;
+                    }
+                    final Page<E> read = StreamingPageReader.read(converter, body.byteStream(), type);
+                    read.forEach(page::add);
+                    next = read.getNext();
+                    LOG.trace("Retrieved results page '{}'", url);
+                    consumer.accept(page);
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+
+                if (next == null) {
+                    result.complete(consumed + page.size());
+                } else {
+                    requestPage(next, type, consumer, consumed + page.size(), result);
+                }
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Comment> comment(final String url) {
+        return enqueue(osfService.comment(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Comment>> comments(final String url) {
+        return enqueue(osfService.comments(url));
+    }
+
+    @Override
+    public CompletableFuture<Contributor> contributor(final String url) {
+        return enqueue(osfService.contributor(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Contributor>> contributors(final String url) {
+        return enqueue(osfService.contributors(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Contributor>> contributors(final String url, final Map<String, String> params) {
+        return enqueue(osfService.contributors(url, params));
+    }
+
+    @Override
+    public CompletableFuture<File> file(final String url) {
+        return enqueue(osfService.file(url));
+    }
+
+    @Override
+    public CompletableFuture<File> file(final String url, final Map<String, String> params) {
+        return enqueue(osfService.file(url, params));
+    }
+
+    @Override
+    public CompletableFuture<List<File>> files(final String url) {
+        return enqueue(osfService.files(url));
+    }
+
+    @Override
+    public CompletableFuture<List<File>> files(final String url, final Map<String, String> params) {
+        return enqueue(osfService.files(url, params));
+    }
+
+    @Override
+    public CompletableFuture<FileVersion> fileversion(final String url) {
+        return enqueue(osfService.fileversion(url));
+    }
+
+    @Override
+    public CompletableFuture<FileVersion> fileversions(final String url) {
+        return enqueue(osfService.fileversions(url));
+    }
+
+    @Override
+    public CompletableFuture<Identifier> identifier(final String url) {
+        return enqueue(osfService.identifier(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Identifier>> identifiers(final String url) {
+        return enqueue(osfService.identifiers(url));
+    }
+
+    @Override
+    public CompletableFuture<Institution> institution(final String url) {
+        return enqueue(osfService.institution(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Institution>> institutions(final String url) {
+        return enqueue(osfService.institutions(url));
+    }
+
+    @Override
+    public CompletableFuture<License> license(final String url) {
+        return enqueue(osfService.license(url));
+    }
+
+    @Override
+    public CompletableFuture<List<License>> licenses(final String url) {
+        return enqueue(osfService.licenses(url));
+    }
+
+    @Override
+    public CompletableFuture<Log> log(final String url) {
+        return enqueue(osfService.log(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Log>> logs(final String url) {
+        return enqueue(osfService.logs(url));
+    }
+
+    @Override
+    public CompletableFuture<MetaSchema> metaschema(final String url) {
+        return enqueue(osfService.metaschema(url));
+    }
+
+    @Override
+    public CompletableFuture<List<MetaSchema>> metaschemas(final String url) {
+        return enqueue(osfService.metaschemas(url));
+    }
+
+    @Override
+    public CompletableFuture<Node> node(final String url) {
+        return enqueue(osfService.node(url));
+    }
+
+    @Override
+    public CompletableFuture<Node> node(final String url, final Map<String, String> params) {
+        return enqueue(osfService.node(url, params));
+    }
+
+    @Override
+    public CompletableFuture<List<Node>> nodes(final String url) {
+        return enqueue(osfService.nodes(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Node>> nodes(final String url, final Map<String, String> params) {
+        return enqueue(osfService.nodes(url, params));
+    }
+
+    @Override
+    public CompletableFuture<Node> nodeById(final String nodeId) {
+        return enqueue(osfService.nodeById(nodeId));
+    }
+
+    @Override
+    public CompletableFuture<List<LightNode>> nodeIds() {
+        return enqueue(osfService.nodeIds());
+    }
+
+    @Override
+    public CompletableFuture<List<LightNode>> nodeIds(final Map<String, String> params) {
+        return enqueue(osfService.nodeIds(params));
+    }
+
+    @Override
+    public CompletableFuture<LightNode> lightnode(final String url) {
+        return enqueue(osfService.lightnode(url));
+    }
+
+    @Override
+    public CompletableFuture<List<LightNode>> lightnodes(final String url) {
+        return enqueue(osfService.lightnodes(url));
+    }
+
+    @Override
+    public CompletableFuture<List<LightNode>> lightnodes(final String url, final Map<String, String> params) {
+        return enqueue(osfService.lightnodes(url, params));
+    }
+
+    @Override
+    public CompletableFuture<Registration> registration(final String url) {
+        return enqueue(osfService.registration(url));
+    }
+
+    @Override
+    public CompletableFuture<Registration> registration(final String url, final Map<String, String> params) {
+        return enqueue(osfService.registration(url, params));
+    }
+
+    @Override
+    public CompletableFuture<List<Registration>> registrations(final String url) {
+        return enqueue(osfService.registrations(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Registration>> registrations(final String url, final Map<String, String> params) {
+        return enqueue(osfService.registrations(url, params));
+    }
+
+    @Override
+    public CompletableFuture<Registration> registrationById(final String id) {
+        return enqueue(osfService.registrationById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<LightRegistration>> registrationIds() {
+        return enqueue(osfService.registrationIds());
+    }
+
+    @Override
+    public CompletableFuture<List<LightRegistration>> registrationIds(final Map<String, String> params) {
+        return enqueue(osfService.registrationIds(params));
+    }
+
+    @Override
+    public CompletableFuture<LightRegistration> lightregistration(final String url) {
+        return enqueue(osfService.lightregistration(url));
+    }
+
+    @Override
+    public CompletableFuture<List<LightRegistration>> lightregistrations(final String url) {
+        return enqueue(osfService.lightregistrations(url));
+    }
+
+    @Override
+    public CompletableFuture<List<LightRegistration>> lightregistrations(final String url,
+                                                                         final Map<String, String> params) {
+        return enqueue(osfService.lightregistrations(url, params));
+    }
+
+    @Override
+    public CompletableFuture<ResponseBody> stream(final String url) {
+        return enqueue(osfService.stream(url));
+    }
+
+    @Override
+    public CompletableFuture<User> user(final String url) {
+        return enqueue(osfService.user(url));
+    }
+
+    @Override
+    public CompletableFuture<User> user(final String url, final Map<String, String> params) {
+        return enqueue(osfService.user(url, params));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> users(final String url) {
+        return enqueue(osfService.users(url));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> users(final String url, final Map<String, String> params) {
+        return enqueue(osfService.users(url, params));
+    }
+
+    @Override
+    public CompletableFuture<User> userById(final String id) {
+        return enqueue(osfService.userById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<LightUser>> userIds() {
+        return enqueue(osfService.userIds());
+    }
+
+    @Override
+    public CompletableFuture<List<LightUser>> userIds(final Map<String, String> params) {
+        return enqueue(osfService.userIds(params));
+    }
+
+    @Override
+    public CompletableFuture<LightUser> lightuser(final String url) {
+        return enqueue(osfService.lightuser(url));
+    }
+
+    @Override
+    public CompletableFuture<List<LightUser>> lightusers(final String url) {
+        return enqueue(osfService.lightusers(url));
+    }
+
+    @Override
+    public CompletableFuture<Wiki> wiki(final String url) {
+        return enqueue(osfService.wiki(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Wiki>> wikis(final String url) {
+        return enqueue(osfService.wikis(url));
+    }
+
+    @Override
+    public CompletableFuture<List<Wiki>> wikis(final String url, final Map<String, String> params) {
+        return enqueue(osfService.wikis(url, params));
+    }
+
+}
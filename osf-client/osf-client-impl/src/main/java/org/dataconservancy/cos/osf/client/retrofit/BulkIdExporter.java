@@ -0,0 +1,472 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.github.jasminb.jsonapi.annotations.Type;
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import org.dataconservancy.cos.osf.client.model.LightNode;
+import org.dataconservancy.cos.osf.client.support.IoExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Exports the identifiers of every resource in a collection of nodes or registrations (optionally filtered, e.g.
+ * {@code nodes/?filter[public]=true}) to a file of newline-delimited JSON, one {@link LightNode light} record per
+ * line:
+ * <pre>
+ * {"id":"y5bnc","type":"registrations","date_created":"2016-04-28T14:39:53.000Z","date_modified":"..."}
+ * </pre>
+ * <p>
+ * Enumerating a large collection with a {@link PaginatedList} retrieves one page at a time, and holds every record in
+ * memory.  The exporter instead reads the first page, computes the number of pages from the pagination metadata
+ * ({@code links.meta.total} and {@code links.meta.per_page}), and retrieves up to {@code concurrency} of the following
+ * pages at once.  Pages are converted and written in order as they arrive, through a buffered {@link FileChannel}, so
+ * only the pages in flight are held in memory.  If the collection carries no pagination metadata, pages are retrieved
+ * one at a time until a page has no {@code next} link.
+ * </p>
+ * <p>
+ * Every {@value #CHECKPOINT_INTERVAL} pages, and when an export fails, the output is forced to disk and the number of
+ * pages and bytes written is recorded in a checkpoint file beside the output ({@code <output>.checkpoint}).  Exporting
+ * the same collection to the same output again resumes from the checkpoint: the output is truncated to the
+ * checkpointed length, and the export continues from the following page.  The checkpoint is removed when the export
+ * completes.  Because pages are addressed by number, records added to (or removed from) the collection between
+ * attempts may be exported twice (or skipped); sorting the collection by creation date (e.g.
+ * {@code sort=date_created}) keeps the pages of earlier records stable.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class BulkIdExporter {
+
+    /**
+     * Suffix appended to the name of the output to form the name of its checkpoint file
+     */
+    public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /**
+     * The default number of records requested per page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Number of pages written between checkpoints
+     */
+    static final int CHECKPOINT_INTERVAL = 10;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkIdExporter.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final OkHttpClient okHttp;
+
+    private final ResourceConverter converter;
+
+    private final int concurrency;
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    /**
+     * Constructs an exporter.
+     *
+     * @param okHttp the OkHttp client used to retrieve pages
+     * @param converter the JSON-API converter, which must be able to convert the exported type
+     * @param concurrency the maximum number of pages retrieved at once
+     */
+    public BulkIdExporter(final OkHttpClient okHttp, final ResourceConverter converter, final int concurrency) {
+        if (okHttp == null) {
+            throw new IllegalArgumentException("OkHttp must not be null.");
+        }
+        if (converter == null) {
+            throw new IllegalArgumentException("Converter must not be null.");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be a positive integer.");
+        }
+
+        this.okHttp = okHttp;
+        this.converter = converter;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * The number of records requested per page, {@value #DEFAULT_PAGE_SIZE} by default.
+     *
+     * @return the page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * The number of records requested per page.  Larger pages mean fewer requests.  An export may only be resumed
+     * with the page size it was started with.
+     *
+     * @param pageSize the page size
+     */
+    public void setPageSize(final int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be a positive integer.");
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Exports the records of the collection at the supplied URL to the supplied file, resuming a previous export of
+     * the collection to the file if a checkpoint exists.
+     *
+     * @param url the URL of the collection, which may carry a query (e.g. filters, or a sort order)
+     * @param type the class of the records, e.g. {@code LightNode} or {@code LightRegistration}
+     * @param output the file the records are written to
+     * @param <T> the type of the records
+     * @return the number of records in the file
+     * @throws IOException if a page cannot be retrieved or read, the output cannot be written, or the export is
+     *                     interrupted
+     * @throws IllegalStateException if the checkpoint of the output records a different export
+     */
+    public <T extends LightNode> long export(final String url, final Class<T> type, final File output)
+            throws IOException {
+        if (url == null || url.trim().isEmpty()) {
+            throw new IllegalArgumentException("URL must not be empty or null.");
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Type must not be null.");
+        }
+        if (output == null) {
+            throw new IllegalArgumentException("Output must not be null.");
+        }
+        if (HttpUrl.parse(url) == null) {
+            throw new IllegalArgumentException("Unable to parse URL '" + url + "'");
+        }
+
+        final Type jsonApiType = type.getAnnotation(Type.class);
+        if (jsonApiType == null) {
+            throw new IllegalArgumentException("Type '" + type.getName() + "' must be annotated with @Type.");
+        }
+
+        final File checkpointFile = new File(output.getPath() + CHECKPOINT_SUFFIX);
+        final Checkpoint checkpoint = Checkpoint.resume(checkpointFile, output, url, jsonApiType.value(), pageSize);
+        if (checkpoint.nextPage > 1) {
+            LOG.info("Resuming export of '{}' to '{}' from page {} ({} records)", url, output, checkpoint.nextPage,
+                    checkpoint.records);
+        }
+
+        final ExecutorService executor = IoExecutors.newIoExecutor("osf-exporter-", concurrency);
+
+        try (FileChannel channel = FileChannel.open(output.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(checkpoint.bytes);
+            channel.position(checkpoint.bytes);
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+            try {
+                exportPages(url, type, jsonApiType.value(), channel, buffer, executor, checkpoint, checkpointFile);
+                drain(buffer, channel);
+                channel.force(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                checkpointQuietly(buffer, channel, checkpoint, checkpointFile, null);
+                throw new InterruptedIOException("Interrupted exporting '" + url + "'");
+            } catch (IOException | RuntimeException e) {
+                checkpointQuietly(buffer, channel, checkpoint, checkpointFile, e);
+                throw e;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Files.deleteIfExists(checkpointFile.toPath());
+        LOG.info("Exported {} records of '{}' to '{}'", checkpoint.records, url, output);
+        return checkpoint.records;
+    }
+
+    /**
+     * Retrieves, converts, and writes each remaining page of the collection, beginning with the page following the
+     * checkpoint.  Pages following the first are retrieved concurrently when the number of pages is known.
+     */
+    private <T extends LightNode> void exportPages(final String url, final Class<T> type, final String typeName,
+                                                   final FileChannel channel, final ByteBuffer buffer,
+                                                   final ExecutorService executor, final Checkpoint checkpoint,
+                                                   final File checkpointFile)
+            throws IOException, InterruptedException {
+        int page = checkpoint.nextPage;
+        Page<T> current = read(fetch(pageUrl(url, page, pageSize)), type);
+        final int lastPage = lastPage(current);
+        LOG.debug("Exporting page {} of {} of '{}'", page, lastPage < 0 ? "(unknown)" : lastPage, url);
+
+        final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        int requested = page;
+        while (true) {
+            write(current, typeName, buffer, channel);
+            checkpoint.completed(page, channel.position() + buffer.position(), current.size());
+            if (page % CHECKPOINT_INTERVAL == 0) {
+                checkpoint(buffer, channel, checkpoint, checkpointFile);
+            }
+
+            final boolean done = lastPage > 0 ? page >= lastPage : current.isEmpty() || current.getNext() == null;
+            if (done) {
+                return;
+            }
+
+            page++;
+            if (lastPage > 0) {
+                while (requested < lastPage && pending.size() < concurrency) {
+                    final String pageUrl = pageUrl(url, ++requested, pageSize);
+                    pending.add(executor.submit(() -> fetch(pageUrl)));
+                }
+                try {
+                    current = read(pending.poll().get(), type);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+                }
+            } else {
+                current = read(fetch(pageUrl(url, page, pageSize)), type);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the document at the supplied URL.
+     *
+     * @throws IOException if the document cannot be retrieved
+     */
+    private byte[] fetch(final String url) throws IOException {
+        final Response response = okHttp.newCall(new Request.Builder().url(url).build()).execute();
+        if (!response.isSuccessful()) {
+            response.body().close();
+            throw new IOException("Unable to retrieve '" + url + "': " + response.code() + " " +
+                    response.message());
+        }
+        return response.body().bytes();
+    }
+
+    private <T> Page<T> read(final byte[] document, final Class<T> type) throws IOException {
+        return StreamingPageReader.read(converter, new ByteArrayInputStream(document), type);
+    }
+
+    /**
+     * Encodes the records of a page as newline-delimited JSON, and writes them to the buffer, draining the buffer to
+     * the channel as it fills.
+     */
+    private static void write(final Page<? extends LightNode> page, final String typeName, final ByteBuffer buffer,
+                              final FileChannel channel) throws IOException {
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream(page.size() * 96);
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(encoded)) {
+            for (LightNode record : page) {
+                generator.writeStartObject();
+                generator.writeStringField("id", record.getId());
+                generator.writeStringField("type", typeName);
+                generator.writeStringField("date_created", record.getDate_created());
+                generator.writeStringField("date_modified", record.getDate_modified());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+
+        final byte[] bytes = encoded.toByteArray();
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain(buffer, channel);
+            }
+            final int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private static void drain(final ByteBuffer buffer, final FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Forces the records written so far to disk, and then records the checkpoint.
+     */
+    private static void checkpoint(final ByteBuffer buffer, final FileChannel channel, final Checkpoint checkpoint,
+                                   final File checkpointFile) throws IOException {
+        drain(buffer, channel);
+        channel.force(false);
+        checkpoint.write(checkpointFile);
+    }
+
+    /**
+     * Records the checkpoint of a failed export, so that it may be resumed.  If the checkpoint cannot be recorded,
+     * the previous checkpoint (if any) is retained.
+     */
+    private static void checkpointQuietly(final ByteBuffer buffer, final FileChannel channel,
+                                          final Checkpoint checkpoint, final File checkpointFile,
+                                          final Exception cause) {
+        if (checkpoint.nextPage == 1) {
+            return;
+        }
+        try {
+            checkpoint(buffer, channel, checkpoint, checkpointFile);
+            LOG.info("Export failed after page {}; it may be resumed", checkpoint.nextPage - 1);
+        } catch (IOException e) {
+            LOG.warn("Unable to checkpoint export to '{}': {}", checkpointFile, e.getMessage());
+            if (cause != null) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Answers the number of the last page of a collection from the pagination metadata of one of its pages.
+     *
+     * @param page a page of the collection
+     * @return the number of the last page, or {@code -1} if the page carries no pagination metadata
+     */
+    static int lastPage(final Page<?> page) {
+        final Map<String, ?> meta = page.getMeta();
+        if (meta == null || !(meta.get("total") instanceof Number) || !(meta.get("per_page") instanceof Number)) {
+            return -1;
+        }
+
+        final long total = ((Number) meta.get("total")).longValue();
+        final long perPage = ((Number) meta.get("per_page")).longValue();
+        if (perPage < 1) {
+            return -1;
+        }
+        return (int) Math.max(1, (total + perPage - 1) / perPage);
+    }
+
+    /**
+     * Answers the URL of the numbered page of the collection at the supplied URL.
+     *
+     * @param url the URL of the collection
+     * @param page the page number, starting with 1
+     * @param pageSize the number of records per page
+     * @return the URL of the page
+     */
+    static String pageUrl(final String url, final int page, final int pageSize) {
+        return HttpUrl.parse(url).newBuilder()
+                .setQueryParameter("page", String.valueOf(page))
+                .setQueryParameter("page[size]", String.valueOf(pageSize))
+                .build().toString();
+    }
+
+    /**
+     * The progress of an export: the next page to retrieve, and the number of bytes and records written before it.
+     */
+    private static class Checkpoint {
+
+        private final String url;
+
+        private final String type;
+
+        private final int pageSize;
+
+        private int nextPage = 1;
+
+        private long bytes;
+
+        private long records;
+
+        private Checkpoint(final String url, final String type, final int pageSize) {
+            this.url = url;
+            this.type = type;
+            this.pageSize = pageSize;
+        }
+
+        private void completed(final int page, final long bytes, final int records) {
+            this.nextPage = page + 1;
+            this.bytes = bytes;
+            this.records += records;
+        }
+
+        /**
+         * Answers the checkpoint of a previous export of the collection to the output, or a new checkpoint if there
+         * is none.
+         */
+        private static Checkpoint resume(final File checkpointFile, final File output, final String url,
+                                         final String type, final int pageSize) throws IOException {
+            final Checkpoint checkpoint = new Checkpoint(url, type, pageSize);
+            if (!checkpointFile.exists()) {
+                return checkpoint;
+            }
+
+            final JsonNode previous = MAPPER.readTree(checkpointFile);
+            if (!url.equals(previous.path("url").asText()) || !type.equals(previous.path("type").asText()) ||
+                    pageSize != previous.path("pageSize").asInt()) {
+                throw new IllegalStateException("Checkpoint '" + checkpointFile + "' records an export of " +
+                        previous.path("type").asText() + " from '" + previous.path("url").asText() + "' with " +
+                        "page size " + previous.path("pageSize").asInt() + ": remove it to start a new export");
+            }
+
+            checkpoint.nextPage = previous.path("nextPage").asInt(1);
+            checkpoint.bytes = previous.path("bytes").asLong();
+            checkpoint.records = previous.path("records").asLong();
+            if (output.length() < checkpoint.bytes) {
+                throw new IllegalStateException("Output '" + output + "' is shorter than recorded by checkpoint '" +
+                        checkpointFile + "': remove the checkpoint to start a new export");
+            }
+            return checkpoint;
+        }
+
+        /**
+         * Replaces the checkpoint file atomically.
+         */
+        private void write(final File checkpointFile) throws IOException {
+            final ObjectNode json = MAPPER.createObjectNode();
+            json.put("url", url);
+            json.put("type", type);
+            json.put("pageSize", pageSize);
+            json.put("nextPage", nextPage);
+            json.put("bytes", bytes);
+            json.put("records", records);
+
+            final File tmp = new File(checkpointFile.getPath() + ".tmp");
+            MAPPER.writeValue(tmp, json);
+            Files.move(tmp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import org.dataconservancy.cos.osf.client.model.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Walks the folder trees of the storage providers of a node in parallel, handing each file found to a consumer as soon
+ * as it is found.  Files may be processed (e.g. downloaded) while the walk continues, rather than after the whole tree
+ * has been enumerated.
+ * <p>
+ * Each folder listing is a task of a work-stealing {@link ForkJoinPool}: a listing is paged through with
+ * {@link OsfService#files(String, Map)}, and each sub-folder found is forked as a new task immediately, so idle
+ * threads take up sub-folders while their parent is still being listed.  Listings are requested with a sparse
+ * fieldset that omits the {@code files}, {@code versions} and {@code comments} relationships, so the JSON-API
+ * converter does not resolve the tree beneath each listed folder depth-first; accordingly the
+ * {@link File#getFiles() files}, versions and comments of the files handed to the consumer are {@code null}.
+ * </p>
+ * <p>
+ * The listing URL of a folder is composed from the files URL of the node, the storage provider, and the path of the
+ * folder (e.g. {@code http://api.osf.io/v2/nodes/r5s4u/files/osfstorage/57570a07c7950c0045ac803e/}), which is how
+ * the OSF composes the {@code files} relationship of a folder.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class FileTreeWalker {
+
+    /**
+     * The attributes and relationships of each listed file: everything but the relationships the converter would
+     * otherwise resolve
+     */
+    static final String[] FIELDS = {"name", "kind", "path", "materialized_path", "provider", "size", "date_created",
+            "date_modified", "last_touched", "current_version", "guid", "tags", "extra", "node"};
+
+    static final String FOLDER = "folder";
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileTreeWalker.class);
+
+    private final OsfService osfService;
+
+    private final int parallelism;
+
+    private final Map<String, String> params;
+
+    /**
+     * Constructs a walker listing folders with the supplied service.
+     *
+     * @param osfService the OSF service
+     * @param parallelism the number of folders listed at once
+     */
+    public FileTreeWalker(final OsfService osfService, final int parallelism) {
+        if (osfService == null) {
+            throw new IllegalArgumentException("OSF service must not be null.");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be a positive integer.");
+        }
+
+        this.osfService = osfService;
+        this.parallelism = parallelism;
+        this.params = new JsonApiParams().fields("files", FIELDS).pageSize(100).asMap();
+    }
+
+    /**
+     * Walks the folder trees of every storage provider of the node at the supplied URL.
+     *
+     * @param nodeUrl the URL of a node or registration, e.g. {@code http://api.osf.io/v2/nodes/r5s4u/}
+     * @param consumer accepts each file found; invoked concurrently by the threads of the walk
+     * @return the number of files found
+     * @throws RuntimeException if a listing cannot be retrieved, or the consumer fails
+     */
+    public long walk(final String nodeUrl, final Consumer<File> consumer) {
+        return walk(nodeUrl, list(filesUrl(nodeUrl)), consumer);
+    }
+
+    /**
+     * Walks the folder trees of the supplied storage providers of the node at the supplied URL.  Files among the
+     * {@code providers} are handed to the consumer as they are.
+     *
+     * @param nodeUrl the URL of a node or registration, e.g. {@code http://api.osf.io/v2/nodes/r5s4u/}
+     * @param providers the storage providers (or folders) of the node to walk
+     * @param consumer accepts each file found; invoked concurrently by the threads of the walk
+     * @return the number of files found
+     * @throws RuntimeException if a listing cannot be retrieved, or the consumer fails
+     */
+    public long walk(final String nodeUrl, final Collection<File> providers, final Consumer<File> consumer) {
+        if (providers == null) {
+            throw new IllegalArgumentException("Providers must not be null.");
+        }
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer must not be null.");
+        }
+
+        final String filesUrl = filesUrl(nodeUrl);
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final long found = pool.invoke(new FolderTask(filesUrl, null, providers, consumer));
+            LOG.debug("Found {} file(s) beneath '{}'", found, filesUrl);
+            return found;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Lists the files and folders at the supplied URL, paging through the listing as it is iterated.
+     *
+     * @param url the listing URL
+     * @return the files and folders
+     */
+    private List<File> list(final String url) {
+        final Response<List<File>> response;
+        try {
+            response = osfService.files(url, params).execute();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        if (response.body() == null) {
+            throw new RuntimeException("Unable to list '" + url + "': " + response.code() + " " +
+                    response.message());
+        }
+        return response.body();
+    }
+
+    /**
+     * Answers the URL listing the storage providers of a node, composed from the URL of the node.
+     */
+    static String filesUrl(final String nodeUrl) {
+        if (nodeUrl == null || nodeUrl.trim().isEmpty()) {
+            throw new IllegalArgumentException("Node URL must not be empty or null.");
+        }
+        String url = nodeUrl.trim();
+        if (url.indexOf('?') > -1) {
+            url = url.substring(0, url.indexOf('?'));
+        }
+        return url.endsWith("/") ? url + "files/" : url + "/files/";
+    }
+
+    /**
+     * Answers the URL listing the supplied folder, composed from the files URL of its node, its storage provider, and
+     * its path.
+     */
+    static String folderUrl(final String filesUrl, final File folder) {
+        final String path = folder.getPath() == null ? "/" : folder.getPath();
+        final String url = filesUrl + folder.getProvider() + (path.startsWith("/") ? path : "/" + path);
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    /**
+     * Lists a folder, handing its files to the consumer and forking a task for each of its sub-folders.
+     */
+    private class FolderTask extends RecursiveTask<Long> {
+
+        private final String filesUrl;
+
+        private final String url;
+
+        private final Collection<File> children;
+
+        private final Consumer<File> consumer;
+
+        /**
+         * @param filesUrl the files URL of the node
+         * @param url the listing URL of the folder, or {@code null} if its children are supplied
+         * @param children the children of the folder, or {@code null} if they are to be listed
+         * @param consumer accepts each file found
+         */
+        private FolderTask(final String filesUrl, final String url, final Collection<File> children,
+                           final Consumer<File> consumer) {
+            this.filesUrl = filesUrl;
+            this.url = url;
+            this.children = children;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected Long compute() {
+            final List<FolderTask> folders = new ArrayList<>();
+            long found = 0;
+            for (File child : children != null ? children : list(url)) {
+                if (FOLDER.equals(child.getKind())) {
+                    final FolderTask folder = new FolderTask(filesUrl, folderUrl(filesUrl, child), null, consumer);
+                    folder.fork();
+                    folders.add(folder);
+                } else {
+                    consumer.accept(child);
+                    found++;
+                }
+            }
+
+            for (FolderTask folder : folders) {
+                found += folder.join();
+            }
+            return found;
+        }
+    }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jasminb.jsonapi.RelType;
+import com.github.jasminb.jsonapi.ResolutionStrategy;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.github.jasminb.jsonapi.annotations.Relationship;
+import com.github.jasminb.jsonapi.annotations.Type;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import org.dataconservancy.cos.osf.client.support.IoExecutors;
+import org.dataconservancy.cos.osf.client.support.PrefetchedDocuments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Retrieves the JSON-API documents of a resource hierarchy (e.g. a registration, its components, their storage
+ * providers, and folders) breadth-first, before the hierarchy is converted to model objects.  The JSON-API converter
+ * resolves relationships depth-first, one request at a time; retrieving each level of the hierarchy concurrently
+ * instead means that the time taken to retrieve a hierarchy is proportional to its depth rather than to the number of
+ * resources in it.
+ * <p>
+ * The crawl is planned from the model classes: for each JSON-API {@link Type type}, the relationships the converter
+ * resolves to objects ({@code resolve = true}, {@code strategy = OBJECT}, {@code relType = RELATED}) are followed.
+ * Starting from a URL, the crawler maintains a frontier of pending relationship URLs.  Every URL of the frontier is
+ * retrieved concurrently, subject to a concurrency budget shared by the whole crawl; the retrieved documents are then
+ * examined for the relationships of their resources, which form the next frontier.  Documents embedded in a response
+ * (see {@link PrefetchedDocuments}) are examined without being retrieved.
+ * </p>
+ * <p>
+ * Retrieved documents are held by a {@link PrefetchedDocuments.Scope}, so that the converter resolves relationships
+ * from memory when the hierarchy is converted within the scope:
+ * </p>
+ * <pre>
+ * Registration registration = new HierarchyCrawler(okHttp, scanner.getDetectedClasses(), 8)
+ *         .read(registrationUrl, resourceConverter, Registration.class);
+ * </pre>
+ * <p>
+ * The crawler is an optimization only: a document that cannot be retrieved is skipped, and is requested again (and
+ * its failure reported) by the converter.  Only the first page of a related collection is retrieved, which is all the
+ * converter resolves.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class HierarchyCrawler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HierarchyCrawler.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final OkHttpClient okHttp;
+
+    private final Map<String, Set<String>> plan;
+
+    private final int concurrency;
+
+    /**
+     * Constructs a crawler planned from the supplied model classes.
+     *
+     * @param okHttp the OkHttp client used to retrieve documents
+     * @param modelClasses the classes representing JSON-API types, e.g. from a {@code ModelClassScanner}
+     * @param concurrency the maximum number of documents retrieved at once
+     */
+    public HierarchyCrawler(final OkHttpClient okHttp, final Collection<Class<?>> modelClasses,
+                            final int concurrency) {
+        if (okHttp == null) {
+            throw new IllegalArgumentException("OkHttp must not be null.");
+        }
+        if (modelClasses == null) {
+            throw new IllegalArgumentException("Model classes must not be null.");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be a positive integer.");
+        }
+
+        this.okHttp = okHttp;
+        this.plan = plan(modelClasses);
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Crawls the hierarchy at the supplied URL, and converts the document at the URL using the supplied converter.
+     * Relationships of the hierarchy are resolved from the crawled documents.  The converter must resolve
+     * relationships using {@link PrefetchedDocuments} (e.g. with the {@code ResourceConverterGlobalResolver}).
+     *
+     * @param url the URL of the resource at the root of the hierarchy
+     * @param converter the JSON-API converter
+     * @param type the class of the resource at the root of the hierarchy
+     * @param <T> the type of the resource
+     * @return the resource, or {@code null} if the document at the URL could not be retrieved
+     * @throws IOException if the crawl is interrupted
+     */
+    public <T> T read(final String url, final ResourceConverter converter, final Class<T> type) throws IOException {
+        try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+            crawl(url, scope);
+            final byte[] document = scope.get(url);
+            return document == null ? null : converter.readObject(document, type);
+        }
+    }
+
+    /**
+     * Crawls the hierarchy at the supplied URL, holding each retrieved document (including the document at the URL)
+     * in the supplied scope.
+     *
+     * @param url the URL of the resource at the root of the hierarchy
+     * @param scope holds the retrieved documents, must be open on the current thread
+     * @return the number of documents retrieved
+     * @throws IOException if the crawl is interrupted
+     */
+    public int crawl(final String url, final PrefetchedDocuments.Scope scope) throws IOException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL must not be null.");
+        }
+        if (scope == null) {
+            throw new IllegalArgumentException("Scope must not be null.");
+        }
+
+        final ExecutorService executor = IoExecutors.newIoExecutor("osf-crawler-", concurrency);
+
+        final Set<String> seen = new HashSet<>();
+        seen.add(url);
+        List<String> frontier = Collections.singletonList(url);
+        int depth = 0;
+        int retrieved = 0;
+        try {
+            while (!frontier.isEmpty()) {
+                LOG.debug("Retrieving {} document(s) at depth {} of '{}'", frontier.size(), depth, url);
+                final Map<String, Future<byte[]>> level = new LinkedHashMap<>();
+                for (String pending : frontier) {
+                    level.put(pending, executor.submit(() -> fetch(pending)));
+                }
+
+                final Set<String> next = new LinkedHashSet<>();
+                for (Map.Entry<String, Future<byte[]>> fetch : level.entrySet()) {
+                    final byte[] document = fetch.getValue().get();
+                    if (document != null) {
+                        retrieved++;
+                        examine(fetch.getKey(), document, scope, seen, next);
+                    }
+                }
+
+                frontier = new ArrayList<>(next);
+                depth++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted crawling '" + url + "'");
+        } catch (ExecutionException e) {
+            // fetch(String) handles its own failures
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOG.debug("Retrieved {} document(s) of '{}' in {} level(s)", retrieved, url, depth);
+        return retrieved;
+    }
+
+    /**
+     * Answers the relationships followed by the crawler for each JSON-API type.
+     *
+     * @return the names of the relationships followed, keyed by JSON-API type
+     */
+    Map<String, Set<String>> getPlan() {
+        return plan;
+    }
+
+    /**
+     * Holds a retrieved (or embedded) document in the scope, and adds the URLs of the relationships of its resources
+     * that are not already held to the next frontier.  Embedded documents are examined in turn.
+     */
+    private void examine(final String url, final byte[] document, final PrefetchedDocuments.Scope scope,
+                         final Set<String> seen, final Set<String> next) throws IOException {
+        final JsonNode root;
+        try {
+            root = MAPPER.readTree(document);
+        } catch (IOException e) {
+            LOG.debug("Unable to parse '{}', it will be retrieved by the converter: {}", url, e.getMessage());
+            return;
+        }
+
+        if (scope.register(root)) {
+            scope.hold(url, MAPPER.writeValueAsBytes(root));
+        } else {
+            scope.hold(url, document);
+        }
+
+        final JsonNode data = root.get("data");
+        final List<JsonNode> resources = new ArrayList<>();
+        if (data != null && data.isArray()) {
+            data.forEach(resources::add);
+        } else if (data != null && data.isObject()) {
+            resources.add(data);
+        }
+
+        for (JsonNode resource : resources) {
+            final Set<String> relationships = plan.get(resource.path("type").asText());
+            if (relationships == null) {
+                continue;
+            }
+            for (String relationship : relationships) {
+                final String href = relatedHref(resource.path("relationships").path(relationship));
+                if (href == null || !seen.add(href)) {
+                    continue;
+                }
+                final byte[] embedded = scope.get(href);
+                if (embedded != null) {
+                    examine(href, embedded, scope, seen, next);
+                } else {
+                    next.add(href);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the document at the supplied URL.
+     *
+     * @return the document, or {@code null} if it could not be retrieved
+     */
+    private byte[] fetch(final String url) {
+        try {
+            final Response response = okHttp.newCall(new Request.Builder().url(url).build()).execute();
+            if (!response.isSuccessful()) {
+                LOG.debug("Unable to retrieve '{}', it will be retrieved by the converter: {} {}", url,
+                        response.code(), response.message());
+                response.body().close();
+                return null;
+            }
+            return response.body().bytes();
+        } catch (IOException e) {
+            LOG.debug("Unable to retrieve '{}', it will be retrieved by the converter: {}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Plans a crawl from the supplied model classes: the relationships resolved to objects by the converter, keyed by
+     * the JSON-API type of the class declaring them (or inheriting them).
+     *
+     * @param modelClasses classes annotated with {@link Type}
+     * @return the relationships to follow, keyed by JSON-API type
+     */
+    static Map<String, Set<String>> plan(final Collection<Class<?>> modelClasses) {
+        final Map<String, Set<String>> plan = new HashMap<>();
+        for (Class<?> modelClass : modelClasses) {
+            final Type type = modelClass.getAnnotation(Type.class);
+            if (type == null) {
+                continue;
+            }
+
+            final Set<String> relationships = new LinkedHashSet<>();
+            for (Class<?> c = modelClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    final Relationship relationship = field.getAnnotation(Relationship.class);
+                    if (relationship != null && relationship.resolve() &&
+                            relationship.strategy() == ResolutionStrategy.OBJECT &&
+                            relationship.relType() == RelType.RELATED) {
+                        relationships.add(relationship.value());
+                    }
+                }
+            }
+
+            if (!relationships.isEmpty()) {
+                plan.computeIfAbsent(type.value(), t -> new LinkedHashSet<>()).addAll(relationships);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Answers the related link of a JSON-API relationship, which the OSF renders either as a string, or as an object
+     * with an {@code href}.
+     */
+    private static String relatedHref(final JsonNode relationship) {
+        final JsonNode related = relationship.path("links").path("related");
+        final JsonNode href = related.isObject() ? related.path("href") : related;
+        return href.isTextual() ? href.asText() : null;
+    }
+
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.github.jasminb.jsonapi.annotations.Type;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import org.dataconservancy.cos.osf.client.config.JacksonOsfConfigurationService;
+import org.dataconservancy.cos.osf.client.config.JacksonWbConfigurationService;
+import org.dataconservancy.cos.osf.client.config.OsfClientConfiguration;
+import org.dataconservancy.cos.osf.client.config.OsfConfigurationService;
+import org.dataconservancy.cos.osf.client.config.WbConfigurationService;
+import org.dataconservancy.cos.osf.client.support.ApiVersionInterceptor;
+import org.dataconservancy.cos.osf.client.support.AuthInterceptor;
+import org.dataconservancy.cos.osf.client.support.BeanAccessibleOkHttpClient;
+import org.dataconservancy.cos.osf.client.support.HttpMetrics;
+import org.dataconservancy.cos.osf.client.support.HttpMetricsReporter;
+import org.dataconservancy.cos.osf.client.support.LazyResourceConverter;
+import org.dataconservancy.cos.osf.client.support.MetricsInterceptor;
+import org.dataconservancy.cos.osf.client.support.ModelClassScanner;
+import org.dataconservancy.cos.osf.client.support.RateLimitInterceptor;
+import org.dataconservancy.cos.osf.client.support.ResourceConverterFactory;
+import org.dataconservancy.cos.osf.client.support.ResourceConverterGlobalResolver;
+import org.dataconservancy.cos.osf.client.support.RetryInterceptor;
+
+import java.util.function.Supplier;
+
+/**
+ * Wires the OSF client programmatically, as an alternative to the Spring application context in
+ * {@code org/dataconservancy/cos/osf/client/retrofit/applicationContext.xml} (and the configuration services of
+ * {@code org/dataconservancy/cos/osf/client/config/applicationContext.xml}).  The components, and the relationships
+ * between them, are the same as those of the application context; the difference is that nothing is created until it
+ * is asked for.  Answering the {@link #getOkHttpClient() OkHttpClient} reads the configuration and creates the client,
+ * but does not scan for model classes, or create a {@code ResourceConverter} or Retrofit service.  Short-lived
+ * processes, like a single packaging run, are able to make their first request without paying for the XML parsing,
+ * expression evaluation and eager singleton creation of the application context.
+ * <p>
+ * Components shared as singletons by the application context ({@code okHttpClient}, {@code httpMetrics},
+ * {@code modelClassScanner}, the configuration services, ...) are created once, and answered by every call to their
+ * accessor.  Prototype components ({@code resourceConverter}, {@code osfService}) are created anew on each call.
+ * Singletons are created at most once, even when their accessors are invoked concurrently.
+ * </p>
+ * <p>
+ * The OSF client configuration is read once, when the {@code OkHttpClient} is created, rather than by each request
+ * as the {@code AuthInterceptor} of the application context does.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class OsfClientComponents implements AutoCloseable {
+
+    /**
+     * System property naming the OSF client configuration resource
+     */
+    static final String CONFIGURATION_PROPERTY = "osf.client.conf";
+
+    /**
+     * The configuration resource used when {@link #CONFIGURATION_PROPERTY} is not set, as in the application context
+     */
+    static final String DEFAULT_CONFIGURATION = "/org/dataconservancy/cos/osf/client/config/osf-config.json";
+
+    /**
+     * System property setting the period of the HTTP metrics report, in milliseconds
+     */
+    static final String METRICS_PERIOD_PROPERTY = "osf.client.metrics.period.ms";
+
+    /**
+     * The period of the HTTP metrics report used when {@link #METRICS_PERIOD_PROPERTY} is not set: metrics are not
+     * reported
+     */
+    static final long DEFAULT_METRICS_PERIOD_MS = 0;
+
+    /**
+     * System property which, when {@code true}, registers the HTTP metrics of each endpoint with JMX
+     */
+    static final String METRICS_JMX_PROPERTY = "osf.client.metrics.jmx";
+
+    /**
+     * The package containing the OSF model classes
+     */
+    static final String MODEL_PACKAGE = "org.dataconservancy.cos.osf.client.model";
+
+    private final Singleton<OsfConfigurationService> osfConfigurationSvc;
+
+    private final Singleton<WbConfigurationService> wbConfigurationSvc;
+
+    private final Singleton<HttpMetrics> httpMetrics;
+
+    private final Singleton<HttpMetricsReporter> httpMetricsReporter;
+
+    private final Singleton<OkHttpClient> okHttpClient;
+
+    private final Singleton<ResourceConverterGlobalResolver> relationshipResolver;
+
+    private final Singleton<ModelClassScanner> modelClassScanner;
+
+    private final Singleton<ResourceConverterFactory> resourceConverterFactory;
+
+    /**
+     * Whether the HTTP metrics of these components are owned by another instance
+     */
+    private final boolean derived;
+
+    /**
+     * Wires the client using the configuration resource named by the {@code osf.client.conf} system property, or the
+     * default resource of the application context if the property is not set.  The period of the HTTP metrics report
+     * is taken from the {@code osf.client.metrics.period.ms} system property, and metrics are registered with JMX if
+     * the {@code osf.client.metrics.jmx} system property is {@code true}.  By default, metrics are neither reported
+     * nor registered.
+     */
+    public OsfClientComponents() {
+        this(System.getProperty(CONFIGURATION_PROPERTY, DEFAULT_CONFIGURATION),
+                Long.getLong(METRICS_PERIOD_PROPERTY, DEFAULT_METRICS_PERIOD_MS),
+                Boolean.getBoolean(METRICS_JMX_PROPERTY));
+    }
+
+    /**
+     * Wires the client using the supplied configuration resource, which may be a classpath resource or a
+     * {@code file:} URL.  HTTP metrics are not registered with JMX.
+     *
+     * @param configurationResource the OSF client configuration resource
+     * @param metricsPeriodMs the period of the HTTP metrics report, in milliseconds, {@code 0} to disable the report
+     */
+    public OsfClientComponents(final String configurationResource, final long metricsPeriodMs) {
+        this(configurationResource, metricsPeriodMs, false);
+    }
+
+    /**
+     * Wires the client using the supplied configuration resource, which may be a classpath resource or a
+     * {@code file:} URL.
+     *
+     * @param configurationResource the OSF client configuration resource
+     * @param metricsPeriodMs the period of the HTTP metrics report, in milliseconds, {@code 0} to disable the report
+     * @param registerMBeans whether to register the HTTP metrics of each endpoint with JMX
+     */
+    public OsfClientComponents(final String configurationResource, final long metricsPeriodMs,
+                               final boolean registerMBeans) {
+        if (configurationResource == null || configurationResource.trim().length() == 0) {
+            throw new IllegalArgumentException("Configuration resource must not be empty or null.");
+        }
+        if (metricsPeriodMs < 0) {
+            throw new IllegalArgumentException("Metrics period must not be negative.");
+        }
+
+        osfConfigurationSvc = new Singleton<>(() -> new JacksonOsfConfigurationService(configurationResource));
+        wbConfigurationSvc = new Singleton<>(() -> new JacksonWbConfigurationService(configurationResource));
+        httpMetrics = new Singleton<>(() -> new HttpMetrics(registerMBeans));
+        httpMetricsReporter = new Singleton<>(() -> {
+            final HttpMetricsReporter reporter = new HttpMetricsReporter(httpMetrics.get(), metricsPeriodMs);
+            reporter.start();
+            return reporter;
+        });
+        okHttpClient = new Singleton<>(this::newOkHttpClient);
+        relationshipResolver = new Singleton<>(() -> new ResourceConverterGlobalResolver(okHttpClient.get()));
+        modelClassScanner = new Singleton<>(() -> new ModelClassScanner(MODEL_PACKAGE, Type.class));
+        resourceConverterFactory = new Singleton<>(() -> {
+            final ResourceConverterFactory factory = new ResourceConverterFactory();
+            factory.setLazyRelationships(osfConfigurationSvc.get().getConfiguration().isLazy_relationships());
+            return factory;
+        });
+        derived = false;
+    }
+
+    /**
+     * Components sharing everything but the {@code OkHttpClient} (and so the relationship resolver) with the supplied
+     * components.  The client is a copy of the shared client, sharing its connection pool and dispatcher, with the
+     * supplied interceptor added before the shared interceptors.
+     *
+     * @param parent the components to share
+     * @param interceptor the interceptor of the copied client
+     */
+    private OsfClientComponents(final OsfClientComponents parent, final Interceptor interceptor) {
+        osfConfigurationSvc = parent.osfConfigurationSvc;
+        wbConfigurationSvc = parent.wbConfigurationSvc;
+        httpMetrics = parent.httpMetrics;
+        httpMetricsReporter = parent.httpMetricsReporter;
+        okHttpClient = new Singleton<>(() -> {
+            final OkHttpClient client = parent.getOkHttpClient().clone();
+            client.interceptors().add(0, interceptor);
+            return client;
+        });
+        relationshipResolver = new Singleton<>(() -> new ResourceConverterGlobalResolver(okHttpClient.get()));
+        modelClassScanner = parent.modelClassScanner;
+        resourceConverterFactory = parent.resourceConverterFactory;
+        derived = true;
+    }
+
+    /**
+     * Answers components whose {@code OkHttpClient} applies the supplied interceptor before any other, for the work of
+     * a single caller (e.g. journaling the responses of one packaging run), while sharing the connection pool,
+     * configuration, metrics, and detected model classes of these components.  Closing the answered components has no
+     * effect; these components remain responsible for the HTTP metrics.
+     *
+     * @param interceptor the interceptor to apply first
+     * @return the derived components
+     */
+    public OsfClientComponents withInterceptor(final Interceptor interceptor) {
+        if (interceptor == null) {
+            throw new IllegalArgumentException("Interceptor must not be null.");
+        }
+        return new OsfClientComponents(this, interceptor);
+    }
+
+    /**
+     * The OSF configuration service ({@code osfConfigurationSvc}).
+     *
+     * @return the shared OSF configuration service
+     */
+    public OsfConfigurationService getOsfConfigurationService() {
+        return osfConfigurationSvc.get();
+    }
+
+    /**
+     * The Waterbutler configuration service ({@code wbConfigurationSvc}).
+     *
+     * @return the shared Waterbutler configuration service
+     */
+    public WbConfigurationService getWbConfigurationService() {
+        return wbConfigurationSvc.get();
+    }
+
+    /**
+     * The HTTP metrics registry ({@code httpMetrics}), whose metrics are periodically reported once the
+     * {@code OkHttpClient} has been created, if a reporting period was supplied.
+     *
+     * @return the shared HTTP metrics registry
+     */
+    public HttpMetrics getHttpMetrics() {
+        return httpMetrics.get();
+    }
+
+    /**
+     * The client used to make HTTP requests to the OSF and Waterbutler ({@code okHttpClient}).  Interceptors are
+     * installed in the same order as the application context: retry, rate limit, metrics, authorization and API
+     * version.
+     *
+     * @return the shared OkHttp client
+     */
+    public OkHttpClient getOkHttpClient() {
+        return okHttpClient.get();
+    }
+
+    /**
+     * The scanner detecting the OSF model classes ({@code modelClassScanner}).
+     *
+     * @return the shared model class scanner
+     */
+    public ModelClassScanner getModelClassScanner() {
+        return modelClassScanner.get();
+    }
+
+    /**
+     * A new JSON-API converter ({@code resourceConverter}), which resolves relationships using the shared
+     * {@code OkHttpClient}.  Collection relationships are resolved on access if {@code lazy_relationships} is
+     * configured.
+     *
+     * @return a new resource converter
+     */
+    public ResourceConverter newResourceConverter() {
+        return resourceConverterFactory.get().newConverter(new ObjectMapper(), modelClassScanner.get(),
+                relationshipResolver.get());
+    }
+
+    /**
+     * A new Retrofit {@code OsfService} ({@code osfService}), with its own {@code ResourceConverter}.
+     *
+     * @return a new OSF service
+     */
+    public OsfService newOsfService() {
+        return newOsfService(newResourceConverter());
+    }
+
+    /**
+     * A new {@code AsyncOsfService}, adapting a new {@code OsfService}.  Requests are enqueued on the dispatcher of
+     * the shared {@code OkHttpClient}.  Responses are converted on dispatcher threads, so the service converts them
+     * with a {@link LazyResourceConverter}, whatever the {@code lazy_relationships} configuration: collection
+     * relationships are retrieved when they are first accessed, by the accessing thread, rather than by a dispatcher
+     * thread blocking on a request of its own.
+     *
+     * @return a new asynchronous OSF service
+     */
+    public AsyncOsfServiceAdapter newAsyncOsfService() {
+        final ResourceConverterFactory factory = new ResourceConverterFactory();
+        factory.setLazyRelationships(true);
+        final ResourceConverter converter = factory.newConverter(new ObjectMapper(), modelClassScanner.get(),
+                relationshipResolver.get());
+        return new AsyncOsfServiceAdapter(newOsfService(converter), okHttpClient.get(), converter);
+    }
+
+    private OsfService newOsfService(final ResourceConverter converter) {
+        final OkHttpClient client = okHttpClient.get();
+        return new RetrofitOsfServiceFactory(osfConfigurationSvc.get(), wbConfigurationSvc.get(), client,
+                new PaginatedConverterFactory(client, converter)).getOsfService(OsfService.class);
+    }
+
+    /**
+     * Makes a final HTTP metrics report, and unregisters the HTTP metrics from JMX.  Components that were never
+     * created are not created by closing.
+     */
+    @Override
+    public void close() {
+        if (derived) {
+            return;
+        }
+        if (httpMetricsReporter.isCreated()) {
+            httpMetricsReporter.get().close();
+        }
+        if (httpMetrics.isCreated()) {
+            httpMetrics.get().unregister();
+        }
+    }
+
+    private OkHttpClient newOkHttpClient() {
+        final OsfClientConfiguration config = osfConfigurationSvc.get().getConfiguration();
+        httpMetricsReporter.get();
+
+        final BeanAccessibleOkHttpClient client = new BeanAccessibleOkHttpClient();
+        client.interceptors().add(new RetryInterceptor(config.getMax_retries(), config.getRetry_base_delay_ms(),
+                config.getRetry_max_delay_ms()));
+        client.interceptors().add(new RateLimitInterceptor(config.getMax_requests_per_second(),
+                config.getMax_request_burst()));
+        client.interceptors().add(new MetricsInterceptor(httpMetrics.get()));
+        client.interceptors().add(new AuthInterceptor(config.getAuthHeader()));
+        client.interceptors().add(new ApiVersionInterceptor(config.getApiVersion()));
+        client.setConnectTimeout(config.getConnect_timeout_ms());
+        client.setWriteTimeout(config.getWrite_timeout_ms());
+        client.setReadTimeout(config.getRead_timeout_ms());
+        client.setMaxIdleConnections(config.getMax_idle_connections());
+        client.setKeepAliveDurationMs(config.getKeep_alive_duration_ms());
+        client.setMaxRequests(config.getMax_requests());
+        client.setMaxRequestsPerHost(config.getMax_requests_per_host());
+        client.setProtocolNames(config.getProtocols());
+        return client;
+    }
+
+    /**
+     * Creates its value on first use, at most once.
+     *
+     * @param <T> the type of the value
+     */
+    private static final class Singleton<T> implements Supplier<T> {
+
+        private final Supplier<T> factory;
+
+        private volatile T value;
+
+        private Singleton(final Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public T get() {
+            T result = value;
+            if (result == null) {
+                synchronized (this) {
+                    result = value;
+                    if (result == null) {
+                        result = factory.get();
+                        value = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private boolean isCreated() {
+            return value != null;
+        }
+    }
+
+}
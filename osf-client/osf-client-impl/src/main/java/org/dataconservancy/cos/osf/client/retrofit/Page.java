@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.github.jasminb.jsonapi.ResourceList;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A single page of a JSON-API collection: the resources on the page, and the pagination links and metadata of the
+ * collection.  Pages are either adapted from a {@link ResourceList} produced by the JSON-API converter, or read from a
+ * response by the {@link StreamingPageReader}.
+ *
+ * @author agent (agent@local)
+ */
+interface Page<T> extends Iterable<T> {
+
+    /**
+     * @return the URL of the first page, may be {@code null}
+     */
+    String getFirst();
+
+    /**
+     * @return the URL of the last page, may be {@code null}
+     */
+    String getLast();
+
+    /**
+     * @return the URL of the previous page, may be {@code null}
+     */
+    String getPrevious();
+
+    /**
+     * @return the URL of the next page, {@code null} if this is the last page
+     */
+    String getNext();
+
+    /**
+     * @return the pagination metadata (e.g. {@code total}, {@code per_page}), may be {@code null}
+     */
+    Map<String, ?> getMeta();
+
+    /**
+     * @return the number of resources on this page
+     */
+    int size();
+
+    /**
+     * @return true if there are no resources on this page
+     */
+    boolean isEmpty();
+
+    /**
+     * Adapts the supplied {@code ResourceList} as a {@code Page}.  The list is not copied: each method delegates to
+     * the list.
+     *
+     * @param resources the resources
+     * @param <T> the type of resource
+     * @return the page
+     */
+    static <T> Page<T> of(final ResourceList<T> resources) {
+        if (resources == null) {
+            throw new IllegalArgumentException("ResourceList must not be null.");
+        }
+
+        return new Page<T>() {
+            @Override
+            public String getFirst() {
+                return resources.getFirst();
+            }
+
+            @Override
+            public String getLast() {
+                return resources.getLast();
+            }
+
+            @Override
+            public String getPrevious() {
+                return resources.getPrevious();
+            }
+
+            @Override
+            public String getNext() {
+                return resources.getNext();
+            }
+
+            @Override
+            public Map<String, ?> getMeta() {
+                return resources.getMeta();
+            }
+
+            @Override
+            public int size() {
+                return resources.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return resources.isEmpty();
+            }
+
+            @Override
+            public Iterator<T> iterator() {
+                return resources.iterator();
+            }
+        };
+    }
+
+}
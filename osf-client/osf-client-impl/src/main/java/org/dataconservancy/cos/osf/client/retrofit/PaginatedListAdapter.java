@@ -70,7 +70,7 @@ public class PaginatedListAdapter<E> implements PaginatedList<E> {
     private static final String CONTAINS_ALL_NOT_SUPPORTED = "Stream the elements of this List into a new List before" +
             " performing Collection.containsAll(Collection).";
 
-    private final ResourceList<E> resources;
+    private final Page<E> resources;
 
     private final OkHttpClient okHttp;
 
@@ -92,6 +92,19 @@ public class PaginatedListAdapter<E> implements PaginatedList<E> {
      */
     public PaginatedListAdapter(final OkHttpClient okHttp, final ResourceConverter resourceConverter,
                                 final Class<E> clazz, final ResourceList<E> resources) {
+        this(okHttp, resourceConverter, clazz, resources == null ? null : Page.of(resources));
+    }
+
+    /**
+     * Adapts the supplied {@code Page} as a {@code PaginatedList}.
+     *
+     * @param okHttp the OkHttp client used to request additional pages of a paginated response
+     * @param resourceConverter the JSONAPI-converter used to unmarshal JSON from a response into Java objects
+     * @param clazz the type of object being retrieved in the response
+     * @param resources the first page of a response, which may have additional pages
+     */
+    PaginatedListAdapter(final OkHttpClient okHttp, final ResourceConverter resourceConverter,
+                         final Class<E> clazz, final Page<E> resources) {
         if (okHttp == null) {
             throw new IllegalArgumentException("OkHttpClient must not be null.");
         }
@@ -18,9 +18,11 @@ package org.dataconservancy.cos.osf.client.retrofit;
 import com.github.jasminb.jsonapi.ResourceConverter;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.ResponseBody;
+import org.dataconservancy.cos.osf.client.support.PrefetchedDocuments;
 import retrofit.Converter;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * A Retrofit Converter that wraps collections in a {@code PaginatedList}.  This allows clients of the API to avoid
@@ -68,8 +70,11 @@ public class PaginatedResponseBodyConverter<T> implements Converter<ResponseBody
     /**
      * {@inheritDoc}
      * <p>
-     * Implementation note: if {@code isCollection} is {@code true}, the collection returned by the ResourceConverter
-     * will be adapted to a {@code PaginatedList} and returned.
+     * Implementation note: if {@code isCollection} is {@code true}, the collection is read from the response as it is
+     * received, one resource at a time, by the {@link StreamingPageReader}, and adapted to a {@code PaginatedList}.
+     * A single resource is buffered and converted by the ResourceConverter.  Documents embedded in the response (e.g.
+     * when the request carries {@code embed=contributors}) are made available to the relationship resolver through
+     * {@link PrefetchedDocuments} for the duration of the conversion.
      * </p>
      * @param responseBody the response returned from the API
      * @return a potentially paginated response
@@ -78,10 +83,14 @@ public class PaginatedResponseBodyConverter<T> implements Converter<ResponseBody
     @Override
     public T convert(final ResponseBody responseBody) throws IOException {
         if (isCollection) {
-            return (T) new PaginatedListAdapter<>(okHttp, resourceConverter, clazz,
-                    resourceConverter.readObjectCollection(responseBody.bytes(), clazz));
-        } else {
-            return resourceConverter.readObject(responseBody.bytes(), clazz);
+            try (InputStream in = responseBody.byteStream()) {
+                return (T) new PaginatedListAdapter<>(okHttp, resourceConverter, clazz,
+                        StreamingPageReader.read(resourceConverter, in, clazz));
+            }
+        }
+
+        try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+            return resourceConverter.readObject(scope.register(responseBody.bytes()), clazz);
         }
     }
 }
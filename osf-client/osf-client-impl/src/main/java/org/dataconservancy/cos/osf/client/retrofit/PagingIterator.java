@@ -19,6 +19,8 @@ import com.github.jasminb.jsonapi.ResourceConverter;
 import com.github.jasminb.jsonapi.ResourceList;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +31,8 @@ import java.util.NoSuchElementException;
 /**
  * This iterator implementation supplies elements from an initial collection of results.  Once the initial collection
  * has been exhausted, the next page of results will be retrieved from the API.  Subsequent pages are retrieved in the
- * same fashion, until there are no more pages of results.
+ * same fashion, until there are no more pages of results.  If a page cannot be retrieved, {@link #hasNext()} and
+ * {@link #next()} throw a {@code RuntimeException}; the iteration is never silently truncated.
  * <p>
  * This class is not thread-safe; it cannot be accessed by simultaneous threads and performs no internal
  * synchronization.
@@ -41,13 +44,15 @@ class PagingIterator<T> implements Iterator<T> {
 
     private static final Logger LOG = LoggerFactory.getLogger(PagingIterator.class);
 
+    private static final String ERR_RETRIEVING_PAGE = "Error retrieving results page '%s': %s";
+
     private final OkHttpClient okHttp;
 
     private final ResourceConverter converter;
 
     private final Class<T> type;
 
-    ResourceList<T> currentList;
+    Page<T> currentList;
 
     Iterator<T> currentItr;
 
@@ -58,6 +63,16 @@ class PagingIterator<T> implements Iterator<T> {
      */
     public PagingIterator(final OkHttpClient okHttp, final ResourceConverter converter, final ResourceList<T> initial,
                           final Class<T> type) {
+        this(okHttp, converter, initial == null ? null : Page.of(initial), type);
+    }
+
+    /**
+     * @param okHttp
+     * @param initial
+     * @param type
+     */
+    PagingIterator(final OkHttpClient okHttp, final ResourceConverter converter, final Page<T> initial,
+                   final Class<T> type) {
         if (okHttp == null) {
             throw new IllegalArgumentException("OsfService must not be null.");
         }
@@ -118,10 +133,16 @@ class PagingIterator<T> implements Iterator<T> {
     }
 
     /**
-     * Manages the state of {@code currentList} and {@code currentItr}
-     *
+     * Manages the state of {@code currentList} and {@code currentItr}.  Retrieves the next page of results, if there
+     * is one.  The page is converted as it is received, by the {@link StreamingPageReader}.
+     * <p>
+     * If the next page cannot be retrieved, a {@code RuntimeException} is thrown rather than ending the iteration,
+     * because the caller would otherwise be unable to distinguish an error from the end of the results.  The state of
+     * this iterator is left unchanged, so a subsequent call will attempt to retrieve the same page again.
+     * </p>
      *
-     * @throws IOException
+     * @return true if the next page was retrieved, false if there are no more pages
+     * @throws RuntimeException if the next page cannot be retrieved
      */
     boolean getNextInternal() {
         final String next = currentList.getNext();
@@ -131,19 +152,24 @@ class PagingIterator<T> implements Iterator<T> {
             return false;
         }
 
+        final Page<T> nextList;
         try {
-            currentList = converter.readObjectCollection(
-                    okHttp.newCall(new Request.Builder().get().url(next).build())
-                            .execute().body().bytes(), type);
-            currentItr = currentList.iterator();
-            return true;
-        } catch (IOException | RuntimeException e) {
-            LOG.info("Error retrieving results page '{}': {}", next, e.getMessage(), e);
-            currentList = null;
-            currentItr = null;
+            final Response res = okHttp.newCall(new Request.Builder().get().url(next).build()).execute();
+            try (ResponseBody body = res.body()) {
+                if (!res.isSuccessful()) {
+                    throw new RuntimeException(String.format(ERR_RETRIEVING_PAGE, next,
+                            "HTTP status " + res.code() + " " + res.message()));
+                }
+                nextList = StreamingPageReader.read(converter, body.byteStream(), type);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format(ERR_RETRIEVING_PAGE, next, e.getMessage()), e);
         }
 
-        return false;
+        LOG.trace("Retrieved results page '{}'", next);
+        currentList = nextList;
+        currentItr = nextList.iterator();
+        return true;
     }
 
-}
\ No newline at end of file
+}
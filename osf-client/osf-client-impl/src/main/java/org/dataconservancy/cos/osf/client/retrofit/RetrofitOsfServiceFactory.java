@@ -21,17 +21,22 @@ import com.github.jasminb.jsonapi.annotations.Type;
 import com.github.jasminb.jsonapi.retrofit.JSONAPIConverterFactory;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
-import io.github.lukehutch.fastclasspathscanner.FastClasspathScanner;
 import org.dataconservancy.cos.osf.client.config.JacksonOsfConfigurationService;
 import org.dataconservancy.cos.osf.client.config.JacksonWbConfigurationService;
+import org.dataconservancy.cos.osf.client.config.OsfClientConfiguration;
 import org.dataconservancy.cos.osf.client.config.OsfConfigurationService;
 import org.dataconservancy.cos.osf.client.config.WbConfigurationService;
 import org.dataconservancy.cos.osf.client.support.ApiVersionInterceptor;
 import org.dataconservancy.cos.osf.client.support.AuthInterceptor;
+import org.dataconservancy.cos.osf.client.support.BeanAccessibleOkHttpClient;
+import org.dataconservancy.cos.osf.client.support.HttpMetrics;
+import org.dataconservancy.cos.osf.client.support.MetricsInterceptor;
+import org.dataconservancy.cos.osf.client.support.ModelClassScanner;
+import org.dataconservancy.cos.osf.client.support.RateLimitInterceptor;
+import org.dataconservancy.cos.osf.client.support.RetryInterceptor;
 import retrofit.Retrofit;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -149,6 +154,11 @@ public class RetrofitOsfServiceFactory {
      */
     private final JSONAPIConverterFactory jsonApiConverterFactory;
 
+    /**
+     * HTTP metrics recorded by the OK HTTP client, if it was created by this factory
+     */
+    private final HttpMetrics httpMetrics = new HttpMetrics();
+
 
     /**
      * Constructs a new RetrofitOsfServiceFactory with the default JSON configuration classpath resource.
@@ -167,10 +177,10 @@ public class RetrofitOsfServiceFactory {
      * '{@code /}'), then this constructor will resolve the resource under
      * {@code /org/dataconservancy/cos/osf/client/config/}.  This constructor adds the {@link AuthInterceptor} to the
      * {@code OkHttpClient} if an {@code authHeader} is found in the configuration for the OSF v2 API.  It will
-     * scan the classpath under {@code org.dataconservancy.cos.osf.client.model} for classes with the {@link Type}
-     * annotation, and add them to the {@link com.github.jasminb.jsonapi.ResourceConverter} used to convert JSON
-     * documents to Java objects.  The {@code ResourceConverter} is also configured to resolve urls using the
-     * {@code OkHttpClient}.
+     * detect the classes under {@code org.dataconservancy.cos.osf.client.model} with the {@link Type} annotation (see
+     * {@link ModelClassScanner}), and add them to the {@link com.github.jasminb.jsonapi.ResourceConverter} used to
+     * convert JSON documents to Java objects.  The {@code ResourceConverter} is also configured to resolve urls using
+     * the {@code OkHttpClient}.
      *
      * @param jsonConfigurationResource classpath resource containing the JSON configuration for the OSF and Waterbutler
      *                                  HTTP endpoints
@@ -190,23 +200,11 @@ public class RetrofitOsfServiceFactory {
                     String.format(ERR_CONFIGURING_CLASS,
                             JacksonWbConfigurationService.class.getName(), e.getMessage()), e);
         }
-        this.httpClient = new OkHttpClient();
-        if (osfConfigSvc.getConfiguration().getAuthHeader() != null) {
-            httpClient.interceptors().add(new AuthInterceptor(osfConfigSvc.getConfiguration().getAuthHeader()));
-        }
-        if (osfConfigSvc.getConfiguration().getApiVersion() != null) {
-            httpClient.interceptors().add(new ApiVersionInterceptor(osfConfigSvc.getConfiguration().getApiVersion()));
-        }
-        this.httpClient.setConnectTimeout(osfConfigSvc.getConfiguration().getConnect_timeout_ms(), MILLISECONDS);
-        this.httpClient.setReadTimeout(osfConfigSvc.getConfiguration().getRead_timeout_ms(), MILLISECONDS);
-        this.httpClient.setWriteTimeout(osfConfigSvc.getConfiguration().getWrite_timeout_ms(), MILLISECONDS);
+        this.httpClient = newHttpClient(osfConfigSvc.getConfiguration(), httpMetrics);
 
         // ... the JSON-API converter used by Retrofit to map JSON documents to Java objects
-        final List<Class<?>> domainClasses = new ArrayList<>();
-
-        new FastClasspathScanner("org.dataconservancy.cos.osf.client.model")
-                .matchClassesWithAnnotation(Type.class, domainClasses::add)
-                .scan();
+        final List<Class<?>> domainClasses =
+                new ModelClassScanner("org.dataconservancy.cos.osf.client.model", Type.class).getDetectedClasses();
 
         final ResourceConverter resourceConverter = new ResourceConverter(new ObjectMapper(),
                 domainClasses.toArray(new Class[]{}));
@@ -260,17 +258,7 @@ public class RetrofitOsfServiceFactory {
                     String.format(ERR_CONFIGURING_CLASS,
                             JacksonWbConfigurationService.class.getName(), e.getMessage()), e);
         }
-        this.httpClient = new OkHttpClient();
-        if (osfConfigSvc.getConfiguration().getAuthHeader() != null) {
-            httpClient.interceptors().add(new AuthInterceptor(osfConfigSvc.getConfiguration().getAuthHeader()));
-        }
-        if (osfConfigSvc.getConfiguration().getApiVersion() != null) {
-            httpClient.interceptors().add(new ApiVersionInterceptor(osfConfigSvc.getConfiguration().getApiVersion()));
-        }
-
-        this.httpClient.setConnectTimeout(osfConfigSvc.getConfiguration().getConnect_timeout_ms(), MILLISECONDS);
-        this.httpClient.setReadTimeout(osfConfigSvc.getConfiguration().getRead_timeout_ms(), MILLISECONDS);
-        this.httpClient.setWriteTimeout(osfConfigSvc.getConfiguration().getWrite_timeout_ms(), MILLISECONDS);
+        this.httpClient = newHttpClient(osfConfigSvc.getConfiguration(), httpMetrics);
     }
 
     /**
@@ -307,16 +295,7 @@ public class RetrofitOsfServiceFactory {
                     String.format(ERR_CONFIGURING_CLASS,
                             JacksonWbConfigurationService.class.getName(), e.getMessage()), e);
         }
-        this.httpClient = new OkHttpClient();
-        if (osfConfigSvc.getConfiguration().getAuthHeader() != null) {
-            httpClient.interceptors().add(new AuthInterceptor(osfConfigSvc.getConfiguration().getAuthHeader()));
-        }
-        if (osfConfigSvc.getConfiguration().getApiVersion() != null) {
-            httpClient.interceptors().add(new ApiVersionInterceptor(osfConfigSvc.getConfiguration().getApiVersion()));
-        }
-        this.httpClient.setConnectTimeout(osfConfigSvc.getConfiguration().getConnect_timeout_ms(), MILLISECONDS);
-        this.httpClient.setReadTimeout(osfConfigSvc.getConfiguration().getRead_timeout_ms(), MILLISECONDS);
-        this.httpClient.setWriteTimeout(osfConfigSvc.getConfiguration().getWrite_timeout_ms(), MILLISECONDS);
+        this.httpClient = newHttpClient(osfConfigSvc.getConfiguration(), httpMetrics);
     }
 
     /**
@@ -483,4 +462,54 @@ public class RetrofitOsfServiceFactory {
         return retrofit.create(osfService);
     }
 
+    /**
+     * Answers the HTTP metrics recorded for the requests made by this factory's {@code OkHttpClient}.  Metrics are
+     * recorded only if the client was created by this factory, and not supplied on construction.
+     *
+     * @return the HTTP metrics, never {@code null}
+     */
+    public HttpMetrics getHttpMetrics() {
+        return httpMetrics;
+    }
+
+    /**
+     * Creates the default {@code OkHttpClient}, configured from the OSF client configuration.  Timeouts, the connection
+     * pool, dispatcher limits, and protocol preferences are taken from the configuration.  Requests that are
+     * refused by the API with {@code 429} or {@code 503} are retried by the {@link RetryInterceptor}, and the
+     * {@link RateLimitInterceptor} is added if the configuration limits the request rate.  Metrics are recorded for
+     * each request by the {@link MetricsInterceptor}.  The {@link AuthInterceptor} is added if an {@code authHeader}
+     * is present, and the {@link ApiVersionInterceptor} if an {@code apiVersion} is present.
+     *
+     * @param config the OSF client configuration
+     * @param metrics the registry in which HTTP metrics are recorded
+     * @return the configured client
+     */
+    private static OkHttpClient newHttpClient(final OsfClientConfiguration config, final HttpMetrics metrics) {
+        final BeanAccessibleOkHttpClient httpClient = new BeanAccessibleOkHttpClient();
+        if (config.getMax_retries() > 0) {
+            httpClient.interceptors().add(new RetryInterceptor(config.getMax_retries(),
+                    config.getRetry_base_delay_ms(), config.getRetry_max_delay_ms()));
+        }
+        if (config.getMax_requests_per_second() > 0) {
+            httpClient.interceptors().add(new RateLimitInterceptor(config.getMax_requests_per_second(),
+                    config.getMax_request_burst()));
+        }
+        httpClient.interceptors().add(new MetricsInterceptor(metrics));
+        if (config.getAuthHeader() != null) {
+            httpClient.interceptors().add(new AuthInterceptor(config.getAuthHeader()));
+        }
+        if (config.getApiVersion() != null) {
+            httpClient.interceptors().add(new ApiVersionInterceptor(config.getApiVersion()));
+        }
+        httpClient.setConnectTimeout(config.getConnect_timeout_ms(), MILLISECONDS);
+        httpClient.setReadTimeout(config.getRead_timeout_ms(), MILLISECONDS);
+        httpClient.setWriteTimeout(config.getWrite_timeout_ms(), MILLISECONDS);
+        httpClient.setMaxIdleConnections(config.getMax_idle_connections());
+        httpClient.setKeepAliveDurationMs(config.getKeep_alive_duration_ms());
+        httpClient.setMaxRequests(config.getMax_requests());
+        httpClient.setMaxRequestsPerHost(config.getMax_requests_per_host());
+        httpClient.setProtocolNames(config.getProtocols());
+        return httpClient;
+    }
+
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import org.dataconservancy.cos.osf.client.support.PrefetchedDocuments;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a page of a JSON-API collection directly from a response stream, converting each resource as it is parsed.
+ * <p>
+ * The JSON-API converter only accepts a complete document as a {@code byte[]}, so converting a page with
+ * {@link ResourceConverter#readObjectCollection(byte[], Class)} holds the entire response body, and the tree parsed
+ * from it, in memory at once.  This reader instead parses the {@code data} array incrementally, and hands each
+ * resource to the converter as a single-resource document.  At most one resource (and the documents embedded in it)
+ * is held in addition to the objects already converted, and parsing proceeds as the response is received.
+ * </p>
+ * <p>
+ * Top-level {@code links} (including the {@code links.meta} pagination metadata rendered by the OSF) and {@code meta}
+ * are retained.  A document carrying {@code errors} is handed to the converter as-is, so that errors are reported
+ * exactly as they would be by the converter.  Top-level {@code included} resources are not supported (the OSF embeds
+ * related documents in each resource instead, see {@link PrefetchedDocuments}).
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+class StreamingPageReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private StreamingPageReader() {
+        // disallow construction
+    }
+
+    /**
+     * Reads a page of resources from the supplied stream.  The stream is read to the end of the document, but is not
+     * closed.
+     *
+     * @param converter converts each resource
+     * @param in the JSON-API document
+     * @param type the type of resource
+     * @param <T> the type of resource
+     * @return the page
+     * @throws IOException if the document cannot be read or is not a JSON-API document
+     */
+    static <T> Page<T> read(final ResourceConverter converter, final InputStream in, final Class<T> type)
+            throws IOException {
+        final StreamedPage<T> page = new StreamedPage<>();
+
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON-API document, found '" + parser.getCurrentToken() + "'");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "data":
+                        if (value == JsonToken.START_ARRAY) {
+                            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                                page.items.add(readResource(converter, parser, type));
+                            }
+                        } else if (value == JsonToken.START_OBJECT) {
+                            page.items.add(readResource(converter, parser, type));
+                        }
+                        break;
+
+                    case "links":
+                        final JsonNode links = MAPPER.readTree(parser);
+                        page.first = link(links.path("first"));
+                        page.last = link(links.path("last"));
+                        page.previous = link(links.path("prev"));
+                        page.next = link(links.path("next"));
+                        if (links.path("meta").isObject() && page.meta == null) {
+                            page.meta = toMap(links.get("meta"));
+                        }
+                        break;
+
+                    case "meta":
+                        final JsonNode meta = MAPPER.readTree(parser);
+                        if (meta.isObject()) {
+                            page.meta = toMap(meta);
+                        }
+                        break;
+
+                    case "errors":
+                        final ObjectNode errors = MAPPER.createObjectNode();
+                        errors.set("errors", MAPPER.readTree(parser));
+                        return Page.of(converter.readObjectCollection(MAPPER.writeValueAsBytes(errors), type));
+
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        return page;
+    }
+
+    /**
+     * Converts the resource at the current position of the parser, leaving the parser positioned at the end of the
+     * resource.
+     */
+    private static <T> T readResource(final ResourceConverter converter, final JsonParser parser,
+                                      final Class<T> type) throws IOException {
+        final ObjectNode document = MAPPER.createObjectNode();
+        document.set("data", MAPPER.readTree(parser));
+        try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+            scope.register(document);
+            return converter.readObject(MAPPER.writeValueAsBytes(document), type);
+        }
+    }
+
+    /**
+     * Answers a pagination link, which may be rendered as a string, or as an object with an {@code href}.
+     */
+    private static String link(final JsonNode link) {
+        final JsonNode href = link.isObject() ? link.path("href") : link;
+        return href.isTextual() ? href.asText() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toMap(final JsonNode node) {
+        return MAPPER.convertValue(node, Map.class);
+    }
+
+    /**
+     * A page read by this reader.
+     */
+    private static class StreamedPage<T> implements Page<T> {
+
+        private final List<T> items = new ArrayList<>();
+
+        private String first;
+
+        private String last;
+
+        private String previous;
+
+        private String next;
+
+        private Map<String, ?> meta;
+
+        @Override
+        public String getFirst() {
+            return first;
+        }
+
+        @Override
+        public String getLast() {
+            return last;
+        }
+
+        @Override
+        public String getPrevious() {
+            return previous;
+        }
+
+        @Override
+        public String getNext() {
+            return next;
+        }
+
+        @Override
+        public Map<String, ?> getMeta() {
+            return meta;
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return items.isEmpty();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return Collections.unmodifiableList(items).iterator();
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.ResponseBody;
+import org.dataconservancy.cos.osf.client.model.LightNode;
+import org.dataconservancy.cos.osf.client.model.LightRegistration;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent (agent@local)
+ */
+public class AsyncOsfServiceAdapterTest {
+
+    private static final String REGISTRATIONS = "http://localhost:8000/v2/registrations/";
+
+    private static final MediaType JSON_API = MediaType.parse("application/vnd.api+json");
+
+    /**
+     * Documents served by the OkHttp client, keyed by URL
+     */
+    private final Map<String, String> documents = new ConcurrentHashMap<>();
+
+    private final OsfService osfService = mock(OsfService.class);
+
+    private AsyncOsfServiceAdapter underTest;
+
+    @Before
+    public void setUp() throws Exception {
+        final OkHttpClient okHttp = new OkHttpClient();
+        okHttp.interceptors().add(chain -> {
+            final String body = documents.get(chain.request().urlString());
+            return new com.squareup.okhttp.Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(body == null ? 404 : 200)
+                    .message(body == null ? "Not Found" : "OK")
+                    .body(ResponseBody.create(JSON_API, body == null ? "{}" : body))
+                    .build();
+        });
+
+        underTest = new AsyncOsfServiceAdapter(osfService, okHttp,
+                new ResourceConverter(LightNode.class, LightRegistration.class));
+
+        documents.put(REGISTRATIONS, page("r1", "r2", REGISTRATIONS + "?page=2"));
+        documents.put(REGISTRATIONS + "?page=2", page("r3", null, null));
+    }
+
+    /**
+     * Insures the call answered by the adapted service is enqueued, and its response body completes the future.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEnqueue() throws Exception {
+        final Registration registration = new Registration();
+        final Call<Registration> call = respond(Response.success(registration));
+        when(osfService.registration(REGISTRATIONS + "r1/")).thenReturn(call);
+
+        assertSame(registration, underTest.registration(REGISTRATIONS + "r1/").get(5, TimeUnit.SECONDS));
+        verify(call).enqueue(any(Callback.class));
+    }
+
+    /**
+     * Insures an unsuccessful response completes the future exceptionally.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEnqueueUnsuccessful() throws Exception {
+        final Call<Registration> call = respond(Response.error(404, ResponseBody.create(JSON_API, "{}")));
+        when(osfService.registration(REGISTRATIONS + "r1/")).thenReturn(call);
+
+        try {
+            underTest.registration(REGISTRATIONS + "r1/").get(5, TimeUnit.SECONDS);
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertTrue(e.getCause().getMessage().contains("404"));
+        }
+    }
+
+    /**
+     * Insures cancelling the future cancels the call.
+     *
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCancel() throws Exception {
+        final Call<Registration> call = mock(Call.class);
+        when(osfService.registration(REGISTRATIONS + "r1/")).thenReturn(call);
+
+        final CompletableFuture<Registration> future = underTest.registration(REGISTRATIONS + "r1/");
+        future.cancel(true);
+
+        verify(call).cancel();
+    }
+
+    /**
+     * Insures every page of a collection is handed to the consumer, in order, and the number of resources consumed
+     * completes the future.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testForEachPage() throws Exception {
+        final List<String> ids = new CopyOnWriteArrayList<>();
+        final List<Integer> pageSizes = new CopyOnWriteArrayList<>();
+
+        final long consumed = underTest.forEachPage(REGISTRATIONS, LightRegistration.class, page -> {
+            pageSizes.add(page.size());
+            page.forEach(registration -> ids.add(registration.getId()));
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, consumed);
+        assertEquals(Arrays.asList(2, 1), pageSizes);
+        assertEquals(Arrays.asList("r1", "r2", "r3"), ids);
+    }
+
+    /**
+     * Insures a page that cannot be retrieved completes the future exceptionally.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testForEachPageMissingPage() throws Exception {
+        documents.remove(REGISTRATIONS + "?page=2");
+
+        try {
+            underTest.forEachPage(REGISTRATIONS, LightRegistration.class, page -> { }).get(5, TimeUnit.SECONDS);
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertTrue(e.getCause().getMessage().contains(REGISTRATIONS + "?page=2"));
+        }
+    }
+
+    /**
+     * A call which responds to its callback with the supplied response when enqueued.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Call<T> respond(final Response<T> response) {
+        final Call<T> call = mock(Call.class);
+        doAnswer(invocation -> {
+            ((Callback<T>) invocation.getArguments()[0]).onResponse(response, null);
+            return null;
+        }).when(call).enqueue(any(Callback.class));
+        return call;
+    }
+
+    private static String page(final String first, final String second, final String next) {
+        return "{\"data\":[" + registration(first) + (second == null ? "" : "," + registration(second)) + "]," +
+                "\"links\":{\"next\":" + (next == null ? "null" : "\"" + next + "\"") + "}}";
+    }
+
+    private static String registration(final String id) {
+        return "{\"id\":\"" + id + "\",\"type\":\"registrations\",\"attributes\":{}}";
+    }
+
+}
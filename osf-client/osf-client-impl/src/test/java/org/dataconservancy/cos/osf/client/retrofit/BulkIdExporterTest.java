@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import org.dataconservancy.cos.osf.client.model.LightNode;
+import org.dataconservancy.cos.osf.client.model.LightRegistration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent (agent@local)
+ */
+public class BulkIdExporterTest {
+
+    private static final String REGISTRATIONS = "http://localhost:8000/v2/registrations/?filter%5Bpublic%5D=true";
+
+    private static final MediaType JSON_API = MediaType.parse("application/vnd.api+json");
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final int TOTAL = 25;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Documents served by the OkHttp client, keyed by URL
+     */
+    private final Map<String, String> documents = new ConcurrentHashMap<>();
+
+    /**
+     * URLs requested of the OkHttp client, in the order they were requested
+     */
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+
+    private BulkIdExporter underTest;
+
+    private File output;
+
+    @Before
+    public void setUp() throws Exception {
+        final OkHttpClient okHttp = new OkHttpClient();
+        okHttp.interceptors().add(chain -> {
+            final String url = chain.request().urlString();
+            requested.add(url);
+            final String body = documents.get(url);
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(body == null ? 404 : 200)
+                    .message(body == null ? "Not Found" : "OK")
+                    .body(ResponseBody.create(JSON_API, body == null ? "{}" : body))
+                    .build();
+        });
+
+        underTest = new BulkIdExporter(okHttp, new ResourceConverter(LightNode.class, LightRegistration.class), 4);
+        underTest.setPageSize(PAGE_SIZE);
+        output = new File(tmp.getRoot(), "registrations.ndjson");
+
+        for (int page = 1; page <= 3; page++) {
+            documents.put(BulkIdExporter.pageUrl(REGISTRATIONS, page, PAGE_SIZE), page(page, true));
+        }
+    }
+
+    /**
+     * Insures every record of the collection is written, in order, as a line of JSON, and no checkpoint remains.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExport() throws Exception {
+        assertEquals(TOTAL, underTest.export(REGISTRATIONS, LightRegistration.class, output));
+
+        assertEquals(3, requested.size());
+        assertEquals(BulkIdExporter.pageUrl(REGISTRATIONS, 1, PAGE_SIZE), requested.get(0));
+        assertRecords(TOTAL);
+        assertFalse(checkpoint().exists());
+
+        final JsonNode first = mapper.readTree(lines().get(0));
+        assertEquals("registrations", first.get("type").asText());
+        assertEquals("2016-04-28T14:39:53.000Z", first.get("date_created").asText());
+    }
+
+    /**
+     * Insures pages are followed one at a time when the collection carries no pagination metadata.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExportWithoutMetadata() throws Exception {
+        for (int page = 1; page <= 3; page++) {
+            documents.put(BulkIdExporter.pageUrl(REGISTRATIONS, page, PAGE_SIZE), page(page, false));
+        }
+
+        assertEquals(TOTAL, underTest.export(REGISTRATIONS, LightRegistration.class, output));
+        assertEquals(3, requested.size());
+        assertRecords(TOTAL);
+    }
+
+    /**
+     * Insures a failed export is checkpointed after the last page written, and is resumed from the following page.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResume() throws Exception {
+        final String lastPage = BulkIdExporter.pageUrl(REGISTRATIONS, 3, PAGE_SIZE);
+        final String lastDocument = documents.remove(lastPage);
+
+        try {
+            underTest.export(REGISTRATIONS, LightRegistration.class, output);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(lastPage));
+        }
+        assertTrue(checkpoint().exists());
+        assertRecords(20);
+
+        documents.put(lastPage, lastDocument);
+        requested.clear();
+        assertEquals(TOTAL, underTest.export(REGISTRATIONS, LightRegistration.class, output));
+
+        assertEquals(1, requested.size());
+        assertEquals(lastPage, requested.get(0));
+        assertRecords(TOTAL);
+        assertFalse(checkpoint().exists());
+    }
+
+    /**
+     * Insures an export is not resumed from the checkpoint of a different export.
+     *
+     * @throws Exception
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testResumeDifferentExport() throws Exception {
+        documents.remove(BulkIdExporter.pageUrl(REGISTRATIONS, 3, PAGE_SIZE));
+        try {
+            underTest.export(REGISTRATIONS, LightRegistration.class, output);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+
+        underTest.setPageSize(PAGE_SIZE * 2);
+        underTest.export(REGISTRATIONS, LightRegistration.class, output);
+    }
+
+    private void assertRecords(final int count) throws IOException {
+        final List<String> lines = lines();
+        assertEquals(count, lines.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("r" + i, mapper.readTree(lines.get(i)).get("id").asText());
+        }
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private File checkpoint() {
+        return new File(output.getPath() + BulkIdExporter.CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * A page of registrations, carrying the pagination metadata rendered by the OSF if {@code meta} is true.
+     */
+    private static String page(final int page, final boolean meta) {
+        final StringBuilder data = new StringBuilder();
+        for (int i = (page - 1) * PAGE_SIZE; i < Math.min(page * PAGE_SIZE, TOTAL); i++) {
+            data.append(data.length() == 0 ? "" : ",")
+                    .append("{\"id\":\"r").append(i).append("\",\"type\":\"registrations\",\"attributes\":{")
+                    .append("\"date_created\":\"2016-04-28T14:39:53.000Z\",")
+                    .append("\"date_modified\":\"2016-04-29T10:00:00.000Z\"}}");
+        }
+
+        final String next = page * PAGE_SIZE < TOTAL ?
+                "\"" + BulkIdExporter.pageUrl(REGISTRATIONS, page + 1, PAGE_SIZE) + "\"" : "null";
+        return "{\"data\":[" + data + "],\"links\":{\"next\":" + next +
+                (meta ? ",\"meta\":{\"total\":" + TOTAL + ",\"per_page\":" + PAGE_SIZE + "}" : "") + "}}";
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import org.dataconservancy.cos.osf.client.model.File;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit.Call;
+import retrofit.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent (agent@local)
+ */
+public class FileTreeWalkerTest {
+
+    private static final String NODE = "http://localhost:8000/v2/nodes/r5s4u/";
+
+    private static final String FILES = NODE + "files/";
+
+    private OsfService osfService;
+
+    @Before
+    public void setUp() throws Exception {
+        osfService = mock(OsfService.class);
+
+        // osfstorage: a.txt, folder1/{b.txt, folder2/{c.txt, d.txt}}; github: e.txt
+        listing(FILES, folder("osfstorage", "/"), folder("github", "/"));
+        listing(FILES + "osfstorage/", file("osfstorage", "/a"), folder("osfstorage", "/folder1/"));
+        listing(FILES + "osfstorage/folder1/", file("osfstorage", "/b"), folder("osfstorage", "/folder2/"));
+        listing(FILES + "osfstorage/folder2/", file("osfstorage", "/c"), file("osfstorage", "/d"));
+        listing(FILES + "github/", file("github", "/e"));
+    }
+
+    /**
+     * Insures every file of every provider of a node is handed to the consumer, and folders are not.
+     */
+    @Test
+    public void testWalk() {
+        final Set<String> found = ConcurrentHashMap.newKeySet();
+        final long count = new FileTreeWalker(osfService, 4).walk(NODE, file -> found.add(file.getPath()));
+
+        assertEquals(5, count);
+        assertEquals(Arrays.asList("/a", "/b", "/c", "/d", "/e"),
+                found.stream().sorted().collect(Collectors.toList()));
+    }
+
+    /**
+     * Insures only the supplied providers are walked.
+     */
+    @Test
+    public void testWalkProviders() {
+        final List<String> found = Collections.synchronizedList(new ArrayList<>());
+        final long count = new FileTreeWalker(osfService, 1).walk(NODE + "?embed=files",
+                Collections.singletonList(folder("github", "/")), file -> found.add(file.getPath()));
+
+        assertEquals(1, count);
+        assertEquals(Collections.singletonList("/e"), found);
+    }
+
+    /**
+     * Insures a listing that cannot be retrieved fails the walk.
+     *
+     * @throws Exception
+     */
+    @Test(expected = RuntimeException.class)
+    public void testWalkFailedListing() throws Exception {
+        final Call<List<File>> call = mock(Call.class);
+        when(call.execute()).thenThrow(new IOException("Connection reset"));
+        when(osfService.files(eq(FILES + "osfstorage/folder1/"), anyMapOf(String.class, String.class)))
+                .thenReturn(call);
+
+        new FileTreeWalker(osfService, 2).walk(NODE, file -> { });
+    }
+
+    /**
+     * Insures listing URLs are composed from the node URL, provider and path.
+     */
+    @Test
+    public void testUrls() {
+        assertEquals(FILES, FileTreeWalker.filesUrl("http://localhost:8000/v2/nodes/r5s4u"));
+        assertEquals(FILES, FileTreeWalker.filesUrl(NODE + "?embed=files"));
+        assertEquals(FILES + "osfstorage/", FileTreeWalker.folderUrl(FILES, folder("osfstorage", "/")));
+        assertEquals(FILES + "osfstorage/57570a07c7950c0045ac803e/",
+                FileTreeWalker.folderUrl(FILES, folder("osfstorage", "/57570a07c7950c0045ac803e")));
+        assertTrue(Arrays.asList(FileTreeWalker.FIELDS).contains("kind"));
+        assertTrue(!Arrays.asList(FileTreeWalker.FIELDS).contains("files"));
+    }
+
+    private void listing(final String url, final File... files) throws IOException {
+        final Call<List<File>> call = mock(Call.class);
+        when(call.execute()).thenReturn(Response.success(Arrays.asList(files)));
+        when(osfService.files(eq(url), anyMapOf(String.class, String.class))).thenReturn(call);
+    }
+
+    private static File folder(final String provider, final String path) {
+        final File folder = file(provider, path);
+        folder.setKind(FileTreeWalker.FOLDER);
+        return folder;
+    }
+
+    private static File file(final String provider, final String path) {
+        final File file = new File();
+        file.setKind("file");
+        file.setProvider(provider);
+        file.setPath(path);
+        return file;
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.github.jasminb.jsonapi.RelType;
+import com.github.jasminb.jsonapi.ResolutionStrategy;
+import com.github.jasminb.jsonapi.annotations.Id;
+import com.github.jasminb.jsonapi.annotations.Relationship;
+import com.github.jasminb.jsonapi.annotations.Type;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import org.dataconservancy.cos.osf.client.support.PrefetchedDocuments;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent (agent@local)
+ */
+public class HierarchyCrawlerTest {
+
+    private static final String BASE = "http://localhost:8000/v2/";
+
+    private static final MediaType JSON_API = MediaType.parse("application/vnd.api+json");
+
+    /**
+     * Documents served by the OkHttp client, keyed by URL
+     */
+    private final Map<String, String> documents = new ConcurrentHashMap<>();
+
+    /**
+     * URLs requested of the OkHttp client, in the order they were requested
+     */
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+
+    private OkHttpClient okHttp;
+
+    @Before
+    public void setUp() throws Exception {
+        okHttp = new OkHttpClient();
+        okHttp.interceptors().add(chain -> {
+            final String url = chain.request().urlString();
+            requested.add(url);
+            final String body = documents.get(url);
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(body == null ? 404 : 200)
+                    .message(body == null ? "Not Found" : "OK")
+                    .body(ResponseBody.create(JSON_API, body == null ? "{}" : body))
+                    .build();
+        });
+
+        // A node with two components, each with a storage provider holding a folder; the node embeds its license
+        documents.put(BASE + "nodes/root/", "{\"data\":" + node("root",
+                "\"license\":{\"data\":{\"id\":\"mit\",\"type\":\"licenses\"," +
+                        "\"links\":{\"self\":\"" + BASE + "licenses/mit/\"}}}") + "}");
+        documents.put(BASE + "nodes/root/children/", "{\"data\":[" + node("c1", null) + "," + node("c2", null) + "]}");
+        documents.put(BASE + "nodes/c1/children/", "{\"data\":[]}");
+        documents.put(BASE + "nodes/c2/children/", "{\"data\":[]}");
+        for (String id : Arrays.asList("root", "c1", "c2")) {
+            documents.put(BASE + "nodes/" + id + "/files/", "{\"data\":[" + file(id + "-osfstorage") + "]}");
+            documents.put(BASE + "files/" + id + "-osfstorage/files/", "{\"data\":[" + file(id + "-folder") + "]}");
+            documents.put(BASE + "files/" + id + "-folder/files/", "{\"data\":[]}");
+        }
+    }
+
+    /**
+     * Insures the crawl plan follows relationships resolved to objects, including inherited relationships, and no
+     * others.
+     */
+    @Test
+    public void testPlan() {
+        final Map<String, Set<String>> plan = HierarchyCrawler.plan(
+                Arrays.asList(TestNode.class, TestFile.class, String.class));
+
+        assertEquals(2, plan.size());
+        assertEquals(Collections.singleton("files"), plan.get("files"));
+        assertEquals(3, plan.get("nodes").size());
+        assertTrue(plan.get("nodes").containsAll(Arrays.asList("children", "files", "license")));
+        assertFalse(plan.get("nodes").contains("parent"));
+    }
+
+    /**
+     * Insures every level of the hierarchy is retrieved once, and held in the scope, and embedded documents are not
+     * retrieved.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCrawl() throws Exception {
+        final HierarchyCrawler underTest =
+                new HierarchyCrawler(okHttp, Arrays.asList(TestNode.class, TestFile.class), 4);
+
+        try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+            // root, 3 x (children, files, provider files, folder files)
+            assertEquals(13, underTest.crawl(BASE + "nodes/root/", scope));
+
+            assertEquals(13, requested.size());
+            assertEquals(documents.size(), requested.stream().distinct().count());
+            assertEquals(BASE + "nodes/root/", requested.get(0));
+            assertTrue(requested.indexOf(BASE + "nodes/c1/files/") > requested.indexOf(BASE + "nodes/root/files/"));
+            assertFalse(requested.contains(BASE + "licenses/mit/"));
+
+            for (String url : documents.keySet()) {
+                assertNotNull(url, scope.get(url));
+            }
+            assertNotNull(scope.get(BASE + "licenses/mit/"));
+            assertTrue(new String(scope.get(BASE + "nodes/root/"), StandardCharsets.UTF_8)
+                    .contains(BASE + "licenses/mit/"));
+        }
+    }
+
+    /**
+     * Insures documents that cannot be retrieved are skipped.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCrawlMissingDocument() throws Exception {
+        documents.remove(BASE + "nodes/root/children/");
+        final HierarchyCrawler underTest =
+                new HierarchyCrawler(okHttp, Arrays.asList(TestNode.class, TestFile.class), 1);
+
+        try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+            assertEquals(4, underTest.crawl(BASE + "nodes/root/", scope));
+            assertNull(scope.get(BASE + "nodes/root/children/"));
+            assertNotNull(scope.get(BASE + "files/root-folder/files/"));
+        }
+    }
+
+    private static String node(final String id, final String embeds) {
+        return "{\"id\":\"" + id + "\",\"type\":\"nodes\"," +
+                "\"links\":{\"self\":\"" + BASE + "nodes/" + id + "/\"}," +
+                "\"relationships\":{" +
+                "\"children\":{\"links\":{\"related\":{\"href\":\"" + BASE + "nodes/" + id + "/children/\"}}}," +
+                "\"files\":{\"links\":{\"related\":\"" + BASE + "nodes/" + id + "/files/\"}}," +
+                "\"parent\":{\"links\":{\"related\":{\"href\":\"" + BASE + "nodes/parent/\"}}}}" +
+                (embeds == null ? "" : ",\"embeds\":{" + embeds + "}") + "}";
+    }
+
+    private static String file(final String id) {
+        return "{\"id\":\"" + id + "\",\"type\":\"files\",\"relationships\":{" +
+                "\"files\":{\"links\":{\"related\":{\"href\":\"" + BASE + "files/" + id + "/files/\"}}}}}";
+    }
+
+    static class TestBase {
+
+        @Id
+        String id;
+
+        @Relationship(value = "files", resolve = true, relType = RelType.RELATED, strategy = ResolutionStrategy.OBJECT)
+        List<TestFile> files;
+
+        @Relationship(value = "parent", resolve = true, relType = RelType.RELATED, strategy = ResolutionStrategy.REF)
+        String parent;
+    }
+
+    @Type("nodes")
+    static class TestNode extends TestBase {
+
+        @Relationship(value = "children", resolve = true, relType = RelType.RELATED,
+                strategy = ResolutionStrategy.OBJECT)
+        List<TestNode> children;
+
+        @Relationship(value = "license", resolve = true, relType = RelType.RELATED,
+                strategy = ResolutionStrategy.OBJECT)
+        Object license;
+    }
+
+    @Type("files")
+    static class TestFile extends TestBase {
+    }
+
+}
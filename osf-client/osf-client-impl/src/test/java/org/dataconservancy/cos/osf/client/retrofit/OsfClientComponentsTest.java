@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Response;
+import org.dataconservancy.cos.osf.client.support.ApiVersionInterceptor;
+import org.dataconservancy.cos.osf.client.support.AuthInterceptor;
+import org.dataconservancy.cos.osf.client.support.MetricsInterceptor;
+import org.dataconservancy.cos.osf.client.support.RateLimitInterceptor;
+import org.dataconservancy.cos.osf.client.support.RetryInterceptor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author agent (agent@local)
+ */
+public class OsfClientComponentsTest {
+
+    private static final String CONFIGURATION = "{\"osf\":{\"v2\":{\"host\":\"localhost\",\"port\":\"8000\"," +
+            "\"basePath\":\"/v2/\",\"scheme\":\"http\",\"read_timeout_ms\":12345}}," +
+            "\"wb\":{\"v1\":{\"host\":\"localhost\",\"port\":\"7777\",\"basePath\":\"/v1/\",\"scheme\":\"http\"}}}";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private String configurationResource;
+
+    @Before
+    public void setUp() throws Exception {
+        final File configuration = tmp.newFile("osf-client.json");
+        Files.write(configuration.toPath(), CONFIGURATION.getBytes(StandardCharsets.UTF_8));
+        configurationResource = configuration.toURI().toString();
+    }
+
+    /**
+     * Insures that nothing is created, and the configuration is not read, until a component is asked for.
+     */
+    @Test
+    public void testLazyCreation() throws Exception {
+        final OsfClientComponents underTest = new OsfClientComponents("file:/does/not/exist.json", 60000);
+        underTest.close();
+    }
+
+    /**
+     * Insures that the OkHttp client is shared, configured, and has the interceptors of the application context, in
+     * the same order.
+     */
+    @Test
+    public void testOkHttpClient() throws Exception {
+        try (OsfClientComponents underTest = new OsfClientComponents(configurationResource, 60000)) {
+            final OkHttpClient client = underTest.getOkHttpClient();
+            assertSame(client, underTest.getOkHttpClient());
+            assertEquals(12345, client.getReadTimeout());
+
+            final List<Class<?>> interceptors = client.interceptors().stream()
+                    .map(Interceptor::getClass).collect(Collectors.toList());
+            assertEquals(Arrays.asList(RetryInterceptor.class, RateLimitInterceptor.class, MetricsInterceptor.class,
+                    AuthInterceptor.class, ApiVersionInterceptor.class), interceptors);
+        }
+    }
+
+    /**
+     * Insures that derived components apply their interceptor first, while sharing the connection pool, dispatcher and
+     * configuration of the components they are derived from, whose client is unchanged.
+     */
+    @Test
+    public void testWithInterceptor() throws Exception {
+        final Interceptor interceptor = chain -> (Response) null;
+        try (OsfClientComponents underTest = new OsfClientComponents(configurationResource, 60000)) {
+            final OsfClientComponents derived = underTest.withInterceptor(interceptor);
+            final OkHttpClient shared = underTest.getOkHttpClient();
+            final OkHttpClient client = derived.getOkHttpClient();
+
+            assertNotSame(shared, client);
+            assertSame(interceptor, client.interceptors().get(0));
+            assertEquals(shared.interceptors().size() + 1, client.interceptors().size());
+            assertFalse(shared.interceptors().contains(interceptor));
+            assertSame(shared.getConnectionPool(), client.getConnectionPool());
+            assertSame(shared.getDispatcher(), client.getDispatcher());
+            assertSame(underTest.getOsfConfigurationService(), derived.getOsfConfigurationService());
+            assertSame(underTest.getModelClassScanner(), derived.getModelClassScanner());
+        }
+    }
+
+    /**
+     * Insures that prototype components are created anew on each request, and singletons are shared.
+     */
+    @Test
+    public void testPrototypes() throws Exception {
+        try (OsfClientComponents underTest = new OsfClientComponents(configurationResource, 60000)) {
+            assertNotSame(underTest.newResourceConverter(), underTest.newResourceConverter());
+            assertSame(underTest.getModelClassScanner(), underTest.getModelClassScanner());
+            assertSame(underTest.getOsfConfigurationService(), underTest.getOsfConfigurationService());
+            assertSame(underTest.getWbConfigurationService(), underTest.getWbConfigurationService());
+
+            final OsfService one = underTest.newOsfService();
+            assertNotNull(one);
+            assertNotSame(one, underTest.newOsfService());
+            assertNotSame(underTest.newAsyncOsfService(), underTest.newAsyncOsfService());
+        }
+    }
+
+}
@@ -18,19 +18,26 @@ package org.dataconservancy.cos.osf.client.retrofit;
 import com.github.jasminb.jsonapi.ResourceConverter;
 import com.github.jasminb.jsonapi.ResourceList;
 import com.squareup.okhttp.Call;
+import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
 import org.junit.Test;
 
 import java.io.IOException;
-import java.util.NoSuchElementException;
+import java.util.Collections;
+import java.util.Iterator;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -50,33 +57,76 @@ public class PagingIteratorTest {
 
     private final PagingIterator underTest = new PagingIterator(okHttp, converter, resources, clazz);
 
+    /**
+     * Insures that an error retrieving the next page is surfaced to the caller, rather than ending the iteration, and
+     * that the state of the iterator is unchanged so that the page may be retrieved again.
+     *
+     * @throws Exception
+     */
     @Test
     public void testGetNextInternalThrowsIOE() throws Exception {
+        final IOException ioe = new IOException("Error message here");
         when(resources.getNext()).thenReturn("http://example.org/");
         when(okHttp.newCall(any())).thenReturn(call);
-        when(call.execute()).thenThrow(new IOException("Error message here"));
+        when(call.execute()).thenThrow(ioe);
+        final Iterator<?> exhausted = Collections.emptyIterator();
+        underTest.currentItr = exhausted;
+        final Page<?> initial = underTest.currentList;
 
-        assertFalse(underTest.getNextInternal());
+        try {
+            underTest.getNextInternal();
+            fail("Expected a RuntimeException");
+        } catch (RuntimeException e) {
+            assertSame(ioe, e.getCause());
+            assertTrue(e.getMessage().contains("http://example.org/"));
+        }
 
         // Iterator retrieved on construction, but it is *not* retrieved in getNextInternal()
         verify(resources, times(1)).iterator();
-        assertNull(underTest.currentItr);
-        assertNull(underTest.currentList);
+        assertSame(initial, underTest.currentList);
+        assertSame(exhausted, underTest.currentItr);
         verify(resources).getNext();
         verify(okHttp).newCall(any());
         verify(call).execute();
 
-        // hasNext() should be false
-        assertFalse(underTest.hasNext());
-
-        // next() should returne NSEE
+        // hasNext() should attempt to retrieve the page again, and fail
         try {
-            underTest.next();
-            fail("Expected a NoSuchElementException");
-        } catch (NoSuchElementException e) {
-            // expected
+            underTest.hasNext();
+            fail("Expected a RuntimeException");
+        } catch (RuntimeException e) {
+            assertSame(ioe, e.getCause());
         }
+        verify(call, times(2)).execute();
     }
 
+    /**
+     * Insures that an unsuccessful HTTP response is surfaced to the caller, rather than being parsed as a page.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetNextInternalUnsuccessfulResponse() throws Exception {
+        final Request req = new Request.Builder().url("http://example.org/").build();
+        when(resources.getNext()).thenReturn("http://example.org/");
+        when(okHttp.newCall(any())).thenReturn(call);
+        when(call.execute()).thenReturn(new Response.Builder()
+                .request(req)
+                .protocol(Protocol.HTTP_1_1)
+                .code(429)
+                .message("Too Many Requests")
+                .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+                .build());
+        final Page<?> initial = underTest.currentList;
+
+        try {
+            underTest.getNextInternal();
+            fail("Expected a RuntimeException");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("429"));
+        }
+
+        verifyZeroInteractions(converter);
+        assertSame(initial, underTest.currentList);
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.retrofit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.github.jasminb.jsonapi.ResourceList;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent (agent@local)
+ */
+public class StreamingPageReaderTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ResourceConverter converter = mock(ResourceConverter.class);
+
+    /**
+     * Insures that each resource is handed to the converter as a single resource document, and that pagination links
+     * and metadata are retained.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReadPage() throws Exception {
+        final List<JsonNode> converted = new ArrayList<>();
+        when(converter.readObject(any(byte[].class), eq(String.class))).thenAnswer(inv -> {
+            final JsonNode document = mapper.readTree((byte[]) inv.getArguments()[0]);
+            converted.add(document);
+            return document.path("data").path("id").asText();
+        });
+
+        final String json = "{\"data\": [" +
+                "{\"id\": \"1\", \"type\": \"nodes\"}, {\"id\": \"2\", \"type\": \"nodes\"}, " +
+                "{\"id\": \"3\", \"type\": \"nodes\"}], " +
+                "\"links\": {\"first\": null, \"last\": \"http://example.org/?page=2\", \"prev\": null, " +
+                "\"next\": {\"href\": \"http://example.org/?page=2\"}, " +
+                "\"meta\": {\"total\": 6, \"per_page\": 3}}}";
+
+        final Page<String> page = StreamingPageReader.read(converter, stream(json), String.class);
+
+        assertEquals(3, page.size());
+        assertFalse(page.isEmpty());
+        final List<String> ids = new ArrayList<>();
+        page.forEach(ids::add);
+        assertEquals("[1, 2, 3]", ids.toString());
+
+        assertNull(page.getFirst());
+        assertNull(page.getPrevious());
+        assertEquals("http://example.org/?page=2", page.getLast());
+        assertEquals("http://example.org/?page=2", page.getNext());
+        assertEquals(6, page.getMeta().get("total"));
+        assertEquals(3, page.getMeta().get("per_page"));
+
+        verify(converter, times(3)).readObject(any(byte[].class), eq(String.class));
+        verify(converter, never()).readObjectCollection(any(byte[].class), any());
+        assertEquals(3, converted.size());
+        converted.forEach(document -> assertTrue(document.get("data").isObject()));
+    }
+
+    /**
+     * Insures that top-level metadata is preferred over metadata in the links object.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTopLevelMeta() throws Exception {
+        final String json = "{\"meta\": {\"total\": 0}, \"data\": [], \"links\": {\"meta\": {\"total\": 1}}}";
+
+        final Page<String> page = StreamingPageReader.read(converter, stream(json), String.class);
+
+        assertTrue(page.isEmpty());
+        assertNull(page.getNext());
+        assertEquals(0, page.getMeta().get("total"));
+    }
+
+    /**
+     * Insures that an error document is handed to the converter as-is.
+     *
+     * @throws Exception
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testErrors() throws Exception {
+        final ResourceList<String> errors = mock(ResourceList.class);
+        when(converter.readObjectCollection(any(byte[].class), eq(String.class))).thenReturn(errors);
+        when(errors.getNext()).thenReturn(null);
+        when(errors.isEmpty()).thenReturn(true);
+
+        final String json = "{\"errors\": [{\"detail\": \"Not found.\"}]}";
+
+        final Page<String> page = StreamingPageReader.read(converter, stream(json), String.class);
+
+        assertTrue(page.isEmpty());
+        verify(converter).readObjectCollection(any(byte[].class), eq(String.class));
+        verify(converter, never()).readObject(any(byte[].class), any());
+    }
+
+    /**
+     * Insures that a document that is not a JSON object is rejected.
+     *
+     * @throws Exception
+     */
+    @Test(expected = IOException.class)
+    public void testNotADocument() throws Exception {
+        StreamingPageReader.read(converter, stream("[]"), String.class);
+    }
+
+    private static ByteArrayInputStream stream(final String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -72,7 +72,7 @@ public class FileObjectMappingTest extends AbstractMockServerTest {
         assertEquals("2017-01-06T17:36:56.073Z", file.getLast_touched());
         assertEquals("2016-03-17T14:33:11.000Z", file.getDate_created());
         assertEquals("2017-01-04T22:41:12.000Z", file.getDate_modified());
-        assertEquals(7, file.getCurrent_version());
+        assertEquals(7, file.getCurrent_version().intValue());
         assertEquals("8pdf3", file.getGuid());
         assertEquals(83, file.getSize().intValue());
         assertEquals(emptyList(), file.getTags());
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jasminb.jsonapi.RelType;
+import com.github.jasminb.jsonapi.ResolutionStrategy;
+import com.github.jasminb.jsonapi.annotations.Id;
+import com.github.jasminb.jsonapi.annotations.Relationship;
+import com.github.jasminb.jsonapi.annotations.Type;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Insures that {@link LazyResourceConverter} defers the resolution of collection relationships until they are
+ * accessed.
+ *
+ * @author agent (agent@local)
+ */
+public class LazyResourceConverterTest {
+
+    private static final String BASE = "http://localhost:8000/v2/";
+
+    /**
+     * Documents served by the resolver, keyed by URL
+     */
+    private final Map<String, String> documents = new HashMap<>();
+
+    /**
+     * URLs requested of the resolver, in the order they were requested
+     */
+    private final List<String> requested = new ArrayList<>();
+
+    private LazyResourceConverter underTest;
+
+    @Before
+    public void setUp() throws Exception {
+        underTest = new LazyResourceConverter(new ObjectMapper(), TestNode.class, TestFile.class, TestLicense.class);
+        underTest.setGlobalResolver(url -> {
+            final byte[] held = PrefetchedDocuments.lookup(url);
+            if (held != null) {
+                return held;
+            }
+            requested.add(url);
+            return documents.get(url).getBytes(StandardCharsets.UTF_8);
+        });
+
+        documents.put(BASE + "nodes/root/", "{\"data\":" + node("root", true) + "}");
+        documents.put(BASE + "nodes/root/children/",
+                "{\"data\":[" + node("c1", false) + "," + node("c2", false) + "]}");
+        documents.put(BASE + "nodes/root/files/", "{\"data\":[" + file("root-osfstorage") + "]}");
+        documents.put(BASE + "licenses/mit/", "{\"data\":{\"id\":\"mit\",\"type\":\"licenses\"}}");
+    }
+
+    /**
+     * Insures converting a node makes no requests for its collection relationships, which are answered unloaded.
+     */
+    @Test
+    public void testReadObject() {
+        final TestNode node = underTest.readObject(bytes(BASE + "nodes/root/"), TestNode.class);
+
+        assertEquals("root", node.id);
+        assertTrue(node.children instanceof LazyRelationshipList);
+        assertFalse(((LazyRelationshipList<TestNode>) node.children).isLoaded());
+        assertEquals(BASE + "nodes/root/children/", ((LazyRelationshipList<TestNode>) node.children).getUrl());
+        assertTrue(node.files instanceof LazyRelationshipList);
+
+        // single-valued relationships are resolved on conversion
+        assertNotNull(node.license);
+        assertEquals("mit", node.license.id);
+        assertEquals(Collections.singletonList(BASE + "licenses/mit/"), requested);
+    }
+
+    /**
+     * Insures a collection relationship is retrieved once, on first access, and that the collection relationships of
+     * the related resources are deferred in turn.
+     */
+    @Test
+    public void testAccess() {
+        final TestNode node = underTest.readObject(bytes(BASE + "nodes/root/"), TestNode.class);
+        requested.clear();
+
+        assertEquals(2, node.children.size());
+        assertEquals(Collections.singletonList(BASE + "nodes/root/children/"), requested);
+        assertEquals("c1", node.children.get(0).id);
+        assertEquals("c2", node.children.get(1).id);
+        assertEquals(1, requested.size());
+
+        final TestNode child = node.children.get(0);
+        assertTrue(child.children instanceof LazyRelationshipList);
+        assertFalse(((LazyRelationshipList<TestNode>) child.children).isLoaded());
+        assertEquals(BASE + "nodes/c1/children/", ((LazyRelationshipList<TestNode>) child.children).getUrl());
+
+        assertEquals("root-osfstorage", node.files.get(0).id);
+        assertEquals(2, requested.size());
+    }
+
+    /**
+     * Insures collection relationships embedded in the response are resolved on conversion, without a request.
+     */
+    @Test
+    public void testEmbeddedRelationshipsResolved() {
+        final String embedded = "{\"data\":" + node("root", true).replaceFirst("}$",
+                ",\"embeds\":{\"files\":{\"data\":[" + file("root-osfstorage") + "]}}}") + "}";
+
+        try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+            final TestNode node = underTest.readObject(
+                    scope.register(embedded.getBytes(StandardCharsets.UTF_8)), TestNode.class);
+
+            assertFalse(node.files instanceof LazyRelationshipList);
+            assertEquals(1, node.files.size());
+            assertEquals("root-osfstorage", node.files.get(0).id);
+            assertTrue(node.children instanceof LazyRelationshipList);
+            assertFalse(requested.contains(BASE + "nodes/root/files/"));
+        }
+    }
+
+    private byte[] bytes(final String url) {
+        return documents.get(url).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String node(final String id, final boolean licensed) {
+        return "{\"id\":\"" + id + "\",\"type\":\"nodes\"," +
+                "\"links\":{\"self\":\"" + BASE + "nodes/" + id + "/\"}," +
+                "\"relationships\":{" +
+                "\"children\":{\"links\":{\"related\":{\"href\":\"" + BASE + "nodes/" + id + "/children/\"}}}," +
+                "\"files\":{\"links\":{\"related\":\"" + BASE + "nodes/" + id + "/files/\"}}" +
+                (licensed ? ",\"license\":{\"links\":{\"related\":{\"href\":\"" + BASE + "licenses/mit/\"}}}" : "") +
+                "}}";
+    }
+
+    private static String file(final String id) {
+        return "{\"id\":\"" + id + "\",\"type\":\"files\",\"relationships\":{" +
+                "\"files\":{\"links\":{\"related\":{\"href\":\"" + BASE + "files/" + id + "/files/\"}}}}}";
+    }
+
+    static class TestBase {
+
+        @Id
+        String id;
+
+        @Relationship(value = "files", resolve = true, relType = RelType.RELATED, strategy = ResolutionStrategy.OBJECT)
+        List<TestFile> files;
+    }
+
+    @Type("nodes")
+    static class TestNode extends TestBase {
+
+        @Relationship(value = "children", resolve = true, relType = RelType.RELATED,
+                strategy = ResolutionStrategy.OBJECT)
+        List<TestNode> children;
+
+        @Relationship(value = "license", resolve = true, relType = RelType.RELATED,
+                strategy = ResolutionStrategy.OBJECT)
+        TestLicense license;
+    }
+
+    @Type("files")
+    static class TestFile extends TestBase {
+    }
+
+    @Type("licenses")
+    static class TestLicense {
+
+        @Id
+        String id;
+    }
+
+}
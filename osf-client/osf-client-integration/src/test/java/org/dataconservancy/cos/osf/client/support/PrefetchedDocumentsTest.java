@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Insures that documents embedded in a response are held by {@link PrefetchedDocuments}, and that the embedded
+ * relationships are restored to the embedding resource.
+ *
+ * @author agent (agent@local)
+ */
+public class PrefetchedDocumentsTest {
+
+    private static final String BASE = "http://192.168.99.100:8000/v2/";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testRegisterEmbeds() throws Exception {
+        final byte[] document = IOUtils.toByteArray(
+                getClass().getResourceAsStream("/org/dataconservancy/cos/osf/client/embeds.json"));
+
+        try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+            final JsonNode node = mapper.readTree(scope.register(document)).get("data");
+
+            assertFalse(node.has("embeds"));
+            final JsonNode relationships = node.get("relationships");
+            assertEquals(BASE + "nodes/r5s4u/contributors/", related(relationships, "contributors"));
+            assertEquals(BASE + "nodes/r5s4u/children/", related(relationships, "children"));
+            assertEquals(BASE + "nodes/r5s4u/node_links/", related(relationships, "node_links"));
+            assertEquals(BASE + "nodes/r5s4u/", related(relationships, "root"));
+
+            // relationships that were not embedded are untouched
+            assertEquals(BASE + "nodes/r5s4u/files/", related(relationships, "files"));
+            assertNull(PrefetchedDocuments.lookup(BASE + "nodes/r5s4u/files/"));
+
+            final JsonNode contributors =
+                    mapper.readTree(PrefetchedDocuments.lookup(BASE + "nodes/r5s4u/contributors/"));
+            assertEquals(1, contributors.get("data").size());
+            assertEquals(0, mapper.readTree(PrefetchedDocuments.lookup(BASE + "nodes/r5s4u/node_links/"))
+                    .get("data").size());
+
+            // embeds of embedded resources are held as well
+            assertFalse(contributors.get("data").get(0).has("embeds"));
+            assertNotNull(PrefetchedDocuments.lookup(BASE + "users/a3q2g/"));
+        }
+
+        assertNull(PrefetchedDocuments.lookup(BASE + "nodes/r5s4u/contributors/"));
+    }
+
+    @Test
+    public void testNestedScopes() throws Exception {
+        final byte[] document = IOUtils.toByteArray(
+                getClass().getResourceAsStream("/org/dataconservancy/cos/osf/client/embeds.json"));
+
+        try (PrefetchedDocuments.Scope outer = PrefetchedDocuments.open()) {
+            outer.register(document);
+            try (PrefetchedDocuments.Scope inner = PrefetchedDocuments.open()) {
+                assertSame(outer, inner);
+            }
+            assertNotNull(PrefetchedDocuments.lookup(BASE + "nodes/r5s4u/contributors/"));
+        }
+
+        assertNull(PrefetchedDocuments.lookup(BASE + "nodes/r5s4u/contributors/"));
+    }
+
+    @Test
+    public void testDocumentWithoutEmbedsUnchanged() throws Exception {
+        final byte[] document = "{\"data\": {\"id\": \"r5s4u\", \"type\": \"nodes\"}}".getBytes(StandardCharsets.UTF_8);
+        try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+            assertSame(document, scope.register(document));
+        }
+    }
+
+    @Test
+    public void testWithoutPage() throws Exception {
+        assertEquals(BASE + "nodes/r5s4u/contributors/",
+                PrefetchedDocuments.withoutPage(BASE + "nodes/r5s4u/contributors/?page=2"));
+        assertEquals(BASE + "nodes/?filter[public]=true",
+                PrefetchedDocuments.withoutPage(BASE + "nodes/?page=2&filter[public]=true"));
+        assertEquals(BASE + "nodes/?filter[public]=true",
+                PrefetchedDocuments.withoutPage(BASE + "nodes/?filter[public]=true&page=2"));
+    }
+
+    private static String related(final JsonNode relationships, final String name) {
+        return relationships.get(name).get("links").get("related").get("href").asText();
+    }
+
+}
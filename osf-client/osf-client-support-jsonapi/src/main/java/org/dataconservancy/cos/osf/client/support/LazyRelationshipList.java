@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A related collection of a domain object which is retrieved when it is first accessed, rather than when the domain
+ * object is converted.  Set in place of collection relationships by the {@link LazyResourceConverter}.
+ * <p>
+ * The first access of any element, the size, or an iterator retrieves and converts the related collection; later
+ * accesses use the converted collection.  As when a relationship is resolved on conversion, only the first page of the
+ * collection is retrieved.  A failure to retrieve the collection is thrown as a {@code RuntimeException} from the
+ * accessing method, and the retrieval is attempted again on the next access.
+ * </p>
+ *
+ * @param <E> the type of the related resources
+ * @author agent (agent@local)
+ */
+public class LazyRelationshipList<E> extends AbstractList<E> {
+
+    private final String url;
+
+    private final Supplier<List<E>> loader;
+
+    private volatile List<E> loaded;
+
+    /**
+     * Constructs a list of the related collection at the supplied URL.
+     *
+     * @param url the URL of the related collection
+     * @param loader retrieves and converts the related collection
+     */
+    public LazyRelationshipList(final String url, final Supplier<List<E>> loader) {
+        if (url == null) {
+            throw new IllegalArgumentException("URL must not be null.");
+        }
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader must not be null.");
+        }
+        this.url = url;
+        this.loader = loader;
+    }
+
+    /**
+     * The URL of the related collection.
+     *
+     * @return the URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Whether the related collection has been retrieved.
+     *
+     * @return true if the collection has been retrieved
+     */
+    public boolean isLoaded() {
+        return loaded != null;
+    }
+
+    @Override
+    public E get(final int index) {
+        return load().get(index);
+    }
+
+    @Override
+    public int size() {
+        return load().size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return load().iterator();
+    }
+
+    @Override
+    public String toString() {
+        return loaded == null ? "[not loaded: " + url + "]" : loaded.toString();
+    }
+
+    private List<E> load() {
+        List<E> result = loaded;
+        if (result == null) {
+            synchronized (this) {
+                result = loaded;
+                if (result == null) {
+                    result = loader.get();
+                    if (result == null) {
+                        result = Collections.emptyList();
+                    }
+                    loaded = result;
+                }
+            }
+        }
+        return result;
+    }
+
+}
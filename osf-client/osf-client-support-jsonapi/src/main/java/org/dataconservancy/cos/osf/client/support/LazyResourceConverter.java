@@ -0,0 +1,358 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.jasminb.jsonapi.RelType;
+import com.github.jasminb.jsonapi.RelationshipResolver;
+import com.github.jasminb.jsonapi.ResolutionStrategy;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.github.jasminb.jsonapi.ResourceList;
+import com.github.jasminb.jsonapi.annotations.Id;
+import com.github.jasminb.jsonapi.annotations.Relationship;
+import com.github.jasminb.jsonapi.annotations.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A JSON-API converter which defers the resolution of collection relationships (e.g. the {@code files},
+ * {@code contributors}, {@code wikis} and {@code children} of a node) until they are accessed.  The eager converter
+ * resolves every relationship of a resource as the resource is converted, so retrieving a registration also retrieves
+ * its contributors, files, wikis, identifiers, institutions and components (and, recursively, theirs), even if the
+ * caller only wants the title.
+ * <p>
+ * Before a document is converted, the collection relationships of each resource ({@code resolve = true},
+ * {@code strategy = OBJECT}, {@code relType = RELATED}, on a {@code List} field) are removed from the document, and
+ * their related URLs remembered.  Once the document is converted, each such field of the converted objects is set to
+ * a {@link LazyRelationshipList}, which retrieves the related collection (using the global resolver of this
+ * converter) and converts it (deferring its collection relationships in turn) when it is first accessed.  Retrieving
+ * a registration therefore costs one request, and each collection costs one request when first used.
+ * </p>
+ * <p>
+ * Some relationships are still resolved as the document is converted:
+ * </p>
+ * <ul>
+ *     <li>Relationships whose documents are held by the current {@link PrefetchedDocuments} scope (embedded in the
+ *         response, or crawled ahead of conversion) cost no request, and are resolved from the held document.</li>
+ *     <li>Single-valued relationships (e.g. the {@code license} of a node, or the {@code user} of a comment) cannot
+ *         be deferred without changing the types of the model; embed them ({@code ?embed=license}) to avoid a
+ *         request.</li>
+ * </ul>
+ * <p>
+ * Code that will use every relationship (such as packaging a registration) gains nothing from deferral, and should use
+ * the eager converter, or hold the documents of the hierarchy in a scope before conversion.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class LazyResourceConverter extends ResourceConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LazyResourceConverter.class);
+
+    private final ObjectMapper mapper;
+
+    /**
+     * The deferrable relationships of each model class, keyed by the name of the relationship
+     */
+    private final Map<Class<?>, Map<String, Field>> deferrable = new HashMap<>();
+
+    /**
+     * The relationship fields (deferrable or not) of each model class, followed when attaching deferred relationships
+     */
+    private final Map<Class<?>, List<Field>> relationships = new HashMap<>();
+
+    /**
+     * The identifier field of each model class
+     */
+    private final Map<Class<?>, Field> ids = new HashMap<>();
+
+    /**
+     * Model classes keyed by JSON-API type
+     */
+    private final Map<String, Class<?>> types = new HashMap<>();
+
+    /**
+     * The related URLs of the relationships deferred by the conversion in progress on the current thread, keyed by
+     * JSON-API type and identifier of the resource, then by the name of the relationship
+     */
+    private final ThreadLocal<Map<String, Map<String, String>>> deferred = new ThreadLocal<>();
+
+    private RelationshipResolver resolver;
+
+    /**
+     * Constructs a converter for the supplied model classes.
+     *
+     * @param mapper the Jackson ObjectMapper used by the converter
+     * @param classes classes annotated with {@link Type}
+     */
+    public LazyResourceConverter(final ObjectMapper mapper, final Class<?>... classes) {
+        super(mapper, classes);
+        this.mapper = mapper;
+        for (Class<?> modelClass : classes) {
+            final Type type = modelClass.getAnnotation(Type.class);
+            if (type != null) {
+                types.put(type.value(), modelClass);
+                introspect(modelClass);
+            }
+        }
+    }
+
+    /**
+     * Sets the resolver used to retrieve relationships, both those resolved on conversion and those deferred.
+     *
+     * @param resolver the relationship resolver
+     */
+    @Override
+    public void setGlobalResolver(final RelationshipResolver resolver) {
+        this.resolver = resolver;
+        super.setGlobalResolver(resolver == null ? null : url -> {
+            final byte[] document = resolver.resolve(url);
+            final Map<String, Map<String, String>> current = deferred.get();
+            return current == null ? document : defer(document, current);
+        });
+    }
+
+    @Override
+    public <T> T readObject(final byte[] data, final Class<T> clazz) {
+        final boolean outermost = deferred.get() == null;
+        if (outermost) {
+            deferred.set(new HashMap<>());
+        }
+
+        try {
+            final T result = super.readObject(defer(data, deferred.get()), clazz);
+            if (outermost) {
+                attach(Collections.singletonList(result));
+            }
+            return result;
+        } finally {
+            if (outermost) {
+                deferred.remove();
+            }
+        }
+    }
+
+    @Override
+    public <T> ResourceList<T> readObjectCollection(final byte[] data, final Class<T> clazz) {
+        final boolean outermost = deferred.get() == null;
+        if (outermost) {
+            deferred.set(new HashMap<>());
+        }
+
+        try {
+            final ResourceList<T> result = super.readObjectCollection(defer(data, deferred.get()), clazz);
+            if (outermost && result != null) {
+                attach(result);
+            }
+            return result;
+        } finally {
+            if (outermost) {
+                deferred.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the deferrable relationships of each resource of a document, recording their related URLs.  Documents
+     * with nothing to defer are returned unchanged.
+     */
+    private byte[] defer(final byte[] document, final Map<String, Map<String, String>> current) {
+        if (document == null) {
+            return null;
+        }
+
+        final JsonNode root;
+        try {
+            root = mapper.readTree(document);
+        } catch (IOException e) {
+            // Let the converter report the problem with the document
+            LOG.debug("Unable to parse document: {}", e.getMessage(), e);
+            return document;
+        }
+
+        final JsonNode data = root.path("data");
+        final List<JsonNode> resources = new ArrayList<>();
+        if (data.isArray()) {
+            data.forEach(resources::add);
+        } else if (data.isObject()) {
+            resources.add(data);
+        }
+
+        boolean modified = false;
+        for (JsonNode resource : resources) {
+            final Class<?> modelClass = types.get(resource.path("type").asText());
+            final JsonNode resourceRelationships = resource.path("relationships");
+            if (modelClass == null || !resourceRelationships.isObject()) {
+                continue;
+            }
+
+            for (String name : deferrable.get(modelClass).keySet()) {
+                final String href = relatedHref(resourceRelationships.path(name));
+                if (href == null || PrefetchedDocuments.isHeld(href)) {
+                    continue;
+                }
+                ((ObjectNode) resourceRelationships).remove(name);
+                current.computeIfAbsent(key(resource.path("type").asText(), resource.path("id").asText()),
+                        k -> new LinkedHashMap<>()).put(name, href);
+                modified = true;
+            }
+        }
+
+        if (!modified) {
+            return document;
+        }
+
+        try {
+            return mapper.writeValueAsBytes(root);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sets each deferred relationship of the converted objects, and of the objects related to them, to a
+     * {@link LazyRelationshipList}.
+     */
+    private void attach(final Collection<?> converted) {
+        final Map<String, Map<String, String>> current = deferred.get();
+        if (current.isEmpty()) {
+            return;
+        }
+
+        final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Object> pending = new ArrayList<>(converted);
+        try {
+            while (!pending.isEmpty()) {
+                final Object object = pending.remove(pending.size() - 1);
+                if (object == null || !ids.containsKey(object.getClass()) || !visited.add(object)) {
+                    continue;
+                }
+
+                final Class<?> modelClass = object.getClass();
+                final Map<String, String> urls = current.get(key(modelClass.getAnnotation(Type.class).value(),
+                        String.valueOf(ids.get(modelClass).get(object))));
+                if (urls != null) {
+                    for (Map.Entry<String, String> url : urls.entrySet()) {
+                        final Field field = deferrable.get(modelClass).get(url.getKey());
+                        field.set(object, lazyList(url.getValue(), elementType(field)));
+                    }
+                }
+
+                for (Field field : relationships.get(modelClass)) {
+                    final Object related = field.get(object);
+                    if (related instanceof LazyRelationshipList) {
+                        continue;
+                    }
+                    if (related instanceof Collection) {
+                        pending.addAll((Collection<?>) related);
+                    } else {
+                        pending.add(related);
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private <E> LazyRelationshipList<E> lazyList(final String url, final Class<E> elementType) {
+        return new LazyRelationshipList<>(url, () -> {
+            if (resolver == null) {
+                throw new IllegalStateException("Unable to resolve '" + url + "': no global resolver is set.");
+            }
+            LOG.trace("Resolving deferred relationship '{}'", url);
+            try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+                return readObjectCollection(scope.register(resolver.resolve(url)), elementType);
+            }
+        });
+    }
+
+    /**
+     * Records the identifier, relationship, and deferrable relationship fields of a model class, including those it
+     * inherits.
+     */
+    private void introspect(final Class<?> modelClass) {
+        final Map<String, Field> lists = new HashMap<>();
+        final List<Field> related = new ArrayList<>();
+        for (Class<?> c = modelClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Id.class) && !ids.containsKey(modelClass)) {
+                    field.setAccessible(true);
+                    ids.put(modelClass, field);
+                }
+
+                final Relationship relationship = field.getAnnotation(Relationship.class);
+                if (relationship == null || !relationship.resolve() ||
+                        relationship.strategy() != ResolutionStrategy.OBJECT) {
+                    continue;
+                }
+
+                field.setAccessible(true);
+                related.add(field);
+                if (relationship.relType() == RelType.RELATED && List.class.equals(field.getType()) &&
+                        elementType(field) != null && !lists.containsKey(relationship.value())) {
+                    lists.put(relationship.value(), field);
+                }
+            }
+        }
+
+        deferrable.put(modelClass, lists);
+        relationships.put(modelClass, related);
+    }
+
+    /**
+     * Answers the element type of a {@code List<E>} field, or {@code null} if it cannot be determined.
+     */
+    private static Class<?> elementType(final Field field) {
+        if (!(field.getGenericType() instanceof ParameterizedType)) {
+            return null;
+        }
+        final java.lang.reflect.Type element =
+                ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+        return element instanceof Class ? (Class<?>) element : null;
+    }
+
+    /**
+     * Answers the related link of a JSON-API relationship, which the OSF renders either as a string, or as an object
+     * with an {@code href}.
+     */
+    private static String relatedHref(final JsonNode relationship) {
+        final JsonNode related = relationship.path("links").path("related");
+        final JsonNode href = related.isObject() ? related.path("href") : related;
+        return href.isTextual() ? href.asText() : null;
+    }
+
+    private static String key(final String type, final String id) {
+        return type + ":" + id;
+    }
+
+}
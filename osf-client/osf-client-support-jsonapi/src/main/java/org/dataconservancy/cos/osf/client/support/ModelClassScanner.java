@@ -16,18 +16,50 @@
 package org.dataconservancy.cos.osf.client.support;
 
 import io.github.lukehutch.fastclasspathscanner.FastClasspathScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Scans the classpath for classes matching the specified package and annotation type.
+ * Detects classes matching the specified package and annotation type.
+ * <p>
+ * Classes are read from the index written at build time by the {@code osf-core-index} annotation processor (the
+ * {@code META-INF/annotations/<annotation class name>} resources on the classpath), which is much cheaper than
+ * scanning the classpath.  The classpath is only scanned if no indexed class matches, e.g. when the model was compiled
+ * without the processor.  Either way, the detected classes are cached for the life of the JVM, so constructing
+ * further scanners (e.g. one per {@code OsfService}) costs nothing.
+ * </p>
  *
  * @author Elliot Metsger (emetsger@jhu.edu)
  */
 public class ModelClassScanner {
 
+    /**
+     * Classpath directory containing the index of each annotation, as written by the {@code AnnotationIndexProcessor}
+     */
+    static final String INDEX_LOCATION = "META-INF/annotations/";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ModelClassScanner.class);
+
+    /**
+     * Detected classes, keyed by package name and annotation
+     */
+    private static final Map<String, List<Class<?>>> DETECTED = new ConcurrentHashMap<>();
+
     private String packageName;
 
     private Class<? extends Annotation> annotation;
@@ -43,17 +75,77 @@ public class ModelClassScanner {
     }
 
     /**
-     * Scans the package supplied on construction for classes that are annotated with the annotations supplied on
-     * construction.  Useful for supplying the list of classes to the JSON API resource converter.
+     * Answers the classes in the package supplied on construction (or its sub-packages) that are annotated with the
+     * annotation supplied on construction.  Useful for supplying the list of classes to the JSON API resource
+     * converter.
      *
      * @return a list of classes that meet the detection critera
      */
     public List<Class<?>> getDetectedClasses() {
-        final List<Class<?>> domainClasses = new ArrayList<>();
-        new FastClasspathScanner(packageName)
-                .matchClassesWithAnnotation(annotation, domainClasses::add)
-                .scan();
+        return new ArrayList<>(DETECTED.computeIfAbsent(packageName + "@" + annotation.getName(), key -> {
+            final List<Class<?>> indexed = indexedClasses();
+            if (!indexed.isEmpty()) {
+                return Collections.unmodifiableList(indexed);
+            }
+
+            LOG.debug("No classes annotated with {} are indexed under {}, scanning the classpath",
+                    annotation.getName(), packageName);
+            final List<Class<?>> scanned = new ArrayList<>();
+            new FastClasspathScanner(packageName)
+                    .matchClassesWithAnnotation(annotation, scanned::add)
+                    .scan();
+            return Collections.unmodifiableList(scanned);
+        }));
+    }
+
+    /**
+     * Reads the indexed classes in the package that bear the annotation.  Entries naming classes that cannot be
+     * loaded, or that do not bear the annotation (e.g. left by an incremental compilation) are ignored.
+     *
+     * @return the indexed classes, empty if there are none
+     */
+    private List<Class<?>> indexedClasses() {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader() != null ?
+                Thread.currentThread().getContextClassLoader() : ModelClassScanner.class.getClassLoader();
+        final String prefix = packageName + ".";
+        final List<Class<?>> classes = new ArrayList<>();
+
+        for (String className : indexedClassNames(classLoader)) {
+            if (!className.startsWith(prefix)) {
+                continue;
+            }
+            try {
+                final Class<?> candidate = Class.forName(className, false, classLoader);
+                if (candidate.isAnnotationPresent(annotation)) {
+                    classes.add(candidate);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                LOG.debug("Ignoring indexed class {}: {}", className, e.getMessage());
+            }
+        }
+
+        return classes;
+    }
 
-        return domainClasses;
+    private Set<String> indexedClassNames(final ClassLoader classLoader) {
+        final Set<String> classNames = new LinkedHashSet<>();
+        try {
+            final Enumeration<URL> indexes = classLoader.getResources(INDEX_LOCATION + annotation.getName());
+            while (indexes.hasMoreElements()) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(indexes.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.trim().isEmpty()) {
+                            classNames.add(line.trim());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read the index of classes annotated with {}: {}", annotation.getName(),
+                    e.getMessage(), e);
+        }
+        return classNames;
     }
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Holds JSON-API documents that were embedded in a response (OSF's {@code ?embed=} parameter), so that relationships
+ * can be resolved from them rather than by additional HTTP requests.  The {@link ResourceConverterGlobalResolver}
+ * consults the documents held for the current thread before making a request.
+ * <p>
+ * Documents are held for the duration of a {@link Scope}, which is opened by the code converting a response:
+ * </p>
+ * <pre>
+ * try (PrefetchedDocuments.Scope scope = PrefetchedDocuments.open()) {
+ *     return resourceConverter.readObject(scope.register(responseBody.bytes()), Registration.class);
+ * }
+ * </pre>
+ * <p>
+ * When the OSF embeds a relationship, it removes the relationship from the resource's {@code relationships}.
+ * {@link Scope#register(byte[])} therefore restores each embedded relationship, so that the JSON-API converter
+ * resolves it as usual, and holds the embedded document under the relationship's URL.  The URL of a restored
+ * relationship is the {@code self} link of an embedded resource, or the {@code self} link of the embedding resource
+ * followed by the name of the relationship for an embedded collection (e.g.
+ * {@code http://api.osf.io/v2/nodes/r5s4u/contributors/}), which is how the OSF composes relationship URLs.  Embedded
+ * collections with more than one page are not held (the related URL is restored so the relationship is resolved over
+ * the network), and neither are embeds that carry errors.
+ * </p>
+ * <p>
+ * Scopes nest: documents remain available until the outermost scope on the thread is closed.  Documents retrieved
+ * ahead of conversion, rather than embedded, may also be held by a scope (see {@link Scope#hold(String, byte[])}).
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public final class PrefetchedDocuments {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PrefetchedDocuments.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final byte[] EMBEDS = "\"embeds\"".getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private PrefetchedDocuments() {
+        // disallow construction
+    }
+
+    /**
+     * Opens a scope on the current thread, or joins the scope already open.
+     *
+     * @return the scope, which must be closed
+     */
+    public static Scope open() {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            scope = new Scope();
+            CURRENT.set(scope);
+        }
+        scope.depth++;
+        return scope;
+    }
+
+    /**
+     * Answers the document held for the supplied URL by the current thread's scope.
+     *
+     * @param url the URL of a relationship
+     * @return the document, or {@code null} if no document is held for the URL, or no scope is open
+     */
+    public static byte[] lookup(final String url) {
+        final Scope scope = CURRENT.get();
+        if (scope == null || url == null) {
+            return null;
+        }
+
+        final byte[] document = scope.documents.get(url);
+        if (document != null) {
+            scope.hits++;
+        }
+        return document;
+    }
+
+    /**
+     * Answers whether a document is held for the supplied URL by the current thread's scope, without counting it as a
+     * resolved relationship.
+     *
+     * @param url the URL of a relationship
+     * @return true if a document is held for the URL
+     */
+    public static boolean isHeld(final String url) {
+        final Scope scope = CURRENT.get();
+        return scope != null && url != null && scope.documents.containsKey(url);
+    }
+
+    /**
+     * Documents held for the duration of a conversion on a single thread.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Map<String, byte[]> documents = new HashMap<>();
+
+        private int depth;
+
+        private int hits;
+
+        private Scope() {
+            // obtained from PrefetchedDocuments.open()
+        }
+
+        /**
+         * Holds the documents embedded in the supplied JSON-API document, and restores the embedded relationships.
+         * Documents without embeds are returned unchanged, without being parsed.
+         *
+         * @param document a JSON-API document
+         * @return the document to convert in place of the supplied document
+         */
+        public byte[] register(final byte[] document) {
+            if (document == null || !contains(document, EMBEDS)) {
+                return document;
+            }
+
+            try {
+                final JsonNode root = MAPPER.readTree(document);
+                if (!registerResources(root.get("data"))) {
+                    return document;
+                }
+                return MAPPER.writeValueAsBytes(root);
+            } catch (IOException e) {
+                // Let the converter report the problem with the document
+                LOG.debug("Unable to process embedded documents: {}", e.getMessage(), e);
+                return document;
+            }
+        }
+
+        /**
+         * Holds the documents embedded in the supplied, already parsed, JSON-API document, and restores the embedded
+         * relationships by modifying the document in place.
+         *
+         * @param document a JSON-API document
+         * @return true if the document was modified
+         */
+        public boolean register(final JsonNode document) {
+            if (document == null) {
+                return false;
+            }
+
+            try {
+                return registerResources(document.get("data"));
+            } catch (IOException e) {
+                LOG.debug("Unable to process embedded documents: {}", e.getMessage(), e);
+                return false;
+            }
+        }
+
+        /**
+         * Holds a document retrieved ahead of conversion (e.g. by a crawler), so that the relationship with the
+         * supplied URL is resolved from it.  Embedded relationships of the document are not restored; supply a
+         * document that has already been {@link #register(JsonNode) registered}.
+         *
+         * @param url the URL of the document
+         * @param document the JSON-API document
+         */
+        public void hold(final String url, final byte[] document) {
+            if (url == null) {
+                throw new IllegalArgumentException("URL must not be null.");
+            }
+            if (document == null) {
+                throw new IllegalArgumentException("Document must not be null.");
+            }
+            documents.put(url, document);
+        }
+
+        /**
+         * Answers the document held for the supplied URL, without counting it as a resolved relationship.
+         *
+         * @param url the URL of a document
+         * @return the document, or {@code null} if no document is held for the URL
+         */
+        public byte[] get(final String url) {
+            return documents.get(url);
+        }
+
+        @Override
+        public void close() {
+            if (--depth > 0) {
+                return;
+            }
+
+            LOG.debug("Resolved {} relationship(s) from {} embedded document(s)", hits, documents.size());
+            CURRENT.remove();
+        }
+
+        private boolean registerResources(final JsonNode data) throws IOException {
+            boolean modified = false;
+            if (data != null && data.isArray()) {
+                for (JsonNode resource : data) {
+                    modified |= registerResource(resource);
+                }
+            } else if (data != null && data.isObject()) {
+                modified = registerResource(data);
+            }
+            return modified;
+        }
+
+        private boolean registerResource(final JsonNode resource) throws IOException {
+            final JsonNode embeds = resource.get("embeds");
+            if (embeds == null || !embeds.isObject()) {
+                return false;
+            }
+
+            final ObjectNode relationships = ((ObjectNode) resource).with("relationships");
+            final String self = text(resource.path("links").path("self"));
+
+            final Iterator<Map.Entry<String, JsonNode>> itr = embeds.fields();
+            while (itr.hasNext()) {
+                final Map.Entry<String, JsonNode> embed = itr.next();
+                final String name = embed.getKey();
+                final JsonNode embedded = embed.getValue();
+                if (!embedded.has("data") || embedded.has("errors")) {
+                    continue;
+                }
+
+                registerResources(embedded.get("data"));
+
+                final String next = text(embedded.path("links").path("next"));
+                String href = relatedHref(relationships.path(name));
+                if (href == null) {
+                    if (embedded.get("data").isObject()) {
+                        href = text(embedded.get("data").path("links").path("self"));
+                    } else if (next != null) {
+                        href = withoutPage(next);
+                    } else if (self != null) {
+                        href = self.endsWith("/") ? self + name + "/" : self + "/" + name + "/";
+                    }
+
+                    if (href == null) {
+                        continue;
+                    }
+
+                    relationships.putObject(name).putObject("links").putObject("related").put("href", href);
+                }
+
+                if (next == null) {
+                    documents.put(href, MAPPER.writeValueAsBytes(embedded));
+                }
+            }
+
+            ((ObjectNode) resource).remove("embeds");
+            return true;
+        }
+    }
+
+    /**
+     * Answers the related link of a JSON-API relationship, which the OSF renders either as a string, or as an object
+     * with an {@code href}.
+     */
+    private static String relatedHref(final JsonNode relationship) {
+        final JsonNode related = relationship.path("links").path("related");
+        return related.isObject() ? text(related.path("href")) : text(related);
+    }
+
+    private static String text(final JsonNode node) {
+        return node.isTextual() ? node.asText() : null;
+    }
+
+    /**
+     * Removes the {@code page} query parameter from the supplied URL.
+     */
+    static String withoutPage(final String url) {
+        final String result = url.replaceAll("([?&])page=\\d+&?", "$1");
+        return result.endsWith("?") || result.endsWith("&") ? result.substring(0, result.length() - 1) : result;
+    }
+
+    private static boolean contains(final byte[] haystack, final byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -26,6 +26,30 @@ import com.github.jasminb.jsonapi.ResourceConverter;
  */
 public class ResourceConverterFactory {
 
+    private boolean lazyRelationships = false;
+
+    /**
+     * Whether the converters produced by this factory defer the resolution of collection relationships until they
+     * are accessed.
+     *
+     * @return true if converters resolve collection relationships on access
+     * @see LazyResourceConverter
+     */
+    public boolean isLazyRelationships() {
+        return lazyRelationships;
+    }
+
+    /**
+     * Whether the converters produced by this factory defer the resolution of collection relationships until they
+     * are accessed.  Defaults to {@code false}: relationships are resolved when a resource is converted.
+     *
+     * @param lazyRelationships true if converters should resolve collection relationships on access
+     * @see LazyResourceConverter
+     */
+    public void setLazyRelationships(final boolean lazyRelationships) {
+        this.lazyRelationships = lazyRelationships;
+    }
+
     /**
      * Creates a new ResourceConverter instance configured with the supplied parameters.
      *
@@ -36,8 +60,9 @@ public class ResourceConverterFactory {
      */
     public ResourceConverter newConverter(final ObjectMapper mapper, final ModelClassScanner scanner,
                                           final RelationshipResolver globalResolver) {
-        final ResourceConverter converter = new ResourceConverter(mapper,
-                scanner.getDetectedClasses().toArray(new Class[]{}));
+        final Class[] classes = scanner.getDetectedClasses().toArray(new Class[]{});
+        final ResourceConverter converter = lazyRelationships ?
+                new LazyResourceConverter(mapper, classes) : new ResourceConverter(mapper, classes);
         converter.setGlobalResolver(globalResolver);
         return converter;
     }
@@ -23,7 +23,8 @@ import java.io.IOException;
 
 /**
  * Default {@code RelationshipResolver} used by the JSON-API Converter to retrieve the contents of JSON-API
- * relationships.
+ * relationships.  Relationships whose documents were embedded in the response being converted are resolved from
+ * {@link PrefetchedDocuments}; all others are retrieved using HTTP.
  *
  * @author Elliot Metsger (emetsger@jhu.edu)
  */
@@ -42,6 +43,11 @@ public class ResourceConverterGlobalResolver implements RelationshipResolver {
 
     @Override
     public byte[] resolve(final String relationshipURL) {
+        final byte[] prefetched = PrefetchedDocuments.lookup(relationshipURL);
+        if (prefetched != null) {
+            return prefetched;
+        }
+
         final com.squareup.okhttp.Call req = httpClient.newCall(new Request.Builder().url(relationshipURL).build());
         try {
             return req.execute().body().bytes();
@@ -15,9 +15,13 @@
  */
 package org.dataconservancy.cos.osf.client.support;
 
+import com.squareup.okhttp.ConnectionPool;
 import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -31,6 +35,16 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  */
 public class BeanAccessibleOkHttpClient extends OkHttpClient {
 
+    /**
+     * Maximum idle connections of the connection pool, defaults to the OkHttp default
+     */
+    private int maxIdleConnections = 5;
+
+    /**
+     * Keep-alive duration of idle connections in the connection pool, defaults to the OkHttp default
+     */
+    private long keepAliveDurationMs = 5 * 60 * 1000;
+
     /**
      * Returns an immutable list of interceptors on the client.
      *
@@ -77,4 +91,69 @@ public class BeanAccessibleOkHttpClient extends OkHttpClient {
     public void setConnectTimeout(final int timeoutMs) {
         setConnectTimeout(timeoutMs, MILLISECONDS);
     }
+
+    /**
+     * Sets the maximum number of idle connections kept open for reuse.  Replaces the connection pool of this client
+     * (by default, the pool shared by every OkHttp client in the JVM) with a pool private to this client.
+     *
+     * @param maxIdleConnections the maximum number of idle connections
+     */
+    public void setMaxIdleConnections(final int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+        setConnectionPool(new ConnectionPool(maxIdleConnections, keepAliveDurationMs));
+    }
+
+    /**
+     * Sets how long idle connections are kept open for reuse.  Replaces the connection pool of this client (by default,
+     * the pool shared by every OkHttp client in the JVM) with a pool private to this client.
+     *
+     * @param keepAliveDurationMs the keep-alive duration in milliseconds
+     */
+    public void setKeepAliveDurationMs(final long keepAliveDurationMs) {
+        this.keepAliveDurationMs = keepAliveDurationMs;
+        setConnectionPool(new ConnectionPool(maxIdleConnections, keepAliveDurationMs));
+    }
+
+    /**
+     * Sets the maximum number of asynchronous requests executed concurrently by the dispatcher of this client.
+     *
+     * @param maxRequests the maximum number of concurrent requests
+     */
+    public void setMaxRequests(final int maxRequests) {
+        getDispatcher().setMaxRequests(maxRequests);
+    }
+
+    /**
+     * Sets the maximum number of asynchronous requests executed concurrently by the dispatcher of this client for each
+     * host.
+     *
+     * @param maxRequestsPerHost the maximum number of concurrent requests per host
+     */
+    public void setMaxRequestsPerHost(final int maxRequestsPerHost) {
+        getDispatcher().setMaxRequestsPerHost(maxRequestsPerHost);
+    }
+
+    /**
+     * Sets the protocols this client is willing to use, in order of preference, by their ALPN names (e.g. {@code h2},
+     * {@code http/1.1}).  A {@code null} or empty list leaves the protocols unchanged.
+     *
+     * @param protocolNames the names of the protocols
+     * @throws IllegalArgumentException if a protocol name is not recognized
+     */
+    public void setProtocolNames(final List<String> protocolNames) {
+        if (protocolNames == null || protocolNames.isEmpty()) {
+            return;
+        }
+
+        final List<Protocol> protocols = new ArrayList<>(protocolNames.size());
+        for (String name : protocolNames) {
+            try {
+                protocols.add(Protocol.get(name));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+
+        setProtocols(protocols);
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP metrics recorded for a single endpoint template.  All counters are safe for concurrent update.
+ *
+ * @author agent (agent@local)
+ */
+public class EndpointMetrics implements EndpointMetricsMXBean {
+
+    private final String endpoint;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder bytesOut = new LongAdder();
+
+    private final LongAdder bytesIn = new LongAdder();
+
+    private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    EndpointMetrics(final String endpoint) {
+        if (endpoint == null) {
+            throw new IllegalArgumentException("Endpoint must not be null.");
+        }
+        this.endpoint = endpoint;
+    }
+
+    void requestStarted(final long requestBytes) {
+        inFlight.incrementAndGet();
+        if (requestBytes > 0) {
+            bytesOut.add(requestBytes);
+        }
+    }
+
+    void responseReceived(final int status, final long latencyMs) {
+        inFlight.decrementAndGet();
+        requests.increment();
+        statusCounts.computeIfAbsent(status, code -> new LongAdder()).increment();
+        latency.record(latencyMs);
+    }
+
+    void requestFailed(final long latencyMs) {
+        inFlight.decrementAndGet();
+        errors.increment();
+        latency.record(latencyMs);
+    }
+
+    void bytesRead(final long count) {
+        bytesIn.add(count);
+    }
+
+    @Override
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public Map<String, Long> getStatusCounts() {
+        final Map<String, Long> result = new TreeMap<>();
+        statusCounts.forEach((status, count) -> result.put(String.valueOf(status), count.sum()));
+        return result;
+    }
+
+    @Override
+    public double getLatencyMeanMs() {
+        return latency.mean();
+    }
+
+    @Override
+    public long getLatencyMaxMs() {
+        return latency.max();
+    }
+
+    @Override
+    public long getLatency50thMs() {
+        return latency.percentile(50);
+    }
+
+    @Override
+    public long getLatency95thMs() {
+        return latency.percentile(95);
+    }
+
+    @Override
+    public long getLatency99thMs() {
+        return latency.percentile(99);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyHistogram() {
+        return latency.buckets();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s requests=%d errors=%d in-flight=%d status=%s bytes-out=%d bytes-in=%d " +
+                        "latency-ms[mean=%.1f p50=%d p95=%d p99=%d max=%d]",
+                endpoint, getRequestCount(), getErrorCount(), getInFlight(), getStatusCounts(), getBytesOut(),
+                getBytesIn(), getLatencyMeanMs(), getLatency50thMs(), getLatency95thMs(), getLatency99thMs(),
+                getLatencyMaxMs());
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing the HTTP metrics recorded for a single endpoint template.  One instance is registered
+ * with the platform MBean server per endpoint, under the {@link HttpMetrics#JMX_DOMAIN} domain.
+ *
+ * @author agent (agent@local)
+ */
+public interface EndpointMetricsMXBean {
+
+    /**
+     * @return the endpoint template, e.g. {@code GET api.osf.io/v2/nodes/{id}/files/}
+     */
+    String getEndpoint();
+
+    /**
+     * @return the number of requests that completed with an HTTP response
+     */
+    long getRequestCount();
+
+    /**
+     * @return the number of requests that failed without an HTTP response (e.g. connection or timeout errors)
+     */
+    long getErrorCount();
+
+    /**
+     * @return the number of requests currently awaiting a response
+     */
+    int getInFlight();
+
+    /**
+     * @return the number of request body bytes sent
+     */
+    long getBytesOut();
+
+    /**
+     * @return the number of response body bytes read by the caller
+     */
+    long getBytesIn();
+
+    /**
+     * @return the number of responses received, keyed by HTTP status code
+     */
+    Map<String, Long> getStatusCounts();
+
+    /**
+     * @return the mean latency, in milliseconds, to receive response headers
+     */
+    double getLatencyMeanMs();
+
+    /**
+     * @return the maximum latency, in milliseconds, to receive response headers
+     */
+    long getLatencyMaxMs();
+
+    /**
+     * @return the approximate median latency in milliseconds
+     */
+    long getLatency50thMs();
+
+    /**
+     * @return the approximate 95th percentile latency in milliseconds
+     */
+    long getLatency95thMs();
+
+    /**
+     * @return the approximate 99th percentile latency in milliseconds
+     */
+    long getLatency99thMs();
+
+    /**
+     * @return the latency histogram, keyed by bucket
+     */
+    Map<String, Long> getLatencyHistogram();
+
+}
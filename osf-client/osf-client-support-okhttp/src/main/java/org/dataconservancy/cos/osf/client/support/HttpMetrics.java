@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * A registry of {@link EndpointMetrics}, keyed by endpoint template.  An endpoint template is the HTTP method, host,
+ * and URL path of a request, with the identifiers of OSF and Waterbutler resources replaced by placeholders, so that
+ * (for example) requests for the files of every node are aggregated under {@code GET api.osf.io/v2/nodes/{id}/files/}.
+ * Query strings are not part of the template.
+ * <p>
+ * When constructed with JMX enabled, each endpoint is registered with the platform MBean server as it is first seen,
+ * using the object name {@code org.dataconservancy.cos.osf.client:type=HttpMetrics,endpoint="<template>"}.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class HttpMetrics {
+
+    /**
+     * The JMX domain used when registering endpoint metrics
+     */
+    public static final String JMX_DOMAIN = "org.dataconservancy.cos.osf.client";
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpMetrics.class);
+
+    private static final String ID = "{id}";
+
+    private static final String PATH = "{path}";
+
+    private static final Pattern VERSION = Pattern.compile("v\\d+");
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    private final boolean registerMBeans;
+
+    /**
+     * Creates a registry that does not register its metrics with JMX.
+     */
+    public HttpMetrics() {
+        this(false);
+    }
+
+    /**
+     * Creates a registry, optionally registering the metrics for each endpoint with the platform MBean server.
+     *
+     * @param registerMBeans whether or not to register endpoint metrics with JMX
+     */
+    public HttpMetrics(final boolean registerMBeans) {
+        this.registerMBeans = registerMBeans;
+    }
+
+    /**
+     * Answers the metrics for the endpoint template, creating (and optionally registering) them if necessary.
+     *
+     * @param endpoint the endpoint template
+     * @return the metrics for the endpoint, never {@code null}
+     */
+    public EndpointMetrics forEndpoint(final String endpoint) {
+        final EndpointMetrics existing = endpoints.get(endpoint);
+        if (existing != null) {
+            return existing;
+        }
+
+        final EndpointMetrics created = new EndpointMetrics(endpoint);
+        final EndpointMetrics raced = endpoints.putIfAbsent(endpoint, created);
+        if (raced != null) {
+            return raced;
+        }
+
+        if (registerMBeans) {
+            register(created);
+        }
+
+        return created;
+    }
+
+    /**
+     * Answers a snapshot of the metrics recorded so far, ordered by endpoint template.
+     *
+     * @return the metrics for each endpoint
+     */
+    public Collection<EndpointMetrics> getEndpoints() {
+        final List<EndpointMetrics> result = new ArrayList<>(endpoints.values());
+        result.sort((one, two) -> one.getEndpoint().compareTo(two.getEndpoint()));
+        return result;
+    }
+
+    /**
+     * Unregisters any endpoint metrics registered with JMX.  Recorded metrics are retained.
+     */
+    public void unregister() {
+        if (!registerMBeans) {
+            return;
+        }
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (EndpointMetrics metrics : endpoints.values()) {
+            try {
+                final ObjectName name = objectName(metrics.getEndpoint());
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                LOG.debug("Unable to unregister metrics for endpoint {}: {}", metrics.getEndpoint(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Composes the endpoint template for a request.
+     *
+     * @param method the HTTP method
+     * @param url the request URL
+     * @return the endpoint template
+     */
+    public static String endpointTemplate(final String method, final URL url) {
+        final StringBuilder template = new StringBuilder(method).append(" ").append(url.getHost());
+        if (url.getPort() > -1) {
+            template.append(":").append(url.getPort());
+        }
+        return template.append(pathTemplate(url.getPath())).toString();
+    }
+
+    /**
+     * Replaces resource identifiers in an OSF or Waterbutler URL path with placeholders.
+     * <p>
+     * Both APIs use the form {@code /<version>/<collection>/<id>/<relationship>/...}.  OSF web URLs, such as the
+     * download links of files ({@code /project/<id>/files/osfstorage/<id>/?action=download}), use the same form
+     * without the version.  The segment following the collection is always an identifier.  Below a relationship, the
+     * segment following {@code files} (OSF) or {@code providers} (Waterbutler) names a storage provider, and anything
+     * after it is a storage path, which is collapsed into a single placeholder.  Otherwise, the segment following a
+     * relationship (e.g. a contributor of a node) is an identifier, except under {@code relationships}, which names
+     * another relationship.
+     * </p>
+     *
+     * @param path the URL path
+     * @return the path with identifiers replaced by placeholders
+     */
+    static String pathTemplate(final String path) {
+        if (path == null || path.isEmpty() || path.equals("/")) {
+            return "/";
+        }
+
+        final String[] segments = path.substring(1).split("/");
+        final StringBuilder template = new StringBuilder();
+        final int collection = VERSION.matcher(segments[0]).matches() ? 1 : 0;
+        String relationship = null;
+        boolean collapsed = false;
+
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            template.append("/");
+            if (i <= collection) {
+                template.append(segment);                                     // version and collection
+            } else if (i == collection + 1) {
+                template.append(ID);                                          // resource id
+            } else if (i == collection + 2) {
+                relationship = segment;
+                template.append(segment);
+            } else if ("files".equals(relationship) || "providers".equals(relationship)) {
+                if (i == collection + 3) {
+                    template.append(segment);                                 // storage provider name
+                } else {
+                    template.append(PATH);                                    // storage path
+                    collapsed = true;
+                    break;
+                }
+            } else if ("relationships".equals(relationship) && i == collection + 3) {
+                template.append(segment);
+            } else {
+                template.append(ID);
+            }
+        }
+
+        if (path.endsWith("/") && !collapsed) {
+            template.append("/");
+        }
+
+        return template.toString();
+    }
+
+    private static ObjectName objectName(final String endpoint) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=HttpMetrics,endpoint=" + ObjectName.quote(endpoint));
+    }
+
+    private static void register(final EndpointMetrics metrics) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = objectName(metrics.getEndpoint());
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Unable to register metrics for endpoint {} with JMX: {}", metrics.getEndpoint(),
+                    e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically reports the contents of an {@link HttpMetrics} registry, one line per endpoint, either to the log (at
+ * {@code INFO}) or by appending to a file.  A final report is made when the reporter is closed, so short-lived
+ * processes (e.g. a single packaging run) still report their totals.
+ * <p>
+ * Reported values are cumulative since the registry was created.
+ * </p>
+ * <p>
+ * A period of {@code 0} disables reporting: the reporter neither reports periodically nor on close.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class HttpMetricsReporter implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpMetricsReporter.class);
+
+    private final HttpMetrics metrics;
+
+    private final long period;
+
+    private final TimeUnit unit;
+
+    private final File reportFile;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Reports to the log.
+     *
+     * @param metrics the metrics to report
+     * @param periodMs the reporting period, in milliseconds, {@code 0} to disable reporting
+     */
+    public HttpMetricsReporter(final HttpMetrics metrics, final long periodMs) {
+        this(metrics, periodMs, TimeUnit.MILLISECONDS, null);
+    }
+
+    /**
+     * Reports to the log, or appends reports to a file if one is supplied.
+     *
+     * @param metrics the metrics to report
+     * @param period the reporting period, {@code 0} to disable reporting
+     * @param unit the unit of the reporting period
+     * @param reportFile the file to append reports to, may be {@code null} to report to the log
+     */
+    public HttpMetricsReporter(final HttpMetrics metrics, final long period, final TimeUnit unit,
+                               final File reportFile) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("HttpMetrics must not be null.");
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("TimeUnit must not be null.");
+        }
+        if (period < 0) {
+            throw new IllegalArgumentException("Reporting period must not be negative.");
+        }
+        this.metrics = metrics;
+        this.period = period;
+        this.unit = unit;
+        this.reportFile = reportFile;
+    }
+
+    /**
+     * Starts reporting, unless reporting is disabled.  Reports are made on a daemon thread, so the reporter does not
+     * prevent the JVM from exiting.
+     */
+    public synchronized void start() {
+        if (scheduler != null || period == 0) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread t = new Thread(runnable, "osf-http-metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::report, period, period, unit);
+    }
+
+    /**
+     * Stops reporting, and makes a final report.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduler.shutdownNow();
+        scheduler = null;
+        report();
+    }
+
+    /**
+     * Makes a report immediately.  Reports are not made if no requests have been recorded.
+     */
+    public void report() {
+        if (metrics.getEndpoints().isEmpty()) {
+            return;
+        }
+
+        if (reportFile == null) {
+            metrics.getEndpoints().forEach(endpoint -> LOG.info("{}", endpoint));
+            return;
+        }
+
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(reportFile, true), StandardCharsets.UTF_8)) {
+            final String now = Instant.now().toString();
+            for (EndpointMetrics endpoint : metrics.getEndpoints()) {
+                out.write(now);
+                out.write(" ");
+                out.write(endpoint.toString());
+                out.write(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to write HTTP metrics to {}: {}", reportFile, e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors for blocking I/O: requests made with {@code Call.execute()}, and downloads of content.  Such tasks
+ * spend nearly all of their time waiting on the network, so a platform thread per task in flight wastes memory (each
+ * reserves a stack), and bounds the number of requests that can usefully be made at once.
+ * <p>
+ * On a Java 21 (or later) runtime, the executors answered by {@link #newIoExecutor(String, int)} run each task on its
+ * own virtual thread, and a {@link Semaphore} caps the number of tasks running at once: a task waiting for a permit,
+ * or for a response, parks its virtual thread rather than holding a platform thread.  Blocking code therefore remains
+ * blocking, but thousands of requests may wait at once for the cost of their heap.  On earlier runtimes, or when
+ * virtual threads are disabled by setting the system property {@value #VIRTUAL_THREADS_PROPERTY} to {@code false},
+ * the executors are fixed pools of daemon platform threads, one per permit.
+ * </p>
+ * <p>
+ * The project is compiled for Java 8, so the virtual thread API is reached reflectively.  Either way, the cap applies
+ * to the executor only; the connections made at once are also bounded by the OkHttp connection pool and any
+ * {@code RateLimitInterceptor}.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class IoExecutors {
+
+    /**
+     * System property which, if {@code false}, disables the use of virtual threads
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "osf.client.virtual.threads";
+
+    private static final Logger LOG = LoggerFactory.getLogger(IoExecutors.class);
+
+    /**
+     * Answers a virtual thread factory for a name prefix, or {@code null} if virtual threads are unavailable
+     */
+    private static final VirtualThreads VIRTUAL_THREADS = VirtualThreads.lookup();
+
+    private IoExecutors() {
+        // disallow construction
+    }
+
+    /**
+     * Whether executors run tasks on virtual threads: the runtime supports them, and they have not been disabled.
+     *
+     * @return true if tasks are run on virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL_THREADS != null && !"false".equalsIgnoreCase(System.getProperty(VIRTUAL_THREADS_PROPERTY));
+    }
+
+    /**
+     * Creates an executor for blocking I/O tasks, which runs at most {@code concurrency} tasks at once.  Threads are
+     * named with the supplied prefix followed by a number, and do not prevent the JVM from exiting.  The executor
+     * must be shut down by the caller.
+     *
+     * @param namePrefix prefix of the names of the threads running tasks, e.g. {@code osf-crawler-}
+     * @param concurrency the maximum number of tasks run at once
+     * @return the executor
+     */
+    public static ExecutorService newIoExecutor(final String namePrefix, final int concurrency) {
+        if (namePrefix == null) {
+            throw new IllegalArgumentException("Name prefix must not be null.");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be a positive integer.");
+        }
+
+        if (isVirtual()) {
+            return new BoundedExecutorService(VIRTUAL_THREADS.newThreadPerTaskExecutor(namePrefix), concurrency);
+        }
+
+        final AtomicInteger threadId = new AtomicInteger();
+        return Executors.newFixedThreadPool(concurrency, r -> {
+            final Thread t = new Thread(r, namePrefix + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs each task on the delegate executor once a permit is available, holding the permit until the task
+     * completes.  A task interrupted while waiting for a permit (e.g. by {@link #shutdownNow()}) is cancelled.
+     */
+    private static class BoundedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+
+        private final Semaphore permits;
+
+        private BoundedExecutorService(final ExecutorService delegate, final int concurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(concurrency);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    if (command instanceof Future) {
+                        ((Future<?>) command).cancel(false);
+                    }
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    /**
+     * The Java 21 virtual thread API, reached reflectively:
+     * {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory())}.
+     */
+    private static class VirtualThreads {
+
+        private final Method ofVirtual;
+
+        private final Method name;
+
+        private final Method factory;
+
+        private final Method newThreadPerTaskExecutor;
+
+        private VirtualThreads(final Method ofVirtual, final Method name, final Method factory,
+                               final Method newThreadPerTaskExecutor) {
+            this.ofVirtual = ofVirtual;
+            this.name = name;
+            this.factory = factory;
+            this.newThreadPerTaskExecutor = newThreadPerTaskExecutor;
+        }
+
+        /**
+         * @return the virtual thread API, or {@code null} if the runtime does not support virtual threads
+         */
+        private static VirtualThreads lookup() {
+            try {
+                final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+                final Class<?> builder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+                final VirtualThreads virtualThreads = new VirtualThreads(ofVirtual,
+                        builder.getMethod("name", String.class, long.class),
+                        builder.getMethod("factory"),
+                        Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class));
+
+                // Virtual threads are a preview feature of Java 19 and 20, which fail unless previews are enabled
+                virtualThreads.newThreadPerTaskExecutor("osf-io-probe-").shutdown();
+                LOG.debug("Virtual threads are available for blocking I/O");
+                return virtualThreads;
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                LOG.debug("Virtual threads are not available, blocking I/O will use platform threads: {}",
+                        e.toString());
+                return null;
+            }
+        }
+
+        private ExecutorService newThreadPerTaskExecutor(final String namePrefix) {
+            try {
+                final Object builder = name.invoke(ofVirtual.invoke(null), namePrefix, 1L);
+                return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory.invoke(builder));
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-bucket histogram of request latencies, in milliseconds.  Buckets grow roughly exponentially (1, 2, 5, 10,
+ * 20, 50 ... ms), which keeps recording lock-free and cheap while still distinguishing a fast metadata request from a
+ * slow binary download.  Percentiles are approximated by the upper bound of the bucket containing the requested rank.
+ *
+ * @author agent (agent@local)
+ */
+class LatencyHistogram {
+
+    /**
+     * Inclusive upper bounds of each bucket, in milliseconds.  Latencies greater than the last bound are counted in an
+     * overflow bucket.
+     */
+    static final long[] BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MS.length + 1];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param latencyMs the latency in milliseconds; negative values are recorded as zero
+     */
+    void record(final long latencyMs) {
+        final long latency = Math.max(0, latencyMs);
+        buckets[bucketOf(latency)].increment();
+        count.increment();
+        sum.add(latency);
+        max.accumulateAndGet(latency, Math::max);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        final long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Approximates the supplied percentile as the upper bound of the bucket containing it.  Percentiles that fall in
+     * the overflow bucket are reported as the maximum recorded latency.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the approximate latency in milliseconds, or 0 if nothing has been recorded
+     */
+    long percentile(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+
+        final long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS_MS[i], max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Answers the count of each bucket, keyed by a label describing the bucket (e.g. "&lt;= 50ms", "&gt; 60000ms").
+     * Empty buckets are omitted.
+     *
+     * @return the bucket counts, in ascending order of latency
+     */
+    Map<String, Long> buckets() {
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            final long n = buckets[i].sum();
+            if (n == 0) {
+                continue;
+            }
+            if (i < BOUNDS_MS.length) {
+                result.put("<= " + BOUNDS_MS[i] + "ms", n);
+            } else {
+                result.put("> " + BOUNDS_MS[BOUNDS_MS.length - 1] + "ms", n);
+            }
+        }
+        return result;
+    }
+
+    private static int bucketOf(final long latencyMs) {
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            if (latencyMs <= BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS_MS.length;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Records HTTP metrics for each request made by an {@code OkHttpClient}: latency, status code, bytes sent and received,
+ * and the number of requests in flight, aggregated by endpoint template (see
+ * {@link HttpMetrics#endpointTemplate(String, java.net.URL)}).
+ * <p>
+ * Unlike the {@link LoggingInterceptor}, this interceptor does not consume the response body.  Bytes received are
+ * counted as the caller reads the body, so a body that is never read is never counted.  Latency is measured from the
+ * time the request is dispatched until the response headers are received, and a request is considered in flight for
+ * the same period.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class MetricsInterceptor implements Interceptor {
+
+    private final HttpMetrics metrics;
+
+    /**
+     * Records metrics in the supplied registry.
+     *
+     * @param metrics the metrics registry
+     */
+    public MetricsInterceptor(final HttpMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("HttpMetrics must not be null.");
+        }
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request req = chain.request();
+        final EndpointMetrics endpoint = metrics.forEndpoint(HttpMetrics.endpointTemplate(req.method(), req.url()));
+
+        endpoint.requestStarted(req.body() == null ? 0 : req.body().contentLength());
+        final long start = System.nanoTime();
+
+        final Response res;
+        try {
+            res = chain.proceed(req);
+        } catch (IOException | RuntimeException e) {
+            endpoint.requestFailed(NANOSECONDS.toMillis(System.nanoTime() - start));
+            throw e;
+        }
+
+        endpoint.responseReceived(res.code(), NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        final ResponseBody body = res.body();
+        if (body == null) {
+            return res;
+        }
+
+        final BufferedSource counting = Okio.buffer(new ForwardingSource(body.source()) {
+            @Override
+            public long read(final Buffer sink, final long byteCount) throws IOException {
+                final long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    endpoint.bytesRead(read);
+                }
+                return read;
+            }
+        });
+
+        return res.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), counting))
+                .build();
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Response;
+import org.dataconservancy.cos.osf.client.config.OsfClientConfiguration;
+import org.dataconservancy.cos.osf.client.config.OsfConfigurationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Limits the rate of requests made by an {@code OkHttpClient} using a token bucket.  The bucket holds up to
+ * {@code burst} tokens, and is refilled at {@code requestsPerSecond}; each request takes a token, waiting for one if
+ * the bucket is empty.  Waiting requests are queued in the order they arrive, so a single instance may be safely
+ * shared by all threads using the client.
+ * <p>
+ * The limiter also adapts to the server: when a response is {@code 429 Too Many Requests} with a {@code Retry-After}
+ * header, all requests are held until the indicated time, rather than each thread discovering the limit on its own.
+ * </p>
+ * <p>
+ * A rate of {@code 0} disables the token bucket: requests proceed immediately, unless the server has asked for a
+ * pause.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimitInterceptor.class);
+
+    private final double requestsPerSecond;
+
+    private final int burst;
+
+    /**
+     * Tokens currently in the bucket.  May be negative, representing the requests already waiting for a token.
+     */
+    private double tokens;
+
+    /**
+     * The time (as {@link System#nanoTime()}) the bucket was last refilled.
+     */
+    private long refilledAt;
+
+    /**
+     * The time (as {@link System#nanoTime()}) before which no request may proceed, as requested by the server.
+     */
+    private long pausedUntil;
+
+    /**
+     * Limits requests according to the supplied parameters.
+     *
+     * @param requestsPerSecond the sustained rate of requests, {@code 0} for no limit
+     * @param burst the number of requests that may be made without delay after the client has been idle
+     */
+    public RateLimitInterceptor(final double requestsPerSecond, final int burst) {
+        if (requestsPerSecond < 0) {
+            throw new IllegalArgumentException("Requests per second must not be negative.");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Burst must be a positive integer.");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Obtains the rate limit parameters from the OSF configuration service.
+     *
+     * @param configurationService the OSF configuration service
+     * @see OsfClientConfiguration#getMax_requests_per_second()
+     * @see OsfClientConfiguration#getMax_request_burst()
+     */
+    public RateLimitInterceptor(final OsfConfigurationService configurationService) {
+        this(configurationService.getConfiguration().getMax_requests_per_second(),
+                configurationService.getConfiguration().getMax_request_burst());
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final long waitNanos = reserve(System.nanoTime());
+        if (waitNanos > 0) {
+            LOG.trace("Delaying {} by {} ms", chain.request().urlString(), NANOSECONDS.toMillis(waitNanos));
+            sleep(waitNanos);
+        }
+
+        final Response res = chain.proceed(chain.request());
+
+        if (res.code() == RetryInterceptor.SC_TOO_MANY_REQUESTS) {
+            final long retryAfterMs = RetryInterceptor.retryAfterMs(res);
+            if (retryAfterMs > 0) {
+                pause(System.nanoTime(), MILLISECONDS.toNanos(retryAfterMs));
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Takes a token from the bucket (if the rate is limited), answering how long the caller must wait before
+     * proceeding.
+     *
+     * @param now the current time, as {@link System#nanoTime()}
+     * @return the time to wait in nanoseconds, {@code 0} if the caller may proceed immediately
+     */
+    synchronized long reserve(final long now) {
+        long waitNanos = 0;
+        if (requestsPerSecond > 0) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * requestsPerSecond / SECONDS.toNanos(1));
+            refilledAt = now;
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / requestsPerSecond * SECONDS.toNanos(1));
+        }
+
+        if (pausedUntil - now > waitNanos) {
+            waitNanos = pausedUntil - now;
+        }
+
+        return waitNanos;
+    }
+
+    /**
+     * Holds all requests for the supplied duration.
+     *
+     * @param now the current time, as {@link System#nanoTime()}
+     * @param durationNanos how long to hold requests, in nanoseconds
+     */
+    synchronized void pause(final long now, final long durationNanos) {
+        if (now + durationNanos - pausedUntil > 0) {
+            LOG.debug("Server requested a pause of {} ms; holding requests", NANOSECONDS.toMillis(durationNanos));
+            pausedUntil = now + durationNanos;
+        }
+    }
+
+    private static void sleep(final long nanos) throws InterruptedIOException {
+        try {
+            NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the request rate limit.");
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import org.dataconservancy.cos.osf.client.config.OsfClientConfiguration;
+import org.dataconservancy.cos.osf.client.config.OsfConfigurationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries idempotent requests ({@code GET} and {@code HEAD}) that are refused by the API with
+ * {@code 429 Too Many Requests} or {@code 503 Service Unavailable}.
+ * <p>
+ * If the response carries a {@code Retry-After} header (either delta-seconds or an HTTP date), the request is retried
+ * after the indicated delay.  If the indicated delay exceeds the maximum retry delay, the response is returned to the
+ * caller without retrying.  Otherwise, the delay before retry {@code n} (starting at 0) is chosen at random between 0
+ * and {@code min(maxDelay, baseDelay * 2^n)} milliseconds ("full jitter"), so that concurrent clients refused at the
+ * same time do not retry in lock step.  Once retries are exhausted, the last response is returned to the caller.
+ * </p>
+ * <p>
+ * This interceptor should precede the {@link RateLimitInterceptor} in the interceptor chain, so that retries are
+ * subject to the rate limit.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class RetryInterceptor implements Interceptor {
+
+    /**
+     * Too Many Requests
+     */
+    static final int SC_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Service Unavailable
+     */
+    static final int SC_SERVICE_UNAVAILABLE = 503;
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetryInterceptor.class);
+
+    private final int maxRetries;
+
+    private final long baseDelayMs;
+
+    private final long maxDelayMs;
+
+    /**
+     * Retries requests according to the supplied parameters.
+     *
+     * @param maxRetries the maximum number of times a request is retried, may be 0
+     * @param baseDelayMs the base of the exponential backoff, in milliseconds
+     * @param maxDelayMs the maximum delay before a retry, in milliseconds
+     */
+    public RetryInterceptor(final int maxRetries, final long baseDelayMs, final long maxDelayMs) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Maximum retries must not be negative.");
+        }
+        if (baseDelayMs < 1 || maxDelayMs < 1) {
+            throw new IllegalArgumentException("Retry delays must be positive.");
+        }
+        this.maxRetries = maxRetries;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Obtains the retry parameters from the OSF configuration service.
+     *
+     * @param configurationService the OSF configuration service
+     * @see OsfClientConfiguration#getMax_retries()
+     * @see OsfClientConfiguration#getRetry_base_delay_ms()
+     * @see OsfClientConfiguration#getRetry_max_delay_ms()
+     */
+    public RetryInterceptor(final OsfConfigurationService configurationService) {
+        this(configurationService.getConfiguration().getMax_retries(),
+                configurationService.getConfiguration().getRetry_base_delay_ms(),
+                configurationService.getConfiguration().getRetry_max_delay_ms());
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request req = chain.request();
+        Response res = chain.proceed(req);
+
+        if (!isIdempotent(req)) {
+            return res;
+        }
+
+        for (int attempt = 0; attempt < maxRetries && isRetryable(res.code()); attempt++) {
+            final long retryAfterMs = retryAfterMs(res);
+            final long delayMs;
+            if (retryAfterMs > maxDelayMs) {
+                LOG.debug("Not retrying {}: Retry-After of {} ms exceeds the maximum delay of {} ms",
+                        req.urlString(), retryAfterMs, maxDelayMs);
+                return res;
+            } else if (retryAfterMs > -1) {
+                delayMs = retryAfterMs;
+            } else {
+                delayMs = backoffMs(attempt);
+            }
+
+            LOG.debug("Retrying {} in {} ms (response code {}, retry {} of {})",
+                    req.urlString(), delayMs, res.code(), attempt + 1, maxRetries);
+
+            // release the connection held by the refused response
+            res.body().close();
+            sleep(delayMs);
+
+            res = chain.proceed(req);
+        }
+
+        return res;
+    }
+
+    /**
+     * The delay before the supplied retry, absent a {@code Retry-After} header.
+     *
+     * @param attempt the retry, starting at 0
+     * @return a random delay between 0 and the exponential backoff for the retry, in milliseconds
+     */
+    long backoffMs(final int attempt) {
+        final long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Parses the {@code Retry-After} header of the response.
+     *
+     * @param res the response
+     * @return the delay requested by the server in milliseconds, or -1 if the header is absent or cannot be parsed
+     */
+    static long retryAfterMs(final Response res) {
+        final String retryAfter = res.header("Retry-After");
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // may be an HTTP date
+        }
+
+        try {
+            final Instant when = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant();
+            return Math.max(0, when.toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            LOG.debug("Unable to parse Retry-After header '{}'", retryAfter);
+            return -1;
+        }
+    }
+
+    static boolean isRetryable(final int code) {
+        return code == SC_TOO_MANY_REQUESTS || code == SC_SERVICE_UNAVAILABLE;
+    }
+
+    private static boolean isIdempotent(final Request req) {
+        return "GET".equals(req.method()) || "HEAD".equals(req.method());
+    }
+
+    private static void sleep(final long delayMs) throws InterruptedIOException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry a request.");
+        }
+    }
+
+}
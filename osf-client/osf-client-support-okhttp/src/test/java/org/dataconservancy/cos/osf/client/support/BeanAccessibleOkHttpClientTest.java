@@ -18,12 +18,16 @@
 
 package org.dataconservancy.cos.osf.client.support;
 
+import com.squareup.okhttp.ConnectionPool;
 import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Protocol;
 import com.squareup.okhttp.Response;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static junit.framework.TestCase.assertNotSame;
 import static org.junit.Assert.assertEquals;
@@ -54,6 +58,46 @@ public class BeanAccessibleOkHttpClientTest {
         assertSame(subsequentInterceptor, underTest.getInterceptors().get(0));
     }
 
+    @Test
+    public void testSetDispatcherLimits() throws Exception {
+        final BeanAccessibleOkHttpClient underTest = new BeanAccessibleOkHttpClient();
+
+        underTest.setMaxRequests(128);
+        underTest.setMaxRequestsPerHost(32);
+
+        assertEquals(128, underTest.getDispatcher().getMaxRequests());
+        assertEquals(32, underTest.getDispatcher().getMaxRequestsPerHost());
+    }
+
+    @Test
+    public void testSetConnectionPool() throws Exception {
+        final BeanAccessibleOkHttpClient underTest = new BeanAccessibleOkHttpClient();
+
+        underTest.setMaxIdleConnections(20);
+        final ConnectionPool pool = underTest.getConnectionPool();
+        assertNotSame(ConnectionPool.getDefault(), pool);
+
+        underTest.setKeepAliveDurationMs(1000);
+        assertNotSame(pool, underTest.getConnectionPool());
+    }
+
+    @Test
+    public void testSetProtocolNames() throws Exception {
+        final BeanAccessibleOkHttpClient underTest = new BeanAccessibleOkHttpClient();
+        final List<Protocol> defaults = underTest.getProtocols();
+
+        underTest.setProtocolNames(null);
+        assertEquals(defaults, underTest.getProtocols());
+
+        underTest.setProtocolNames(Arrays.asList(Protocol.HTTP_2.toString(), Protocol.HTTP_1_1.toString()));
+        assertEquals(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1), underTest.getProtocols());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetUnknownProtocolName() throws Exception {
+        new BeanAccessibleOkHttpClient().setProtocolNames(Arrays.asList("gopher", "http/1.1"));
+    }
+
     private class MockInterceptor implements Interceptor {
 
         @Override
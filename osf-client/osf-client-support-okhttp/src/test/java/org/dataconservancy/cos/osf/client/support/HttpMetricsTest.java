@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Insures endpoint templates are composed properly, and that metrics are registered with JMX.
+ *
+ * @author agent (agent@local)
+ */
+public class HttpMetricsTest {
+
+    @Test
+    public void testPathTemplate() throws Exception {
+        assertEquals("/", HttpMetrics.pathTemplate("/"));
+        assertEquals("/v2/nodes/", HttpMetrics.pathTemplate("/v2/nodes/"));
+        assertEquals("/v2/registrations/{id}/", HttpMetrics.pathTemplate("/v2/registrations/eq7a4/"));
+        assertEquals("/v2/nodes/{id}/contributors/{id}/",
+                HttpMetrics.pathTemplate("/v2/nodes/ts6h8/contributors/5cqgu/"));
+        assertEquals("/v2/nodes/{id}/relationships/institutions/",
+                HttpMetrics.pathTemplate("/v2/nodes/ts6h8/relationships/institutions/"));
+        assertEquals("/v2/nodes/{id}/files/osfstorage/",
+                HttpMetrics.pathTemplate("/v2/nodes/ts6h8/files/osfstorage/"));
+        assertEquals("/v2/nodes/{id}/files/osfstorage/{path}",
+                HttpMetrics.pathTemplate("/v2/nodes/ts6h8/files/osfstorage/57570a07c7950c0045ac803e/"));
+        assertEquals("/v1/resources/{id}/providers/osfstorage/{path}",
+                HttpMetrics.pathTemplate("/v1/resources/ts6h8/providers/osfstorage/57570a07c7950c0045ac803e"));
+        assertEquals("/project/{id}/files/osfstorage/{path}",
+                HttpMetrics.pathTemplate("/project/5w8q7/files/osfstorage/5757056dc7950c0045ac7fdf/"));
+    }
+
+    /**
+     * Insures that the node and file identifiers of an OSF download link (as found in the {@code download} links of
+     * files in the OSF v2 API fixtures) are templated.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownloadLinkTemplate() throws Exception {
+        assertEquals("GET localhost:8000/project/{id}/files/osfstorage/{path}",
+                HttpMetrics.endpointTemplate("GET", new URL("http://localhost:8000" +
+                        "/project/5w8q7/files/osfstorage/5757056dc7950c0045ac7fdf/?action=download")));
+        assertEquals(HttpMetrics.endpointTemplate("GET", new URL("http://localhost:8000" +
+                        "/project/6uwzk/files/osfstorage/57570573c7950c0045ac7fe2/?action=download")),
+                HttpMetrics.endpointTemplate("GET", new URL("http://localhost:8000" +
+                        "/project/5w8q7/files/osfstorage/5757056dc7950c0045ac7fdf/?action=download")));
+    }
+
+    @Test
+    public void testEndpointTemplate() throws Exception {
+        assertEquals("GET localhost:8000/v2/files/{id}/versions/",
+                HttpMetrics.endpointTemplate("GET",
+                        new URL("http://localhost:8000/v2/files/57570a07c7950c0045ac803e/versions/?page=2")));
+    }
+
+    @Test
+    public void testJmxRegistration() throws Exception {
+        final String endpoint = "GET example.org/v2/testJmxRegistration/";
+        final ObjectName name = new ObjectName(HttpMetrics.JMX_DOMAIN + ":type=HttpMetrics,endpoint=" +
+                ObjectName.quote(endpoint));
+        final HttpMetrics metrics = new HttpMetrics(true);
+
+        final EndpointMetrics created = metrics.forEndpoint(endpoint);
+        assertSame(created, metrics.forEndpoint(endpoint));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        metrics.unregister();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Insures executors answered by {@link IoExecutors} cap the number of tasks run at once, whether or not the runtime
+ * supports virtual threads.
+ *
+ * @author agent (agent@local)
+ */
+public class IoExecutorsTest {
+
+    /**
+     * Insures no more than the configured number of tasks run at once, every task is run, and threads are named with
+     * the supplied prefix.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrencyCap() throws Exception {
+        final ExecutorService underTest = IoExecutors.newIoExecutor("io-test-", 3);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(underTest.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    threadNames.add(Thread.currentThread().getName());
+                    Thread.sleep(1);
+                    running.decrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+        } finally {
+            underTest.shutdownNow();
+        }
+
+        assertTrue("Ran " + maxRunning.get() + " tasks at once", maxRunning.get() <= 3);
+        assertFalse(threadNames.isEmpty());
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("io-test-")));
+    }
+
+    /**
+     * Insures shutting the executor down interrupts running tasks, and terminates the executor.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testShutdownNow() throws Exception {
+        final ExecutorService underTest = IoExecutors.newIoExecutor("io-test-", 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        underTest.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        underTest.submit(() -> { });
+
+        assertTrue(started.await(10, SECONDS));
+        underTest.shutdownNow();
+
+        assertTrue(interrupted.await(10, SECONDS));
+        assertTrue(underTest.awaitTermination(10, SECONDS));
+        assertTrue(underTest.isShutdown());
+    }
+
+}
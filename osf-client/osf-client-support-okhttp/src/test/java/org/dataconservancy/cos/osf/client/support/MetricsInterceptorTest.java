@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Insures the {@link MetricsInterceptor} records metrics without consuming the response body.
+ *
+ * @author agent (agent@local)
+ */
+public class MetricsInterceptorTest {
+
+    private static final MediaType JSON = MediaType.parse("application/vnd.api+json");
+
+    private static final String ENDPOINT = "GET api.osf.io/v2/nodes/{id}/files/";
+
+    /**
+     * Insures the status code is recorded, and bytes are counted as the caller reads the body.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecordResponse() throws Exception {
+        final String body = "{\"data\": []}";
+        final Request req = new Request.Builder().url("https://api.osf.io/v2/nodes/ab12c/files/?page=2").build();
+        final Interceptor.Chain chain = chain(req, 200, body);
+        final HttpMetrics metrics = new HttpMetrics();
+
+        final Response res = new MetricsInterceptor(metrics).intercept(chain);
+
+        final EndpointMetrics endpoint = metrics.forEndpoint(ENDPOINT);
+        assertEquals(1, endpoint.getRequestCount());
+        assertEquals(0, endpoint.getInFlight());
+        assertEquals(Long.valueOf(1), endpoint.getStatusCounts().get("200"));
+        assertEquals(0, endpoint.getBytesIn());
+
+        assertEquals(body, res.body().string());
+        assertEquals(body.length(), endpoint.getBytesIn());
+        assertEquals(1, metrics.getEndpoints().size());
+    }
+
+    /**
+     * Insures that the bytes of a request body are recorded.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecordRequestBody() throws Exception {
+        final String content = "{\"data\": {\"type\": \"comments\"}}";
+        final Request req = new Request.Builder().url("https://api.osf.io/v2/nodes/ab12c/comments/")
+                .post(RequestBody.create(JSON, content)).build();
+        final HttpMetrics metrics = new HttpMetrics();
+
+        new MetricsInterceptor(metrics).intercept(chain(req, 201, ""));
+
+        final EndpointMetrics endpoint = metrics.forEndpoint("POST api.osf.io/v2/nodes/{id}/comments/");
+        assertEquals(content.length(), endpoint.getBytesOut());
+        assertEquals(Long.valueOf(1), endpoint.getStatusCounts().get("201"));
+    }
+
+    /**
+     * Insures that a request failing without a response is recorded as an error, and is no longer in flight.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecordFailure() throws Exception {
+        final Request req = new Request.Builder().url("https://api.osf.io/v2/nodes/ab12c/files/").build();
+        final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(req);
+        when(chain.proceed(any(Request.class))).thenThrow(new SocketTimeoutException("timeout"));
+        final HttpMetrics metrics = new HttpMetrics();
+
+        try {
+            new MetricsInterceptor(metrics).intercept(chain);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+
+        final EndpointMetrics endpoint = metrics.forEndpoint(ENDPOINT);
+        assertEquals(1, endpoint.getErrorCount());
+        assertEquals(0, endpoint.getRequestCount());
+        assertEquals(0, endpoint.getInFlight());
+    }
+
+    private static Interceptor.Chain chain(final Request req, final int code, final String body) throws IOException {
+        final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(req);
+        when(chain.proceed(any(Request.class))).thenReturn(new Response.Builder()
+                .request(req)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(ResponseBody.create(JSON, body))
+                .build());
+        return chain;
+    }
+
+}
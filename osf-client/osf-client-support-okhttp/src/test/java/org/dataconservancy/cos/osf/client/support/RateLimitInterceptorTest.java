@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Insures the token bucket arithmetic of the {@link RateLimitInterceptor}.
+ *
+ * @author agent (agent@local)
+ */
+public class RateLimitInterceptorTest {
+
+    /**
+     * Insures a burst proceeds without delay, after which requests are spaced at the configured rate.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBurstThenRate() throws Exception {
+        final RateLimitInterceptor underTest = new RateLimitInterceptor(10, 2);
+        final long now = System.nanoTime();
+
+        assertEquals(0, underTest.reserve(now));
+        assertEquals(0, underTest.reserve(now));
+        assertEquals(MILLISECONDS.toNanos(100), underTest.reserve(now), MILLISECONDS.toNanos(1));
+        assertEquals(MILLISECONDS.toNanos(200), underTest.reserve(now), MILLISECONDS.toNanos(1));
+
+        // after a second of idleness, the bucket refills to the burst size (having paid off the two waiting requests)
+        assertEquals(0, underTest.reserve(now + SECONDS.toNanos(1)));
+        assertEquals(0, underTest.reserve(now + SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Insures requests are held while the server has asked the client to pause.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPause() throws Exception {
+        final RateLimitInterceptor underTest = new RateLimitInterceptor(100, 10);
+        final long now = System.nanoTime();
+
+        underTest.pause(now, SECONDS.toNanos(2));
+
+        assertEquals(SECONDS.toNanos(2), underTest.reserve(now));
+        assertEquals(SECONDS.toNanos(1), underTest.reserve(now + SECONDS.toNanos(1)));
+        assertEquals(0, underTest.reserve(now + SECONDS.toNanos(3)));
+    }
+
+    /**
+     * Insures that a rate of 0 does not limit requests, but still holds them while the server has asked the client to
+     * pause.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPauseWithoutRateLimit() throws Exception {
+        final RateLimitInterceptor underTest = new RateLimitInterceptor(0, 1);
+        final long now = System.nanoTime();
+
+        assertEquals(0, underTest.reserve(now));
+        assertEquals(0, underTest.reserve(now));
+
+        underTest.pause(now, SECONDS.toNanos(2));
+
+        assertEquals(SECONDS.toNanos(2), underTest.reserve(now));
+        assertEquals(0, underTest.reserve(now + SECONDS.toNanos(2)));
+    }
+
+}
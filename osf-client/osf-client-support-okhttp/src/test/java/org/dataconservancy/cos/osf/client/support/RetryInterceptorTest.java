@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.osf.client.support;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Insures the {@link RetryInterceptor} retries refused idempotent requests, and honors {@code Retry-After}.
+ *
+ * @author agent (agent@local)
+ */
+public class RetryInterceptorTest {
+
+    private static final MediaType JSON = MediaType.parse("application/vnd.api+json");
+
+    private final Request get = new Request.Builder().url("http://example.org/v2/nodes/").build();
+
+    /**
+     * Insures a 429 is retried, and the subsequent response is returned.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRetryTooManyRequests() throws Exception {
+        final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(get);
+        when(chain.proceed(any(Request.class)))
+                .thenReturn(response(get, 429, "0"))
+                .thenReturn(response(get, 503, null))
+                .thenReturn(response(get, 200, null));
+
+        final Response res = new RetryInterceptor(3, 1, 10).intercept(chain);
+
+        assertEquals(200, res.code());
+        verify(chain, times(3)).proceed(any(Request.class));
+    }
+
+    /**
+     * Insures that the last response is returned once retries are exhausted.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRetriesExhausted() throws Exception {
+        final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(get);
+        when(chain.proceed(any(Request.class))).then(invocation -> response(get, 503, null));
+
+        final Response res = new RetryInterceptor(2, 1, 10).intercept(chain);
+
+        assertEquals(503, res.code());
+        verify(chain, times(3)).proceed(any(Request.class));
+    }
+
+    /**
+     * Insures that a request is not retried if the server asks for a longer delay than the maximum retry delay.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRetryAfterExceedsMaximumDelay() throws Exception {
+        final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(get);
+        when(chain.proceed(any(Request.class))).thenReturn(response(get, 429, "120"));
+
+        final Response res = new RetryInterceptor(3, 1, 1000).intercept(chain);
+
+        assertEquals(429, res.code());
+        verify(chain, times(1)).proceed(any(Request.class));
+    }
+
+    /**
+     * Insures that non-idempotent requests are never retried.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPostNotRetried() throws Exception {
+        final Request post = new Request.Builder().url("http://example.org/v2/nodes/")
+                .post(RequestBody.create(JSON, "{}")).build();
+        final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(post);
+        when(chain.proceed(any(Request.class))).thenReturn(response(post, 503, null));
+
+        assertEquals(503, new RetryInterceptor(3, 1, 10).intercept(chain).code());
+        verify(chain, times(1)).proceed(any(Request.class));
+    }
+
+    /**
+     * Insures both forms of {@code Retry-After} are parsed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRetryAfterMs() throws Exception {
+        assertEquals(-1, RetryInterceptor.retryAfterMs(response(get, 429, null)));
+        assertEquals(-1, RetryInterceptor.retryAfterMs(response(get, 429, "soon")));
+        assertEquals(5000, RetryInterceptor.retryAfterMs(response(get, 429, "5")));
+
+        final String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+        final long delay = RetryInterceptor.retryAfterMs(response(get, 429, date));
+        assertTrue("Unexpected delay " + delay, delay > 20 * 1000 && delay <= 30 * 1000);
+    }
+
+    /**
+     * Insures the backoff never exceeds the maximum delay.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBackoffBounded() throws Exception {
+        final RetryInterceptor underTest = new RetryInterceptor(100, 100, 1000);
+        for (int attempt = 0; attempt < 100; attempt++) {
+            final long delay = underTest.backoffMs(attempt);
+            assertTrue(delay >= 0 && delay <= Math.min(1000, 100L << Math.min(attempt, 30)));
+        }
+    }
+
+    private static Response response(final Request req, final int code, final String retryAfter) {
+        final Response.Builder builder = new Response.Builder()
+                .request(req)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(ResponseBody.create(JSON, "{}"));
+        if (retryAfter != null) {
+            builder.header("Retry-After", retryAfter);
+        }
+        return builder.build();
+    }
+
+}
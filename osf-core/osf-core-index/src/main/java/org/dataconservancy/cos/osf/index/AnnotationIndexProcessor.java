@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.osf.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Indexes annotated classes at build time, so they may be found at runtime without scanning the classpath.  The
+ * classes compiled with this processor that bear an indexed annotation are listed by binary name, one per line, in
+ * {@code META-INF/annotations/<annotation class name>} of the class output.  Every jar on the classpath may carry an
+ * index for the same annotation.
+ * <p>
+ * The processor is registered in {@code META-INF/services}, so it runs whenever this module is on the compile
+ * classpath; modules declare it with {@code provided} scope, so that it does not run in the modules depending on
+ * them.  Only JSON-API model classes (those annotated with {@code com.github.jasminb.jsonapi.annotations.Type}) are
+ * indexed.  When compilation is incremental, entries of an index already present in the class output are retained,
+ * so readers must tolerate entries naming classes that no longer exist, or no longer bear the annotation.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+@SupportedAnnotationTypes(AnnotationIndexProcessor.JSON_API_TYPE)
+public class AnnotationIndexProcessor extends AbstractProcessor {
+
+    /**
+     * Classpath directory containing the index of each annotation
+     */
+    public static final String INDEX_LOCATION = "META-INF/annotations/";
+
+    /**
+     * The JSON-API converter annotation identifying model classes
+     */
+    static final String JSON_API_TYPE = "com.github.jasminb.jsonapi.annotations.Type";
+
+    /**
+     * Names of the annotated classes found so far, keyed by annotation name
+     */
+    private final Map<String, Set<String>> indexed = new LinkedHashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            final Set<String> classNames = indexed.computeIfAbsent(annotation.getQualifiedName().toString(),
+                    name -> new TreeSet<>());
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element instanceof TypeElement) {
+                    classNames.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+                }
+            }
+        }
+
+        if (roundEnv.processingOver()) {
+            indexed.forEach(this::write);
+        }
+
+        // Other processors may be interested in the same annotations
+        return false;
+    }
+
+    private void write(final String annotationName, final Set<String> classNames) {
+        final String resource = INDEX_LOCATION + annotationName;
+        try {
+            classNames.addAll(existing(resource));
+            final FileObject index = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", resource);
+            try (Writer out = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String className : classNames) {
+                    out.write(className);
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write the index of " + annotationName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Answers the entries of an index left in the class output by a previous compilation, if any.
+     */
+    private Set<String> existing(final String resource) {
+        final Set<String> classNames = new TreeSet<>();
+        try {
+            final FileObject index = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", resource);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(index.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        classNames.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no previous index
+        }
+        return classNames;
+    }
+
+}
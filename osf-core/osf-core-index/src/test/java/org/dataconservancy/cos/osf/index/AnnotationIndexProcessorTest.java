@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.osf.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles sources with the {@link AnnotationIndexProcessor}, and reads the resulting index.
+ *
+ * @author agent (agent@local)
+ */
+public class AnnotationIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Insures that top-level and nested classes bearing the JSON-API {@code Type} annotation are indexed by their
+     * binary names, and that classes without it are not.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIndex() throws Exception {
+        final File sources = tmp.newFolder("src");
+        final File classes = tmp.newFolder("classes");
+        final List<File> files = new ArrayList<>();
+        files.add(source(sources, "com/github/jasminb/jsonapi/annotations/Type.java",
+                "package com.github.jasminb.jsonapi.annotations;",
+                "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)",
+                "public @interface Type { String value(); }"));
+        files.add(source(sources, "model/Node.java",
+                "package model;",
+                "@com.github.jasminb.jsonapi.annotations.Type(\"nodes\")",
+                "public class Node {",
+                "  @com.github.jasminb.jsonapi.annotations.Type(\"wikis\") public static class Wiki { }",
+                "}"));
+        files.add(source(sources, "model/Unannotated.java",
+                "package model;",
+                "public class Unannotated { }"));
+
+        compile(classes, files);
+
+        final Set<String> indexed = read(classes);
+        assertEquals(2, indexed.size());
+        assertTrue(indexed.contains("model.Node"));
+        assertTrue(indexed.contains("model.Node$Wiki"));
+    }
+
+    /**
+     * Insures that the entries of an index left by a previous compilation are retained when only some classes are
+     * recompiled.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIncrementalCompilation() throws Exception {
+        final File sources = tmp.newFolder("src");
+        final File classes = tmp.newFolder("classes");
+        final File annotation = source(sources, "com/github/jasminb/jsonapi/annotations/Type.java",
+                "package com.github.jasminb.jsonapi.annotations;",
+                "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)",
+                "public @interface Type { String value(); }");
+        final File node = source(sources, "model/Node.java",
+                "package model;",
+                "@com.github.jasminb.jsonapi.annotations.Type(\"nodes\")",
+                "public class Node { }");
+        final File file = source(sources, "model/File.java",
+                "package model;",
+                "@com.github.jasminb.jsonapi.annotations.Type(\"files\")",
+                "public class File { }");
+
+        compile(classes, Arrays.asList(annotation, node));
+        assertEquals(1, read(classes).size());
+
+        compile(classes, Arrays.asList(annotation, file));
+        final Set<String> indexed = read(classes);
+        assertEquals(2, indexed.size());
+        assertTrue(indexed.contains("model.Node"));
+        assertTrue(indexed.contains("model.File"));
+    }
+
+    private static File source(final File sources, final String path, final String... lines) throws IOException {
+        final File source = new File(sources, path);
+        assertTrue(source.getParentFile().isDirectory() || source.getParentFile().mkdirs());
+        Files.write(source.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return source;
+    }
+
+    private static void compile(final File classes, final List<File> sources) throws Exception {
+        final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        final List<String> args = new ArrayList<>(Arrays.asList(
+                "-d", classes.getPath(),
+                "-classpath", classes.getPath(),
+                "-processor", AnnotationIndexProcessor.class.getName(),
+                "-processorpath", new File(AnnotationIndexProcessor.class.getProtectionDomain().getCodeSource()
+                        .getLocation().toURI()).getPath()));
+        sources.forEach(source -> args.add(source.getPath()));
+        assertEquals(0, javac.run(null, null, null, args.toArray(new String[args.size()])));
+    }
+
+    private static Set<String> read(final File classes) throws IOException {
+        final File index = new File(classes,
+                AnnotationIndexProcessor.INDEX_LOCATION + AnnotationIndexProcessor.JSON_API_TYPE);
+        assertTrue(index.isFile());
+        return new HashSet<>(Files.readAllLines(index.toPath(), StandardCharsets.UTF_8));
+    }
+
+}
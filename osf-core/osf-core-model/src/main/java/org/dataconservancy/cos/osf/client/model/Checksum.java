@@ -20,9 +20,28 @@ package org.dataconservancy.cos.osf.client.model;
  */
 public class Checksum {
 
-    enum Algorithm {
-        SHA256,
-        MD5
+    /**
+     * Checksum algorithms, named as the OSF names them (ignoring case).
+     */
+    public enum Algorithm {
+        SHA256 ("SHA-256"),
+        MD5 ("MD5"),
+        SHA1 ("SHA-1");
+
+        private final String jcaName;
+
+        Algorithm(final String jcaName) {
+            this.jcaName = jcaName;
+        }
+
+        /**
+         * The name of the algorithm understood by {@link java.security.MessageDigest#getInstance(String)}.
+         *
+         * @return the standard name of the algorithm
+         */
+        public String getJcaName() {
+            return jcaName;
+        }
     }
 
     private final Algorithm algorithm;
@@ -25,7 +25,9 @@ import java.util.stream.Collectors;
 import org.dataconservancy.cos.osf.client.support.DateTimeTransform;
 import org.dataconservancy.cos.osf.client.support.DownloadLinkTransform;
 import org.dataconservancy.cos.osf.client.support.JodaSupport;
+import org.dataconservancy.cos.osf.client.support.Md5HashTransform;
 import org.dataconservancy.cos.osf.client.support.ProviderIdTransform;
+import org.dataconservancy.cos.osf.client.support.Sha256HashTransform;
 import org.dataconservancy.cos.rdf.annotations.IndividualUri;
 import org.dataconservancy.cos.rdf.annotations.OwlIndividual;
 import org.dataconservancy.cos.rdf.annotations.OwlProperty;
@@ -121,12 +123,16 @@ public class File {
 
     private DateTime last_touched;
 
-    private int current_version;
+    /**number of the current version of the file, incremented each time its content is updated, null if absent*/
+    @OwlProperty(OwlProperties.OSF_HAS_CURRENT_VERSION)
+    private Integer current_version;
 
     private String guid;
 
     private List<String> tags;
 
+    /**additional metadata reported by the storage provider, including the checksums of the file*/
+    @OwlProperty(value = OwlProperties.OSF_HAS_SHA256, transform = Sha256HashTransform.class)
     private Map<String, ?> extra;
 
     /**
@@ -410,7 +416,7 @@ public class File {
      *
      * @return
      */
-    public int getCurrent_version() {
+    public Integer getCurrent_version() {
         return current_version;
     }
 
@@ -418,7 +424,7 @@ public class File {
      *
      * @param current_version
      */
-    public void setCurrent_version(final int current_version) {
+    public void setCurrent_version(final Integer current_version) {
         this.current_version = current_version;
     }
 
@@ -470,6 +476,15 @@ public class File {
         this.extra = extra;
     }
 
+    /**
+     * The MD5 checksum of the file reported by the storage provider, if any.
+     *
+     * @return the lower-case hex MD5 checksum, or {@code null} if none was reported
+     */
+    public String getMd5() {
+        return extra == null ? null : new Md5HashTransform().apply(extra);
+    }
+
     /**
      *
      * @return
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dataconservancy.cos.osf.client.support;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Extracts a checksum from the "hashes" reported in the "extra" map of a file.  Subclasses supply the key of the
+ * checksum they extract.  If the checksum is not present, {@code null} is returned.
+ *
+ * @author agent (agent@local)
+ */
+public abstract class AbstractHashTransform implements Function<Map<String, ?>, String> {
+
+    private final String key;
+
+    /**
+     * Constructs a transform extracting the checksum stored under {@code key} in the "hashes" map.
+     *
+     * @param key the key of the checksum, e.g. "md5" or "sha256"
+     */
+    protected AbstractHashTransform(final String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Hash key must not be null.");
+        }
+        this.key = key;
+    }
+
+    @Override
+    public String apply(final Map<String, ?> extra) {
+        final Object hashes = extra.get("hashes");
+        if (hashes instanceof Map) {
+            final Object hash = ((Map<?, ?>) hashes).get(key);
+            if (hash instanceof String && !((String) hash).isEmpty()) {
+                return ((String) hash).toLowerCase();
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dataconservancy.cos.osf.client.support;
+
+/**
+ * Extracts the SHA-256 checksum from the "hashes" reported in the "extra" map of a file.  If the checksum is not
+ * present, {@code null} is returned.
+ *
+ * @author agent (agent@local)
+ */
+public class Sha256HashTransform extends AbstractHashTransform {
+
+    /**
+     * Constructs a transform extracting the "sha256" hash.
+     */
+    public Sha256HashTransform() {
+        super("sha256");
+    }
+}
@@ -23,9 +23,13 @@ import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntProperty;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.shared.Lock;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Provides a facade for creating OWL Individuals and Properties over a Jena {@code OntModel}.
@@ -90,6 +94,13 @@ public class OntologyManager {
      */
     private OntModel readOnlyOntModel;
 
+    /**
+     * Ontologies parsed by previous instances, keyed by resource, base URI and serialization format.  The models are
+     * never modified; their statements are copied into the {@code OntModel}s of each new instance, which is much
+     * cheaper than parsing the ontology again.
+     */
+    private static final ConcurrentMap<String, Model> PARSED = new ConcurrentHashMap<>();
+
     /**
      * Constructs a facade around the OSF ontology.
      */
@@ -100,7 +111,8 @@ public class OntologyManager {
     /**
      * Constructs a facade around the supplied ontology.  Resolves the classpath resource {@code ontologyResource} and
      * loads it into a Jena {@code OntModel}.  Resources added to this ontology will use the {@code baseUri} to resolve
-     * relative URIs.
+     * relative URIs.  The resource is parsed once per JVM: later instances constructed with the same parameters copy
+     * the parsed statements.
      *
      * @param ontologyResource the classpath resource which resolves to an OWL ontology
      * @param baseUri the baseUri used to resolve relative URIs
@@ -110,21 +122,46 @@ public class OntologyManager {
         ontModel = ModelFactory.createOntologyModel();
         readOnlyOntModel = ModelFactory.createOntologyModel();
 
-        final URL ontologyUrl = this.getClass().getResource(ontologyResource);
+        final Model parsed = PARSED.computeIfAbsent(ontologyResource + " " + baseUri + " " + serializationFormat,
+                key -> parse(ontologyResource, baseUri, serializationFormat));
+
+        parsed.enterCriticalSection(Lock.READ);
+        try {
+            ontModel.setNsPrefixes(parsed);
+            ontModel.add(parsed);
+            readOnlyOntModel.setNsPrefixes(parsed);
+            readOnlyOntModel.add(parsed);
+        } finally {
+            parsed.leaveCriticalSection();
+        }
+    }
+
+    /**
+     * Parses the ontology resource into a new {@code Model}.
+     *
+     * @param ontologyResource the classpath resource which resolves to an OWL ontology
+     * @param baseUri the baseUri used to resolve relative URIs
+     * @param serializationFormat the serialization format of the OWL ontology
+     * @return the parsed ontology
+     */
+    private static Model parse(final String ontologyResource, final String baseUri, final String serializationFormat) {
+        final URL ontologyUrl = OntologyManager.class.getResource(ontologyResource);
 
         if (ontologyUrl == null) {
             throw new IllegalArgumentException(
                     String.format("Could not resolve ontology classpath resource %s", ontologyResource));
         }
 
-        try {
-            ontModel.read(ontologyUrl.openStream(), baseUri, serializationFormat);
-            readOnlyOntModel.read(ontologyUrl.openStream(), baseUri, serializationFormat);
+        final Model model = ModelFactory.createDefaultModel();
+        try (InputStream in = ontologyUrl.openStream()) {
+            model.read(in, baseUri, serializationFormat);
         } catch (IOException e) {
             throw new RuntimeException(
                     String.format(
                             "Unable to read ontology resource from %s: %s", ontologyUrl.toString(), e.getMessage()), e);
         }
+
+        return model;
     }
 
     /**
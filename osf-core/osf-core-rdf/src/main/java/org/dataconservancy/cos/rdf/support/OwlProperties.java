@@ -205,6 +205,10 @@ public enum OwlProperties {
 
     OSF_HAS_BINARYURI ("hasBinaryUri"),
 
+    OSF_HAS_SHA256 ("hasSha256"),
+
+    OSF_HAS_CURRENT_VERSION ("hasCurrentVersion"),
+
     OSF_PROVIDER_NAME ("providerName"),
 
     OSF_HAS_ORCID ("hasOrcid"),
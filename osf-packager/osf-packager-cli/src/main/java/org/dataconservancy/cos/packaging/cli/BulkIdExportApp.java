@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import org.dataconservancy.cos.osf.client.model.LightNode;
+import org.dataconservancy.cos.osf.client.model.LightRegistration;
+import org.dataconservancy.cos.osf.client.retrofit.BulkIdExporter;
+import org.dataconservancy.cos.osf.client.retrofit.JsonApiParams;
+import org.dataconservancy.cos.osf.client.retrofit.OsfClientComponents;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Application exporting the identifiers (and creation and modification dates) of every node or registration matching
+ * a filter to a file of newline-delimited JSON, using a {@link BulkIdExporter}.  An interrupted export is resumed by
+ * repeating the command.
+ *
+ * @author agent (agent@local)
+ */
+public class BulkIdExportApp {
+
+    /**
+     * Request for help/usage documentation
+     */
+    @Option(name = "-h", aliases = {"-help", "--help"}, usage = "print help message")
+    private boolean help = false;
+
+    /**
+     * the path to the OSF Java client configuration
+     */
+    @Option(name = "-c", aliases = {"-configuration", "--configuration"}, required = true, usage = "path to the OSF Java client configuration")
+    private static File confFile;
+
+    /**
+     * the file the records are written to
+     */
+    @Option(name = "-o", aliases = {"-output", "--output"}, required = true, usage = "path to the file the records are written to, one JSON object per line")
+    private static File output;
+
+    /**
+     * the type of resource exported
+     */
+    @Option(name = "-t", aliases = {"-type", "--type"}, usage = "the type of resource exported: nodes or registrations")
+    private static String type = "registrations";
+
+    /**
+     * filters applied to the collection
+     */
+    @Option(name = "-f", aliases = {"-filter", "--filter"}, usage = "filter the collection by the value of a field, e.g. public=true; may be repeated")
+    private static List<String> filters = new ArrayList<>();
+
+    /**
+     * the sort order of the collection
+     */
+    @Option(name = "-S", aliases = {"-sort", "--sort"}, usage = "comma-separated fields the collection is sorted by, a field prefixed with - is sorted in descending order")
+    private static String sort = "date_created";
+
+    /**
+     * the number of pages retrieved at once
+     */
+    @Option(name = "-k", aliases = {"-concurrency", "--concurrency"}, usage = "the number of pages retrieved at once")
+    private static int concurrency = 4;
+
+    /**
+     * the number of records requested per page
+     */
+    @Option(name = "-s", aliases = {"-page-size", "--page-size"}, usage = "the number of records requested per page; an export is resumed with the page size it was started with")
+    private static int pageSize = BulkIdExporter.DEFAULT_PAGE_SIZE;
+
+    /**
+     * @param args
+     */
+    public static void main(final String[] args) {
+
+        final BulkIdExportApp application = new BulkIdExportApp();
+
+        final CmdLineParser parser = new CmdLineParser(application);
+        parser.setUsageWidth(80);
+
+        try {
+            parser.parseArgument(args);
+
+            if (application.help) {
+                parser.printUsage(System.err);
+                System.err.println();
+                System.exit(0);
+            }
+
+            final Class<? extends LightNode> recordClass;
+            if ("registrations".equals(type)) {
+                recordClass = LightRegistration.class;
+            } else if ("nodes".equals(type)) {
+                recordClass = LightNode.class;
+            } else {
+                throw new CmdLineException(parser, "Unsupported type '" + type + "': nodes or registrations.");
+            }
+
+            final JsonApiParams params = new JsonApiParams();
+            for (String filter : filters) {
+                final int separator = filter.indexOf('=');
+                if (separator < 1) {
+                    throw new CmdLineException(parser, "Filters must be of the form field=value: '" + filter + "'");
+                }
+                params.filter(filter.substring(0, separator), filter.substring(separator + 1));
+            }
+            if (sort != null && !sort.trim().isEmpty()) {
+                params.sort(sort.split(","));
+            }
+
+            if (!confFile.exists() || !confFile.isFile()) {
+                System.err.println("Supplied OSF Client Configuration File " + confFile.getCanonicalPath() +
+                        " does not exist or is not a file.");
+                System.exit(1);
+            }
+            System.setProperty("osf.client.conf", confFile.toURI().toString());
+
+            try (OsfClientComponents components = new OsfClientComponents()) {
+                final String url = params.appendTo(components.getOsfConfigurationService().getConfiguration()
+                        .getBaseUri().resolve(type + "/").toString());
+
+                final BulkIdExporter exporter = new BulkIdExporter(components.getOkHttpClient(),
+                        components.newResourceConverter(), concurrency);
+                exporter.setPageSize(pageSize);
+
+                if (new File(output.getPath() + BulkIdExporter.CHECKPOINT_SUFFIX).exists()) {
+                    System.err.println("Resuming the export checkpointed in " + output.getCanonicalPath() +
+                            BulkIdExporter.CHECKPOINT_SUFFIX);
+                }
+                final long records = exporter.export(url, recordClass, output);
+                System.err.println("Exported " + records + " " + type + " to " + output.getCanonicalPath());
+            }
+
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            parser.printUsage(System.err);
+            System.err.println();
+            System.exit(1);
+        } catch (Exception e) {
+            System.err.println("There was an unrecoverable error: " + e.getMessage());
+            e.printStackTrace(System.err);
+            System.exit(1);
+        }
+    }
+
+}
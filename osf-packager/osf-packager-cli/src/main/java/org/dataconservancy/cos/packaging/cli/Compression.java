@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codecs used to compress the serialized package.  Each codec compresses a block of the package independently of the
+ * others, producing a self-contained gzip member, zstd frame, or xz stream.  The concatenation of the compressed
+ * blocks is itself a valid stream of the codec, so blocks may be compressed in parallel (see
+ * {@link #wrap(OutputStream, int)}) and still be decompressed by standard tools.
+ *
+ * @author agent (agent@local)
+ */
+public enum Compression {
+
+    /**
+     * An uncompressed tar archive
+     */
+    NONE ("tar", 0) {
+        @Override
+        byte[] compress(final byte[] block) {
+            return block;
+        }
+
+        @Override
+        public InputStream unwrap(final InputStream in) {
+            return in;
+        }
+    },
+
+    /**
+     * A tar archive compressed as a multi-member gzip stream
+     */
+    GZIP ("tar.gz", 4 * 1024 * 1024) {
+        @Override
+        byte[] compress(final byte[] block) throws IOException {
+            final ByteArrayOutputStream result = new ByteArrayOutputStream(block.length / 2);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(result, 64 * 1024)) {
+                gzip.write(block);
+            }
+            return result.toByteArray();
+        }
+
+        @Override
+        public InputStream unwrap(final InputStream in) throws IOException {
+            return new GZIPInputStream(in, 64 * 1024);
+        }
+    },
+
+    /**
+     * A tar archive compressed as a sequence of zstd frames
+     */
+    ZSTD ("tar.zst", 4 * 1024 * 1024) {
+        @Override
+        byte[] compress(final byte[] block) {
+            return Zstd.compress(block, 3);
+        }
+
+        @Override
+        public InputStream unwrap(final InputStream in) throws IOException {
+            return new ZstdInputStream(in);
+        }
+    },
+
+    /**
+     * A tar archive compressed as a sequence of xz streams
+     */
+    XZ ("tar.xz", 8 * 1024 * 1024) {
+        @Override
+        byte[] compress(final byte[] block) throws IOException {
+            final ByteArrayOutputStream result = new ByteArrayOutputStream(block.length / 4);
+            try (XZOutputStream xz = new XZOutputStream(result, new LZMA2Options())) {
+                xz.write(block);
+            }
+            return result.toByteArray();
+        }
+
+        @Override
+        public InputStream unwrap(final InputStream in) throws IOException {
+            return new XZInputStream(in);
+        }
+    };
+
+    private final String extension;
+
+    private final int blockSize;
+
+    Compression(final String extension, final int blockSize) {
+        this.extension = extension;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * The file name extension of a package compressed with this codec, e.g. {@code tar.gz}.
+     *
+     * @return the file name extension, without a leading period
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Answers the codec of a package file, according to the extension of its name.
+     *
+     * @param packageFile the package file, e.g. {@code eq7a4.tar.gz}
+     * @return the codec
+     * @throws IllegalArgumentException if the name of the file does not have the extension of a codec
+     */
+    public static Compression forFile(final File packageFile) {
+        if (packageFile == null) {
+            throw new IllegalArgumentException("Package file must not be null.");
+        }
+        for (Compression compression : values()) {
+            if (compression != NONE && packageFile.getName().endsWith("." + compression.extension)) {
+                return compression;
+            }
+        }
+        if (packageFile.getName().endsWith("." + NONE.extension)) {
+            return NONE;
+        }
+        throw new IllegalArgumentException("Package file '" + packageFile + "' is not a tar file.");
+    }
+
+    /**
+     * Wraps the supplied stream, compressing the bytes written to it with this codec using the supplied number of
+     * threads.  Closing the returned stream closes {@code out}.
+     *
+     * @param out the stream receiving the compressed bytes
+     * @param threads the number of threads compressing blocks in parallel
+     * @return the compressing stream, or {@code out} itself if this codec is {@link #NONE}
+     */
+    public OutputStream wrap(final OutputStream out, final int threads) {
+        if (this == NONE) {
+            return out;
+        }
+        return new ParallelCompressingOutputStream(out, this, blockSize, threads);
+    }
+
+    /**
+     * Wraps the supplied stream, decompressing the bytes read from it with this codec.  Closing the returned stream
+     * closes {@code in}.
+     *
+     * @param in the stream of compressed bytes
+     * @return the decompressing stream, or {@code in} itself if this codec is {@link #NONE}
+     * @throws IOException if the stream is not compressed with this codec
+     */
+    public abstract InputStream unwrap(InputStream in) throws IOException;
+
+    /**
+     * Compresses a block as a self-contained member, frame, or stream of this codec.
+     *
+     * @param block the block
+     * @return the compressed block
+     * @throws IOException if the block cannot be compressed
+     */
+    abstract byte[] compress(byte[] block) throws IOException;
+
+}
@@ -16,31 +16,15 @@
 
 package org.dataconservancy.cos.packaging.cli;
 
-import com.squareup.okhttp.OkHttpClient;
-import com.squareup.okhttp.Request;
-import com.squareup.okhttp.Response;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.dataconservancy.cos.osf.client.model.Registration;
-import org.dataconservancy.cos.osf.client.model.User;
-import org.dataconservancy.cos.osf.client.retrofit.OsfService;
-import org.dataconservancy.cos.osf.packaging.OsfPackageGraph;
-import org.dataconservancy.cos.packaging.OsfContentProvider;
-import org.dataconservancy.packaging.shared.IpmPackager;
-import org.dataconservancy.packaging.tool.api.Package;
+import org.dataconservancy.cos.packaging.LocalContentStore;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
-import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
 import java.util.Properties;
-import java.util.stream.Collectors;
 
 /**
  * Application for generating packages from package descriptions.
@@ -51,12 +35,24 @@ import java.util.stream.Collectors;
  * and the required BagIt metadata: the bag name on the command line, and the other metadata
  * in a properties file
  * </p>
+ * <p>
+ * Supplying a spool directory ({@code -d}) or a port ({@code -P}) instead of a registration URL runs the application
+ * as a {@link PackagingDaemon}, packaging registrations as they are submitted until it is stopped.
+ * </p>
  *
  * @author jrm
  */
 public class PackageGenerationApp {
 
-    private static ClassPathXmlApplicationContext CTX;
+    /**
+     * The components of the application: the OSF client, and the package graph
+     */
+    private static Wiring WIRING;
+
+    /**
+     * The store of content retrieved by previous runs, shared by every job of a daemon
+     */
+    private static LocalContentStore CONTENT_STORE;
 
 
     @Argument(multiValued = false, usage = "URL to the registration to be packaged")
@@ -77,7 +73,7 @@ public class PackageGenerationApp {
     /**
      * the output directory for the package
      */
-    @Option(name = "-o", aliases = {"-output", "--output"}, required = false, usage = "path to the directory where the package will be written")
+    @Option(name = "-o", aliases = {"-output", "--output"}, required = false, usage = "path to the directory where the package will be written; when running as a daemon, the directory against which the output locations of jobs are resolved")
     private static File outputLocation;
 
     /**
@@ -92,6 +88,96 @@ public class PackageGenerationApp {
     @Option(name = "-m", aliases = {"-metadata", "--metadata"}, usage = "the path to the metadata properties file for additional bag metadata")
     private static File bagMetadataFile;
 
+    /**
+     * relationships of the registration to embed in the response, resolving them without additional requests
+     */
+    @Option(name = "-e", aliases = {"-embed", "--embed"}, usage = "comma-separated relationships of the registration to embed when it is retrieved; by default nothing is embedded")
+    private static String embed;
+
+    /**
+     * the number of OSF API requests made at once while crawling the registration hierarchy
+     */
+    @Option(name = "-k", aliases = {"-crawl-concurrency", "--crawl-concurrency"}, usage = "the number of OSF API requests made at once while retrieving each level of the registration hierarchy; by default (0) the hierarchy is retrieved one request at a time")
+    private static int crawlConcurrency = PackagingJob.DEFAULT_CRAWL_CONCURRENCY;
+
+    /**
+     * journal progress in the output location, so that an interrupted run may be resumed
+     */
+    @Option(name = "-r", aliases = {"-resumable", "--resumable"}, usage = "journal progress in the output location, so that an interrupted run is resumed by repeating the command")
+    private static boolean resumable = false;
+
+    /**
+     * the number of ranges of a large file downloaded in parallel
+     */
+    @Option(name = "-s", aliases = {"-segments", "--segments"}, usage = "the number of ranges of a large file (64 MiB or more) downloaded in parallel")
+    private static int segments = 1;
+
+    /**
+     * a directory holding binary content retrieved by previous runs, consulted before content is retrieved
+     */
+    @Option(name = "-l", aliases = {"-content-store", "--content-store"}, usage = "path to a directory holding binary content retrieved by previous runs; files unchanged since they were stored are not retrieved again")
+    private static File contentStoreLocation;
+
+    /**
+     * the maximum size of the content store, in MiB
+     */
+    @Option(name = "-L", aliases = {"-content-store-size", "--content-store-size"}, usage = "the maximum size of the content store in MiB; the least recently used content is evicted beyond it")
+    private static long contentStoreSize = LocalContentStore.DEFAULT_MAX_SIZE / (1024 * 1024);
+
+    /**
+     * a package previously written for the registration, whose unchanged content is re-used
+     */
+    @Option(name = "-p", aliases = {"-previous", "--previous"}, usage = "path to a package previously written for the registration; files unchanged since it was written are copied from it rather than retrieved")
+    private static File previousPackageFile;
+
+    /**
+     * the codec used to compress the package
+     */
+    @Option(name = "-z", aliases = {"-compression", "--compression"}, usage = "compress the package with the named codec: none, gzip, zstd or xz")
+    private static Compression compression = Compression.NONE;
+
+    /**
+     * the number of threads compressing the package
+     */
+    @Option(name = "-t", aliases = {"-compression-threads", "--compression-threads"}, usage = "the number of threads compressing the package (defaults to the number of processors)")
+    private static int compressionThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Wire the application using the Spring XML application contexts rather than programmatically
+     */
+    @Option(name = "-x", aliases = {"-spring-context", "--spring-context"}, usage = "wire the OSF client using the Spring XML application contexts, rather than creating each component when it is first needed")
+    private static boolean springContext = false;
+
+    /**
+     * the period of the HTTP metrics report, in seconds
+     */
+    @Option(name = "-M", aliases = {"-metrics-period", "--metrics-period"}, usage = "log a report of the HTTP metrics at this period, in seconds, and on exit; by default no report is made")
+    private static long metricsPeriod = 0;
+
+    /**
+     * register HTTP metrics with JMX
+     */
+    @Option(name = "-J", aliases = {"-jmx", "--jmx"}, usage = "register the HTTP metrics of each OSF API endpoint with the platform MBean server")
+    private static boolean jmx = false;
+
+    /**
+     * run as a daemon, accepting jobs from a spool directory
+     */
+    @Option(name = "-d", aliases = {"-spool", "--spool"}, usage = "run as a daemon, packaging the registrations described by JSON files written to the spool directory")
+    private static File spoolDirectory;
+
+    /**
+     * run as a daemon, accepting jobs from a local HTTP endpoint
+     */
+    @Option(name = "-P", aliases = {"-port", "--port"}, usage = "run as a daemon, accepting jobs posted to /jobs on the port of the loopback interface")
+    private static int port = -1;
+
+    /**
+     * the number of jobs run at once by a daemon
+     */
+    @Option(name = "-w", aliases = {"-workers", "--workers"}, usage = "the number of registrations packaged at once when running as a daemon")
+    private static int workers = 2;
+
     /**
      * Requests the current version number of the cli application.
      */
@@ -122,6 +208,12 @@ public class PackageGenerationApp {
                 System.exit(0);
             }
 
+            final boolean daemon = spoolDirectory != null || port > -1;
+            if (!daemon && registrationUrl == null) {
+                throw new CmdLineException(parser, "A registration URL, a spool directory (-d) or a port (-P) " +
+                        "must be supplied.");
+            }
+
             final Properties props = System.getProperties();
 
             if (confFile.exists() && confFile.isFile()) {
@@ -132,62 +224,33 @@ public class PackageGenerationApp {
                 System.exit(1);
             }
 
-            CTX = new ClassPathXmlApplicationContext(
-                    "classpath*:org/dataconservancy/cos/osf/client/config/applicationContext.xml",
-                    "classpath*:org/dataconservancy/cos/osf/client/retrofit/applicationContext.xml",
-                    "classpath:/org/dataconservancy/cos/packaging/config/applicationContext.xml");
-
-            final Response response = CTX.getBean("okHttpClient", OkHttpClient.class).newCall(
-                    new Request.Builder()
-                            .head()
-                            .url(registrationUrl)
-                            .build()
-            ).execute();
-
-            if (response.code() != 200) {
-                System.err.println("There was an error executing '" + registrationUrl + "', response code " +
-                        response.code() + " reason: '" + response.message() + "'");
-                System.err.print("Please be sure you are using a valid API URL to a node or registration, ");
-                System.err.println("and have properly configured authorization credentials, if necessary.");
-                System.exit(1);
+            if (metricsPeriod < 0) {
+                throw new CmdLineException(parser, "The metrics period (-M) must not be negative.");
             }
-
-            if (!response.header("Content-Type").contains("json")) {
-                System.err.println("Provided URL '" + registrationUrl + "' does not return JSON (Content-Type was '" +
-                        response.header("Content-Type") + "')");
-                System.err.println("Please be sure you are using a valid API URL to a node or registration.");
-                System.exit(1);
+            if (metricsPeriod > 0) {
+                props.setProperty("osf.client.metrics.period.ms", String.valueOf(metricsPeriod * 1000));
             }
-
-            final String guid = parseGuid(registrationUrl);
-
-            if (packageName == null) {
-                packageName = guid;
-            } else if (!(packageName.length() > 0)) {
-                System.err.println("Bag name must have positive length.");
-                System.exit(1);
+            if (jmx) {
+                props.setProperty("osf.client.metrics.jmx", "true");
             }
 
-            if (outputLocation == null) {
-                outputLocation = new File(packageName);
-            }
+            // By default components are created when first needed, so the registration is checked before the model
+            // classes are scanned, or the ontology is loaded
+            WIRING = springContext ? Wiring.spring() : Wiring.programmatic();
 
-            if (outputLocation.exists()) {
-                System.err.println("Destination directory " + outputLocation.getCanonicalPath() + " already exists!  " +
-                        "Either (re)move the directory, or choose a different output location.");
-                System.exit(1);
+            if (contentStoreLocation != null) {
+                CONTENT_STORE = new LocalContentStore(contentStoreLocation, contentStoreSize * 1024 * 1024);
             }
 
-            FileUtils.forceMkdir(outputLocation);
-
-            if (bagMetadataFile != null && (!bagMetadataFile.exists() || !bagMetadataFile.isFile())) {
-                System.err.println("Supplied bag metadata file " + bagMetadataFile.getCanonicalPath() +
-                        " does not exist or is not a file.");
-                System.exit(1);
+            if (daemon) {
+                runDaemon();
+            } else {
+                /* Run the package generation application proper */
+                application.run();
             }
 
-            /* Run the package generation application proper */
-            application.run();
+            /* Report HTTP metrics */
+            WIRING.close();
 
         } catch (CmdLineException e) {
             /*
@@ -213,84 +276,75 @@ public class PackageGenerationApp {
 
 
     private void run() throws Exception {
-        // Prepare the OSF registration and users information
-        final OsfService osfService = CTX.getBean("osfService", OsfService.class);
-        final Registration registration = osfService.registration(registrationUrl).execute().body();
+        final PackagingJob job = newJob(registrationUrl);
+        job.setPackageName(packageName);
+        job.setOutputLocation(outputLocation);
 
-        if (registration == null) {
-            System.err.println("Failed to obtain registration " + registrationUrl + " from endpoint. " +
-                    "\nEither the connection failed, or a registration does not exist at the provided URL.");
+        try {
+            job.prepare(WIRING);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
             System.exit(1);
         }
 
-        final List<User> users = registration.getContributors().stream()
-                .map(c -> {
-                    try {
-                        if (c.getUserRel() != null) {
-                            return osfService.user(c.getUserRel()).execute().body();
-                        } else {
-                            String contributorId = c.getId();
-                            if (contributorId.contains("-")) {
-                                contributorId = contributorId.split("-")[1];
-                            }
-                            return osfService.userById(contributorId).execute().body();
-                        }
-                    } catch (IOException e) {
-                        throw new RuntimeException(e.getMessage(), e);
-                    }
-                })
-                .collect(Collectors.toList());
-
-        // Prepare package graph
-        final OsfPackageGraph packageGraph = CTX.getBean("packageGraph", OsfPackageGraph.class);
-        packageGraph.add(registration);
-        users.forEach(packageGraph::add);
-
-        // Prepare content provider using package graph
-        // TODO - Does this work without the lambda-specified resolver used in OsfContentProviderTest?
-        final OsfContentProvider contentProvider = new OsfContentProvider(packageGraph,
-                CTX.getBean("okHttpClient", OkHttpClient.class));
-
-        // Create the package in the default location with the supplied name.
-        // No package generation parameters are supplied.
-        final IpmPackager ipmPackager = new IpmPackager();
-        ipmPackager.setPackageName(packageName);
-        ipmPackager.setPackageLocation(outputLocation.getPath());
-        final Package pkg;
-        if (bagMetadataFile == null) {
-            pkg = ipmPackager.buildPackage(contentProvider, null, null);
-        } else {
-            try (final FileInputStream metadataStream = new FileInputStream(bagMetadataFile)) {
-                pkg = ipmPackager.buildPackage(contentProvider, metadataStream, null);
-            }
+        if (job.isResuming()) {
+            System.err.println("Resuming the run journaled in " + job.getOutputLocation().getCanonicalPath());
         }
 
-        // Now just write the package out to a file in the output location
-        // this must agree with the package root directory name according to our
-        // dataconservancy bagit profile
-        // TODO: can the user specify the kind of archive?  tar vs tar.gz?
-        final File packageFile = new File(outputLocation.getAbsolutePath(), packageName + ".tar");
-        final FileOutputStream out;
-        try {
-            out = new FileOutputStream(packageFile);
-            IOUtils.copy(pkg.serialize(), out);
-            out.close();
-        } catch (java.io.IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
-
-        pkg.cleanupPackage();
+        job.run(WIRING);
     }
 
-    private static String parseGuid(final String registrationUrl) {
-        String mutableUrl = registrationUrl.trim();
+    /**
+     * Runs a {@link PackagingDaemon} until the JVM is stopped.
+     *
+     * @throws IOException if the spool directory or HTTP endpoint cannot be started
+     * @throws InterruptedException if interrupted while running
+     */
+    private static void runDaemon() throws IOException, InterruptedException {
+        if (workers < 1) {
+            System.err.println("Workers must be a positive integer.");
+            System.exit(1);
+        }
+        if (springContext) {
+            // the Spring application context shares a single OkHttp client, so runs cannot journal independently
+            System.err.println("A daemon cannot be wired using the Spring XML application contexts (-x).");
+            System.exit(1);
+        }
 
-        if (mutableUrl.endsWith("/")) {
-            mutableUrl = mutableUrl.substring(0, mutableUrl.length() - 1);
+        final File outputRoot = outputLocation == null ? new File(".") : outputLocation;
+        final PackagingDaemon daemon = new PackagingDaemon(WIRING, PackageGenerationApp::newJob, outputRoot, workers);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "osf-packaging-shutdown"));
+
+        if (spoolDirectory != null) {
+            daemon.startSpool(spoolDirectory);
+            System.err.println("Packaging registrations described in " + spoolDirectory.getCanonicalPath());
+        }
+        if (port > -1) {
+            System.err.println("Packaging registrations posted to http://localhost:" + daemon.startHttp(port) +
+                    PackagingDaemon.JOBS_PATH + " with the token in " + daemon.getTokenFile().getCanonicalPath());
         }
 
-        return mutableUrl.substring(mutableUrl.lastIndexOf("/") + 1);
+        daemon.awaitClose();
     }
 
-}
+    /**
+     * Creates a job packaging the registration, with the options of the command line that apply to every job.
+     *
+     * @param registrationUrl the OSF API URL of the registration
+     * @return the job
+     */
+    private static PackagingJob newJob(final String registrationUrl) {
+        final PackagingJob job = new PackagingJob(registrationUrl);
+        job.setBagMetadataFile(bagMetadataFile);
+        job.setEmbed(embed);
+        job.setCrawlConcurrency(crawlConcurrency);
+        job.setResumable(resumable);
+        job.setSegments(segments);
+        job.setContentStore(CONTENT_STORE);
+        job.setPreviousPackageFile(previousPackageFile);
+        job.setCompression(compression);
+        job.setCompressionThreads(compressionThreads);
+        return job;
+    }
 
+}
@@ -0,0 +1,797 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs packaging jobs in a single, long-lived JVM, so that jobs share a warmed-up runtime: loaded classes and compiled
+ * code, the OSF client and its connection pool, the detected model classes, the parsed ontology, and (if configured)
+ * the content store.  Jobs are accepted from a spool directory, from a local HTTP endpoint, or both, and are run by a
+ * fixed number of workers.  At most {@link #QUEUE_CAPACITY} jobs wait for a worker; further jobs are left in the spool
+ * directory, or refused by the HTTP endpoint with {@code 503 Service Unavailable}.
+ * <p>
+ * A job is described by a JSON object.  Only {@code registration} is required; the other members default to the
+ * options of the command line:
+ * </p>
+ * <pre>
+ * {
+ *   "registration": "https://api.osf.io/v2/registrations/hejx2/",
+ *   "name": "hejx2",
+ *   "output": "hejx2",
+ *   "metadata": "/path/to/bag-metadata.properties",
+ *   "previous": "/path/to/hejx2.tar.zst",
+ *   "embed": "contributors,files",
+ *   "crawlConcurrency": 0,
+ *   "segments": 1,
+ *   "compression": "zstd",
+ *   "compressionThreads": 4,
+ *   "resumable": true
+ * }
+ * </pre>
+ * <p>
+ * A relative {@code output} is resolved against the output root of the daemon, and defaults to the package name.
+ * Descriptions whose {@code output} resolves outside the output root are rejected.
+ * </p>
+ * <h3>Spool directory</h3>
+ * <p>
+ * Job descriptions are written to the spool directory as {@code *.json} files (write them under another name, and
+ * rename them, so that partially written descriptions are not read).  Descriptions are claimed in name order by moving
+ * them to the {@value #ACTIVE} directory of the spool directory.  When a job finishes, its description and status are
+ * written to the {@value #DONE} or {@value #FAILED} directory, named for the job.  Descriptions claimed by a daemon
+ * that did not finish them (e.g. because it was killed) are returned to the spool directory when the next daemon
+ * starts; with {@code "resumable": true} such jobs resume from their journal.
+ * </p>
+ * <h3>HTTP endpoint</h3>
+ * <p>
+ * The endpoint listens on the loopback interface only.  When it starts, a random token is written to the
+ * {@value #TOKEN_FILE} file of the output root, readable only by its owner where the file system allows.  Every request
+ * must present the token as {@code Authorization: Bearer <token>}, and is otherwise refused with
+ * {@code 401 Unauthorized}.  Job descriptions must be posted as {@code application/json}, so that a web page cannot
+ * submit a job with a simple cross-origin form or {@code text/plain} request.
+ * </p>
+ * <ul>
+ *     <li>{@code POST /jobs} with a job description: submits the job, answering {@code 202 Accepted} with its
+ *         status, and its location</li>
+ *     <li>{@code GET /jobs}: the status of recent jobs, in the order they were submitted</li>
+ *     <li>{@code GET /jobs/{id}}: the status of a job</li>
+ * </ul>
+ * <p>
+ * The status of a job is a JSON object with its {@code id}, {@code state} ({@code QUEUED}, {@code RUNNING},
+ * {@code SUCCEEDED} or {@code FAILED}), {@code registration}, {@code source} (the spool file or {@code http}),
+ * {@code submitted}, {@code started} and {@code finished} times, the {@code package} file of a job that succeeded, and
+ * the {@code error} of a job that failed.  The status of the most recent {@value #MAX_STATUSES} jobs is retained.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+class PackagingDaemon implements AutoCloseable {
+
+    /**
+     * The directory of the spool directory holding the descriptions of claimed jobs
+     */
+    static final String ACTIVE = ".active";
+
+    /**
+     * The directory of the spool directory holding the descriptions of jobs that succeeded
+     */
+    static final String DONE = "done";
+
+    /**
+     * The directory of the spool directory holding the descriptions of jobs that failed
+     */
+    static final String FAILED = "failed";
+
+    /**
+     * The path of the HTTP endpoint
+     */
+    static final String JOBS_PATH = "/jobs";
+
+    /**
+     * The file of the output root holding the token required by the HTTP endpoint
+     */
+    static final String TOKEN_FILE = ".daemon-token";
+
+    /**
+     * The maximum number of jobs waiting for a worker
+     */
+    static final int QUEUE_CAPACITY = 100;
+
+    /**
+     * The number of job statuses retained
+     */
+    static final int MAX_STATUSES = 1000;
+
+    /**
+     * How often the spool directory is examined for new jobs
+     */
+    static final long POLL_INTERVAL_MS = 1000;
+
+    private static final String JSON_SUFFIX = ".json";
+
+    private static final String HTTP_SOURCE = "http";
+
+    private static final String JSON_MEDIA_TYPE = "application/json";
+
+    private static final String BEARER = "Bearer ";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PackagingDaemon.class);
+
+    /**
+     * The states of a job
+     */
+    enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Wiring wiring;
+
+    private final Function<String, PackagingJob> newJob;
+
+    private final File outputRoot;
+
+    private final ThreadPoolExecutor workers;
+
+    private final Map<String, JobStatus> statuses = Collections.synchronizedMap(
+            new LinkedHashMap<String, JobStatus>() {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, JobStatus> eldest) {
+                    return size() > MAX_STATUSES;
+                }
+            });
+
+    /**
+     * The output locations of running jobs, so that two jobs (e.g. resuming the same journal) never share one
+     */
+    private final Set<File> outputs = Collections.synchronizedSet(new HashSet<>());
+
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    /**
+     * Whether the daemon is closing, in which case interrupted jobs are left unfinished
+     */
+    private volatile boolean closing;
+
+    private File spoolDirectory;
+
+    private ScheduledExecutorService poller;
+
+    private HttpServer server;
+
+    /**
+     * The token required by the HTTP endpoint
+     */
+    private byte[] token;
+
+    /**
+     * @param wiring the components shared by every job
+     * @param newJob creates a job for a registration URL, with the defaults of the command line applied
+     * @param outputRoot the directory against which the output locations of jobs are resolved
+     * @param workers the number of jobs run at once
+     */
+    PackagingDaemon(final Wiring wiring, final Function<String, PackagingJob> newJob, final File outputRoot,
+                    final int workers) {
+        if (wiring == null) {
+            throw new IllegalArgumentException("Wiring must not be null.");
+        }
+        if (newJob == null) {
+            throw new IllegalArgumentException("Job factory must not be null.");
+        }
+        if (outputRoot == null) {
+            throw new IllegalArgumentException("Output root must not be null.");
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("Workers must be a positive integer.");
+        }
+        this.wiring = wiring;
+        this.newJob = newJob;
+        this.outputRoot = outputRoot;
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), threadFactory("osf-packaging-worker-"));
+    }
+
+    /**
+     * Accepts jobs from the supplied spool directory, creating it if necessary.  Descriptions left in the
+     * {@value #ACTIVE} directory by a previous daemon are returned to the spool directory.
+     *
+     * @param spoolDirectory the spool directory
+     * @throws IOException if the spool directory cannot be prepared
+     */
+    synchronized void startSpool(final File spoolDirectory) throws IOException {
+        if (poller != null) {
+            throw new IllegalStateException("The spool directory is already being watched.");
+        }
+        this.spoolDirectory = spoolDirectory;
+        for (String dir : new String[] {ACTIVE, DONE, FAILED}) {
+            Files.createDirectories(new File(spoolDirectory, dir).toPath());
+        }
+
+        try (DirectoryStream<Path> abandoned = Files.newDirectoryStream(active(), "*" + JSON_SUFFIX)) {
+            for (Path description : abandoned) {
+                LOG.info("Returning abandoned job {} to the spool directory", description.getFileName());
+                Files.move(description, spoolDirectory.toPath().resolve(description.getFileName()),
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        poller = Executors.newSingleThreadScheduledExecutor(threadFactory("osf-packaging-spool-"));
+        poller.scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        LOG.info("Accepting jobs from spool directory {}", spoolDirectory.getCanonicalPath());
+    }
+
+    /**
+     * Accepts jobs from an HTTP endpoint on the loopback interface, writing the token required by the endpoint to the
+     * {@value #TOKEN_FILE} file of the output root.
+     *
+     * @param port the port to listen on, {@code 0} for an ephemeral port
+     * @return the port listened on
+     * @throws IOException if the token cannot be written, or the endpoint cannot be started
+     */
+    synchronized int startHttp(final int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The HTTP endpoint is already started.");
+        }
+        final byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(String.format("%02x", b));
+        }
+        token = hex.toString().getBytes(StandardCharsets.US_ASCII);
+        Files.createDirectories(outputRoot.toPath());
+        writeToken(getTokenFile().toPath(), token);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(JOBS_PATH, this::handle);
+        server.start();
+        LOG.info("Accepting jobs at http://localhost:{}{}, authorized by the token in {}",
+                server.getAddress().getPort(), JOBS_PATH, getTokenFile().getCanonicalPath());
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers the file holding the token required by the HTTP endpoint, once the endpoint is started.
+     *
+     * @return the token file
+     */
+    File getTokenFile() {
+        return new File(outputRoot, TOKEN_FILE);
+    }
+
+    /**
+     * Submits a job.
+     *
+     * @param description the description of the job
+     * @param source the spool file describing the job, or {@code http}
+     * @return the status of the job
+     * @throws IllegalArgumentException if the description is not valid
+     * @throws RejectedExecutionException if too many jobs are waiting for a worker, or the daemon is closed
+     */
+    JobStatus submit(final JsonNode description, final String source) {
+        return submit(UUID.randomUUID().toString(), description, source, null);
+    }
+
+    /**
+     * Answers the status of a job.
+     *
+     * @param id the identifier of the job
+     * @return the status, or {@code null} if the job is not known
+     */
+    JobStatus getStatus(final String id) {
+        return statuses.get(id);
+    }
+
+    /**
+     * Answers the status of recent jobs.
+     *
+     * @return the status of each job, in the order they were submitted
+     */
+    List<JobStatus> getStatuses() {
+        synchronized (statuses) {
+            return new ArrayList<>(statuses.values());
+        }
+    }
+
+    /**
+     * Blocks until the daemon is closed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Stops accepting jobs, and interrupts running jobs.  Waiting jobs are not run.  Descriptions of unfinished jobs
+     * claimed from the spool directory remain in the {@value #ACTIVE} directory, and are returned to the spool
+     * directory by the next daemon.
+     */
+    @Override
+    public synchronized void close() {
+        closing = true;
+        if (server != null) {
+            server.stop(0);
+            getTokenFile().delete();
+        }
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("Packaging jobs did not stop within 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closed.countDown();
+    }
+
+    /**
+     * Claims descriptions from the spool directory, while there is room for them in the queue.
+     */
+    private void poll() {
+        if (workers.getQueue().remainingCapacity() == 0) {
+            return;
+        }
+
+        final List<Path> descriptions = new ArrayList<>();
+        try (DirectoryStream<Path> spooled = Files.newDirectoryStream(spoolDirectory.toPath(), "*" + JSON_SUFFIX)) {
+            for (Path description : spooled) {
+                if (Files.isRegularFile(description)) {
+                    descriptions.add(description);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to list spool directory {}: {}", spoolDirectory, e.getMessage(), e);
+            return;
+        }
+        Collections.sort(descriptions);
+
+        for (Path description : descriptions) {
+            if (workers.getQueue().remainingCapacity() == 0) {
+                return;
+            }
+
+            final String id = UUID.randomUUID().toString();
+            final Path claimed = active().resolve(id + JSON_SUFFIX);
+            try {
+                Files.move(description, claimed, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // claimed by another daemon sharing the spool directory, or removed
+                LOG.debug("Unable to claim {}: {}", description, e.getMessage());
+                continue;
+            }
+
+            final String source = description.getFileName().toString();
+            try {
+                submit(id, mapper.readTree(claimed.toFile()), source, claimed);
+            } catch (RejectedExecutionException e) {
+                // The queue was filled (e.g. by HTTP submissions) after it was checked, or the daemon is stopping:
+                // the description is left for a later poll, or the next daemon
+                LOG.debug("Unable to queue {}, returning it to the spool directory: {}", source, e.getMessage());
+                try {
+                    Files.move(claimed, description, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException moveFailure) {
+                    LOG.warn("Unable to return {} to the spool directory, it will be returned when the daemon is " +
+                            "restarted: {}", source, moveFailure.getMessage());
+                }
+                return;
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Rejected job {} ({}): {}", id, source, e.getMessage());
+                final JobStatus status = new JobStatus(id, null, source);
+                status.failed(e);
+                statuses.put(id, status);
+                finish(status, claimed);
+            }
+        }
+    }
+
+    private JobStatus submit(final String id, final JsonNode description, final String source, final Path claimed) {
+        final PackagingJob job = toJob(description);
+        final JobStatus status = new JobStatus(id, job.getRegistrationUrl(), source);
+        statuses.put(id, status);
+        try {
+            workers.execute(() -> run(job, status, claimed));
+        } catch (RejectedExecutionException e) {
+            statuses.remove(id);
+            throw e;
+        }
+        LOG.info("Queued job {} ({}) for {}", id, source, job.getRegistrationUrl());
+        return status;
+    }
+
+    private void run(final PackagingJob job, final JobStatus status, final Path claimed) {
+        status.started();
+        LOG.info("Running job {} for {}", status.id, status.registration);
+        File output = null;
+        try {
+            if (!outputs.add(job.getOutputLocation().getCanonicalFile())) {
+                throw new IllegalArgumentException("Output location " + job.getOutputLocation() +
+                        " is in use by another job.");
+            }
+            output = job.getOutputLocation().getCanonicalFile();
+            job.prepare(wiring);
+            if (job.isResuming()) {
+                LOG.info("Resuming the run journaled in {}", job.getOutputLocation().getCanonicalPath());
+            }
+            status.succeeded(job.run(wiring));
+            LOG.info("Job {} wrote {}", status.id, status.packageFile);
+        } catch (Exception e) {
+            status.failed(e);
+            if (closing) {
+                LOG.info("Job {} was stopped by the daemon closing: {}", status.id, e.getMessage());
+            } else {
+                LOG.warn("Job {} failed: {}", status.id, e.getMessage(), e);
+            }
+        } finally {
+            if (output != null) {
+                outputs.remove(output);
+            }
+            if (closing && status.getState() != State.SUCCEEDED) {
+                // leave the claimed description in the active directory, for the next daemon to return and resume
+                LOG.debug("Leaving the description of job {} unfinished", status.id);
+            } else {
+                finish(status, claimed);
+            }
+        }
+    }
+
+    /**
+     * Records the outcome of a job claimed from the spool directory, and removes its claimed description.  Not
+     * invoked for jobs stopped by the daemon closing, whose descriptions remain claimed.
+     */
+    private void finish(final JobStatus status, final Path claimed) {
+        if (claimed == null) {
+            return;
+        }
+
+        final ObjectNode result = mapper.createObjectNode();
+        result.set("status", status.toJson(mapper));
+        try {
+            result.set("job", mapper.readTree(claimed.toFile()));
+        } catch (IOException e) {
+            result.put("job", new String(readQuietly(claimed)));
+        }
+
+        // written under another name and renamed, so that partially written outcomes are not read
+        final File dir = new File(spoolDirectory, status.getState() == State.SUCCEEDED ? DONE : FAILED);
+        final File written = new File(dir, "." + status.id + ".tmp");
+        try {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(written, result);
+            Files.move(written.toPath(), new File(dir, status.id + JSON_SUFFIX).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(claimed);
+        } catch (IOException e) {
+            LOG.warn("Unable to record the outcome of job {}: {}", status.id, e.getMessage(), e);
+        }
+    }
+
+    private PackagingJob toJob(final JsonNode description) {
+        if (description == null || !description.isObject()) {
+            throw new IllegalArgumentException("Job description must be a JSON object.");
+        }
+        if (!description.hasNonNull("registration")) {
+            throw new IllegalArgumentException("Job description must supply a 'registration'.");
+        }
+
+        final PackagingJob job = newJob.apply(description.get("registration").asText());
+        if (description.hasNonNull("name")) {
+            job.setPackageName(description.get("name").asText());
+        }
+        if (description.hasNonNull("metadata")) {
+            job.setBagMetadataFile(new File(description.get("metadata").asText()));
+        }
+        if (description.hasNonNull("previous")) {
+            job.setPreviousPackageFile(new File(description.get("previous").asText()));
+        }
+        if (description.has("embed")) {
+            job.setEmbed(description.get("embed").isNull() ? null : description.get("embed").asText());
+        }
+        if (description.hasNonNull("crawlConcurrency")) {
+            job.setCrawlConcurrency(description.get("crawlConcurrency").asInt());
+        }
+        if (description.hasNonNull("segments")) {
+            job.setSegments(description.get("segments").asInt());
+        }
+        if (description.hasNonNull("compression")) {
+            job.setCompression(Compression.valueOf(description.get("compression").asText().toUpperCase()));
+        }
+        if (description.hasNonNull("compressionThreads")) {
+            job.setCompressionThreads(description.get("compressionThreads").asInt());
+        }
+        if (description.hasNonNull("resumable")) {
+            job.setResumable(description.get("resumable").asBoolean());
+        }
+
+        File output = description.hasNonNull("output") ? new File(description.get("output").asText()) :
+                new File(description.hasNonNull("name") ? description.get("name").asText() :
+                        PackagingJob.parseGuid(job.getRegistrationUrl()));
+        if (!output.isAbsolute()) {
+            output = new File(outputRoot, output.getPath());
+        }
+        try {
+            final Path root = outputRoot.getCanonicalFile().toPath();
+            final Path resolved = output.getCanonicalFile().toPath();
+            if (resolved.equals(root) || !resolved.startsWith(root)) {
+                throw new IllegalArgumentException("Output location " + output + " is not within the output root " +
+                        root + ".");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to resolve output location " + output + ": " + e.getMessage());
+        }
+        job.setOutputLocation(output);
+
+        return job;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            if (!authorized(exchange)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                respond(exchange, 401, error("A valid token is required; it is written to " + TOKEN_FILE +
+                        " in the output root of the daemon."));
+                return;
+            }
+
+            final String path = exchange.getRequestURI().getPath();
+            final String method = exchange.getRequestMethod();
+            if (path.equals(JOBS_PATH) || path.equals(JOBS_PATH + "/")) {
+                if ("GET".equals(method)) {
+                    final ArrayNode result = mapper.createArrayNode();
+                    getStatuses().forEach(status -> result.add(status.toJson(mapper)));
+                    respond(exchange, 200, result);
+                } else if ("POST".equals(method)) {
+                    post(exchange);
+                } else {
+                    respond(exchange, 405, error("Method not allowed: " + method));
+                }
+                return;
+            }
+
+            final JobStatus status = getStatus(path.substring(JOBS_PATH.length() + 1));
+            if (status == null || !"GET".equals(method)) {
+                respond(exchange, status == null ? 404 : 405, error(status == null ? "No such job: " + path :
+                        "Method not allowed: " + method));
+            } else {
+                respond(exchange, 200, status.toJson(mapper));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean authorized(final HttpExchange exchange) {
+        final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return false;
+        }
+        return MessageDigest.isEqual(token,
+                authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void post(final HttpExchange exchange) throws IOException {
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.split(";")[0].trim().equalsIgnoreCase(JSON_MEDIA_TYPE)) {
+            respond(exchange, 415, error("Job descriptions must be posted as " + JSON_MEDIA_TYPE + "."));
+            return;
+        }
+
+        final JsonNode description;
+        try (InputStream in = exchange.getRequestBody()) {
+            description = mapper.readTree(in);
+        } catch (IOException e) {
+            respond(exchange, 400, error("Job description is not JSON: " + e.getMessage()));
+            return;
+        }
+
+        final JobStatus status;
+        try {
+            status = submit(description, HTTP_SOURCE);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+            return;
+        } catch (RejectedExecutionException e) {
+            respond(exchange, 503, error("Too many jobs are waiting; try again later."));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Location", JOBS_PATH + "/" + status.id);
+        respond(exchange, 202, status.toJson(mapper));
+    }
+
+    private void respond(final HttpExchange exchange, final int code, final JsonNode body) throws IOException {
+        final byte[] bytes = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", JSON_MEDIA_TYPE);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private ObjectNode error(final String message) {
+        return mapper.createObjectNode().put("error", message);
+    }
+
+    /**
+     * Writes the token to a new file, readable and writable only by its owner if the file system supports POSIX
+     * permissions.
+     */
+    private static void writeToken(final Path file, final byte[] token) throws IOException {
+        Files.deleteIfExists(file);
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+        Files.write(file, token);
+    }
+
+    private Path active() {
+        return new File(spoolDirectory, ACTIVE).toPath();
+    }
+
+    private static byte[] readQuietly(final Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread t = new Thread(runnable, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * The status of a job.  Updated by the worker running the job, and read by the HTTP endpoint.
+     */
+    static class JobStatus {
+
+        private final String id;
+
+        private final String registration;
+
+        private final String source;
+
+        private final Instant submitted = Instant.now();
+
+        private State state = State.QUEUED;
+
+        private Instant started;
+
+        private Instant finished;
+
+        private File packageFile;
+
+        private String error;
+
+        private JobStatus(final String id, final String registration, final String source) {
+            this.id = id;
+            this.registration = registration;
+            this.source = source;
+        }
+
+        /**
+         * @return the identifier of the job
+         */
+        String getId() {
+            return id;
+        }
+
+        /**
+         * @return the state of the job
+         */
+        synchronized State getState() {
+            return state;
+        }
+
+        /**
+         * @return the package file written by the job, {@code null} unless the job succeeded
+         */
+        synchronized File getPackageFile() {
+            return packageFile;
+        }
+
+        /**
+         * @return the error of the job, {@code null} unless the job failed
+         */
+        synchronized String getError() {
+            return error;
+        }
+
+        private synchronized void started() {
+            state = State.RUNNING;
+            started = Instant.now();
+        }
+
+        private synchronized void succeeded(final File packageFile) {
+            state = State.SUCCEEDED;
+            finished = Instant.now();
+            this.packageFile = packageFile;
+        }
+
+        private synchronized void failed(final Exception e) {
+            state = State.FAILED;
+            finished = Instant.now();
+            error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+        }
+
+        private synchronized ObjectNode toJson(final ObjectMapper mapper) {
+            final ObjectNode json = mapper.createObjectNode();
+            json.put("id", id);
+            json.put("state", state.name());
+            json.put("registration", registration);
+            json.put("source", source);
+            json.put("submitted", submitted.toString());
+            json.put("started", started == null ? null : started.toString());
+            json.put("finished", finished == null ? null : finished.toString());
+            json.put("package", packageFile == null ? null : packageFile.getAbsolutePath());
+            json.put("error", error);
+            return json;
+        }
+    }
+
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.cos.osf.client.model.Registration;
+import org.dataconservancy.cos.osf.client.model.User;
+import org.dataconservancy.cos.osf.client.retrofit.HierarchyCrawler;
+import org.dataconservancy.cos.osf.client.retrofit.JsonApiParams;
+import org.dataconservancy.cos.osf.client.retrofit.OsfService;
+import org.dataconservancy.cos.osf.packaging.OsfPackageGraph;
+import org.dataconservancy.cos.packaging.CheckpointInterceptor;
+import org.dataconservancy.cos.packaging.CheckpointJournal;
+import org.dataconservancy.cos.packaging.LocalContentStore;
+import org.dataconservancy.cos.packaging.OsfContentProvider;
+import org.dataconservancy.cos.packaging.PackageManifest;
+import org.dataconservancy.cos.packaging.RangeContentResolver;
+import org.dataconservancy.packaging.shared.IpmPackager;
+import org.dataconservancy.packaging.tool.api.Package;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Packages a single registration: the unit of work of the command line application, and of the
+ * {@link PackagingDaemon}.  A job is {@link #prepare(Wiring) prepared}, which checks the registration URL and the
+ * supplied files and creates the output location, and then {@link #run(Wiring) run}.  Jobs are not reusable; each
+ * registration to be packaged requires a new job.
+ *
+ * @author agent (agent@local)
+ */
+class PackagingJob {
+
+    /**
+     * The directory of the output location holding the content extracted from a previous package
+     */
+    static final String PREVIOUS_CONTENT = ".previous";
+
+    /**
+     * The number of requests made at once while crawling the registration hierarchy by default: none, the hierarchy is
+     * retrieved one request at a time as the registration is converted
+     */
+    static final int DEFAULT_CRAWL_CONCURRENCY = 0;
+
+    private static final Logger LOG = LoggerFactory.getLogger(PackagingJob.class);
+
+    private final String registrationUrl;
+
+    private String packageName;
+
+    private File outputLocation;
+
+    private File bagMetadataFile;
+
+    private String embed;
+
+    private int crawlConcurrency = DEFAULT_CRAWL_CONCURRENCY;
+
+    private boolean resumable = false;
+
+    private int segments = 1;
+
+    private LocalContentStore contentStore;
+
+    private File previousPackageFile;
+
+    private Compression compression = Compression.NONE;
+
+    private int compressionThreads = Runtime.getRuntime().availableProcessors();
+
+    private boolean resuming = false;
+
+    /**
+     * @param registrationUrl the OSF API URL of the registration to package
+     */
+    PackagingJob(final String registrationUrl) {
+        if (registrationUrl == null || registrationUrl.trim().length() == 0) {
+            throw new IllegalArgumentException("Registration URL must not be empty or null.");
+        }
+        this.registrationUrl = registrationUrl.trim();
+    }
+
+    /**
+     * Checks that the registration URL answers JSON, that the supplied files exist, and that the output location may
+     * be written, and creates the output location.  Defaults the package name to the GUID of the registration, and the
+     * output location to a directory named for the package in the working directory.
+     *
+     * @param wiring supplies the OkHttp client used to check the registration URL
+     * @throws IllegalArgumentException if the job cannot be run, with a message suitable for the user
+     * @throws IOException if the registration URL cannot be checked, or the output location cannot be created
+     */
+    void prepare(final Wiring wiring) throws IOException {
+        final Response response = wiring.okHttpClient().newCall(
+                new Request.Builder()
+                        .head()
+                        .url(registrationUrl)
+                        .build()
+        ).execute();
+        response.body().close();
+
+        if (response.code() != 200) {
+            throw new IllegalArgumentException("There was an error executing '" + registrationUrl +
+                    "', response code " + response.code() + " reason: '" + response.message() + "'\n" +
+                    "Please be sure you are using a valid API URL to a node or registration, " +
+                    "and have properly configured authorization credentials, if necessary.");
+        }
+
+        final String contentType = response.header("Content-Type");
+        if (contentType == null || !contentType.contains("json")) {
+            throw new IllegalArgumentException("Provided URL '" + registrationUrl +
+                    "' does not return JSON (Content-Type was '" + contentType + "')\n" +
+                    "Please be sure you are using a valid API URL to a node or registration.");
+        }
+
+        if (packageName == null) {
+            packageName = parseGuid(registrationUrl);
+        } else if (!(packageName.length() > 0)) {
+            throw new IllegalArgumentException("Bag name must have positive length.");
+        }
+
+        if (outputLocation == null) {
+            outputLocation = new File(packageName);
+        }
+
+        resuming = outputLocation.exists() && resumable && CheckpointJournal.exists(outputLocation);
+
+        if (bagMetadataFile != null && (!bagMetadataFile.exists() || !bagMetadataFile.isFile())) {
+            throw new IllegalArgumentException("Supplied bag metadata file " + bagMetadataFile.getCanonicalPath() +
+                    " does not exist or is not a file.");
+        }
+
+        if (previousPackageFile != null && (!previousPackageFile.exists() || !previousPackageFile.isFile())) {
+            throw new IllegalArgumentException("Supplied previous package " + previousPackageFile.getCanonicalPath() +
+                    " does not exist or is not a file.");
+        }
+
+        if (!resuming) {
+            // created atomically, so that of two jobs (e.g. of a daemon) with the same output location, one fails
+            final File parent = outputLocation.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                FileUtils.forceMkdir(parent);
+            }
+            try {
+                Files.createDirectory(outputLocation.toPath());
+            } catch (FileAlreadyExistsException e) {
+                throw new IllegalArgumentException("Destination directory " + outputLocation.getCanonicalPath() +
+                        " already exists!  Either (re)move the directory, or choose a different output location.");
+            }
+        }
+    }
+
+    /**
+     * Packages the registration.  The job must have been {@link #prepare(Wiring) prepared}.
+     *
+     * @param wiring supplies the OSF client and package graph
+     * @return the package file
+     * @throws Exception if the registration cannot be packaged
+     */
+    File run(final Wiring wiring) throws Exception {
+        if (outputLocation == null) {
+            throw new IllegalStateException("The job must be prepared before it is run.");
+        }
+
+        // Journal API responses and binary content, answering the work completed by an interrupted run from the journal
+        final CheckpointJournal journal;
+        final Wiring runWiring;
+        if (resumable) {
+            journal = new CheckpointJournal(outputLocation);
+            runWiring = wiring.withInterceptor(new CheckpointInterceptor(journal));
+            discardPartialPackage();
+        } else {
+            journal = null;
+            runWiring = wiring;
+        }
+
+        final File previousContent = new File(outputLocation, PREVIOUS_CONTENT);
+        final File packageFile;
+        OsfContentProvider contentProvider = null;
+        Package pkg = null;
+        try {
+            // Prepare the OSF registration and users information
+            final OsfService osfService = runWiring.osfService();
+            final JsonApiParams params = new JsonApiParams();
+            if (embed != null && embed.trim().length() > 0) {
+                params.embed(embed.trim().split("\\s*,\\s*"));
+            }
+            final Registration registration;
+            if (crawlConcurrency > 0) {
+                // Retrieve each level of the registration hierarchy concurrently before it is converted
+                registration = new HierarchyCrawler(runWiring.okHttpClient(),
+                        runWiring.modelClassScanner().getDetectedClasses(), crawlConcurrency)
+                        .read(params.appendTo(registrationUrl), runWiring.resourceConverter(), Registration.class);
+            } else {
+                registration = osfService.registration(params.appendTo(registrationUrl)).execute().body();
+            }
+
+            if (registration == null) {
+                throw new IllegalStateException("Failed to obtain registration " + registrationUrl +
+                        " from endpoint. \nEither the connection failed, or a registration does not exist at the " +
+                        "provided URL.");
+            }
+
+            final List<User> users = registration.getContributors().stream()
+                    .map(c -> {
+                        try {
+                            if (c.getUserRel() != null) {
+                                return osfService.user(c.getUserRel()).execute().body();
+                            } else {
+                                String contributorId = c.getId();
+                                if (contributorId.contains("-")) {
+                                    contributorId = contributorId.split("-")[1];
+                                }
+                                return osfService.userById(contributorId).execute().body();
+                            }
+                        } catch (IOException e) {
+                            throw new RuntimeException(e.getMessage(), e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+
+            // Prepare package graph
+            final OsfPackageGraph packageGraph = runWiring.packageGraph();
+            packageGraph.add(registration);
+            users.forEach(packageGraph::add);
+
+            // Prepare content provider using package graph
+            // TODO - Does this work without the lambda-specified resolver used in OsfContentProviderTest?
+            final RangeContentResolver contentResolver = new RangeContentResolver(runWiring.okHttpClient());
+            contentResolver.setSegments(segments);
+            contentProvider = new OsfContentProvider(packageGraph, contentResolver, journal);
+            if (contentStore != null) {
+                contentProvider.setContentStore(contentStore);
+            }
+
+            // Extract the content of the previous package, so that unchanged files are not retrieved again
+            if (previousPackageFile != null) {
+                final PreviousPackage previous = new PreviousPackage(previousPackageFile);
+                final int extracted = previous.extract(previousContent);
+                LOG.info("Extracted {} of {} file(s) from the previous package {}", extracted,
+                        previous.getManifest().size(), previousPackageFile.getCanonicalPath());
+                contentProvider.setPreviousPackage(previous.getManifest(), previousContent);
+            }
+
+            // Create the package in the default location with the supplied name.
+            // No package generation parameters are supplied.
+            final IpmPackager ipmPackager = new IpmPackager();
+            ipmPackager.setPackageName(packageName);
+            ipmPackager.setPackageLocation(outputLocation.getPath());
+            if (bagMetadataFile == null) {
+                pkg = ipmPackager.buildPackage(contentProvider, null, null);
+            } else {
+                try (final FileInputStream metadataStream = new FileInputStream(bagMetadataFile)) {
+                    pkg = ipmPackager.buildPackage(contentProvider, metadataStream, null);
+                }
+            }
+
+            // Now just write the package out to a file in the output location, compressed with the selected codec
+            // this must agree with the package root directory name according to our
+            // dataconservancy bagit profile
+            packageFile = new File(outputLocation.getAbsolutePath(),
+                    packageName + "." + compression.getExtension());
+            try (InputStream in = pkg.serialize();
+                 OutputStream out = compression.wrap(new FileOutputStream(packageFile), compressionThreads)) {
+                IOUtils.copy(in, out);
+            } catch (java.io.IOException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+
+            // Describe the content of the package, so that a later run may re-use it
+            contentProvider.getManifest().write(new File(outputLocation, packageName + PackageManifest.SUFFIX));
+        } finally {
+            // Staged content is removed whether or not the package is written, so that a failed job (e.g. of a
+            // long-running daemon) does not leave copies of its binaries behind
+            if (pkg != null) {
+                pkg.cleanupPackage();
+            }
+            if (contentProvider != null) {
+                contentProvider.close();
+            }
+            FileUtils.deleteQuietly(previousContent);
+            if (journal != null) {
+                journal.close();
+            }
+        }
+
+        if (journal != null) {
+            journal.delete();
+        }
+
+        return packageFile;
+    }
+
+    /**
+     * Whether the job resumes a run journaled in its output location.  Known once the job is prepared.
+     *
+     * @return true if an interrupted run is resumed
+     */
+    boolean isResuming() {
+        return resuming;
+    }
+
+    /**
+     * @return the OSF API URL of the registration
+     */
+    String getRegistrationUrl() {
+        return registrationUrl;
+    }
+
+    /**
+     * @return the name of the package, {@code null} until the job is prepared unless supplied
+     */
+    String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * @param packageName the name of the package, defaults to the GUID of the registration
+     */
+    void setPackageName(final String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * @return the directory the package is written to, {@code null} until the job is prepared unless supplied
+     */
+    File getOutputLocation() {
+        return outputLocation;
+    }
+
+    /**
+     * @param outputLocation the directory the package is written to, defaults to the package name
+     */
+    void setOutputLocation(final File outputLocation) {
+        this.outputLocation = outputLocation;
+    }
+
+    /**
+     * @param bagMetadataFile properties file holding additional bag metadata, may be {@code null}
+     */
+    void setBagMetadataFile(final File bagMetadataFile) {
+        this.bagMetadataFile = bagMetadataFile;
+    }
+
+    /**
+     * @param embed comma-separated relationships of the registration to embed; empty or {@code null} (the default)
+     *              embeds nothing
+     */
+    void setEmbed(final String embed) {
+        this.embed = embed;
+    }
+
+    /**
+     * @param crawlConcurrency the number of requests made at once while crawling the registration hierarchy, 0 to
+     *                         retrieve the hierarchy one request at a time
+     */
+    void setCrawlConcurrency(final int crawlConcurrency) {
+        if (crawlConcurrency < 0) {
+            throw new IllegalArgumentException("Crawl concurrency must not be negative.");
+        }
+        this.crawlConcurrency = crawlConcurrency;
+    }
+
+    /**
+     * @param resumable whether progress is journaled in the output location, so an interrupted run may be resumed
+     */
+    void setResumable(final boolean resumable) {
+        this.resumable = resumable;
+    }
+
+    /**
+     * @param segments the number of ranges of a large file downloaded in parallel
+     */
+    void setSegments(final int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("Segments must be a positive integer.");
+        }
+        this.segments = segments;
+    }
+
+    /**
+     * @param contentStore the store of content retrieved by previous runs, may be {@code null}
+     */
+    void setContentStore(final LocalContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * @param previousPackageFile a package previously written for the registration, may be {@code null}
+     */
+    void setPreviousPackageFile(final File previousPackageFile) {
+        this.previousPackageFile = previousPackageFile;
+    }
+
+    /**
+     * @param compression the codec compressing the package
+     */
+    void setCompression(final Compression compression) {
+        if (compression == null) {
+            throw new IllegalArgumentException("Compression must not be null.");
+        }
+        this.compression = compression;
+    }
+
+    /**
+     * @param compressionThreads the number of threads compressing the package
+     */
+    void setCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 1) {
+            throw new IllegalArgumentException("Compression threads must be a positive integer.");
+        }
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Removes the package directory, package file, manifest, and previous package content left in the output location
+     * by an interrupted run.  The journal is retained.
+     *
+     * @throws IOException if the partial package cannot be removed
+     */
+    private void discardPartialPackage() throws IOException {
+        for (Compression c : Compression.values()) {
+            FileUtils.deleteQuietly(new File(outputLocation, packageName + "." + c.getExtension()));
+        }
+        FileUtils.deleteQuietly(new File(outputLocation, packageName + PackageManifest.SUFFIX));
+        FileUtils.deleteDirectory(new File(outputLocation, packageName));
+        FileUtils.deleteDirectory(new File(outputLocation, PREVIOUS_CONTENT));
+    }
+
+    /**
+     * Answers the last path segment of the registration URL, which is its GUID.
+     *
+     * @param registrationUrl the OSF API URL of the registration
+     * @return the GUID of the registration
+     */
+    static String parseGuid(final String registrationUrl) {
+        String mutableUrl = registrationUrl.trim();
+
+        if (mutableUrl.endsWith("/")) {
+            mutableUrl = mutableUrl.substring(0, mutableUrl.length() - 1);
+        }
+
+        return mutableUrl.substring(mutableUrl.lastIndexOf("/") + 1);
+    }
+
+}
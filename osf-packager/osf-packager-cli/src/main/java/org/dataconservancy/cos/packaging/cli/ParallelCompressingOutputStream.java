@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compresses the bytes written to it in blocks, each compressed on a separate thread, and writes the compressed blocks
+ * to the underlying stream in the order they were written.  At most two blocks per thread are held in memory
+ * awaiting compression or output, so a fast producer is throttled to the rate the blocks can be compressed.
+ *
+ * @author agent (agent@local)
+ */
+class ParallelCompressingOutputStream extends OutputStream {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final OutputStream out;
+
+    private final Compression compression;
+
+    private final int blockSize;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+
+    private int count;
+
+    private boolean closed;
+
+    /**
+     * @param out the stream receiving the compressed blocks
+     * @param compression the codec used to compress each block
+     * @param blockSize the size of each block, in bytes
+     * @param threads the number of threads compressing blocks
+     */
+    ParallelCompressingOutputStream(final OutputStream out, final Compression compression, final int blockSize,
+                                    final int threads) {
+        if (out == null) {
+            throw new IllegalArgumentException("Output stream must not be null.");
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be a positive integer.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be a positive integer.");
+        }
+        this.out = out;
+        this.compression = compression;
+        this.blockSize = blockSize;
+        this.maxPending = threads * 2;
+        this.block = new byte[blockSize];
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = new Thread(r, "osf-package-compression-" + THREAD_COUNT.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        block[count++] = (byte) b;
+        if (count == blockSize) {
+            submit();
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            final int n = Math.min(remaining, blockSize - count);
+            System.arraycopy(b, offset, block, count, n);
+            count += n;
+            offset += n;
+            remaining -= n;
+            if (count == blockSize) {
+                submit();
+            }
+        }
+    }
+
+    /**
+     * Compresses the partially filled block (as a block of its own), and writes every compressed block to the
+     * underlying stream.
+     *
+     * @throws IOException if a block cannot be compressed or written
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (count > 0) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submit() throws IOException {
+        final byte[] toCompress = count == blockSize ? block : Arrays.copyOf(block, count);
+        pending.add(executor.submit(() -> compression.compress(toCompress)));
+        block = new byte[blockSize];
+        count = 0;
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            out.write(pending.removeFirst().get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to compress the package: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted compressing the package");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+}
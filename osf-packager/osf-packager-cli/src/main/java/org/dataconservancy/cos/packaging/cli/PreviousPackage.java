@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.dataconservancy.cos.packaging.ContentDigests;
+import org.dataconservancy.cos.packaging.PackageManifest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A package written by a previous run, and its {@link PackageManifest manifest}.  The content recorded in the manifest
+ * is extracted from the package file, so that files unchanged since the package was written need not be retrieved
+ * again.
+ *
+ * @author agent (agent@local)
+ */
+class PreviousPackage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PreviousPackage.class);
+
+    private final File packageFile;
+
+    private final Compression compression;
+
+    private final PackageManifest manifest;
+
+    /**
+     * Opens a package written by a previous run.  The manifest of the package is expected alongside it, named for the
+     * package with the {@link PackageManifest#SUFFIX manifest suffix}.
+     *
+     * @param packageFile the package file, e.g. {@code eq7a4.tar.gz}
+     * @throws IOException if the package or its manifest does not exist, or the manifest cannot be read
+     */
+    PreviousPackage(final File packageFile) throws IOException {
+        if (packageFile == null) {
+            throw new IllegalArgumentException("Package file must not be null.");
+        }
+        if (!packageFile.isFile()) {
+            throw new IOException("Package '" + packageFile + "' does not exist or is not a file.");
+        }
+
+        this.packageFile = packageFile;
+        this.compression = Compression.forFile(packageFile);
+
+        final File manifestFile = manifestFile(packageFile, compression);
+        if (!manifestFile.isFile()) {
+            throw new IOException("Package '" + packageFile + "' has no manifest (expected '" + manifestFile + "')");
+        }
+        this.manifest = PackageManifest.read(manifestFile);
+    }
+
+    /**
+     * @return the manifest of the package
+     */
+    PackageManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Extracts the content recorded in the manifest from the package, in a single pass over the package file.  Each
+     * extracted file is named for its SHA-256 checksum.  Entries of the package are identified by their length and
+     * checksum, so the layout of the package is irrelevant.
+     *
+     * @param directory the directory receiving the content, created if it does not exist
+     * @return the number of files extracted
+     * @throws IOException if the package cannot be read, or the content cannot be written
+     */
+    int extract(final File directory) throws IOException {
+        FileUtils.forceMkdir(directory);
+
+        // The checksums of the recorded content, by length
+        final Map<Long, Set<String>> wanted = new HashMap<>();
+        int remaining = 0;
+        for (PackageManifest.Entry entry : manifest.getEntries()) {
+            if (wanted.computeIfAbsent(entry.getLength(), length -> new HashSet<>()).add(entry.getSha256())) {
+                remaining++;
+            }
+        }
+
+        int extracted = 0;
+        final File part = new File(directory, "extract.part");
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(
+                compression.unwrap(new BufferedInputStream(Files.newInputStream(packageFile.toPath()), 64 * 1024)))) {
+            TarArchiveEntry entry;
+            while (remaining > 0 && (entry = tar.getNextTarEntry()) != null) {
+                final Set<String> checksums = wanted.get(entry.getSize());
+                if (!entry.isFile() || checksums == null) {
+                    continue;
+                }
+
+                final ContentDigests digests = new ContentDigests();
+                final InputStream in = digests.wrap(tar);
+                try (OutputStream out = new FileOutputStream(part)) {
+                    final byte[] buf = new byte[64 * 1024];
+                    int read;
+                    while ((read = in.read(buf)) > -1) {
+                        out.write(buf, 0, read);
+                    }
+                }
+
+                final String sha256 = digests.get(Checksum.Algorithm.SHA256);
+                if (checksums.remove(sha256)) {
+                    Files.move(part.toPath(), new File(directory, sha256).toPath());
+                    extracted++;
+                    remaining--;
+                } else {
+                    LOG.debug("Skipping entry '{}' of the previous package, it is not recorded in its manifest",
+                            entry.getName());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(part.toPath());
+        }
+
+        if (remaining > 0) {
+            LOG.warn("{} file(s) recorded in the manifest of '{}' were not found in the package, they will be " +
+                    "retrieved", remaining, packageFile);
+        }
+        return extracted;
+    }
+
+    /**
+     * Answers the manifest of a package file: the package name, with the {@link PackageManifest#SUFFIX manifest
+     * suffix}, in the directory of the package.
+     *
+     * @param packageFile the package file
+     * @param compression the codec of the package file
+     * @return the manifest file
+     */
+    static File manifestFile(final File packageFile, final Compression compression) {
+        final String name = packageFile.getName();
+        return new File(packageFile.getAbsoluteFile().getParentFile(),
+                name.substring(0, name.length() - compression.getExtension().length() - 1) + PackageManifest.SUFFIX);
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import org.dataconservancy.cos.osf.client.retrofit.OsfClientComponents;
+import org.dataconservancy.cos.osf.client.retrofit.OsfService;
+import org.dataconservancy.cos.osf.client.support.ModelClassScanner;
+import org.dataconservancy.cos.osf.packaging.OsfPackageGraph;
+import org.dataconservancy.cos.rdf.support.OntologyManager;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * The components used to package a registration: the OSF client, and the package graph.  Components are obtained either
+ * from {@link OsfClientComponents}, which creates each component when it is first needed, or from the Spring XML
+ * application contexts.
+ *
+ * @author agent (agent@local)
+ */
+abstract class Wiring implements AutoCloseable {
+
+    /**
+     * The shared OkHttp client ({@code okHttpClient})
+     *
+     * @return the OkHttp client
+     */
+    abstract OkHttpClient okHttpClient();
+
+    /**
+     * A new OSF service ({@code osfService})
+     *
+     * @return the OSF service
+     */
+    abstract OsfService osfService();
+
+    /**
+     * The scanner detecting the OSF model classes ({@code modelClassScanner})
+     *
+     * @return the model class scanner
+     */
+    abstract ModelClassScanner modelClassScanner();
+
+    /**
+     * A new JSON-API resource converter ({@code resourceConverter})
+     *
+     * @return the resource converter
+     */
+    abstract ResourceConverter resourceConverter();
+
+    /**
+     * A new package graph ({@code packageGraph})
+     *
+     * @return the package graph
+     */
+    abstract OsfPackageGraph packageGraph();
+
+    /**
+     * Answers wiring whose OkHttp client applies the supplied interceptor before any other, for the use of a single
+     * packaging run.
+     *
+     * @param interceptor the interceptor to apply first
+     * @return the wiring of the run
+     */
+    abstract Wiring withInterceptor(Interceptor interceptor);
+
+    /**
+     * Closes the wiring, making a final report of the HTTP metrics.
+     */
+    @Override
+    public abstract void close();
+
+    /**
+     * Wiring that creates each component when it is first needed.  The OSF client configuration is named by the
+     * {@code osf.client.conf} system property.
+     *
+     * @return the wiring
+     */
+    static Wiring programmatic() {
+        return new Programmatic(new OsfClientComponents());
+    }
+
+    /**
+     * Wiring obtained from the Spring XML application contexts.  The OSF client configuration is named by the
+     * {@code osf.client.conf} system property.
+     *
+     * @return the wiring
+     */
+    static Wiring spring() {
+        return new Spring(new ClassPathXmlApplicationContext(
+                "classpath*:org/dataconservancy/cos/osf/client/config/applicationContext.xml",
+                "classpath*:org/dataconservancy/cos/osf/client/retrofit/applicationContext.xml",
+                "classpath:/org/dataconservancy/cos/packaging/config/applicationContext.xml"));
+    }
+
+    private static final class Programmatic extends Wiring {
+
+        private final OsfClientComponents components;
+
+        private Programmatic(final OsfClientComponents components) {
+            this.components = components;
+        }
+
+        @Override
+        OkHttpClient okHttpClient() {
+            return components.getOkHttpClient();
+        }
+
+        @Override
+        OsfService osfService() {
+            return components.newOsfService();
+        }
+
+        @Override
+        ModelClassScanner modelClassScanner() {
+            return components.getModelClassScanner();
+        }
+
+        @Override
+        ResourceConverter resourceConverter() {
+            return components.newResourceConverter();
+        }
+
+        @Override
+        OsfPackageGraph packageGraph() {
+            return new OsfPackageGraph(new OntologyManager());
+        }
+
+        /**
+         * The interceptor is applied by a copy of the shared client, so runs may be made concurrently.
+         */
+        @Override
+        Wiring withInterceptor(final Interceptor interceptor) {
+            return new Programmatic(components.withInterceptor(interceptor));
+        }
+
+        @Override
+        public void close() {
+            components.close();
+        }
+    }
+
+    private static final class Spring extends Wiring {
+
+        private final ClassPathXmlApplicationContext ctx;
+
+        private Spring(final ClassPathXmlApplicationContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        OkHttpClient okHttpClient() {
+            return ctx.getBean("okHttpClient", OkHttpClient.class);
+        }
+
+        @Override
+        OsfService osfService() {
+            return ctx.getBean("osfService", OsfService.class);
+        }
+
+        @Override
+        ModelClassScanner modelClassScanner() {
+            return ctx.getBean("modelClassScanner", ModelClassScanner.class);
+        }
+
+        @Override
+        ResourceConverter resourceConverter() {
+            return ctx.getBean("resourceConverter", ResourceConverter.class);
+        }
+
+        @Override
+        OsfPackageGraph packageGraph() {
+            return ctx.getBean("packageGraph", OsfPackageGraph.class);
+        }
+
+        /**
+         * The interceptor is added to the shared client, so only a single run may be made.
+         */
+        @Override
+        Wiring withInterceptor(final Interceptor interceptor) {
+            okHttpClient().interceptors().add(0, interceptor);
+            return this;
+        }
+
+        @Override
+        public void close() {
+            ctx.close();
+        }
+    }
+
+}
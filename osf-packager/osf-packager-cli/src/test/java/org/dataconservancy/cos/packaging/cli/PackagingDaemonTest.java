@@ -0,0 +1,357 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jasminb.jsonapi.ResourceConverter;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.cos.osf.client.retrofit.OsfService;
+import org.dataconservancy.cos.osf.client.support.ModelClassScanner;
+import org.dataconservancy.cos.osf.packaging.OsfPackageGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent (agent@local)
+ */
+public class PackagingDaemonTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private PackagingDaemon underTest;
+
+    private File spool;
+
+    /**
+     * A registration URL that refuses connections, so every job fails when it is prepared
+     */
+    private String registrationUrl;
+
+    /**
+     * The token of the HTTP endpoint, once it is started
+     */
+    private String token;
+
+    @Before
+    public void setUp() throws Exception {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        registrationUrl = "http://localhost:" + port + "/v2/registrations/abc12/";
+        spool = new File(tmp.getRoot(), "spool");
+        underTest = new PackagingDaemon(new ClientOnlyWiring(), PackagingJob::new, tmp.newFolder("output"), 1);
+    }
+
+    @After
+    public void tearDown() {
+        underTest.close();
+    }
+
+    /**
+     * Insures a job written to the spool directory is claimed, run, and its description and status recorded in the
+     * failed directory when it fails.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSpooledJobFails() throws Exception {
+        underTest.startSpool(spool);
+        spool("abc12.json", "{\"registration\":\"" + registrationUrl + "\"}");
+
+        final JsonNode result = awaitOutcome(new File(spool, PackagingDaemon.FAILED));
+
+        assertEquals("FAILED", result.get("status").get("state").asText());
+        assertEquals("abc12.json", result.get("status").get("source").asText());
+        assertEquals(registrationUrl, result.get("job").get("registration").asText());
+        assertNotNull(result.get("status").get("error").asText());
+        assertEquals(0, spool.list((dir, name) -> name.endsWith(".json")).length);
+        assertEquals(0, new File(spool, PackagingDaemon.ACTIVE).list().length);
+    }
+
+    /**
+     * Insures that descriptions left in the active directory by a previous daemon are returned to the spool directory
+     * and claimed again, and that descriptions that are not valid are rejected.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAbandonedJobIsReturned() throws Exception {
+        FileUtils.write(new File(new File(spool, PackagingDaemon.ACTIVE), "abandoned.json"), "{\"name\":\"abc12\"}",
+                StandardCharsets.UTF_8);
+
+        underTest.startSpool(spool);
+
+        final JsonNode result = awaitOutcome(new File(spool, PackagingDaemon.FAILED));
+        assertEquals("abandoned.json", result.get("status").get("source").asText());
+        assertTrue(result.get("status").get("error").asText().contains("registration"));
+        assertEquals("abc12", result.get("job").get("name").asText());
+    }
+
+    /**
+     * Insures that a job interrupted by closing the daemon is not recorded as failed, and its description remains in
+     * the active directory, to be returned to the spool directory (and resumed) by the next daemon.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCloseLeavesRunningJobClaimed() throws Exception {
+        underTest.close();
+        underTest = new PackagingDaemon(new ClientOnlyWiring(), BlockingJob::new, tmp.newFolder("blocking"), 1);
+        underTest.startSpool(spool);
+        spool("abc12.json", "{\"registration\":\"" + registrationUrl + "\"}");
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while ((underTest.getStatuses().isEmpty() ||
+                underTest.getStatuses().get(0).getState() != PackagingDaemon.State.RUNNING) &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(PackagingDaemon.State.RUNNING, underTest.getStatuses().get(0).getState());
+
+        underTest.close();
+
+        assertEquals(1, new File(spool, PackagingDaemon.ACTIVE).list().length);
+        assertEquals(0, new File(spool, PackagingDaemon.FAILED).list().length);
+        assertEquals(0, new File(spool, PackagingDaemon.DONE).list().length);
+    }
+
+    /**
+     * Insures a job is not run while another job is writing to the same output location.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSameOutputRejected() throws Exception {
+        underTest.close();
+        underTest = new PackagingDaemon(new ClientOnlyWiring(), BlockingJob::new, tmp.newFolder("blocking"), 2);
+
+        underTest.submit(mapper.readTree("{\"registration\":\"" + registrationUrl + "\"}"), "http");
+        underTest.submit(mapper.readTree("{\"registration\":\"" + registrationUrl + "\"}"), "http");
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (underTest.getStatuses().stream().noneMatch(status -> status.getState() == PackagingDaemon.State.FAILED)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        final List<PackagingDaemon.JobStatus> failed = underTest.getStatuses().stream()
+                .filter(status -> status.getState() == PackagingDaemon.State.FAILED).collect(Collectors.toList());
+        assertEquals(1, failed.size());
+        assertTrue(failed.get(0).getError().contains("in use by another job"));
+    }
+
+    /**
+     * Insures jobs are submitted to, and their status answered by, the HTTP endpoint.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testHttp() throws Exception {
+        final String base = "http://localhost:" + underTest.startHttp(0) + PackagingDaemon.JOBS_PATH;
+        token = FileUtils.readFileToString(underTest.getTokenFile(), StandardCharsets.US_ASCII);
+
+        assertEquals(400, request("POST", base, "not json").getResponseCode());
+        assertEquals(400, request("POST", base, "{\"name\":\"abc12\"}").getResponseCode());
+        assertEquals(404, request("GET", base + "/unknown", null).getResponseCode());
+
+        final HttpURLConnection submitted = request("POST", base, "{\"registration\":\"" + registrationUrl + "\"}");
+        assertEquals(202, submitted.getResponseCode());
+        final JsonNode status = read(submitted);
+        final String id = status.get("id").asText();
+        assertEquals(PackagingDaemon.JOBS_PATH + "/" + id, submitted.getHeaderField("Location"));
+        assertEquals("http", status.get("source").asText());
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (underTest.getStatus(id).getState() != PackagingDaemon.State.FAILED &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        final HttpURLConnection polled = request("GET", base + "/" + id, null);
+        assertEquals(200, polled.getResponseCode());
+        assertEquals("FAILED", read(polled).get("state").asText());
+
+        final HttpURLConnection listed = request("GET", base, null);
+        assertEquals(200, listed.getResponseCode());
+        assertEquals(id, read(listed).get(0).get("id").asText());
+    }
+
+    /**
+     * Insures the HTTP endpoint refuses requests without the token, descriptions that are not posted as JSON, and
+     * descriptions whose output location is outside the output root.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testHttpRefused() throws Exception {
+        final String base = "http://localhost:" + underTest.startHttp(0) + PackagingDaemon.JOBS_PATH;
+        final String job = "{\"registration\":\"" + registrationUrl + "\"}";
+        token = FileUtils.readFileToString(underTest.getTokenFile(), StandardCharsets.US_ASCII);
+
+        assertEquals(401, request("GET", base, null, null, null).getResponseCode());
+        assertEquals(401, request("POST", base, job, "application/json", "not the token").getResponseCode());
+        assertEquals(415, request("POST", base, job, "text/plain", token).getResponseCode());
+        assertEquals(400, request("POST", base, "{\"registration\":\"" + registrationUrl +
+                "\",\"output\":\"../escaped\"}").getResponseCode());
+        assertEquals(400, request("POST", base, "{\"registration\":\"" + registrationUrl + "\",\"output\":\"" +
+                tmp.getRoot().getAbsolutePath() + "\"}").getResponseCode());
+        assertTrue(underTest.getStatuses().isEmpty());
+
+        underTest.close();
+        assertFalse(underTest.getTokenFile().exists());
+    }
+
+    /**
+     * Writes a description to the spool directory as a client should: under another name, then renamed.
+     */
+    private void spool(final String name, final String description) throws IOException {
+        final File written = new File(spool, name + ".tmp");
+        FileUtils.write(written, description, StandardCharsets.UTF_8);
+        Files.move(written.toPath(), new File(spool, name).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private JsonNode awaitOutcome(final File dir) throws Exception {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            final File[] outcomes = dir.listFiles((parent, name) -> name.endsWith(".json"));
+            if (outcomes != null && outcomes.length > 0) {
+                return mapper.readTree(outcomes[0]);
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("No outcome was recorded in " + dir);
+    }
+
+    private HttpURLConnection request(final String method, final String url, final String body) throws IOException {
+        return request(method, url, body, "application/json", token);
+    }
+
+    private static HttpURLConnection request(final String method, final String url, final String body,
+                                             final String contentType, final String token) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        if (token != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        if (body != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+
+    private JsonNode read(final HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return mapper.readTree(IOUtils.toByteArray(in));
+        }
+    }
+
+    /**
+     * A job that runs until it is interrupted.
+     */
+    private static class BlockingJob extends PackagingJob {
+
+        private BlockingJob(final String registrationUrl) {
+            super(registrationUrl);
+        }
+
+        @Override
+        void prepare(final Wiring wiring) {
+        }
+
+        @Override
+        File run(final Wiring wiring) throws Exception {
+            Thread.sleep(Long.MAX_VALUE);
+            return null;
+        }
+    }
+
+    /**
+     * Wiring supplying only an OkHttp client, which is all a job uses until it is prepared.
+     */
+    private static class ClientOnlyWiring extends Wiring {
+
+        private final OkHttpClient client = new OkHttpClient();
+
+        @Override
+        OkHttpClient okHttpClient() {
+            return client;
+        }
+
+        @Override
+        OsfService osfService() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        ModelClassScanner modelClassScanner() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        ResourceConverter resourceConverter() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        OsfPackageGraph packageGraph() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        Wiring withInterceptor(final Interceptor interceptor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.tukaani.xz.XZInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent (agent@local)
+ */
+public class ParallelCompressingOutputStreamTest {
+
+    /**
+     * Enough content for several blocks, and a partial final block
+     */
+    private static final byte[] CONTENT = content(5 * 1024 + 17);
+
+    /**
+     * Insures that content compressed in parallel blocks with gzip is decompressed as a single stream.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGzip() throws Exception {
+        final byte[] compressed = compress(Compression.GZIP, CONTENT);
+        assertArrayEquals(CONTENT, IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    /**
+     * Insures that content compressed in parallel blocks with zstd is decompressed as a single stream.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testZstd() throws Exception {
+        final byte[] compressed = compress(Compression.ZSTD, CONTENT);
+        assertArrayEquals(CONTENT, IOUtils.toByteArray(new ZstdInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    /**
+     * Insures that content compressed in parallel blocks with xz is decompressed as a single stream.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testXz() throws Exception {
+        final byte[] compressed = compress(Compression.XZ, CONTENT);
+        assertArrayEquals(CONTENT, IOUtils.toByteArray(new XZInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    /**
+     * Insures that content written a byte at a time, and flushed part way through a block, is compressed in order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteBytesAndFlush() throws Exception {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelCompressingOutputStream(result, Compression.GZIP, 1024, 3)) {
+            for (int i = 0; i < CONTENT.length; i++) {
+                out.write(CONTENT[i]);
+                if (i == 100) {
+                    out.flush();
+                }
+            }
+        }
+
+        assertArrayEquals(CONTENT,
+                IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(result.toByteArray()))));
+    }
+
+    /**
+     * Insures that no compression leaves the stream unwrapped.
+     */
+    @Test
+    public void testNone() {
+        final OutputStream out = new ByteArrayOutputStream();
+        assertSame(out, Compression.NONE.wrap(out, 4));
+    }
+
+    /**
+     * Insures that compressing repetitive content makes it smaller.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCompresses() throws Exception {
+        final byte[] repetitive = new byte[64 * 1024];
+        final byte[] compressed = compress(Compression.GZIP, repetitive);
+        assertTrue(compressed.length < repetitive.length / 10);
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(repetitive, IOUtils.toByteArray(in));
+        }
+    }
+
+    private static byte[] compress(final Compression compression, final byte[] content) throws IOException {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelCompressingOutputStream(result, compression, 1024, 4)) {
+            out.write(content);
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] content(final int length) {
+        final byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging.cli;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.cos.packaging.PackageManifest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author agent (agent@local)
+ */
+public class PreviousPackageTest {
+
+    /**
+     * SHA-256 of "binary content"
+     */
+    private static final String SHA256 = "93a0b24644f2e0fd11d6b422c90275c482b0cc20be4a4e3f62148ed2932b4792";
+
+    private static final byte[] CONTENT = "binary content".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Insures the content recorded in the manifest of a compressed package is extracted, named for its checksum, and
+     * other entries of the package are not.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExtract() throws Exception {
+        final File packageFile = new File(tmp.newFolder(), "eq7a4.tar.gz");
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                Compression.GZIP.wrap(new FileOutputStream(packageFile), 2))) {
+            add(tar, "eq7a4/bagit.txt", "BagIt-Version: 0.97\n".getBytes(StandardCharsets.UTF_8));
+            add(tar, "eq7a4/data/a/osfstorage_file.txt", CONTENT);
+            add(tar, "eq7a4/data/b/osfstorage_copy.txt", CONTENT);
+            add(tar, "eq7a4/data/c/osfstorage_other.txt", "binary CONTENT".getBytes(StandardCharsets.UTF_8));
+        }
+
+        final PackageManifest manifest = new PackageManifest();
+        manifest.add("file", 1, null, SHA256, CONTENT.length);
+        manifest.add("copy", 1, null, SHA256, CONTENT.length);
+        manifest.write(PreviousPackage.manifestFile(packageFile, Compression.GZIP));
+
+        final PreviousPackage underTest = new PreviousPackage(packageFile);
+        final File content = new File(tmp.getRoot(), "content");
+
+        assertEquals(2, underTest.getManifest().size());
+        assertEquals(1, underTest.extract(content));
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(new File(content, SHA256)));
+        assertEquals(1, content.list().length);
+    }
+
+    /**
+     * Insures the manifest of a package is named for the package, without its extension.
+     */
+    @Test
+    public void testManifestFile() {
+        assertEquals("eq7a4" + PackageManifest.SUFFIX,
+                PreviousPackage.manifestFile(new File("eq7a4.tar.zst"), Compression.ZSTD).getName());
+        assertEquals("eq7a4" + PackageManifest.SUFFIX,
+                PreviousPackage.manifestFile(new File("eq7a4.tar"), Compression.NONE).getName());
+    }
+
+    /**
+     * Insures a package without a manifest cannot be opened.
+     *
+     * @throws Exception
+     */
+    @Test(expected = IOException.class)
+    public void testMissingManifest() throws Exception {
+        final File packageFile = tmp.newFile("eq7a4.tar");
+        assertFalse(PreviousPackage.manifestFile(packageFile, Compression.NONE).exists());
+        new PreviousPackage(packageFile);
+    }
+
+    private static void add(final TarArchiveOutputStream tar, final String name, final byte[] content)
+            throws IOException {
+        final TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+    }
+
+}
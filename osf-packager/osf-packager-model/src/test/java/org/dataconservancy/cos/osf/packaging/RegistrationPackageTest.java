@@ -464,7 +464,9 @@ public class RegistrationPackageTest extends AbstractMockServerTest {
         // Move of RegistrationMeta to a Map<String, RegistrationMeta> "hides" the RegistrationMeta class from
         // annotation processing.
         // TODO: https://github.com/DataConservancy/dcs-packaging-osf/issues/4
-        assertEquals(95, result.size());
+        // File.extra carries the OSF-reported SHA-256 of each file (osfbom:hasSha256), and File.current_version its
+        // version (osfbom:hasCurrentVersion).
+        assertEquals(97, result.size());
 
         final AnnotatedElementPair aep1 = new AnnotatedElementPair(r.getClass(), OwlIndividual.class);
         final AnnotatedElementPair aep2 = new AnnotatedElementPair(r.getClass(), OwlIndividual.class);
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexes the binary content staged for a package by URL and by SHA-256 checksum, so that content referenced by more
+ * than one file of a package (the same URL, or different URLs with identical content) is retrieved and stored once.
+ * Every file of the package after the first is staged as a link to the content already staged.
+ *
+ * @author agent (agent@local)
+ */
+class BinaryIndex {
+
+    private final Map<String, File> byUrl = new HashMap<>();
+
+    private final Map<String, File> bySha256 = new HashMap<>();
+
+    private final Map<File, String> sha256ByFile = new HashMap<>();
+
+    private int duplicates;
+
+    private long bytesSaved;
+
+    /**
+     * Answers staged content for the supplied URL or checksum.
+     *
+     * @param url the URL of the content
+     * @param sha256 the lower-case hex SHA-256 checksum of the content, may be {@code null} if it is not known
+     * @return the staged content, or {@code null} if neither the URL nor the checksum has been staged
+     */
+    synchronized File lookup(final String url, final String sha256) {
+        final File staged = byUrl.get(url);
+        if (staged != null || sha256 == null) {
+            return staged;
+        }
+        return bySha256.get(sha256);
+    }
+
+    /**
+     * Records staged content.  The first file staged for a URL or checksum is retained.
+     *
+     * @param url the URL of the content
+     * @param sha256 the lower-case hex SHA-256 checksum of the content
+     * @param staged the staged content
+     */
+    synchronized void add(final String url, final String sha256, final File staged) {
+        byUrl.putIfAbsent(url, staged);
+        bySha256.putIfAbsent(sha256, staged);
+        sha256ByFile.putIfAbsent(staged, sha256);
+    }
+
+    /**
+     * Answers the checksum of staged content.
+     *
+     * @param staged staged content, as answered by {@link #lookup(String, String)}
+     * @return the lower-case hex SHA-256 checksum of the content, or {@code null} if it was not recorded
+     */
+    synchronized String digest(final File staged) {
+        return sha256ByFile.get(staged);
+    }
+
+    /**
+     * Records that content of the supplied length was staged as a link to content already staged.
+     *
+     * @param length the length of the content, in bytes
+     */
+    synchronized void duplicate(final long length) {
+        duplicates++;
+        bytesSaved += length;
+    }
+
+    /**
+     * @return the number of files staged as links to content already staged
+     */
+    synchronized int getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return the number of bytes that were not retrieved or stored because the content was already staged
+     */
+    synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Stages {@code target} as a hard link to {@code existing}, replacing {@code target} if it exists.  If the file
+     * system does not support hard links (or the files are on different file systems), the content is copied instead.
+     *
+     * @param existing the staged content
+     * @param target the file to stage
+     * @throws IOException if the link or copy cannot be made
+     */
+    static void link(final File existing, final File target) throws IOException {
+        final File tmp = new File(target.getParentFile(), target.getName() + ".link");
+        Files.deleteIfExists(tmp.toPath());
+        try {
+            Files.createLink(tmp.toPath(), existing.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(existing.toPath(), tmp.toPath());
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Records successful OSF API responses in a {@link CheckpointJournal}, and answers requests for responses that are
+ * already recorded from the journal rather than the network.  When a packaging run is resumed, the registration and
+ * every object reachable from it are therefore read from the journal, exactly as they were retrieved by the
+ * interrupted run, and only the requests the interrupted run did not complete are made.
+ * <p>
+ * Only responses to {@code GET} requests carrying the JSON-API media type ({@value #JSON_API}) are journaled; binary
+ * content is journaled by the {@link OsfContentProvider}.  This interceptor should be the first application
+ * interceptor of the client, so that journaled responses are not subject to rate limiting or retries.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class CheckpointInterceptor implements Interceptor {
+
+    static final String JSON_API = "application/vnd.api+json";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointInterceptor.class);
+
+    private final CheckpointJournal journal;
+
+    /**
+     * @param journal the journal used to record and replay responses
+     */
+    public CheckpointInterceptor(final CheckpointJournal journal) {
+        if (journal == null) {
+            throw new IllegalArgumentException("Journal must not be null.");
+        }
+
+        this.journal = journal;
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+
+        final String url = request.urlString();
+        final CheckpointJournal.Fetch fetch = journal.readFetch(url);
+        if (fetch != null) {
+            LOG.debug("Answering '{}' from the journal", url);
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .header("Content-Type", fetch.getMediaType())
+                    .body(ResponseBody.create(MediaType.parse(fetch.getMediaType()), fetch.getBody()))
+                    .build();
+        }
+
+        final Response response = chain.proceed(request);
+        final String contentType = response.header("Content-Type");
+        if (!response.isSuccessful() || contentType == null || !contentType.contains(JSON_API)) {
+            return response;
+        }
+
+        final byte[] body = response.body().bytes();
+        journal.recordFetch(url, contentType, body);
+        return response.newBuilder()
+                .body(ResponseBody.create(response.body().contentType(), body))
+                .build();
+    }
+
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the work completed by a packaging run, so that an interrupted run can be resumed without repeating it.  The
+ * journal lives in a {@value #DIRECTORY} directory of the output location, and consists of:
+ * <ul>
+ *     <li>{@code journal}: an append-only log with one record per completed unit of work</li>
+ *     <li>{@code api/}: the bodies of completed OSF API requests (see {@link CheckpointInterceptor})</li>
+ *     <li>{@code content/}: downloaded binary content (see {@link #stageBinary(String, String, OsfContentResolver)})
+ *     </li>
+ * </ul>
+ * <p>
+ * A unit of work is written to disk and synced before its record is appended (and synced) to the log, so every
+ * record refers to complete content: the last consistent point of an interrupted run is the last complete record of
+ * the log.  Each record carries the SHA-256 checksum of its content, which is verified before the content is re-used.
+ * Content that is missing or fails verification is simply retrieved again.
+ * </p>
+ * <p>
+ * Records are tab-separated: {@code fetch <url> <file> <sha256> <media type>} for an API response, and
+ * {@code binary <url> <file> <sha256> <length>} for binary content.  File names are relative to the journal directory.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class CheckpointJournal implements AutoCloseable {
+
+    /**
+     * The name of the journal directory within the output location
+     */
+    public static final String DIRECTORY = ".checkpoint";
+
+    static final String JOURNAL_FILE = "journal";
+
+    static final String FETCH = "fetch";
+
+    static final String BINARY = "binary";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointJournal.class);
+
+    private final File directory;
+
+    private final File apiDirectory;
+
+    private final File contentDirectory;
+
+    private final Map<String, Entry> fetches = new HashMap<>();
+
+    private final Map<String, Entry> binaries = new HashMap<>();
+
+    private final FileChannel channel;
+
+    /**
+     * Opens the journal in the supplied output location, creating it if it does not exist.  Records of an existing
+     * journal are loaded; a partially written final record (from an interrupted run) is ignored.
+     *
+     * @param outputLocation the output location of the packaging run
+     * @throws IOException if the journal cannot be created or read
+     */
+    public CheckpointJournal(final File outputLocation) throws IOException {
+        if (outputLocation == null) {
+            throw new IllegalArgumentException("Output location must not be null.");
+        }
+
+        this.directory = new File(outputLocation, DIRECTORY);
+        this.apiDirectory = new File(directory, "api");
+        this.contentDirectory = new File(directory, "content");
+        FileUtils.forceMkdir(apiDirectory);
+        FileUtils.forceMkdir(contentDirectory);
+
+        final File logFile = new File(directory, JOURNAL_FILE);
+        if (logFile.exists()) {
+            final byte[] journal = Files.readAllBytes(logFile.toPath());
+            final int complete = load(journal);
+            if (complete < journal.length) {
+                // Discard the partially written final record, so that it does not corrupt the next record
+                LOG.info("Discarding the partially written final record of journal {}", logFile);
+                try (FileChannel truncate = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+                    truncate.truncate(complete);
+                }
+            }
+        }
+
+        this.channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Answers whether the supplied output location contains a journal.
+     *
+     * @param outputLocation the output location of a packaging run
+     * @return true if a journal exists in the output location
+     */
+    public static boolean exists(final File outputLocation) {
+        return new File(new File(outputLocation, DIRECTORY), JOURNAL_FILE).isFile();
+    }
+
+    /**
+     * @return the journal directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of API responses recorded in the journal
+     */
+    public synchronized int getFetchCount() {
+        return fetches.size();
+    }
+
+    /**
+     * @return the number of binaries recorded in the journal
+     */
+    public synchronized int getBinaryCount() {
+        return binaries.size();
+    }
+
+    /**
+     * Answers the body of the API response recorded for the supplied URL.
+     *
+     * @param url the request URL
+     * @return the media type and body of the response, or {@code null} if no response is recorded, or the recorded
+     *         body fails verification
+     */
+    public synchronized Fetch readFetch(final String url) {
+        final Entry entry = fetches.get(url);
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            final byte[] body = Files.readAllBytes(new File(directory, entry.file).toPath());
+            if (entry.sha256.equals(hex(digest().digest(body)))) {
+                return new Fetch(entry.extra, body);
+            }
+            LOG.warn("Checksum mismatch for journaled response '{}', it will be retrieved again", url);
+        } catch (IOException e) {
+            LOG.warn("Unable to read journaled response '{}', it will be retrieved again: {}", url,
+                    e.getMessage());
+        }
+
+        fetches.remove(url);
+        return null;
+    }
+
+    /**
+     * Records the body of a completed API response.
+     *
+     * @param url the request URL
+     * @param mediaType the media type of the response body
+     * @param body the response body
+     * @throws IOException if the response cannot be recorded
+     */
+    public synchronized void recordFetch(final String url, final String mediaType, final byte[] body)
+            throws IOException {
+        final String sha256 = hex(digest().digest(body));
+        final String file = "api/" + hex(digest().digest(url.getBytes(StandardCharsets.UTF_8)));
+        final File target = new File(directory, file);
+        final File part = new File(directory, file + ".part");
+        try (FileOutputStream out = new FileOutputStream(part)) {
+            out.write(body);
+            out.getFD().sync();
+        }
+        Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        append(new Entry(FETCH, url, file, sha256, mediaType));
+    }
+
+    /**
+     * Stages the binary content at the supplied URL in the journal, retrieving it using the supplied resolver unless
+     * it was staged by a previous run and passes verification.  Content is retrieved to a partial file with
+     * {@link OsfContentResolver#resolveTo(String, File)}, so a transfer interrupted with the run is continued by a
+     * resolver able to resume it (see {@link RangeContentResolver}).
+     *
+     * @param url the URL of the content
+     * @param filename the name of the staged file
+     * @param resolver resolves the URL to content
+     * @return the staged file
+     * @throws IOException if the content cannot be retrieved or staged
+     */
+    public File stageBinary(final String url, final String filename, final OsfContentResolver resolver)
+            throws IOException {
+        return stageBinary(url, filename, resolver, new ContentDigests());
+    }
+
+    /**
+     * Stages the binary content at the supplied URL in the journal, as {@link #stageBinary(String, String,
+     * OsfContentResolver)}, calculating the checksums of the content as it is retrieved (or, if it was staged by a
+     * previous run, as it is verified).  Retrieved content is verified against the expected values of the
+     * {@code digests} before it is journaled; content that fails verification is discarded.
+     *
+     * @param url the URL of the content
+     * @param filename the name of the staged file
+     * @param resolver resolves the URL to content
+     * @param digests calculates (and verifies) the checksums of the content
+     * @return the staged file
+     * @throws IOException if the content cannot be retrieved or staged, or fails verification
+     */
+    public File stageBinary(final String url, final String filename, final OsfContentResolver resolver,
+                            final ContentDigests digests) throws IOException {
+        final File staged = verifiedBinary(url, digests);
+        if (staged != null) {
+            LOG.debug("Skipping retrieval of '{}', already staged as '{}'", url, staged);
+            return staged;
+        }
+
+        // Content is staged in a directory named for its URL, so files of the same name do not collide.  A partial
+        // file left by an interrupted run is continued by resolvers able to resume a transfer
+        final String file = "content/" + hex(digest().digest(url.getBytes(StandardCharsets.UTF_8))).substring(0, 16)
+                + "/" + filename;
+        final File target = new File(directory, file);
+        final File part = new File(directory, file + ".part");
+        if (!target.getParentFile().isDirectory() && !target.getParentFile().mkdirs()) {
+            throw new IOException("Unable to create directory '" + target.getParentFile() + "'");
+        }
+        if (part.isFile()) {
+            LOG.debug("Resuming retrieval of '{}' to partial file '{}'", url, part);
+        }
+        final long length = resolver.resolveTo(url, part, digests);
+        try (FileOutputStream out = new FileOutputStream(part, true)) {
+            out.getFD().sync();
+        }
+
+        try {
+            digests.verify(url);
+        } catch (IOException e) {
+            Files.deleteIfExists(part.toPath());
+            throw e;
+        }
+        Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            append(new Entry(BINARY, url, file, digests.get(Checksum.Algorithm.SHA256), String.valueOf(length)));
+        }
+        return target;
+    }
+
+    /**
+     * Closes the journal, and removes the journal directory and everything in it.  Invoked once a run completes.
+     *
+     * @throws IOException if the journal directory cannot be removed
+     */
+    public void delete() throws IOException {
+        close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Answers the staged file for the binary at the supplied URL, if it was staged and its length and checksum match
+     * the journal.  The checksums of the staged file are calculated by the supplied digests as it is verified.
+     */
+    private File verifiedBinary(final String url, final ContentDigests digests) {
+        final Entry entry;
+        synchronized (this) {
+            entry = binaries.get(url);
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        final File staged = new File(directory, entry.file);
+        if (!staged.isFile() || staged.length() != Long.parseLong(entry.extra)) {
+            LOG.warn("Journaled content '{}' is missing or truncated, it will be retrieved again", url);
+            return null;
+        }
+
+        try {
+            digests.reset();
+            digests.update(staged, staged.length());
+            if (!entry.sha256.equals(digests.get(Checksum.Algorithm.SHA256))) {
+                LOG.warn("Checksum mismatch for journaled content '{}', it will be retrieved again", url);
+                return null;
+            }
+            digests.verify(url);
+        } catch (IOException e) {
+            LOG.warn("Unable to verify journaled content '{}', it will be retrieved again: {}", url,
+                    e.getMessage());
+            return null;
+        }
+
+        return staged;
+    }
+
+    private void append(final Entry entry) throws IOException {
+        final ByteBuffer record = ByteBuffer.wrap((entry.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        channel.force(false);
+        index(entry);
+    }
+
+    /**
+     * Loads the complete records of the supplied journal.
+     *
+     * @return the length of the journal up to the end of its last complete record
+     */
+    private int load(final byte[] journal) {
+        // A record is complete only once its terminating newline is written
+        int complete = journal.length;
+        while (complete > 0 && journal[complete - 1] != '\n') {
+            complete--;
+        }
+
+        int loaded = 0;
+        for (String line : new String(journal, 0, complete, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            final String[] fields = line.split("\t");
+            if (fields.length != 5 || (!FETCH.equals(fields[0]) && !BINARY.equals(fields[0]))) {
+                LOG.warn("Ignoring malformed journal record '{}'", line);
+                continue;
+            }
+            index(new Entry(fields[0], fields[1], fields[2], fields[3], fields[4]));
+            loaded++;
+        }
+
+        LOG.info("Loaded {} record(s) from journal {}", loaded, directory);
+        return complete;
+    }
+
+    private void index(final Entry entry) {
+        if (FETCH.equals(entry.kind)) {
+            fetches.put(entry.url, entry);
+        } else {
+            binaries.put(entry.url, entry);
+        }
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A journaled API response.
+     */
+    public static class Fetch {
+
+        private final String mediaType;
+
+        private final byte[] body;
+
+        private Fetch(final String mediaType, final byte[] body) {
+            this.mediaType = mediaType;
+            this.body = body;
+        }
+
+        /**
+         * @return the media type of the response body
+         */
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * @return the response body
+         */
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * A record of the journal.
+     */
+    private static class Entry {
+
+        private final String kind;
+
+        private final String url;
+
+        private final String file;
+
+        private final String sha256;
+
+        private final String extra;
+
+        private Entry(final String kind, final String url, final String file, final String sha256,
+                      final String extra) {
+            this.kind = kind;
+            this.url = url;
+            this.file = file;
+            this.sha256 = sha256;
+            this.extra = extra;
+        }
+
+        @Override
+        public String toString() {
+            return String.join("\t", kind, url, file, sha256, extra);
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataconservancy.cos.packaging;
+
+import org.dataconservancy.cos.osf.client.model.Checksum;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Answers the checksums of staged binary content, calculated as the content was retrieved (or verified).  Packagers
+ * may use them to describe the content (e.g. in a BagIt manifest) rather than reading it again.
+ *
+ * @author agent (agent@local)
+ */
+@FunctionalInterface
+public interface ContentChecksumSource {
+
+    /**
+     * Answers the checksums of staged content.
+     *
+     * @param staged the location of the staged content, as supplied to the {@code FileInfo} of its IPM node
+     * @return the checksums of the content keyed by algorithm, or {@code null} if the content was not staged by this
+     *         source
+     */
+    Map<Checksum.Algorithm, String> getChecksums(Path staged);
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.dataconservancy.cos.osf.client.model.Checksum;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Calculates the checksums of content as it is read, so that content is verified and described without reading it a
+ * second time.  A stream is {@link #wrap(InputStream) wrapped} in a chain of {@link DigestInputStream}s, one for each
+ * algorithm; the SHA-256 checksum is always calculated, because it identifies content staged by the packager.
+ * <p>
+ * Checksums reported by the OSF are supplied as {@link #expect(Checksum.Algorithm, String) expected} values, and
+ * compared to the calculated values by {@link #verify(String)} once all of the content is read.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class ContentDigests {
+
+    private final Map<Checksum.Algorithm, MessageDigest> digests = new EnumMap<>(Checksum.Algorithm.class);
+
+    private final Map<Checksum.Algorithm, String> expected = new EnumMap<>(Checksum.Algorithm.class);
+
+    private Map<Checksum.Algorithm, String> values;
+
+    private long length;
+
+    /**
+     * @param algorithms the algorithms to calculate, in addition to SHA-256
+     */
+    public ContentDigests(final Checksum.Algorithm... algorithms) {
+        digests.put(Checksum.Algorithm.SHA256, newDigest(Checksum.Algorithm.SHA256));
+        for (Checksum.Algorithm algorithm : algorithms) {
+            digests.computeIfAbsent(algorithm, ContentDigests::newDigest);
+        }
+    }
+
+    /**
+     * Supplies the expected value of a checksum, e.g. as reported by the OSF.  Expected values for algorithms that are
+     * not calculated are ignored.
+     *
+     * @param algorithm the algorithm
+     * @param value the expected hex value of the checksum, ignored if {@code null}
+     * @return this instance
+     */
+    public ContentDigests expect(final Checksum.Algorithm algorithm, final String value) {
+        if (value != null && digests.containsKey(algorithm)) {
+            expected.put(algorithm, value.toLowerCase());
+        }
+        return this;
+    }
+
+    /**
+     * Wraps the supplied stream, calculating the checksums of the bytes read from it.
+     *
+     * @param in the stream to wrap
+     * @return the wrapped stream
+     */
+    public InputStream wrap(final InputStream in) {
+        InputStream wrapped = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                final int b = in.read();
+                if (b > -1) {
+                    length++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int read = in.read(b, off, len);
+                if (read > 0) {
+                    length += read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+
+        for (MessageDigest digest : digests.values()) {
+            wrapped = new DigestInputStream(wrapped, digest);
+        }
+        values = null;
+        return wrapped;
+    }
+
+    /**
+     * Calculates the checksums of the first {@code length} bytes of the supplied file, e.g. the part of a file written
+     * by a previous, interrupted, transfer.
+     *
+     * @param file the file
+     * @param length the number of bytes to read
+     * @throws IOException if the file cannot be read, or is shorter than {@code length}
+     */
+    public void update(final File file, final long length) throws IOException {
+        final byte[] buf = new byte[64 * 1024];
+        long remaining = length;
+        try (InputStream in = wrap(Files.newInputStream(file.toPath()))) {
+            int read;
+            while (remaining > 0 && (read = in.read(buf, 0, (int) Math.min(buf.length, remaining))) > -1) {
+                remaining -= read;
+            }
+        }
+        if (remaining > 0) {
+            throw new IOException("Premature end of '" + file + "' at byte " + (length - remaining));
+        }
+    }
+
+    /**
+     * Discards the bytes read so far, e.g. when a transfer is restarted.
+     */
+    public void reset() {
+        digests.values().forEach(MessageDigest::reset);
+        values = null;
+        length = 0;
+    }
+
+    /**
+     * @return the number of bytes read
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * The calculated checksums.  Once this method is invoked, no further bytes may be read until the instance is
+     * {@link #reset()}.
+     *
+     * @return the lower-case hex values of the checksums, keyed by algorithm
+     */
+    public Map<Checksum.Algorithm, String> getValues() {
+        if (values == null) {
+            final Map<Checksum.Algorithm, String> result = new EnumMap<>(Checksum.Algorithm.class);
+            digests.forEach((algorithm, digest) -> result.put(algorithm, hex(digest.digest())));
+            values = Collections.unmodifiableMap(result);
+        }
+        return values;
+    }
+
+    /**
+     * @param algorithm the algorithm
+     * @return the lower-case hex value of the checksum, or {@code null} if it is not calculated
+     */
+    public String get(final Checksum.Algorithm algorithm) {
+        return getValues().get(algorithm);
+    }
+
+    /**
+     * Verifies the calculated checksums against the expected values.
+     *
+     * @param name the name of the content, used in the exception message
+     * @throws IOException if a calculated checksum does not match its expected value
+     */
+    public void verify(final String name) throws IOException {
+        for (Map.Entry<Checksum.Algorithm, String> expect : expected.entrySet()) {
+            final String actual = get(expect.getKey());
+            if (!expect.getValue().equals(actual)) {
+                throw new IOException("Content of '" + name + "' does not match its " + expect.getKey() +
+                        " checksum: expected '" + expect.getValue() + "' but was '" + actual + "'");
+            }
+        }
+    }
+
+    private static MessageDigest newDigest(final Checksum.Algorithm algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm.getJcaName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+}
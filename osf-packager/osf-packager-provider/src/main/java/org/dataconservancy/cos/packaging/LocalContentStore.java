@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A persistent, size-bounded store of binary content, shared by packaging runs.  Content is keyed by the identifier of
+ * the OSF file, its current version, and the SHA-256 checksum reported by the OSF: a file whose content is unchanged
+ * since it was stored is answered from local disk rather than retrieved again.  Files without a reported checksum are
+ * not stored.
+ * <p>
+ * Entries are written atomically (linked or copied to a temporary name, then renamed), and verified against their
+ * checksum before they are used; an entry that fails verification is removed.  When the content of the store exceeds
+ * its maximum size, the least recently used entries are evicted.  The last modified time of an entry records when it
+ * was last used, so eviction order is preserved across runs.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class LocalContentStore {
+
+    /**
+     * The default maximum size of the store, 10 GiB
+     */
+    public static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024 * 1024;
+
+    static final String ENTRY_SUFFIX = ".bin";
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalContentStore.class);
+
+    private final File directory;
+
+    private final long maxSize;
+
+    /**
+     * Entry names and lengths, in access order: the eldest entry is the least recently used
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private int hits;
+
+    private int misses;
+
+    /**
+     * Opens the store in the supplied directory, creating the directory if it does not exist.
+     *
+     * @param directory the directory of the store
+     * @param maxSize the maximum size of the store, in bytes
+     * @throws IOException if the directory cannot be created
+     */
+    public LocalContentStore(final File directory, final long maxSize) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory must not be null.");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be a positive integer.");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create content store directory '" + directory + "'");
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                // Anything else is an entry being written by another run, or left over from an interrupted write
+                if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                    entries.put(file.getName(), file.length());
+                    size += file.length();
+                }
+            }
+        }
+
+        evict();
+        LOG.debug("Opened content store {} with {} entries ({} bytes)", directory, entries.size(), size);
+    }
+
+    /**
+     * Stages the stored content of the supplied file as {@code target}, if the store holds the content.  The checksums
+     * of the content are calculated by the supplied digests as the stored content is verified.
+     * <p>
+     * Only the lookup of the entry is made while holding the lock of the store.  The entry is verified and linked
+     * without it, so that other runs may use the store meanwhile: the content of an entry never changes once it is
+     * written, and an entry evicted in the meantime is answered as a miss.
+     * </p>
+     *
+     * @param fileId the identifier of the OSF file
+     * @param version the current version of the file
+     * @param sha256 the SHA-256 checksum of the file reported by the OSF, may be {@code null}
+     * @param target the file to stage
+     * @param digests calculates the checksums of the content
+     * @return {@code true} if the content was staged, {@code false} if the store does not hold it
+     * @throws IOException if the stored content cannot be staged
+     */
+    public boolean retrieve(final String fileId, final Integer version, final String sha256,
+                            final File target, final ContentDigests digests) throws IOException {
+        final String name = name(fileId, version, sha256);
+        synchronized (this) {
+            if (name == null || !entries.containsKey(name)) {
+                misses++;
+                return false;
+            }
+        }
+
+        final File entry = new File(directory, name);
+        boolean verified = false;
+        try {
+            digests.reset();
+            digests.update(entry, entry.length());
+            verified = sha256.equals(digests.get(Checksum.Algorithm.SHA256));
+            if (verified) {
+                BinaryIndex.link(entry, target);
+            }
+        } catch (NoSuchFileException e) {
+            // Evicted since it was looked up, or removed from the directory
+            verified = false;
+        }
+
+        synchronized (this) {
+            if (!verified) {
+                if (entries.containsKey(name)) {
+                    LOG.warn("Removing content store entry for '{}' (version {}): it is missing or fails verification",
+                            fileId, version);
+                    remove(name);
+                }
+                misses++;
+                return false;
+            }
+
+            // get() records the use of the entry in the access order of the map
+            if (entries.get(name) != null) {
+                touch(entry);
+            }
+            hits++;
+            return true;
+        }
+    }
+
+    /**
+     * Stores the supplied content of a file, evicting the least recently used entries if the store exceeds its
+     * maximum size.  Content is only stored if a checksum is reported for the file, and the checksum of the content
+     * (calculated as it was retrieved) matches it.
+     *
+     * @param fileId the identifier of the OSF file
+     * @param version the current version of the file
+     * @param sha256 the SHA-256 checksum of the file reported by the OSF, may be {@code null}
+     * @param content the content of the file
+     * @param contentSha256 the SHA-256 checksum of {@code content}
+     * @return {@code true} if the content was stored
+     * @throws IOException if the content cannot be stored
+     */
+    public synchronized boolean store(final String fileId, final Integer version, final String sha256,
+                                      final File content, final String contentSha256) throws IOException {
+        final String name = name(fileId, version, sha256);
+        if (name == null || entries.containsKey(name) || content.length() > maxSize) {
+            return false;
+        }
+
+        if (!sha256.equals(contentSha256)) {
+            LOG.warn("Content of '{}' (version {}) does not match the checksum reported by the OSF, it will not be " +
+                    "stored", fileId, version);
+            return false;
+        }
+
+        final File entry = new File(directory, name);
+        BinaryIndex.link(content, entry);
+        touch(entry);
+        entries.put(name, content.length());
+        size += content.length();
+        evict();
+        return true;
+    }
+
+    /**
+     * @return the number of files answered by the store
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of files not answered by the store
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the size of the content held by the store, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Answers the name of the entry for the supplied file, or {@code null} if any part of the key is missing.
+     */
+    static String name(final String fileId, final Integer version, final String sha256) {
+        if (fileId == null || version == null || sha256 == null || sha256.isEmpty()) {
+            return null;
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+
+        final byte[] key = digest.digest((fileId + "\n" + version + "\n" + sha256).getBytes(StandardCharsets.UTF_8));
+        final StringBuilder name = new StringBuilder(64 + ENTRY_SUFFIX.length());
+        for (byte b : key) {
+            name.append(String.format("%02x", b));
+        }
+        return name.append(ENTRY_SUFFIX).toString();
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            final Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            size -= entry.getValue();
+            try {
+                Files.deleteIfExists(new File(directory, entry.getKey()).toPath());
+                LOG.debug("Evicted '{}' ({} bytes) from the content store", entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                LOG.warn("Unable to evict '{}' from the content store: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Records the use of an entry, so that the order of eviction survives re-opening the store.
+     */
+    private static void touch(final File entry) {
+        if (!entry.setLastModified(System.currentTimeMillis())) {
+            LOG.debug("Unable to update the last modified time of '{}'", entry);
+        }
+    }
+
+    private void remove(final String name) throws IOException {
+        final Long length = entries.remove(name);
+        if (length != null) {
+            size -= length;
+        }
+        Files.deleteIfExists(new File(directory, name).toPath());
+    }
+
+}
@@ -17,7 +17,6 @@
 package org.dataconservancy.cos.packaging;
 
 import com.squareup.okhttp.OkHttpClient;
-import com.squareup.okhttp.Request;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
@@ -29,6 +28,7 @@ import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.riot.RDFFormat;
 
+import org.dataconservancy.cos.osf.client.model.Checksum;
 import org.dataconservancy.cos.osf.packaging.OsfPackageGraph;
 import org.dataconservancy.cos.rdf.support.OwlClasses;
 import org.dataconservancy.cos.rdf.support.OwlProperties;
@@ -42,10 +42,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -54,7 +58,7 @@ import java.util.UUID;
  *
  * @author Ben Trumbore on 12/1/2016.
  */
-public class OsfContentProvider extends AbstractContentProvider {
+public class OsfContentProvider extends AbstractContentProvider implements ContentChecksumSource {
 
     /**
      * Jena Property instances used by the IpmPackager.
@@ -66,6 +70,15 @@ public class OsfContentProvider extends AbstractContentProvider {
         private static final Property OSF_BINARY_URI =
                 ResourceFactory.createProperty(OwlProperties.OSF_HAS_BINARYURI.fqname());
 
+        private static final Property OSF_SHA256 =
+                ResourceFactory.createProperty(OwlProperties.OSF_HAS_SHA256.fqname());
+
+        private static final Property OSF_CURRENT_VERSION =
+                ResourceFactory.createProperty(OwlProperties.OSF_HAS_CURRENT_VERSION.fqname());
+
+        private static final Property OSF_DATE_MODIFIED =
+                ResourceFactory.createProperty(OwlProperties.OSF_HAS_DATEMODIFIED.fqname());
+
         private static final Resource OSF_FILE = ResourceFactory.createResource(OwlClasses.OSF_FILE.fqname());
 
         private static final Property OSF_PROVIDER_NAME =
@@ -78,6 +91,15 @@ public class OsfContentProvider extends AbstractContentProvider {
     private OsfContentResolver      contentResolver;
     private Model                   domainObjects = null;
     private File                    temporaryDirectory;
+    private CheckpointJournal       journal;
+    private BinaryIndex             binaries = new BinaryIndex();
+    private LocalContentStore       contentStore;
+    private PackageManifest         previousManifest;
+    private File                    previousContent;
+    private int                     reused = 0;
+    private PackageManifest         manifest = new PackageManifest();
+    private int                     staged = 0;
+    private Map<Path, Map<Checksum.Algorithm, String>> checksums = new HashMap<>();
 
     private static final String missingProvider = "missing_storage_provider";
 
@@ -88,7 +110,21 @@ public class OsfContentProvider extends AbstractContentProvider {
      * @param resolver the resolver to use when resolving URIs in the package graph
      */
     public OsfContentProvider(final OsfPackageGraph graph, final OsfContentResolver resolver) {
+        this(graph, resolver, null);
+    }
+
+    /**
+     * Construct a content provider from the given graph and content resolver, staging binary content in the supplied
+     * journal.  Binary content staged by a previous (interrupted) run is not retrieved again.
+     *
+     * @param graph the OSF package graph containing the package content.
+     * @param resolver the resolver to use when resolving URIs in the package graph
+     * @param journal the journal used to stage binary content, may be {@code null}
+     */
+    public OsfContentProvider(final OsfPackageGraph graph, final OsfContentResolver resolver,
+                              final CheckpointJournal journal) {
         this.contentResolver = resolver;
+        this.journal = journal;
 
         // Allocate a unique location for storing any binary content that will go into the package.
         // If another thread or JVM is running simultaneously, content will go into unique directory,
@@ -116,20 +152,79 @@ public class OsfContentProvider extends AbstractContentProvider {
 
     /**
      * Construct a content provider from the given graph and HTTP client.  The HTTP client will be wrapped as a
-     * simplified {@link OsfContentResolver}.
+     * {@link RangeContentResolver}.
      *
      * @param graph the OSF package graph containing the package content.
      * @param httpClient The http client to use when resolving URIs in the package graph
      */
     public OsfContentProvider(final OsfPackageGraph graph, final OkHttpClient httpClient) {
-        this(graph, (uri) -> {
-            final Request get = new Request.Builder().get().url(uri).build();
-            try {
-                return httpClient.newCall(get).execute().body().byteStream();
-            } catch (IOException e) {
-                throw new RuntimeException("Unable to resolve or retrieve '" + uri + "': " + e.getMessage(), e);
-            }
-        });
+        this(graph, httpClient, null);
+    }
+
+    /**
+     * Construct a content provider from the given graph and HTTP client, staging binary content in the supplied
+     * journal.  The HTTP client will be wrapped as a {@link RangeContentResolver}.
+     *
+     * @param graph the OSF package graph containing the package content.
+     * @param httpClient The http client to use when resolving URIs in the package graph
+     * @param journal the journal used to stage binary content, may be {@code null}
+     */
+    public OsfContentProvider(final OsfPackageGraph graph, final OkHttpClient httpClient,
+                              final CheckpointJournal journal) {
+        this(graph, new RangeContentResolver(httpClient), journal);
+    }
+
+    /**
+     * Supplies a local content store, consulted for the content of each file before it is retrieved with the content
+     * resolver.  Content retrieved by this provider is added to the store.  Must be supplied before
+     * {@link #getIpmModel()} is invoked.
+     *
+     * @param contentStore the local content store, may be {@code null}
+     */
+    public void setContentStore(final LocalContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * Supplies the manifest of a package previously written for the same registration, and the content of that
+     * package.  The content of a file that is unchanged since the previous package was written (see
+     * {@link PackageManifest#unchanged(String, Integer, String, String)}) is staged from the previous package rather
+     * than retrieved with the content resolver.  Must be supplied before {@link #getIpmModel()} is invoked.
+     *
+     * @param manifest the manifest of the previous package, may be {@code null}
+     * @param content a directory holding the content of the previous package, each file named for its SHA-256
+     *                checksum
+     */
+    public void setPreviousPackage(final PackageManifest manifest, final File content) {
+        if (manifest != null && content == null) {
+            throw new IllegalArgumentException("Content must not be null.");
+        }
+        this.previousManifest = manifest;
+        this.previousContent = content;
+    }
+
+    /**
+     * Answers the manifest of the binary content staged by {@link #getIpmModel()}, which may be written alongside the
+     * package and supplied to a later run with {@link #setPreviousPackage(PackageManifest, File)}.
+     *
+     * @return the manifest of the staged content
+     */
+    public PackageManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Answers the checksums of a binary file staged by {@link #getIpmModel()}, calculated as the file was retrieved
+     * (or verified, if it was staged from the journal, the local content store or a previous package).  The SHA-256
+     * checksum is always present.
+     *
+     * @param staged the location of the staged file, as supplied to the {@code FileInfo} of its IPM node
+     * @return the checksums of the file keyed by algorithm, or {@code null} if the file was not staged by this
+     *         provider
+     */
+    @Override
+    public Map<Checksum.Algorithm, String> getChecksums(final Path staged) {
+        return checksums.get(staged);
     }
 
     /**
@@ -185,8 +280,12 @@ public class OsfContentProvider extends AbstractContentProvider {
 
                 n.setFileInfo(
                         contentFromUrl(
+                                subject.getURI(),
                                 filename,
-                                binaryUri));
+                                binaryUri,
+                                getCurrentVersion(subject),
+                                getDateModified(subject),
+                                getSha256(subject)));
 
             } else {
                 final String filename;
@@ -204,6 +303,18 @@ public class OsfContentProvider extends AbstractContentProvider {
 
         });
 
+        if (binaries.getDuplicates() > 0) {
+            log.info("Staged {} duplicate binary file(s) as links to identical content, saving {} byte(s)",
+                    binaries.getDuplicates(), binaries.getBytesSaved());
+        }
+        if (previousManifest != null) {
+            log.info("Staged {} unchanged binary file(s) from the previous package", reused);
+        }
+        if (contentStore != null) {
+            log.info("Staged {} binary file(s) from the local content store, {} file(s) were retrieved",
+                    contentStore.getHits(), contentStore.getMisses());
+        }
+
         return root;
     }
 
@@ -221,23 +332,103 @@ public class OsfContentProvider extends AbstractContentProvider {
 
     /**
      * Create a FileInfo that points to file content present at a URL.
-     * The content from the URL is downloaded and stored in a temporary file.
+     * The content from the URL is downloaded and stored in a temporary file, or staged in the checkpoint journal if
+     * there is one.
+     * <p>
+     * Content is retrieved and stored once: if the URL has already been staged, or the OSF reports a checksum
+     * identical to that of content already staged, the file is staged as a link to the existing content without
+     * retrieving it.  Content whose checksum is not reported is digested once retrieved, and replaced by a link if it
+     * is identical to content already staged.
+     * </p>
+     * <p>
+     * The SHA-256 checksum of the content, which identifies staged content, is calculated as it is retrieved (or
+     * verified, if it is staged from the journal or the local content store).  Content for which the OSF reports a
+     * SHA-256 checksum is verified against it.  The checksums of the staged content are available from
+     * {@link #getChecksums(Path)} without reading the content again.
+     * </p>
+     * <p>
+     * If there is a previous package, content that is not already staged is staged from the previous package when the
+     * file is unchanged since it was written.  Otherwise, if there is a local content store, content is staged from
+     * the store when it holds the same version and checksum of the file; otherwise it is retrieved, and added to the
+     * store.  Staged content is recorded in the {@link #getManifest() manifest}.
+     * </p>
      * <p>
      * The logical name of the file represented in the FileInfo is the {@code name} parameter.
      * </p>
      *
+     * @param fileId the identifier of the file
      * @param filename the logical name of the content represented by the returned {@code FileInfo}
      * @param contentUrl resolvable URL to the content
+     * @param version the current version of the file, may be {@code null}
+     * @param dateModified the modification date of the file, may be {@code null}
+     * @param sha256 the SHA-256 checksum of the content reported by the OSF, may be {@code null}
      * @return populated FileInfo
      * @throws RuntimeException if the content cannot be downloaded or saved to a temporary file
      */
-    private FileInfo contentFromUrl(final String filename, final String contentUrl) {
-        log.debug("  Retrieving '{}' content from '{}'", filename, contentUrl);
-
+    private FileInfo contentFromUrl(final String fileId, final String filename, final String contentUrl,
+                                    final Integer version, final String dateModified, final String sha256) {
         final File outFile;
+        final String digest;
+        final Map<Checksum.Algorithm, String> values;
         try {
-            outFile = new File(temporaryDirectory, filename);
-            IOUtils.copy(contentResolver.resolve(contentUrl), new FileOutputStream(outFile));
+            final ContentDigests digests = new ContentDigests().expect(Checksum.Algorithm.SHA256, sha256);
+            final File existing = binaries.lookup(contentUrl, sha256);
+            final File stored;
+            if (existing != null) {
+                log.debug("  Content of '{}' from '{}' is already staged as '{}'", filename, contentUrl, existing);
+                outFile = stagingFile(filename);
+                BinaryIndex.link(existing, outFile);
+                binaries.duplicate(existing.length());
+                digest = binaries.digest(existing);
+                values = checksums.getOrDefault(existing.toPath(),
+                        Collections.singletonMap(Checksum.Algorithm.SHA256, digest));
+            } else if ((stored = fromPreviousPackage(fileId, filename, version, dateModified, sha256, digests))
+                    != null) {
+                log.debug("  Staged unchanged '{}' content from the previous package", filename);
+                digest = digests.get(Checksum.Algorithm.SHA256);
+                values = digests.getValues();
+                binaries.add(contentUrl, digest, stored);
+                reused++;
+                outFile = stored;
+            } else if ((stored = fromContentStore(fileId, filename, version, sha256, digests)) != null) {
+                log.debug("  Staged '{}' content from the local content store", filename);
+                digest = digests.get(Checksum.Algorithm.SHA256);
+                values = digests.getValues();
+                binaries.add(contentUrl, digest, stored);
+                outFile = stored;
+            } else {
+                log.debug("  Retrieving '{}' content from '{}'", filename, contentUrl);
+                final File retrieved;
+                if (journal != null) {
+                    retrieved = journal.stageBinary(contentUrl, filename, contentResolver, digests);
+                } else {
+                    retrieved = stagingFile(filename);
+                    contentResolver.resolveTo(contentUrl, retrieved, digests);
+                    try {
+                        digests.verify(contentUrl);
+                    } catch (IOException e) {
+                        Files.deleteIfExists(retrieved.toPath());
+                        throw e;
+                    }
+                }
+
+                digest = digests.get(Checksum.Algorithm.SHA256);
+                values = digests.getValues();
+                final File identical = binaries.lookup(contentUrl, digest);
+                if (identical != null) {
+                    log.debug("  Content of '{}' is identical to '{}'", filename, identical);
+                    BinaryIndex.link(identical, retrieved);
+                    binaries.duplicate(identical.length());
+                } else {
+                    binaries.add(contentUrl, digest, retrieved);
+                }
+                if (contentStore != null) {
+                    contentStore.store(fileId, version, sha256, retrieved, digest);
+                }
+                outFile = retrieved;
+            }
+            manifest.add(fileId, version, dateModified, digest, outFile.length());
+            checksums.put(outFile.toPath(), values);
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -247,6 +438,90 @@ public class OsfContentProvider extends AbstractContentProvider {
         return info;
     }
 
+    /**
+     * Stages the content of a file from the previous package, if there is one and the file is unchanged since it was
+     * written.  The content is verified against the checksum recorded in the manifest of the previous package.
+     *
+     * @param fileId the identifier of the file
+     * @param filename the name of the staged file
+     * @param version the current version of the file, may be {@code null}
+     * @param dateModified the modification date of the file, may be {@code null}
+     * @param sha256 the SHA-256 checksum of the content reported by the OSF, may be {@code null}
+     * @param digests calculates the checksums of the content
+     * @return the staged file, or {@code null} if the content was not staged
+     * @throws IOException if the content cannot be staged
+     */
+    private File fromPreviousPackage(final String fileId, final String filename, final Integer version,
+                                     final String dateModified, final String sha256, final ContentDigests digests)
+            throws IOException {
+        if (previousManifest == null) {
+            return null;
+        }
+        final PackageManifest.Entry entry = previousManifest.unchanged(fileId, version, dateModified, sha256);
+        if (entry == null) {
+            return null;
+        }
+        final File source = new File(previousContent, entry.getSha256());
+        if (!source.isFile() || source.length() != entry.getLength()) {
+            log.debug("  Content of unchanged '{}' is missing from the previous package", filename);
+            return null;
+        }
+
+        final File target = stagingFile(filename);
+        BinaryIndex.link(source, target);
+        try {
+            digests.reset();
+            digests.update(target, entry.getLength());
+            if (!entry.getSha256().equals(digests.get(Checksum.Algorithm.SHA256))) {
+                throw new IOException("Content of '" + filename + "' does not match the previous package manifest");
+            }
+            digests.verify(filename);
+        } catch (IOException e) {
+            log.warn("  Unable to stage '{}' from the previous package, it will be retrieved: {}", filename,
+                    e.getMessage());
+            Files.deleteIfExists(target.toPath());
+            digests.reset();
+            return null;
+        }
+        return target;
+    }
+
+    /**
+     * Stages the content of a file from the local content store, if there is one and it holds the content.
+     *
+     * @param fileId the identifier of the file
+     * @param filename the name of the staged file
+     * @param version the current version of the file, may be {@code null}
+     * @param sha256 the SHA-256 checksum of the content reported by the OSF, may be {@code null}
+     * @param digests calculates the checksums of the content
+     * @return the staged file, or {@code null} if the content was not staged
+     * @throws IOException if the content cannot be staged
+     */
+    private File fromContentStore(final String fileId, final String filename, final Integer version,
+                                  final String sha256, final ContentDigests digests) throws IOException {
+        if (contentStore == null) {
+            return null;
+        }
+        final File target = stagingFile(filename);
+        return contentStore.retrieve(fileId, version, sha256, target, digests) ? target : null;
+    }
+
+    /**
+     * Allocates a file for staging content in the temporary directory.  Each file is staged in its own directory, so
+     * that files of the same name do not collide.
+     *
+     * @param filename the name of the file
+     * @return the file, which does not exist
+     * @throws IOException if the directory of the file cannot be created
+     */
+    private File stagingFile(final String filename) throws IOException {
+        final File dir = new File(temporaryDirectory, String.valueOf(++staged));
+        if (!dir.mkdir()) {
+            throw new IOException("Unable to create directory '" + dir + "'");
+        }
+        return new File(dir, filename);
+    }
+
     /**
      * Creates a temporary directory under {@code java.io.tmpdir}.  The directory will be uniquely named, so as to
      * avoid any filename conflicts with simultaneously executing downloads (e.g. another packager running in another
@@ -381,4 +656,44 @@ public class OsfContentProvider extends AbstractContentProvider {
                 OsfContentProvider.RdfProperties.OSF_BINARY_URI).getObject().asLiteral().getString();
     }
 
+    /**
+     * Obtains the value of the {@code osf:hasSha256} predicate from {@code domainObjects} for the supplied
+     * {@code subject}, if present.  The OSF reports checksums for content held in OSF storage; other storage providers
+     * may not.
+     *
+     * @param subject a resource from the supplied {@code domainObjects} which is an {@code osf:File}
+     * @return the SHA-256 checksum reported for the supplied {@code subject}, or {@code null} if none was reported
+     */
+    private String getSha256(final Resource subject) {
+        final Statement sha256 = domainObjects.getProperty(subject, OsfContentProvider.RdfProperties.OSF_SHA256);
+        return sha256 == null ? null : sha256.getObject().asLiteral().getString();
+    }
+
+    /**
+     * Obtains the value of the {@code osf:hasDateModified} predicate from {@code domainObjects} for the supplied
+     * {@code subject}, if present.
+     *
+     * @param subject a resource from the supplied {@code domainObjects} which is an {@code osf:File}
+     * @return the lexical form of the modification date of the supplied {@code subject}, or {@code null} if it is not
+     *         known
+     */
+    private String getDateModified(final Resource subject) {
+        final Statement dateModified = domainObjects.getProperty(subject,
+                OsfContentProvider.RdfProperties.OSF_DATE_MODIFIED);
+        return dateModified == null ? null : dateModified.getObject().asLiteral().getLexicalForm();
+    }
+
+    /**
+     * Obtains the value of the {@code osf:hasCurrentVersion} predicate from {@code domainObjects} for the supplied
+     * {@code subject}, if present.
+     *
+     * @param subject a resource from the supplied {@code domainObjects} which is an {@code osf:File}
+     * @return the current version of the supplied {@code subject}, or {@code null} if it is not known
+     */
+    private Integer getCurrentVersion(final Resource subject) {
+        final Statement version = domainObjects.getProperty(subject,
+                OsfContentProvider.RdfProperties.OSF_CURRENT_VERSION);
+        return version == null ? null : version.getObject().asLiteral().getInt();
+    }
+
 }
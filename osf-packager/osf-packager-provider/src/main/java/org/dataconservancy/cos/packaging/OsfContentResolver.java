@@ -15,7 +15,11 @@
  */
 package org.dataconservancy.cos.packaging;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Accepts a URI with location semantics, resolves the URI, and returns the bytes of the resource's default
@@ -35,4 +39,47 @@ public interface OsfContentResolver {
      */
     public InputStream resolve(String contentUri) throws RuntimeException;
 
+    /**
+     * Resolves the supplied {@code contentUri}, writing the bytes to the supplied {@code target} file.  Resolvers able
+     * to resume a transfer (see {@link RangeContentResolver}) continue from the end of an existing {@code target};
+     * this default implementation overwrites it.
+     *
+     * @param contentUri a URI with location semantics that is expected to resolve to a byte stream
+     * @param target the file to write
+     * @return the length of the {@code target} file once the content is written
+     * @throws IOException if the content cannot be retrieved or written
+     * @throws RuntimeException if there is an error resolving the {@code contentUri}
+     */
+    default long resolveTo(final String contentUri, final File target) throws IOException {
+        return resolveTo(contentUri, target, new ContentDigests());
+    }
+
+    /**
+     * Resolves the supplied {@code contentUri}, writing the bytes to the supplied {@code target} file, and calculating
+     * the checksums of the content as it is written.  Once this method returns, {@code digests} hold the checksums of
+     * the entire {@code target} file; they are not {@link ContentDigests#verify(String) verified}.
+     *
+     * @param contentUri a URI with location semantics that is expected to resolve to a byte stream
+     * @param target the file to write
+     * @param digests calculates the checksums of the content
+     * @return the length of the {@code target} file once the content is written
+     * @throws IOException if the content cannot be retrieved or written
+     * @throws RuntimeException if there is an error resolving the {@code contentUri}
+     */
+    default long resolveTo(final String contentUri, final File target, final ContentDigests digests)
+            throws IOException {
+        digests.reset();
+        try (InputStream in = digests.wrap(resolve(contentUri));
+             OutputStream out = new FileOutputStream(target)) {
+            final byte[] buf = new byte[64 * 1024];
+            long count = 0;
+            int read;
+            while ((read = in.read(buf)) > -1) {
+                out.write(buf, 0, read);
+                count += read;
+            }
+            return count;
+        }
+    }
+
 }
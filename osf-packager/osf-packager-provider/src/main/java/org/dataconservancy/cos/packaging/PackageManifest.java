@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Describes the binary content of a package: for each OSF file, its identifier, current version, modification date,
+ * and the SHA-256 checksum and length of the content written to the package.  A manifest is written alongside each
+ * package, so that a later run re-packaging the same registration can tell which files are unchanged (see
+ * {@link #unchanged(String, Integer, String, String)}) and copy their content from the previous package rather than
+ * retrieving it again.
+ * <p>
+ * Records are tab-separated, one per line: {@code file <id> <version> <date modified> <sha256> <length>}, where an
+ * unknown version or modification date is written as {@code -}.
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class PackageManifest {
+
+    /**
+     * The suffix of a manifest file, appended to the name of its package
+     */
+    public static final String SUFFIX = ".manifest";
+
+    static final String FILE = "file";
+
+    private static final String UNKNOWN = "-";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PackageManifest.class);
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Reads a manifest written by {@link #write(File)}.  Malformed records are ignored.
+     *
+     * @param file the manifest file
+     * @return the manifest
+     * @throws IOException if the manifest cannot be read
+     */
+    public static PackageManifest read(final File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Manifest file must not be null.");
+        }
+
+        final PackageManifest manifest = new PackageManifest();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            final String[] fields = line.split("\t");
+            if (fields.length != 6 || !FILE.equals(fields[0])) {
+                LOG.warn("Ignoring malformed manifest record '{}'", line);
+                continue;
+            }
+            try {
+                manifest.add(fields[1], UNKNOWN.equals(fields[2]) ? null : Integer.valueOf(fields[2]),
+                        UNKNOWN.equals(fields[3]) ? null : fields[3], fields[4], Long.parseLong(fields[5]));
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring malformed manifest record '{}'", line);
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest, replacing the supplied file if it exists.
+     *
+     * @param file the manifest file
+     * @throws IOException if the manifest cannot be written
+     */
+    public synchronized void write(final File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Manifest file must not be null.");
+        }
+
+        final List<String> lines = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            lines.add(entry.toString());
+        }
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records the content of a file.  Replaces any content previously recorded for the file.
+     *
+     * @param id the identifier of the file
+     * @param version the current version of the file, may be {@code null}
+     * @param dateModified the modification date of the file, may be {@code null}
+     * @param sha256 the SHA-256 checksum of the content
+     * @param length the length of the content
+     */
+    public synchronized void add(final String id, final Integer version, final String dateModified,
+                                 final String sha256, final long length) {
+        if (id == null || id.trim().isEmpty()) {
+            throw new IllegalArgumentException("Id must not be empty or null.");
+        }
+        if (sha256 == null) {
+            throw new IllegalArgumentException("SHA-256 checksum must not be null.");
+        }
+        entries.put(id, new Entry(id, version, dateModified, sha256.toLowerCase(), length));
+    }
+
+    /**
+     * @param id the identifier of a file
+     * @return the content recorded for the file, or {@code null} if none is recorded
+     */
+    public synchronized Entry get(final String id) {
+        return entries.get(id);
+    }
+
+    /**
+     * @return the content recorded for each file, in the order it was recorded
+     */
+    public synchronized Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * Answers the content recorded for a file, if the file is unchanged since it was recorded.  A file is unchanged
+     * if its version and modification date are those recorded, and the SHA-256 checksum reported for it (if any) is
+     * that of the recorded content.  A file whose version, modification date and checksum are all unknown is never
+     * considered unchanged.
+     *
+     * @param id the identifier of the file
+     * @param version the current version of the file, may be {@code null}
+     * @param dateModified the modification date of the file, may be {@code null}
+     * @param sha256 the SHA-256 checksum reported for the file, may be {@code null}
+     * @return the recorded content, or {@code null} if the file is not recorded or has changed
+     */
+    public synchronized Entry unchanged(final String id, final Integer version, final String dateModified,
+                                        final String sha256) {
+        final Entry entry = entries.get(id);
+        if (entry == null || (version == null && dateModified == null && sha256 == null)) {
+            return null;
+        }
+        if (!Objects.equals(version, entry.version) || !Objects.equals(dateModified, entry.dateModified)) {
+            return null;
+        }
+        if (sha256 != null && !sha256.equalsIgnoreCase(entry.sha256)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @return the number of files recorded
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The content recorded for a file.
+     */
+    public static class Entry {
+
+        private final String id;
+
+        private final Integer version;
+
+        private final String dateModified;
+
+        private final String sha256;
+
+        private final long length;
+
+        private Entry(final String id, final Integer version, final String dateModified, final String sha256,
+                      final long length) {
+            this.id = id;
+            this.version = version;
+            this.dateModified = dateModified;
+            this.sha256 = sha256;
+            this.length = length;
+        }
+
+        /**
+         * @return the identifier of the file
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the version of the file, or {@code null} if it is not known
+         */
+        public Integer getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the modification date of the file, or {@code null} if it is not known
+         */
+        public String getDateModified() {
+            return dateModified;
+        }
+
+        /**
+         * @return the lower-case hex SHA-256 checksum of the content
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+        /**
+         * @return the length of the content
+         */
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return String.join("\t", FILE, id, version == null ? UNKNOWN : String.valueOf(version),
+                    dateModified == null ? UNKNOWN : dateModified, sha256, String.valueOf(length));
+        }
+    }
+
+}
@@ -0,0 +1,767 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import org.dataconservancy.cos.osf.client.support.IoExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves binary content using HTTP, resuming interrupted transfers with {@code Range} requests.
+ * <ul>
+ *     <li>A stream returned by {@link #resolve(String)} that fails part way re-requests the content from the last byte
+ *         read, so a dropped connection does not restart a large transfer, or fail it.</li>
+ *     <li>{@link #resolveTo(String, File)} continues an existing target file from its last byte, so a transfer
+ *         interrupted by the failure of the process is resumed by the next attempt (see
+ *         {@link CheckpointJournal}).</li>
+ *     <li>When {@link #setSegments(int) segments} is greater than one, content at least
+ *         {@link #setSegmentThreshold(long) segment threshold} bytes long is downloaded by {@code resolveTo} as that
+ *         many ranges in parallel, each written to a pre-allocated target file using positional writes.  Each range
+ *         is resumed independently.  Parallel ranges make better use of high latency links, but multiply the load on
+ *         the server; segmented downloads are disabled by default.</li>
+ * </ul>
+ * <p>
+ * The state of a transfer made by {@code resolveTo} is recorded alongside the target, in a file named for the target
+ * with a {@code .range} suffix, and removed once the transfer completes.  The state holds the {@code ETag} (or
+ * {@code Last-Modified} date) of the content and, for content downloaded in segments, the ranges written so far.  An
+ * existing target is only continued if its state is recorded: the length of a target written in segments says
+ * nothing of the ranges it holds, so a segmented transfer is resumed from the recorded ranges, and a target without
+ * recorded state (or whose recorded validator no longer matches the content) is retrieved again in full.  A range
+ * interrupted with the process is retrieved again from its start.
+ * </p>
+ * <p>
+ * {@code resolveTo} calculates the checksums of sequentially downloaded content as it is written; the part of a file
+ * written by an earlier transfer is read once when the transfer is resumed.  Because ranges arrive out of order, the
+ * checksums of content downloaded in segments are calculated by reading the file once it is complete.
+ * </p>
+ * <p>
+ * A range is only resumed if the server answers it with {@code 206 Partial Content}, and a range downloaded in a
+ * segment only if the {@code Content-Range} of the response starts at the byte requested.  Requests for a range
+ * carry an {@code If-Range} header with the {@code ETag} (or {@code Last-Modified} date) of the content, so content
+ * that changes between requests is retrieved again in full, rather than being spliced together.  Content whose
+ * server supplies neither is not downloaded in segments.  A transfer is attempted at most
+ * {@link #setMaxAttempts(int) max attempts} times; unsuccessful HTTP responses are not re-attempted (retrying
+ * responses such as {@code 503 Service Unavailable} is the responsibility of the client's interceptors).
+ * </p>
+ *
+ * @author agent (agent@local)
+ */
+public class RangeContentResolver implements OsfContentResolver {
+
+    /**
+     * Default minimum length of content downloaded in segments, 64 MiB
+     */
+    public static final long DEFAULT_SEGMENT_THRESHOLD = 64 * 1024 * 1024;
+
+    /**
+     * Default number of attempts made to transfer content, or a range of content
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    private static final Logger LOG = LoggerFactory.getLogger(RangeContentResolver.class);
+
+    private static final int SC_PARTIAL_CONTENT = 206;
+
+    private static final int SC_RANGE_NOT_SATISFIABLE = 416;
+
+    private final OkHttpClient okHttp;
+
+    private int segments = 1;
+
+    private long segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    /**
+     * @param okHttp the client used to retrieve content
+     */
+    public RangeContentResolver(final OkHttpClient okHttp) {
+        if (okHttp == null) {
+            throw new IllegalArgumentException("OkHttpClient must not be null.");
+        }
+
+        this.okHttp = okHttp;
+    }
+
+    /**
+     * @return the number of ranges downloaded in parallel by {@link #resolveTo(String, File)}
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * @param segments the number of ranges downloaded in parallel by {@link #resolveTo(String, File)}; {@code 1}
+     *                 disables segmented downloads
+     */
+    public void setSegments(final int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("Segments must be a positive integer.");
+        }
+        this.segments = segments;
+    }
+
+    /**
+     * @return the minimum length, in bytes, of content downloaded in segments
+     */
+    public long getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    /**
+     * @param segmentThreshold the minimum length, in bytes, of content downloaded in segments
+     */
+    public void setSegmentThreshold(final long segmentThreshold) {
+        if (segmentThreshold < 1) {
+            throw new IllegalArgumentException("Segment threshold must be a positive integer.");
+        }
+        this.segmentThreshold = segmentThreshold;
+    }
+
+    /**
+     * @return the number of attempts made to transfer content, or a range of content
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts the number of attempts made to transfer content, or a range of content
+     */
+    public void setMaxAttempts(final int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be a positive integer.");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public InputStream resolve(final String contentUri) throws RuntimeException {
+        try {
+            return new ResumingInputStream(contentUri);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to resolve or retrieve '" + contentUri + "': " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long resolveTo(final String contentUri, final File target, final ContentDigests digests)
+            throws IOException {
+        TransferState state = TransferState.load(target);
+        long existing = target.isFile() ? target.length() : 0;
+
+        if (state != null && state.isSegmented()) {
+            // The length of a target written in segments is not the length of the content written, so the transfer
+            // is resumed from the recorded ranges, provided the content is unchanged
+            final Response head = head(contentUri);
+            if (state.getValidator() != null && state.getValidator().equals(validator(head)) &&
+                    contentLength(head) == state.getLength() && acceptsRanges(head)) {
+                LOG.debug("Resuming segmented retrieval of '{}' ({} of {} bytes written)", contentUri,
+                        state.getWritten(), state.getLength());
+                try {
+                    return resolveSegments(contentUri, target, state, digests);
+                } catch (RangeIgnoredException e) {
+                    LOG.info("Unable to resume '{}' in segments, downloading it sequentially: {}", contentUri,
+                            e.getMessage());
+                }
+            } else {
+                LOG.info("Content of '{}' has changed since its retrieval was interrupted, retrieving it in full",
+                        contentUri);
+            }
+            state = null;
+            existing = 0;
+        }
+
+        if (existing > 0 && (state == null || state.getValidator() == null)) {
+            LOG.info("Retrieving '{}' in full: the validator of the existing {} bytes was not recorded", contentUri,
+                    existing);
+            existing = 0;
+        }
+
+        if (segments > 1 && existing == 0) {
+            final Response head = head(contentUri);
+            final long length = contentLength(head);
+            if (length >= segmentThreshold && acceptsRanges(head) && validator(head) == null) {
+                // Without a validator, ranges of content that changes meanwhile could not be told apart
+                LOG.info("Downloading '{}' sequentially: the server supplies neither an ETag nor a Last-Modified date",
+                        contentUri);
+            } else if (length >= segmentThreshold && acceptsRanges(head)) {
+                final TransferState segmented =
+                        new TransferState(target, validator(head), length, (length + segments - 1) / segments);
+                try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+                    file.setLength(0);
+                    file.setLength(length);
+                }
+                segmented.save();
+                try {
+                    return resolveSegments(contentUri, target, segmented, digests);
+                } catch (RangeIgnoredException e) {
+                    LOG.info("Unable to download '{}' in segments, downloading it sequentially: {}", contentUri,
+                            e.getMessage());
+                }
+            }
+        }
+
+        return resolveSequentially(contentUri, target, existing, state == null ? null : state.getValidator(),
+                digests);
+    }
+
+    /**
+     * Downloads the content to the target, starting at the supplied position if the server honors ranges.  The
+     * checksums of the content are calculated as it is written.  A transfer starting part way is validated by the
+     * supplied validator, recorded when the transfer was started.
+     */
+    private long resolveSequentially(final String contentUri, final File target, final long start,
+                                     final String recordedValidator, final ContentDigests digests)
+            throws IOException {
+        final Cursor cursor = new Cursor(start);
+        String validator = recordedValidator;
+        int attempt = 0;
+
+        while (true) {
+            final Request.Builder get = new Request.Builder().get().url(contentUri);
+            if (cursor.position > 0) {
+                get.header("Range", "bytes=" + cursor.position + "-");
+                if (validator != null) {
+                    get.header("If-Range", validator);
+                }
+            }
+
+            final Response res = execute(get.build());
+            try (ResponseBody body = res.body();
+                 FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE)) {
+                if (cursor.position > 0 && res.code() == SC_RANGE_NOT_SATISFIABLE) {
+                    if (completeLength(res) == cursor.position) {
+                        LOG.debug("Content '{}' was already complete at {} bytes", contentUri, cursor.position);
+                        digest(target, cursor.position, digests);
+                        TransferState.delete(target);
+                        return cursor.position;
+                    }
+                    LOG.debug("Range of '{}' is not satisfiable, retrieving it in full", contentUri);
+                    cursor.position = 0;
+                    channel.truncate(0);
+                    continue;
+                }
+
+                checkStatus(contentUri, res);
+                if (cursor.position > 0 && res.code() != SC_PARTIAL_CONTENT) {
+                    LOG.debug("Range of '{}' was not honored (status {}), retrieving it in full", contentUri,
+                            res.code());
+                    cursor.position = 0;
+                }
+
+                if (cursor.position == 0) {
+                    validator = validator(res);
+                    channel.truncate(0);
+                    new TransferState(target, validator, -1, 0).save();
+                }
+
+                digest(target, cursor.position, digests);
+                write(digests.wrap(body.byteStream()), channel, cursor, Long.MAX_VALUE);
+                channel.force(false);
+                TransferState.delete(target);
+                return cursor.position;
+            } catch (HttpStatusException e) {
+                throw e;
+            } catch (IOException e) {
+                if (++attempt >= maxAttempts) {
+                    throw e;
+                }
+                LOG.info("Transfer of '{}' interrupted ({}), resuming at byte {} (attempt {} of {})", contentUri,
+                        e.getMessage(), cursor.position, attempt + 1, maxAttempts);
+            }
+        }
+    }
+
+    /**
+     * Downloads the ranges of the content not yet written to the (pre-allocated) target in parallel, recording each
+     * range in the state of the transfer as it completes.  Once every range is written, the state is removed and the
+     * checksums of the content are calculated by reading the target.
+     */
+    private long resolveSegments(final String contentUri, final File target, final TransferState state,
+                                 final ContentDigests digests) throws IOException {
+        final long length = state.getLength();
+        final long segmentLength = state.getSegmentLength();
+        LOG.debug("Downloading '{}' ({} bytes) as segments of {} bytes", contentUri, length, segmentLength);
+
+        final ExecutorService executor = IoExecutors.newIoExecutor("osf-content-segment-", segments);
+
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            final List<Future<Void>> futures = new ArrayList<>(segments);
+            for (long start = 0; start < length; start += segmentLength) {
+                if (state.isWritten(start)) {
+                    continue;
+                }
+                final long from = start;
+                final long to = Math.min(length, start + segmentLength) - 1;
+                futures.add(executor.submit(() -> {
+                    resolveRange(contentUri, channel, from, to, state.getValidator());
+                    channel.force(false);
+                    state.written(from);
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Abandon the remaining ranges
+                    futures.forEach(f -> f.cancel(true));
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted downloading '" + contentUri + "'", e);
+                }
+            }
+
+            channel.force(false);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Ranges arrive out of order, so the checksums of segmented content are calculated once it is complete
+        digests.reset();
+        digests.update(target, length);
+        TransferState.delete(target);
+        return length;
+    }
+
+    /**
+     * Downloads the range {@code from}-{@code to} (inclusive) of the content, writing it at the same position of the
+     * channel.
+     */
+    private void resolveRange(final String contentUri, final FileChannel channel, final long from, final long to,
+                              final String validator) throws IOException {
+        final Cursor cursor = new Cursor(from);
+        int attempt = 0;
+        while (cursor.position <= to) {
+            final Request.Builder get = new Request.Builder().get().url(contentUri)
+                    .header("Range", "bytes=" + cursor.position + "-" + to);
+            if (validator != null) {
+                get.header("If-Range", validator);
+            }
+
+            final Response res = execute(get.build());
+            try (ResponseBody body = res.body()) {
+                checkStatus(contentUri, res);
+                if (res.code() != SC_PARTIAL_CONTENT) {
+                    throw new RangeIgnoredException("range " + cursor.position + "-" + to +
+                            " answered with status " + res.code());
+                }
+                if (rangeStart(res) != cursor.position) {
+                    throw new RangeIgnoredException("range " + cursor.position + "-" + to +
+                            " answered with Content-Range " + res.header("Content-Range"));
+                }
+                write(body.byteStream(), channel, cursor, to + 1);
+                if (cursor.position <= to) {
+                    throw new IOException("premature end of range at byte " + cursor.position);
+                }
+            } catch (HttpStatusException e) {
+                throw e;
+            } catch (IOException e) {
+                if (++attempt >= maxAttempts) {
+                    throw e;
+                }
+                LOG.info("Transfer of '{}' range {}-{} interrupted ({}), resuming at byte {} (attempt {} of {})",
+                        contentUri, from, to, e.getMessage(), cursor.position, attempt + 1, maxAttempts);
+            }
+        }
+    }
+
+    /**
+     * Brings the checksums up to date with the first {@code position} bytes of the target, which are read only when
+     * a transfer is resumed, or restarted.
+     */
+    private static void digest(final File target, final long position, final ContentDigests digests)
+            throws IOException {
+        if (digests.getLength() != position) {
+            digests.reset();
+            if (position > 0) {
+                digests.update(target, position);
+            }
+        }
+    }
+
+    /**
+     * Writes the stream to the channel at the position of the cursor, stopping at {@code limit}.  The cursor is
+     * advanced after each write, so that a transfer interrupted by an exception is resumed from the last byte written.
+     */
+    private static void write(final InputStream in, final FileChannel channel, final Cursor cursor, final long limit)
+            throws IOException {
+        final byte[] buf = new byte[64 * 1024];
+        final ByteBuffer buffer = ByteBuffer.wrap(buf);
+        int read;
+        while (cursor.position < limit &&
+                (read = in.read(buf, 0, (int) Math.min(buf.length, limit - cursor.position))) > -1) {
+            buffer.clear().limit(read);
+            while (buffer.hasRemaining()) {
+                cursor.position += channel.write(buffer, cursor.position);
+            }
+        }
+    }
+
+    private Response execute(final Request request) throws IOException {
+        return okHttp.newCall(request).execute();
+    }
+
+    private Response head(final String contentUri) throws IOException {
+        final Response head = execute(new Request.Builder().head().url(contentUri).build());
+        head.body().close();
+        return head;
+    }
+
+    private static boolean acceptsRanges(final Response res) {
+        return "bytes".equalsIgnoreCase(res.header("Accept-Ranges"));
+    }
+
+    private static void checkStatus(final String contentUri, final Response res) throws HttpStatusException {
+        if (!res.isSuccessful()) {
+            throw new HttpStatusException("Unable to retrieve '" + contentUri + "': " + res.code() + " " +
+                    res.message());
+        }
+    }
+
+    private static String validator(final Response res) {
+        final String etag = res.header("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return res.header("Last-Modified");
+    }
+
+    private static long contentLength(final Response res) {
+        try {
+            final String length = res.header("Content-Length");
+            return length == null ? -1 : Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Answers the first byte position from the {@code Content-Range} of a {@code 206} response (e.g.
+     * {@code bytes 250-499/1000}), or {@code -1}.
+     */
+    private static long rangeStart(final Response res) {
+        final String range = res.header("Content-Range");
+        if (range == null || !range.startsWith("bytes ") || range.indexOf('-') < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(range.substring("bytes ".length(), range.indexOf('-')).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Answers the complete length from the {@code Content-Range} of a {@code 416} response (e.g.
+     * {@code bytes &#42;/1234}), or {@code -1}.
+     */
+    private static long completeLength(final Response res) {
+        final String range = res.header("Content-Range");
+        if (range == null || range.indexOf('/') < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(range.substring(range.indexOf('/') + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The position of a transfer.
+     */
+    private static class Cursor {
+
+        private long position;
+
+        private Cursor(final long position) {
+            this.position = position;
+        }
+    }
+
+    /**
+     * The state of a transfer made by {@link #resolveTo(String, File, ContentDigests)}, recorded alongside its target
+     * so that a transfer interrupted with the process can be resumed safely by the next.
+     */
+    private static class TransferState {
+
+        private static final String SUFFIX = ".range";
+
+        private static final String VALIDATOR = "validator";
+
+        private static final String LENGTH = "length";
+
+        private static final String SEGMENT_LENGTH = "segment.length";
+
+        private static final String WRITTEN = "written";
+
+        private final File file;
+
+        private final String validator;
+
+        private final long length;
+
+        private final long segmentLength;
+
+        /**
+         * The first byte of each range written
+         */
+        private final Set<Long> written = new TreeSet<>();
+
+        /**
+         * @param target the target of the transfer
+         * @param validator the {@code ETag} or {@code Last-Modified} date of the content, may be {@code null}
+         * @param length the length of content downloaded in segments, or {@code -1}
+         * @param segmentLength the length of each segment, or {@code 0} for a sequential transfer
+         */
+        private TransferState(final File target, final String validator, final long length,
+                              final long segmentLength) {
+            this.file = file(target);
+            this.validator = validator;
+            this.length = length;
+            this.segmentLength = segmentLength;
+        }
+
+        /**
+         * Answers the recorded state of a transfer to the target, or {@code null} if none is recorded.
+         */
+        private static TransferState load(final File target) {
+            final File file = file(target);
+            if (!file.isFile()) {
+                return null;
+            }
+
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+                final TransferState state = new TransferState(target, properties.getProperty(VALIDATOR),
+                        Long.parseLong(properties.getProperty(LENGTH, "-1")),
+                        Long.parseLong(properties.getProperty(SEGMENT_LENGTH, "0")));
+                for (String start : properties.getProperty(WRITTEN, "").split(",")) {
+                    if (!start.isEmpty()) {
+                        state.written.add(Long.parseLong(start));
+                    }
+                }
+                return state;
+            } catch (IOException | NumberFormatException e) {
+                LOG.warn("Ignoring unreadable transfer state {}: {}", file, e.getMessage());
+                return null;
+            }
+        }
+
+        private static void delete(final File target) throws IOException {
+            Files.deleteIfExists(file(target).toPath());
+        }
+
+        private static File file(final File target) {
+            return new File(target.getPath() + SUFFIX);
+        }
+
+        private String getValidator() {
+            return validator;
+        }
+
+        private boolean isSegmented() {
+            return segmentLength > 0;
+        }
+
+        private long getLength() {
+            return length;
+        }
+
+        private long getSegmentLength() {
+            return segmentLength;
+        }
+
+        private synchronized boolean isWritten(final long start) {
+            return written.contains(start);
+        }
+
+        private synchronized long getWritten() {
+            return written.stream().mapToLong(start -> Math.min(length, start + segmentLength) - start).sum();
+        }
+
+        /**
+         * Records the range starting at the supplied byte as written.
+         */
+        private synchronized void written(final long start) throws IOException {
+            written.add(start);
+            save();
+        }
+
+        /**
+         * Records the state, replacing any recorded state atomically.  State without a validator cannot be used to
+         * resume a sequential transfer, so none is recorded.
+         */
+        private synchronized void save() throws IOException {
+            if (!isSegmented() && validator == null) {
+                Files.deleteIfExists(file.toPath());
+                return;
+            }
+
+            final Properties properties = new Properties();
+            if (validator != null) {
+                properties.setProperty(VALIDATOR, validator);
+            }
+            properties.setProperty(LENGTH, String.valueOf(length));
+            properties.setProperty(SEGMENT_LENGTH, String.valueOf(segmentLength));
+            properties.setProperty(WRITTEN, written.stream().map(String::valueOf).collect(Collectors.joining(",")));
+
+            final File tmp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, null);
+                out.getFD().sync();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * An unsuccessful HTTP response, which is not re-attempted.
+     */
+    private static class HttpStatusException extends IOException {
+        private HttpStatusException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The server did not honor a range request.
+     */
+    private static class RangeIgnoredException extends HttpStatusException {
+        private RangeIgnoredException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Re-requests the remainder of the content when the underlying stream fails.
+     */
+    private class ResumingInputStream extends InputStream {
+
+        private final String contentUri;
+
+        private long position;
+
+        private String validator;
+
+        private int attempt;
+
+        private InputStream current;
+
+        private ResumingInputStream(final String contentUri) throws IOException {
+            this.contentUri = contentUri;
+            open();
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            final int read = read(b, 0, 1);
+            return read < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            while (true) {
+                try {
+                    final int read = current.read(b, off, len);
+                    if (read > 0) {
+                        position += read;
+                    }
+                    return read;
+                } catch (IOException e) {
+                    current.close();
+                    if (++attempt >= maxAttempts) {
+                        throw e;
+                    }
+                    LOG.info("Transfer of '{}' interrupted ({}), resuming at byte {} (attempt {} of {})",
+                            contentUri, e.getMessage(), position, attempt + 1, maxAttempts);
+                    open();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            current.close();
+        }
+
+        private void open() throws IOException {
+            final Request.Builder get = new Request.Builder().get().url(contentUri);
+            if (position > 0) {
+                get.header("Range", "bytes=" + position + "-");
+                if (validator != null) {
+                    get.header("If-Range", validator);
+                }
+            }
+
+            final Response res = execute(get.build());
+            if (!res.isSuccessful()) {
+                res.body().close();
+                throw new HttpStatusException("Unable to retrieve '" + contentUri + "': " + res.code() + " " +
+                        res.message());
+            }
+            if (position > 0 && res.code() != SC_PARTIAL_CONTENT) {
+                res.body().close();
+                throw new RangeIgnoredException("Unable to resume '" + contentUri + "' at byte " + position +
+                        ": range answered with status " + res.code());
+            }
+
+            if (position == 0) {
+                validator = validator(res);
+            }
+            current = res.body().byteStream();
+        }
+    }
+
+}
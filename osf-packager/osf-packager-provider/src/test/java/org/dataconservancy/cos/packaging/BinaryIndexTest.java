@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author agent (agent@local)
+ */
+public class BinaryIndexTest {
+
+    private static final String URL = "http://localhost/v1/resources/eq7a4/providers/osfstorage/1234";
+
+    private static final String OTHER_URL = "http://localhost/v1/resources/eq7a4/providers/osfstorage/5678";
+
+    /**
+     * SHA-256 of "binary content"
+     */
+    private static final String SHA256 = "93a0b24644f2e0fd11d6b422c90275c482b0cc20be4a4e3f62148ed2932b4792";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Insures staged content is found by its URL, or by its checksum.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLookup() throws Exception {
+        final File staged = tmp.newFile();
+        final BinaryIndex underTest = new BinaryIndex();
+        assertNull(underTest.lookup(URL, SHA256));
+
+        underTest.add(URL, SHA256, staged);
+
+        assertSame(staged, underTest.lookup(URL, null));
+        assertSame(staged, underTest.lookup(OTHER_URL, SHA256));
+        assertNull(underTest.lookup(OTHER_URL, null));
+        assertNull(underTest.lookup(OTHER_URL, "0123"));
+    }
+
+    /**
+     * Insures a linked file has the content of the existing file, replacing any content it had.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLink() throws Exception {
+        final File existing = tmp.newFile();
+        FileUtils.writeStringToFile(existing, "binary content", StandardCharsets.UTF_8);
+        final File target = new File(tmp.newFolder(), "target");
+        FileUtils.writeStringToFile(target, "partial", StandardCharsets.UTF_8);
+
+        BinaryIndex.link(existing, target);
+
+        assertEquals("binary content", FileUtils.readFileToString(target, StandardCharsets.UTF_8));
+        assertEquals(SHA256, sha256(target));
+        assertEquals(1, target.getParentFile().list().length);
+    }
+
+    /**
+     * Insures duplicates are counted, along with the bytes saved.
+     */
+    @Test
+    public void testDuplicates() {
+        final BinaryIndex underTest = new BinaryIndex();
+        underTest.duplicate(10);
+        underTest.duplicate(32);
+
+        assertEquals(2, underTest.getDuplicates());
+        assertEquals(42, underTest.getBytesSaved());
+    }
+
+    private static String sha256(final File file) throws Exception {
+        final ContentDigests digests = new ContentDigests();
+        digests.update(file, file.length());
+        return digests.get(Checksum.Algorithm.SHA256);
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent (agent@local)
+ */
+public class CheckpointJournalTest {
+
+    private static final String URL = "http://localhost/v2/registrations/eq7a4/";
+
+    private static final String BINARY_URL = "http://localhost/v1/resources/eq7a4/providers/osfstorage/1234";
+
+    private static final byte[] CONTENT = "binary content".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Insures that recorded responses are available once the journal is re-opened.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecordAndResumeFetch() throws Exception {
+        final File output = tmp.newFolder();
+        assertFalse(CheckpointJournal.exists(output));
+
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            assertNull(journal.readFetch(URL));
+            journal.recordFetch(URL, CheckpointInterceptor.JSON_API, "{\"data\": {}}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertTrue(CheckpointJournal.exists(output));
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            assertEquals(1, journal.getFetchCount());
+            final CheckpointJournal.Fetch fetch = journal.readFetch(URL);
+            assertNotNull(fetch);
+            assertEquals(CheckpointInterceptor.JSON_API, fetch.getMediaType());
+            assertEquals("{\"data\": {}}", new String(fetch.getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Insures that a staged binary is not retrieved again by a resumed run, and that a binary which fails
+     * verification is.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStageAndResumeBinary() throws Exception {
+        final File output = tmp.newFolder();
+        final AtomicInteger retrievals = new AtomicInteger();
+        final OsfContentResolver resolver = uri -> {
+            retrievals.incrementAndGet();
+            return new ByteArrayInputStream(CONTENT);
+        };
+
+        final File staged;
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            staged = journal.stageBinary(BINARY_URL, "osfstorage_file.txt", resolver);
+        }
+        assertEquals(1, retrievals.get());
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(staged));
+
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            assertEquals(staged, journal.stageBinary(BINARY_URL, "osfstorage_file.txt", resolver));
+        }
+        assertEquals(1, retrievals.get());
+
+        // Corrupt the staged content, preserving its length
+        final byte[] corrupt = CONTENT.clone();
+        corrupt[0] = 'B';
+        FileUtils.writeByteArrayToFile(staged, corrupt);
+
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            journal.stageBinary(BINARY_URL, "osfstorage_file.txt", resolver);
+        }
+        assertEquals(2, retrievals.get());
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(staged));
+    }
+
+    /**
+     * Insures that content failing verification against an expected checksum is not journaled.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStageBinaryFailsVerification() throws Exception {
+        final File output = tmp.newFolder();
+        final OsfContentResolver resolver = uri -> new ByteArrayInputStream(CONTENT);
+
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            try {
+                journal.stageBinary(BINARY_URL, "osfstorage_file.txt", resolver,
+                        new ContentDigests().expect(Checksum.Algorithm.SHA256, "0123456789abcdef"));
+                fail("Expected an IOException");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("SHA256"));
+            }
+            assertEquals(0, journal.getBinaryCount());
+
+            final ContentDigests digests = new ContentDigests(Checksum.Algorithm.MD5)
+                    .expect(Checksum.Algorithm.MD5, "8648EDBF1C428EA2C2C8815BCD1B6532");
+            final File staged = journal.stageBinary(BINARY_URL, "osfstorage_file.txt", resolver, digests);
+            assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(staged));
+            assertEquals(1, journal.getBinaryCount());
+            assertEquals("8648edbf1c428ea2c2c8815bcd1b6532", digests.get(Checksum.Algorithm.MD5));
+        }
+    }
+
+    /**
+     * Insures that a partially written final record is discarded, and does not corrupt subsequent records.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPartialRecordDiscarded() throws Exception {
+        final File output = tmp.newFolder();
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            journal.recordFetch(URL, CheckpointInterceptor.JSON_API, CONTENT);
+        }
+
+        final File log = new File(new File(output, CheckpointJournal.DIRECTORY), CheckpointJournal.JOURNAL_FILE);
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write("fetch\thttp://localhost/v2/users/".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            assertEquals(1, journal.getFetchCount());
+            journal.recordFetch(URL + "contributors/", CheckpointInterceptor.JSON_API, CONTENT);
+        }
+
+        try (CheckpointJournal journal = new CheckpointJournal(output)) {
+            assertEquals(2, journal.getFetchCount());
+            assertNotNull(journal.readFetch(URL + "contributors/"));
+        }
+    }
+
+    /**
+     * Insures that deleting the journal removes the journal directory.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDelete() throws Exception {
+        final File output = tmp.newFolder();
+        final CheckpointJournal journal = new CheckpointJournal(output);
+        journal.recordFetch(URL, CheckpointInterceptor.JSON_API, CONTENT);
+        journal.delete();
+
+        assertFalse(CheckpointJournal.exists(output));
+        assertFalse(journal.getDirectory().exists());
+    }
+
+}
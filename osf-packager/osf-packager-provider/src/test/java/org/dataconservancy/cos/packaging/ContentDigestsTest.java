@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent (agent@local)
+ */
+public class ContentDigestsTest {
+
+    private static final byte[] CONTENT = "binary content".getBytes(StandardCharsets.UTF_8);
+
+    private static final String MD5 = "8648edbf1c428ea2c2c8815bcd1b6532";
+
+    private static final String SHA1 = "2282c9adb0573598c6b7b9365e923570d356e96a";
+
+    private static final String SHA256 = "93a0b24644f2e0fd11d6b422c90275c482b0cc20be4a4e3f62148ed2932b4792";
+
+    /**
+     * Insures every requested checksum, and the SHA-256 checksum, is calculated in a single read of the content.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWrap() throws Exception {
+        final ContentDigests underTest = new ContentDigests(Checksum.Algorithm.MD5, Checksum.Algorithm.SHA1);
+        try (InputStream in = underTest.wrap(new ByteArrayInputStream(CONTENT))) {
+            IOUtils.toByteArray(in);
+        }
+
+        assertEquals(CONTENT.length, underTest.getLength());
+        assertEquals(3, underTest.getValues().size());
+        assertEquals(MD5, underTest.get(Checksum.Algorithm.MD5));
+        assertEquals(SHA1, underTest.get(Checksum.Algorithm.SHA1));
+        assertEquals(SHA256, underTest.get(Checksum.Algorithm.SHA256));
+    }
+
+    /**
+     * Insures calculated checksums are verified against expected values, ignoring case.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testVerify() throws Exception {
+        final ContentDigests underTest = new ContentDigests(Checksum.Algorithm.MD5)
+                .expect(Checksum.Algorithm.MD5, MD5.toUpperCase())
+                .expect(Checksum.Algorithm.SHA256, SHA256);
+        IOUtils.toByteArray(underTest.wrap(new ByteArrayInputStream(CONTENT)));
+        underTest.verify("content");
+
+        underTest.reset();
+        underTest.expect(Checksum.Algorithm.SHA256, SHA1);
+        IOUtils.toByteArray(underTest.wrap(new ByteArrayInputStream(CONTENT)));
+        try {
+            underTest.verify("content");
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("SHA256"));
+        }
+    }
+
+}
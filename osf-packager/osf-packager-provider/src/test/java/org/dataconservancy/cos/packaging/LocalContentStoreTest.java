@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.apache.commons.io.FileUtils;
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent (agent@local)
+ */
+public class LocalContentStoreTest {
+
+    private static final String FILE_ID = "http://localhost:8000/v2/files/574de854cfa27c004a16179a";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Insures stored content is answered for the same file, version and checksum, and only for those, and that the
+     * checksums of answered content are calculated.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStoreAndRetrieve() throws Exception {
+        final File content = content("binary content");
+        final String sha256 = sha256(content);
+        final LocalContentStore underTest = new LocalContentStore(tmp.newFolder(), LocalContentStore.DEFAULT_MAX_SIZE);
+
+        assertFalse(underTest.retrieve(FILE_ID, 1, sha256, tmp.newFile(), new ContentDigests()));
+        assertTrue(underTest.store(FILE_ID, 1, sha256, content, sha256));
+
+        final File target = new File(tmp.newFolder(), "target");
+        final ContentDigests digests = new ContentDigests(Checksum.Algorithm.MD5);
+        assertTrue(underTest.retrieve(FILE_ID, 1, sha256, target, digests));
+        assertEquals("binary content", FileUtils.readFileToString(target, StandardCharsets.UTF_8));
+        assertEquals(sha256, digests.get(Checksum.Algorithm.SHA256));
+        assertEquals("8648edbf1c428ea2c2c8815bcd1b6532", digests.get(Checksum.Algorithm.MD5));
+
+        assertFalse(underTest.retrieve(FILE_ID, 2, sha256, target, new ContentDigests()));
+        assertFalse(underTest.retrieve(FILE_ID, 1, null, target, new ContentDigests()));
+        assertEquals(1, underTest.getHits());
+        assertEquals(3, underTest.getMisses());
+    }
+
+    /**
+     * Insures content is not stored without a checksum, or when it does not match its checksum.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStoreUnverifiedContent() throws Exception {
+        final File content = content("binary content");
+        final LocalContentStore underTest = new LocalContentStore(tmp.newFolder(), LocalContentStore.DEFAULT_MAX_SIZE);
+
+        assertFalse(underTest.store(FILE_ID, 1, null, content, sha256(content)));
+        assertFalse(underTest.store(FILE_ID, 1, sha256(content("other content")), content, sha256(content)));
+        assertEquals(0, underTest.getSize());
+    }
+
+    /**
+     * Insures the least recently used entries are evicted once the store exceeds its maximum size, and that entries
+     * survive re-opening the store.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEviction() throws Exception {
+        final File directory = tmp.newFolder();
+        final File first = content("first content");
+        final File second = content("other content");
+        final File third = content("third content");
+        final LocalContentStore underTest = new LocalContentStore(directory, 30);
+
+        assertTrue(underTest.store("first", 1, sha256(first), first, sha256(first)));
+        assertTrue(underTest.store("second", 1, sha256(second), second, sha256(second)));
+        // use the first, so the second is the least recently used
+        assertTrue(underTest.retrieve("first", 1, sha256(first), new File(tmp.newFolder(), "first"),
+                new ContentDigests()));
+        assertTrue(underTest.store("third", 1, sha256(third), third, sha256(third)));
+
+        assertEquals(26, underTest.getSize());
+        assertFalse(underTest.retrieve("second", 1, sha256(second), new File(tmp.newFolder(), "second"),
+                new ContentDigests()));
+
+        final LocalContentStore reopened = new LocalContentStore(directory, 30);
+        assertEquals(26, reopened.getSize());
+        assertTrue(reopened.retrieve("first", 1, sha256(first), new File(tmp.newFolder(), "first"),
+                new ContentDigests()));
+        assertTrue(reopened.retrieve("third", 1, sha256(third), new File(tmp.newFolder(), "third"),
+                new ContentDigests()));
+    }
+
+    /**
+     * Insures an entry that fails verification is removed rather than answered.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCorruptEntry() throws Exception {
+        final File directory = tmp.newFolder();
+        final File content = content("binary content");
+        final String sha256 = sha256(content);
+        final LocalContentStore underTest = new LocalContentStore(directory, LocalContentStore.DEFAULT_MAX_SIZE);
+        assertTrue(underTest.store(FILE_ID, 1, sha256, content, sha256));
+
+        // Corrupt the entry, preserving its length
+        final File entry = new File(directory, LocalContentStore.name(FILE_ID, 1, sha256));
+        assertTrue(entry.delete());
+        FileUtils.writeStringToFile(entry, "binary CONTENT", StandardCharsets.UTF_8);
+
+        assertFalse(underTest.retrieve(FILE_ID, 1, sha256, new File(tmp.newFolder(), "target"),
+                new ContentDigests()));
+        assertFalse(entry.exists());
+        assertEquals(0, underTest.getSize());
+    }
+
+    /**
+     * Insures an entry removed from the store directory is answered as a miss, and forgotten.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMissingEntry() throws Exception {
+        final File directory = tmp.newFolder();
+        final File content = content("binary content");
+        final String sha256 = sha256(content);
+        final LocalContentStore underTest = new LocalContentStore(directory, LocalContentStore.DEFAULT_MAX_SIZE);
+        assertTrue(underTest.store(FILE_ID, 1, sha256, content, sha256));
+
+        assertTrue(new File(directory, LocalContentStore.name(FILE_ID, 1, sha256)).delete());
+
+        final File target = new File(tmp.newFolder(), "target");
+        assertFalse(underTest.retrieve(FILE_ID, 1, sha256, target, new ContentDigests()));
+        assertFalse(target.exists());
+        assertEquals(0, underTest.getSize());
+        assertEquals(1, underTest.getMisses());
+    }
+
+    /**
+     * Insures an entry may be retrieved by several threads at once, each staging verified content.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentRetrieve() throws Exception {
+        final File directory = tmp.newFolder();
+        final File content = content("binary content");
+        final String sha256 = sha256(content);
+        final LocalContentStore underTest = new LocalContentStore(directory, LocalContentStore.DEFAULT_MAX_SIZE);
+        assertTrue(underTest.store(FILE_ID, 1, sha256, content, sha256));
+
+        final int threads = 8;
+        final File targets = tmp.newFolder();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Boolean>> retrieved = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final File target = new File(targets, "target-" + i);
+            retrieved.add(executor.submit(() -> underTest.retrieve(FILE_ID, 1, sha256, target, new ContentDigests())));
+        }
+        for (Future<Boolean> result : retrieved) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+
+        assertEquals(threads, underTest.getHits());
+        for (int i = 0; i < threads; i++) {
+            assertEquals(sha256, sha256(new File(targets, "target-" + i)));
+        }
+    }
+
+    private File content(final String content) throws Exception {
+        final File file = tmp.newFile();
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String sha256(final File file) throws Exception {
+        final ContentDigests digests = new ContentDigests();
+        digests.update(file, file.length());
+        return digests.get(Checksum.Algorithm.SHA256);
+    }
+
+}
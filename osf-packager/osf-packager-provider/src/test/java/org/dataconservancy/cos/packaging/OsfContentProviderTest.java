@@ -21,6 +21,8 @@ import com.squareup.okhttp.Request;
 import org.apache.jena.riot.RDFFormat;
 
 import org.dataconservancy.cos.osf.client.model.AbstractMockServerTest;
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.dataconservancy.cos.osf.client.model.Contributor;
 import org.dataconservancy.cos.osf.client.model.Registration;
 import org.dataconservancy.cos.osf.client.model.User;
 import org.dataconservancy.cos.osf.client.retrofit.OsfService;
@@ -30,27 +32,53 @@ import org.dataconservancy.packaging.shared.IpmPackager;
 import org.dataconservancy.packaging.tool.model.GeneralParameterNames;
 import org.dataconservancy.packaging.tool.model.PackageGenerationParameters;
 import org.dataconservancy.packaging.tool.model.PropertiesConfigurationParametersBuilder;
+import org.dataconservancy.packaging.tool.model.ipm.FileInfo;
+import org.dataconservancy.packaging.tool.model.ipm.Node;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestName;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 /**
  * Simple test exercising the IpmPackager
  *
  * @author Elliot Metsger (emetsger@jhu.edu)
  */
 public class OsfContentProviderTest extends AbstractMockServerTest {
+
+    /**
+     * Fixtures serving registration eq7a4, which has a single binary file
+     */
+    private static final String SIMPLE = "testCreatePackageSimple";
+
     private OntologyManager ontologyManager = new OntologyManager();
 
     @Rule
     public TestName TEST_NAME = new TestName();
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Override
     protected String getOsfServiceConfigurationResource() {
         return "/org/dataconservancy/cos/packaging/config/osf-client.json";
@@ -152,4 +180,213 @@ public class OsfContentProviderTest extends AbstractMockServerTest {
         contentProvider.close();
     }
 
-}
\ No newline at end of file
+    /**
+     * Insures that the checksums calculated as each binary file is staged are available for the staged file, and
+     * match its content.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testChecksumsOfStagedContent() throws Exception {
+        final OsfContentProvider contentProvider = new OsfContentProvider(packageGraph(SIMPLE, "eq7a4"), resolver());
+
+        int files = 0;
+        for (Node n : contentProvider.getIpmModel().getChildren()) {
+            final FileInfo info = n.getFileInfo();
+            if (!info.isFile()) {
+                continue;
+            }
+            final Path staged = Paths.get(info.getLocation());
+            final Map<Checksum.Algorithm, String> checksums = contentProvider.getChecksums(staged);
+            assertNotNull("No checksums for " + staged, checksums);
+
+            final ContentDigests expected = new ContentDigests();
+            final File content = staged.toFile();
+            expected.update(content, content.length());
+            assertEquals(expected.get(Checksum.Algorithm.SHA256), checksums.get(Checksum.Algorithm.SHA256));
+            files++;
+        }
+
+        assertTrue(files > 0);
+        contentProvider.close();
+    }
+
+    /**
+     * Insures that binary content staged in the journal by an interrupted run is not retrieved again when the run is
+     * resumed with the same journal.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResumeFromJournal() throws Exception {
+        final OsfPackageGraph packageGraph = packageGraph(SIMPLE, "eq7a4");
+        final File outputLocation = tmp.newFolder();
+        final AtomicInteger retrievals = new AtomicInteger();
+
+        final CheckpointJournal journal = new CheckpointJournal(outputLocation);
+        final OsfContentProvider interrupted = new OsfContentProvider(packageGraph, resolver(retrievals), journal);
+        final Map<String, String> staged = stagedSha256(interrupted);
+        interrupted.close();
+        journal.close();
+        assertEquals(1, retrievals.get());
+
+        final CheckpointJournal reopened = new CheckpointJournal(outputLocation);
+        assertEquals(1, reopened.getBinaryCount());
+        final OsfContentProvider resumed = new OsfContentProvider(packageGraph, resolver(retrievals), reopened);
+        assertEquals(staged, stagedSha256(resumed));
+        resumed.close();
+        reopened.close();
+        assertEquals(1, retrievals.get());
+    }
+
+    /**
+     * Insures that binary content retrieved by one run is added to the local content store, and staged from the store
+     * by the next run rather than retrieved again.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testContentStoreHit() throws Exception {
+        final OsfPackageGraph packageGraph = packageGraph(SIMPLE, "eq7a4");
+        final LocalContentStore store = new LocalContentStore(tmp.newFolder(), LocalContentStore.DEFAULT_MAX_SIZE);
+        final AtomicInteger retrievals = new AtomicInteger();
+
+        final OsfContentProvider first = new OsfContentProvider(packageGraph, resolver(retrievals));
+        first.setContentStore(store);
+        final Map<String, String> staged = stagedSha256(first);
+        first.close();
+        assertEquals(1, retrievals.get());
+        assertEquals(1, store.getMisses());
+        assertEquals(0, store.getHits());
+
+        final OsfContentProvider second = new OsfContentProvider(packageGraph, resolver(retrievals));
+        second.setContentStore(store);
+        assertEquals(staged, stagedSha256(second));
+        second.close();
+        assertEquals(1, retrievals.get());
+        assertEquals(1, store.getHits());
+    }
+
+    /**
+     * Insures that binary content unchanged since a previous package was written is staged from the previous package,
+     * as described by its manifest, rather than retrieved again.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReusePreviousPackage() throws Exception {
+        final OsfPackageGraph packageGraph = packageGraph(SIMPLE, "eq7a4");
+        final AtomicInteger retrievals = new AtomicInteger();
+
+        // Write the manifest of the previous package, and its content named for its checksum
+        final OsfContentProvider previous = new OsfContentProvider(packageGraph, resolver(retrievals));
+        final File previousContent = tmp.newFolder();
+        for (Node n : previous.getIpmModel().getChildren()) {
+            if (n.getFileInfo().isFile()) {
+                final Path staged = Paths.get(n.getFileInfo().getLocation());
+                Files.copy(staged, new File(previousContent,
+                        previous.getChecksums(staged).get(Checksum.Algorithm.SHA256)).toPath());
+            }
+        }
+        final File manifestFile = tmp.newFile("previous" + PackageManifest.SUFFIX);
+        previous.getManifest().write(manifestFile);
+        previous.close();
+        assertEquals(1, retrievals.get());
+
+        final OsfContentProvider next = new OsfContentProvider(packageGraph, resolver(retrievals));
+        next.setPreviousPackage(PackageManifest.read(manifestFile), previousContent);
+        final Map<String, String> staged = stagedSha256(next);
+        next.close();
+        assertEquals(1, staged.size());
+        assertEquals(1, retrievals.get());
+    }
+
+    /**
+     * Insures that binary content which does not match the SHA-256 checksum reported by the OSF is rejected.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testChecksumMismatchRejected() throws Exception {
+        final OsfContentProvider contentProvider = new OsfContentProvider(packageGraph(SIMPLE, "eq7a4"),
+                (url) -> new ByteArrayInputStream("tampered content".getBytes(StandardCharsets.UTF_8)));
+        try {
+            contentProvider.getIpmModel();
+            fail("Expected content not matching its reported checksum to be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("does not match its SHA256 checksum"));
+        } finally {
+            contentProvider.close();
+        }
+    }
+
+    /**
+     * Answers the package graph of a registration and its contributors, as served by the fixtures of a test.
+     *
+     * @param fixture the name of the test whose fixtures serve the registration
+     * @param registrationId the identifier of the registration
+     * @return the package graph
+     * @throws IOException if the registration or its contributors cannot be retrieved
+     */
+    private OsfPackageGraph packageGraph(final String fixture, final String registrationId) throws IOException {
+        factory.interceptors().add(new RecursiveInterceptor("/json/" + OsfContentProviderTest.class.getSimpleName()
+                + "/" + fixture + "/", OsfContentProviderTest.class));
+        final OsfService osfService = factory.getOsfService(OsfService.class);
+        final Registration registration = osfService.registrationById(registrationId).execute().body();
+
+        final OsfPackageGraph packageGraph = new OsfPackageGraph(ontologyManager);
+        packageGraph.add(registration);
+        for (Contributor c : registration.getContributors()) {
+            packageGraph.add(osfService.userById(c.getId()).execute().body());
+        }
+
+        return packageGraph;
+    }
+
+    /**
+     * Answers a resolver of binary content served by the fixtures supplied to {@link #packageGraph(String, String)}.
+     *
+     * @return the resolver
+     */
+    private OsfContentResolver resolver() {
+        return resolver(new AtomicInteger());
+    }
+
+    /**
+     * Answers a resolver of binary content served by the fixtures supplied to {@link #packageGraph(String, String)},
+     * counting the content it retrieves.
+     *
+     * @param retrievals incremented each time content is retrieved
+     * @return the resolver
+     */
+    private OsfContentResolver resolver(final AtomicInteger retrievals) {
+        return (url) -> {
+            retrievals.incrementAndGet();
+            final Call req = factory.getHttpClient().newCall(new Request.Builder().url(url).build());
+            try {
+                return req.execute().body().byteStream();
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        };
+    }
+
+    /**
+     * Builds the IPM model of the supplied provider, answering the SHA-256 checksum of each binary file it staged.
+     *
+     * @param contentProvider the content provider
+     * @return the SHA-256 checksum of each staged file, keyed by the name of the file
+     */
+    private static Map<String, String> stagedSha256(final OsfContentProvider contentProvider) {
+        final Map<String, String> staged = new HashMap<>();
+        for (Node n : contentProvider.getIpmModel().getChildren()) {
+            if (n.getFileInfo().isFile()) {
+                final Path location = Paths.get(n.getFileInfo().getLocation());
+                staged.put(location.getFileName().toString(),
+                        contentProvider.getChecksums(location).get(Checksum.Algorithm.SHA256));
+            }
+        }
+        return staged;
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent (agent@local)
+ */
+public class PackageManifestTest {
+
+    private static final String FILE_ID = "http://localhost:8000/v2/files/574de854cfa27c004a16179a";
+
+    private static final String DATE = "2016-09-15T14:19:14.417Z";
+
+    private static final String SHA256 = "93a0b24644f2e0fd11d6b422c90275c482b0cc20be4a4e3f62148ed2932b4792";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Insures a manifest is read as it was written, including unknown versions and modification dates.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final PackageManifest manifest = new PackageManifest();
+        manifest.add(FILE_ID, 2, DATE, SHA256.toUpperCase(), 14);
+        manifest.add(FILE_ID + "/wiki", null, null, SHA256, 14);
+
+        final File file = tmp.newFile();
+        manifest.write(file);
+        final PackageManifest underTest = PackageManifest.read(file);
+
+        assertEquals(2, underTest.size());
+        final PackageManifest.Entry entry = underTest.get(FILE_ID);
+        assertEquals(FILE_ID, entry.getId());
+        assertEquals(Integer.valueOf(2), entry.getVersion());
+        assertEquals(DATE, entry.getDateModified());
+        assertEquals(SHA256, entry.getSha256());
+        assertEquals(14, entry.getLength());
+        assertNull(underTest.get(FILE_ID + "/wiki").getVersion());
+        assertNull(underTest.get(FILE_ID + "/wiki").getDateModified());
+    }
+
+    /**
+     * Insures malformed records are ignored.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReadMalformed() throws Exception {
+        final File file = tmp.newFile();
+        Files.write(file.toPath(), ("file\t" + FILE_ID + "\t1\t" + DATE + "\t" + SHA256 + "\t14\n" +
+                "file\tpartial\n" +
+                "file\t" + FILE_ID + "/other\tone\t-\t" + SHA256 + "\t14\n").getBytes(StandardCharsets.UTF_8));
+
+        final PackageManifest underTest = PackageManifest.read(file);
+
+        assertEquals(1, underTest.size());
+        assertNotNull(underTest.get(FILE_ID));
+    }
+
+    /**
+     * Insures a file is unchanged only if its version, modification date, and reported checksum match the manifest.
+     */
+    @Test
+    public void testUnchanged() {
+        final PackageManifest underTest = new PackageManifest();
+        underTest.add(FILE_ID, 2, DATE, SHA256, 14);
+
+        assertNotNull(underTest.unchanged(FILE_ID, 2, DATE, SHA256));
+        assertNotNull(underTest.unchanged(FILE_ID, 2, DATE, SHA256.toUpperCase()));
+        assertNotNull(underTest.unchanged(FILE_ID, 2, DATE, null));
+
+        assertNull(underTest.unchanged(FILE_ID + "/other", 2, DATE, SHA256));
+        assertNull(underTest.unchanged(FILE_ID, 3, DATE, SHA256));
+        assertNull(underTest.unchanged(FILE_ID, 2, "2016-09-16T14:19:14.417Z", SHA256));
+        assertNull(underTest.unchanged(FILE_ID, 2, DATE, SHA256.replace('9', '8')));
+        assertNull(underTest.unchanged(FILE_ID, null, DATE, SHA256));
+    }
+
+    /**
+     * Insures a file whose version, modification date and checksum are unknown is never unchanged.
+     */
+    @Test
+    public void testUnchangedUnknown() {
+        final PackageManifest underTest = new PackageManifest();
+        underTest.add(FILE_ID, null, null, SHA256, 14);
+
+        assertNull(underTest.unchanged(FILE_ID, null, null, null));
+        assertNotNull(underTest.unchanged(FILE_ID, null, null, SHA256));
+    }
+
+}
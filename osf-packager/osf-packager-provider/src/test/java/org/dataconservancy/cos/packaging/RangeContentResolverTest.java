@@ -0,0 +1,504 @@
+/*
+ * Copyright 2016 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.cos.packaging;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import okio.Okio;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.dataconservancy.cos.osf.client.model.Checksum;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent (agent@local)
+ */
+public class RangeContentResolverTest {
+
+    private static final String URL = "http://localhost/v1/resources/eq7a4/providers/osfstorage/1234";
+
+    private static final String ETAG = "\"abc123\"";
+
+    private static final byte[] CONTENT = new byte[1000];
+
+    static {
+        new Random(1000).nextBytes(CONTENT);
+    }
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final FakeServer server = new FakeServer();
+
+    private OkHttpClient okHttp;
+
+    private RangeContentResolver underTest;
+
+    @Before
+    public void setUp() throws Exception {
+        okHttp = new OkHttpClient();
+        okHttp.interceptors().add(server);
+        underTest = new RangeContentResolver(okHttp);
+    }
+
+    /**
+     * Insures that a transfer interrupted part way is resumed from the last byte written.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToResumesInterruptedTransfer() throws Exception {
+        server.failures.set(1);
+        server.failAfter = 300;
+        final File target = tmp.newFile();
+        assertTrue(target.delete());
+
+        assertEquals(CONTENT.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+        assertEquals(Arrays.asList("GET -", "GET bytes=300- " + ETAG), server.requests);
+    }
+
+    /**
+     * Insures that an existing target file, left by an interrupted run, is continued rather than overwritten, and
+     * that the range is validated by the {@code ETag} recorded by the interrupted run.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToContinuesExistingFile() throws Exception {
+        final File target = interrupted(400);
+
+        assertEquals(CONTENT.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+        assertEquals(Collections.singletonList("GET bytes=400- " + ETAG), server.requests);
+        assertFalse(state(target).exists());
+    }
+
+    /**
+     * Insures that an existing target file without recorded state cannot be continued, and is retrieved in full.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToExistingFileWithoutState() throws Exception {
+        final File target = tmp.newFile();
+        FileUtils.writeByteArrayToFile(target, Arrays.copyOf(CONTENT, 400));
+
+        assertEquals(CONTENT.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+        assertEquals(Collections.singletonList("GET -"), server.requests);
+    }
+
+    /**
+     * Insures that content which changed after a transfer was interrupted is retrieved in full, rather than the new
+     * content being spliced onto the old.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToContentChanged() throws Exception {
+        final File target = interrupted(400);
+        final byte[] changed = new byte[CONTENT.length];
+        new Random(2000).nextBytes(changed);
+        server.content = changed;
+        server.etag = "\"def456\"";
+
+        assertEquals(changed.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(changed, FileUtils.readFileToByteArray(target));
+        assertEquals(Collections.singletonList("GET bytes=400- " + ETAG), server.requests);
+    }
+
+    /**
+     * Insures that an existing target file is retrieved in full if the server does not honor ranges.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToRangeIgnored() throws Exception {
+        final File target = interrupted(400);
+        server.ranges = false;
+
+        assertEquals(CONTENT.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+    }
+
+    /**
+     * Insures that a complete target file, left by a run interrupted before the transfer was recorded, is accepted.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToAlreadyComplete() throws Exception {
+        final File target = interrupted(CONTENT.length);
+        assertEquals(CONTENT.length, target.length());
+
+        assertEquals(CONTENT.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+        assertEquals(Collections.singletonList("GET bytes=" + CONTENT.length + "- " + ETAG), server.requests);
+    }
+
+    /**
+     * Insures that content is downloaded as parallel ranges, and that an interrupted range is resumed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToSegments() throws Exception {
+        underTest.setSegments(4);
+        underTest.setSegmentThreshold(1);
+        server.failures.set(1);
+        server.failAfter = 100;
+        final File target = tmp.newFile();
+        assertTrue(target.delete());
+
+        assertEquals(CONTENT.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+        assertEquals("HEAD -", server.requests.get(0));
+        assertTrue(server.requests.containsAll(Arrays.asList("GET bytes=0-249 " + ETAG, "GET bytes=250-499 " + ETAG,
+                "GET bytes=500-749 " + ETAG, "GET bytes=750-999 " + ETAG)));
+        // four ranges, one of which was resumed 100 bytes in
+        assertEquals(6, server.requests.size());
+        assertEquals(1, server.requests.stream()
+                .filter(r -> r.matches("GET bytes=(100-249|350-499|600-749|850-999) .*")).count());
+    }
+
+    /**
+     * Insures that a range answered from a byte other than the one requested is not written, and that the content is
+     * then downloaded sequentially.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToSegmentsMisplacedRange() throws Exception {
+        underTest.setSegments(4);
+        underTest.setSegmentThreshold(1);
+        server.rangesFromStart = true;
+        final File target = tmp.newFile();
+        assertTrue(target.delete());
+
+        assertEquals(CONTENT.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+        assertEquals("GET -", server.requests.get(server.requests.size() - 1));
+    }
+
+    /**
+     * Insures that content is not downloaded in segments when the server supplies no validator, as changed content
+     * could not be detected between ranges.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToSegmentsWithoutValidator() throws Exception {
+        underTest.setSegments(4);
+        underTest.setSegmentThreshold(1);
+        server.etag = null;
+        final File target = tmp.newFile();
+        assertTrue(target.delete());
+
+        assertEquals(CONTENT.length, underTest.resolveTo(URL, target));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+        assertEquals(Arrays.asList("HEAD -", "GET -"), server.requests);
+    }
+
+    /**
+     * Insures that a segmented transfer killed part way, which leaves a target as long as the content, is resumed
+     * from the ranges it recorded rather than accepted as complete.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToResumesKilledSegments() throws Exception {
+        final File target = new File(tmp.newFolder(), "segmented");
+        underTest.setSegments(4);
+        underTest.setSegmentThreshold(1);
+        underTest.setMaxAttempts(1);
+        server.failures.set(1);
+        server.failAfter = 100;
+        server.failFrom = 500;
+        try {
+            underTest.resolveTo(URL, target);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(CONTENT.length, target.length());
+        assertTrue(state(target).isFile());
+
+        // A new process resumes the transfer
+        server.requests.clear();
+        final RangeContentResolver resumed = new RangeContentResolver(okHttp);
+        final ContentDigests digests = new ContentDigests()
+                .expect(Checksum.Algorithm.SHA256, hex(MessageDigest.getInstance("SHA-256").digest(CONTENT)));
+
+        assertEquals(CONTENT.length, resumed.resolveTo(URL, target, digests));
+
+        assertArrayEquals(CONTENT, FileUtils.readFileToByteArray(target));
+        digests.verify(URL);
+        assertFalse(state(target).exists());
+        assertEquals("HEAD -", server.requests.get(0));
+        assertTrue(server.requests.contains("GET bytes=500-749 " + ETAG));
+        // ranges completed before the failure are not retrieved again, and the target is never assumed complete
+        assertFalse(server.requests.contains("GET bytes=0-249 " + ETAG));
+        assertFalse(server.requests.contains("GET bytes=250-499 " + ETAG));
+        assertFalse(server.requests.stream().anyMatch(r -> r.startsWith("GET bytes=" + CONTENT.length + "-")));
+    }
+
+    /**
+     * Insures that the checksums of the content are calculated as it is written, whether the transfer is interrupted,
+     * continues an existing file, or is downloaded in segments.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveToDigests() throws Exception {
+        final String md5 = hex(MessageDigest.getInstance("MD5").digest(CONTENT));
+        final String sha256 = hex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+
+        server.failures.set(1);
+        server.failAfter = 300;
+        final File interrupted = new File(tmp.newFolder(), "interrupted");
+        final ContentDigests digests = new ContentDigests(Checksum.Algorithm.MD5);
+        underTest.resolveTo(URL, interrupted, digests);
+        assertEquals(CONTENT.length, digests.getLength());
+        assertEquals(md5, digests.get(Checksum.Algorithm.MD5));
+        assertEquals(sha256, digests.get(Checksum.Algorithm.SHA256));
+
+        final File existing = interrupted(400);
+        final ContentDigests existingDigests = new ContentDigests(Checksum.Algorithm.MD5);
+        underTest.resolveTo(URL, existing, existingDigests);
+        assertEquals(md5, existingDigests.get(Checksum.Algorithm.MD5));
+
+        underTest.setSegments(4);
+        underTest.setSegmentThreshold(1);
+        final File segmented = new File(tmp.newFolder(), "segmented");
+        final ContentDigests segmentedDigests = new ContentDigests().expect(Checksum.Algorithm.SHA256, sha256);
+        underTest.resolveTo(URL, segmented, segmentedDigests);
+        segmentedDigests.verify(URL);
+    }
+
+    /**
+     * Insures that a stream which fails part way is transparently resumed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResolveResumesStream() throws Exception {
+        server.failures.set(2);
+        server.failAfter = 250;
+
+        try (InputStream in = underTest.resolve(URL)) {
+            assertArrayEquals(CONTENT, IOUtils.toByteArray(in));
+        }
+        assertEquals(Arrays.asList("GET -", "GET bytes=250- " + ETAG, "GET bytes=500- " + ETAG), server.requests);
+    }
+
+    /**
+     * Insures that an unsuccessful response is not re-attempted.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUnsuccessfulResponseNotRetried() throws Exception {
+        server.status = 404;
+        final File target = tmp.newFile();
+
+        try {
+            underTest.resolveTo(URL, target);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("404"));
+        }
+        assertEquals(1, server.requests.size());
+    }
+
+    /**
+     * Answers a target left by a run killed after {@code after} bytes were written.
+     */
+    private File interrupted(final int after) throws Exception {
+        final File target = new File(tmp.newFolder(), "interrupted");
+        final RangeContentResolver killed = new RangeContentResolver(okHttp);
+        killed.setMaxAttempts(1);
+        server.failures.set(1);
+        server.failAfter = after;
+        try {
+            killed.resolveTo(URL, target);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(after, target.length());
+        assertTrue(state(target).isFile());
+        server.requests.clear();
+        return target;
+    }
+
+    private static File state(final File target) {
+        return new File(target.getPath() + ".range");
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Answers requests for {@link #CONTENT}, honoring ranges (or answering each from the start of the content, if
+     * {@code rangesFromStart} is set), and failing part way through the first
+     * {@code failures} responses (starting at {@code failFrom}, if set).
+     */
+    private static class FakeServer implements Interceptor {
+
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private volatile int failAfter;
+
+        private volatile int failFrom = -1;
+
+        private volatile byte[] content = CONTENT;
+
+        private volatile String etag = ETAG;
+
+        private volatile boolean ranges = true;
+
+        private volatile boolean rangesFromStart;
+
+        private volatile int status = 200;
+
+        @Override
+        public Response intercept(final Chain chain) throws IOException {
+            final Request req = chain.request();
+            final String range = req.header("Range");
+            final String ifRange = req.header("If-Range");
+            requests.add(req.method() + " " + (range == null ? "-" : range) + (ifRange == null ? "" : " " + ifRange));
+
+            final Response.Builder res = new Response.Builder()
+                    .request(req)
+                    .protocol(Protocol.HTTP_1_1);
+            if (etag != null) {
+                res.header("ETag", etag);
+            }
+            if (ranges) {
+                res.header("Accept-Ranges", "bytes");
+            }
+
+            if (status != 200) {
+                return res.code(status).message("Error").body(body(new byte[0])).build();
+            }
+
+            final byte[] content = this.content;
+            if ("HEAD".equals(req.method())) {
+                return res.code(200).message("OK").header("Content-Length", String.valueOf(content.length))
+                        .body(body(new byte[0])).build();
+            }
+
+            int from = 0;
+            int to = content.length - 1;
+            if (range != null && ranges && (ifRange == null || ifRange.equals(etag))) {
+                final String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                from = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    to = Integer.parseInt(bounds[1]);
+                }
+                if (from >= content.length) {
+                    return res.code(416).message("Range Not Satisfiable")
+                            .header("Content-Range", "bytes */" + content.length).body(body(new byte[0])).build();
+                }
+                if (rangesFromStart) {
+                    from = 0;
+                }
+                res.code(206).message("Partial Content")
+                        .header("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+            } else {
+                res.code(200).message("OK");
+            }
+
+            final byte[] slice = Arrays.copyOfRange(content, from, to + 1);
+            final boolean fail = (failFrom < 0 || failFrom == from) && failures.getAndDecrement() > 0;
+            final InputStream in = fail ? failing(slice, failAfter) : new ByteArrayInputStream(slice);
+            return res.body(ResponseBody.create(MediaType.parse("application/octet-stream"), slice.length,
+                    Okio.buffer(Okio.source(in)))).build();
+        }
+
+        private static ResponseBody body(final byte[] content) {
+            return ResponseBody.create(MediaType.parse("application/octet-stream"), content);
+        }
+
+        private static InputStream failing(final byte[] content, final int after) {
+            final InputStream delegate = new ByteArrayInputStream(content, 0, Math.min(after, content.length));
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    final int read = delegate.read();
+                    if (read < 0) {
+                        throw new IOException("Connection reset");
+                    }
+                    return read;
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException {
+                    final int read = delegate.read(b, off, len);
+                    if (read < 0) {
+                        throw new IOException("Connection reset");
+                    }
+                    return read;
+                }
+            };
+        }
+    }
+
+}